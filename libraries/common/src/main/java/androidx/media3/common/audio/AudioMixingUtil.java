@@ -17,12 +17,15 @@
 package androidx.media3.common.audio;
 
 import static androidx.media3.common.util.Util.constrainValue;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
 import androidx.media3.common.audio.AudioProcessor.AudioFormat;
 import androidx.media3.common.util.UnstableApi;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /** Utility for mixing audio buffers. */
 @UnstableApi
@@ -32,6 +35,45 @@ public final class AudioMixingUtil {
   private static final float FLOAT_PCM_MIN_VALUE = -1.0f;
   private static final float FLOAT_PCM_MAX_VALUE = 1.0f;
 
+  /** The maximum number of frames mixed at a time. */
+  private static final int MIX_BLOCK_FRAME_COUNT = 256;
+
+  /**
+   * Arrays used by {@link #mix(ByteBuffer, AudioFormat, ByteBuffer, AudioFormat,
+   * ChannelMixingMatrix, int, boolean, boolean, SampleArrays)} to hold samples while they're mixed.
+   *
+   * <p>Components that mix audio repeatedly should keep an instance and pass it to each call, so
+   * that the arrays aren't allocated for every call. An instance must not be used by more than one
+   * thread at a time.
+   */
+  public static final class SampleArrays {
+
+    private float[] inputSamples;
+    private float[] outputSamples;
+    private short[] int16Samples;
+
+    /** Creates an instance. */
+    public SampleArrays() {
+      inputSamples = new float[0];
+      outputSamples = new float[0];
+      int16Samples = new short[0];
+    }
+
+    /** Ensures the arrays can hold a block of frames with the given channel counts. */
+    private void ensureCapacity(int inputChannels, int outputChannels) {
+      if (inputSamples.length < MIX_BLOCK_FRAME_COUNT * inputChannels) {
+        inputSamples = new float[MIX_BLOCK_FRAME_COUNT * inputChannels];
+      }
+      if (outputSamples.length < MIX_BLOCK_FRAME_COUNT * outputChannels) {
+        outputSamples = new float[MIX_BLOCK_FRAME_COUNT * outputChannels];
+      }
+      int maxChannels = max(inputChannels, outputChannels);
+      if (int16Samples.length < MIX_BLOCK_FRAME_COUNT * maxChannels) {
+        int16Samples = new short[MIX_BLOCK_FRAME_COUNT * maxChannels];
+      }
+    }
+  }
+
   public static boolean canMix(AudioFormat audioFormat) {
     if (audioFormat.sampleRate == Format.NO_VALUE) {
       return false;
@@ -83,71 +125,262 @@ public final class AudioMixingUtil {
       int framesToMix,
       boolean accumulate,
       boolean clipFloatOutput) {
+    return mix(
+        inputBuffer,
+        inputAudioFormat,
+        mixingBuffer,
+        mixingAudioFormat,
+        matrix,
+        framesToMix,
+        accumulate,
+        clipFloatOutput,
+        new SampleArrays());
+  }
+
+  /**
+   * Mixes audio from the input buffer into the mixing buffer, holding the samples in the given
+   * {@link SampleArrays}.
+   *
+   * <p>{@link #canMix(AudioFormat, AudioFormat)} must return {@code true} for the formats.
+   *
+   * @param inputBuffer Input audio {@link ByteBuffer}, the position is advanced by the amount of
+   *     bytes read and mixed.
+   * @param inputAudioFormat {@link AudioFormat} of the {@code inputBuffer}.
+   * @param mixingBuffer Mixing audio {@link ByteBuffer}, the position is advanced by the amount of
+   *     bytes written.
+   * @param mixingAudioFormat {@link AudioFormat} of the {@code mixingBuffer}.
+   * @param matrix Scaled channel mapping from input to output.
+   * @param framesToMix Number of audio frames to mix. Must be within the bounds of both buffers.
+   * @param accumulate Whether to accumulate with the existing samples in the mixing buffer.
+   * @param clipFloatOutput Whether to clip the output signal to be in the [-1.0, 1.0] range if the
+   *     output encoding is {@link C#ENCODING_PCM_FLOAT}.
+   * @param sampleArrays The {@link SampleArrays} that hold the samples while they're mixed.
+   * @return The {@code mixingBuffer}, for convenience.
+   */
+  public static ByteBuffer mix(
+      ByteBuffer inputBuffer,
+      AudioFormat inputAudioFormat,
+      ByteBuffer mixingBuffer,
+      AudioFormat mixingAudioFormat,
+      ChannelMixingMatrix matrix,
+      int framesToMix,
+      boolean accumulate,
+      boolean clipFloatOutput,
+      SampleArrays sampleArrays) {
 
     boolean int16Input = inputAudioFormat.encoding == C.ENCODING_PCM_16BIT;
     boolean int16Output = mixingAudioFormat.encoding == C.ENCODING_PCM_16BIT;
     int inputChannels = matrix.getInputChannelCount();
     int outputChannels = matrix.getOutputChannelCount();
-    float[] inputFrame = new float[inputChannels];
-    float[] outputFrame = new float[outputChannels];
+    float[] coefficients = matrix.getCoefficients();
 
-    for (int i = 0; i < framesToMix; i++) {
+    // Mix blocks of frames, so that the samples are read, mixed and written in separate loops over
+    // arrays rather than one sample at a time.
+    int blockFrameCount = min(framesToMix, MIX_BLOCK_FRAME_COUNT);
+    sampleArrays.ensureCapacity(inputChannels, outputChannels);
+    float[] inputSamples = sampleArrays.inputSamples;
+    float[] outputSamples = sampleArrays.outputSamples;
+    short[] int16Samples = sampleArrays.int16Samples;
+    for (int framesMixed = 0; framesMixed < framesToMix; framesMixed += blockFrameCount) {
+      int frameCount = min(blockFrameCount, framesToMix - framesMixed);
+      int outputSampleCount = frameCount * outputChannels;
       if (accumulate) {
         int position = mixingBuffer.position();
-        for (int outputChannel = 0; outputChannel < outputChannels; outputChannel++) {
-          outputFrame[outputChannel] =
-              getPcmSample(mixingBuffer, /* int16Buffer= */ int16Output, int16Output);
-        }
+        readSamples(
+            mixingBuffer,
+            /* int16Buffer= */ int16Output,
+            int16Output,
+            outputSamples,
+            int16Samples,
+            outputSampleCount);
         mixingBuffer.position(position);
+      } else {
+        Arrays.fill(outputSamples, 0, outputSampleCount, 0f);
       }
+      readSamples(
+          inputBuffer,
+          /* int16Buffer= */ int16Input,
+          int16Output,
+          inputSamples,
+          int16Samples,
+          frameCount * inputChannels);
+      mixSamples(
+          inputSamples, inputChannels, outputSamples, outputChannels, coefficients, frameCount);
+      writeSamples(
+          mixingBuffer,
+          int16Output,
+          clipFloatOutput,
+          outputSamples,
+          int16Samples,
+          outputSampleCount);
+    }
+    return mixingBuffer;
+  }
 
-      for (int inputChannel = 0; inputChannel < inputChannels; inputChannel++) {
-        inputFrame[inputChannel] =
-            getPcmSample(inputBuffer, /* int16Buffer= */ int16Input, int16Output);
-      }
-
+  /**
+   * Adds the mix of {@code frameCount} frames of {@code inputSamples} to {@code outputSamples}.
+   *
+   * <p>Common channel layouts have their own loops with the coefficients held in local variables.
+   * All layouts add the products of each output sample in input channel order, so they all produce
+   * the same output.
+   */
+  private static void mixSamples(
+      float[] inputSamples,
+      int inputChannels,
+      float[] outputSamples,
+      int outputChannels,
+      float[] coefficients,
+      int frameCount) {
+    if (inputChannels == 1) {
       for (int outputChannel = 0; outputChannel < outputChannels; outputChannel++) {
-        for (int inputChannel = 0; inputChannel < inputChannels; inputChannel++) {
-          outputFrame[outputChannel] +=
-              inputFrame[inputChannel] * matrix.getMixingCoefficient(inputChannel, outputChannel);
+        float coefficient = coefficients[outputChannel];
+        for (int i = 0; i < frameCount; i++) {
+          outputSamples[i * outputChannels + outputChannel] += inputSamples[i] * coefficient;
         }
-
-        if (int16Output) {
-          mixingBuffer.putShort(
-              (short) constrainValue(outputFrame[outputChannel], Short.MIN_VALUE, Short.MAX_VALUE));
-        } else {
-          mixingBuffer.putFloat(
-              clipFloatOutput
-                  ? constrainValue(
-                      outputFrame[outputChannel], FLOAT_PCM_MIN_VALUE, FLOAT_PCM_MAX_VALUE)
-                  : outputFrame[outputChannel]);
+      }
+    } else if (inputChannels == 2 && outputChannels == 2) {
+      float leftToLeft = coefficients[0];
+      float leftToRight = coefficients[1];
+      float rightToLeft = coefficients[2];
+      float rightToRight = coefficients[3];
+      for (int i = 0; i < frameCount * 2; i += 2) {
+        float left = inputSamples[i];
+        float right = inputSamples[i + 1];
+        outputSamples[i] = outputSamples[i] + left * leftToLeft + right * rightToLeft;
+        outputSamples[i + 1] = outputSamples[i + 1] + left * leftToRight + right * rightToRight;
+      }
+    } else if (inputChannels == 6 && outputChannels == 2) {
+      float c0l = coefficients[0];
+      float c0r = coefficients[1];
+      float c1l = coefficients[2];
+      float c1r = coefficients[3];
+      float c2l = coefficients[4];
+      float c2r = coefficients[5];
+      float c3l = coefficients[6];
+      float c3r = coefficients[7];
+      float c4l = coefficients[8];
+      float c4r = coefficients[9];
+      float c5l = coefficients[10];
+      float c5r = coefficients[11];
+      for (int i = 0; i < frameCount; i++) {
+        int in = i * 6;
+        int out = i * 2;
+        float s0 = inputSamples[in];
+        float s1 = inputSamples[in + 1];
+        float s2 = inputSamples[in + 2];
+        float s3 = inputSamples[in + 3];
+        float s4 = inputSamples[in + 4];
+        float s5 = inputSamples[in + 5];
+        outputSamples[out] =
+            outputSamples[out]
+                + s0 * c0l
+                + s1 * c1l
+                + s2 * c2l
+                + s3 * c3l
+                + s4 * c4l
+                + s5 * c5l;
+        outputSamples[out + 1] =
+            outputSamples[out + 1]
+                + s0 * c0r
+                + s1 * c1r
+                + s2 * c2r
+                + s3 * c3r
+                + s4 * c4r
+                + s5 * c5r;
+      }
+    } else {
+      for (int i = 0; i < frameCount; i++) {
+        int inputOffset = i * inputChannels;
+        int outputOffset = i * outputChannels;
+        for (int outputChannel = 0; outputChannel < outputChannels; outputChannel++) {
+          float sample = outputSamples[outputOffset + outputChannel];
+          for (int inputChannel = 0; inputChannel < inputChannels; inputChannel++) {
+            sample +=
+                inputSamples[inputOffset + inputChannel]
+                    * coefficients[inputChannel * outputChannels + outputChannel];
+          }
+          outputSamples[outputOffset + outputChannel] = sample;
         }
-
-        outputFrame[outputChannel] = 0;
       }
     }
-    return mixingBuffer;
   }
 
   /**
-   * Gets the next sample from the {@link ByteBuffer} of raw audio.
-   *
-   * <p>Int16 PCM range of values: [{@link Short#MIN_VALUE}, {@link Short#MAX_VALUE}].
-   *
-   * <p>Float PCM range of values: [-1.0, 1.0].
+   * Reads samples from the {@link ByteBuffer} of raw audio, advancing its position.
    *
    * @param buffer The {@link ByteBuffer} containing raw audio.
    * @param int16Buffer Whether the buffer contains {@link C#ENCODING_PCM_16BIT} audio. Use {@code
    *     false} if buffer contains {@link C#ENCODING_PCM_FLOAT} audio.
-   * @param int16Output Whether the returned sample should be in the {@link C#ENCODING_PCM_16BIT}
-   *     range of values. If {@code false}, Float PCM range is used.
-   * @return The next sample from the buffer.
+   * @param int16Output Whether the samples should be in the {@link C#ENCODING_PCM_16BIT} range of
+   *     values. If {@code false}, Float PCM range is used.
+   * @param samples The array into which the samples are read.
+   * @param int16Samples An array used to read {@link C#ENCODING_PCM_16BIT} samples.
+   * @param sampleCount The number of samples to read.
    */
-  private static float getPcmSample(ByteBuffer buffer, boolean int16Buffer, boolean int16Output) {
+  private static void readSamples(
+      ByteBuffer buffer,
+      boolean int16Buffer,
+      boolean int16Output,
+      float[] samples,
+      short[] int16Samples,
+      int sampleCount) {
+    if (int16Buffer) {
+      buffer.asShortBuffer().get(int16Samples, 0, sampleCount);
+      buffer.position(buffer.position() + sampleCount * 2);
+      if (int16Output) {
+        for (int i = 0; i < sampleCount; i++) {
+          samples[i] = int16Samples[i];
+        }
+      } else {
+        for (int i = 0; i < sampleCount; i++) {
+          samples[i] = int16SampleToFloatPcm(int16Samples[i]);
+        }
+      }
+    } else {
+      buffer.asFloatBuffer().get(samples, 0, sampleCount);
+      buffer.position(buffer.position() + sampleCount * 4);
+      if (int16Output) {
+        for (int i = 0; i < sampleCount; i++) {
+          samples[i] = floatSampleToInt16Pcm(samples[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes samples to the {@link ByteBuffer} of raw audio, advancing its position.
+   *
+   * @param buffer The {@link ByteBuffer} into which the samples are written.
+   * @param int16Output Whether the buffer contains {@link C#ENCODING_PCM_16BIT} audio, in which
+   *     case the samples are in the {@link C#ENCODING_PCM_16BIT} range of values. If {@code false},
+   *     the buffer contains {@link C#ENCODING_PCM_FLOAT} audio.
+   * @param clipFloatOutput Whether to clip the samples to be in the [-1.0, 1.0] range if {@code
+   *     int16Output} is {@code false}.
+   * @param samples The samples to write. The array may be modified.
+   * @param int16Samples An array used to write {@link C#ENCODING_PCM_16BIT} samples.
+   * @param sampleCount The number of samples to write.
+   */
+  private static void writeSamples(
+      ByteBuffer buffer,
+      boolean int16Output,
+      boolean clipFloatOutput,
+      float[] samples,
+      short[] int16Samples,
+      int sampleCount) {
     if (int16Output) {
-      return int16Buffer ? buffer.getShort() : floatSampleToInt16Pcm(buffer.getFloat());
+      for (int i = 0; i < sampleCount; i++) {
+        int16Samples[i] = (short) constrainValue(samples[i], Short.MIN_VALUE, Short.MAX_VALUE);
+      }
+      buffer.asShortBuffer().put(int16Samples, 0, sampleCount);
+      buffer.position(buffer.position() + sampleCount * 2);
     } else {
-      return int16Buffer ? int16SampleToFloatPcm(buffer.getShort()) : buffer.getFloat();
+      if (clipFloatOutput) {
+        for (int i = 0; i < sampleCount; i++) {
+          samples[i] = constrainValue(samples[i], FLOAT_PCM_MIN_VALUE, FLOAT_PCM_MAX_VALUE);
+        }
+      }
+      buffer.asFloatBuffer().put(samples, 0, sampleCount);
+      buffer.position(buffer.position() + sampleCount * 4);
     }
   }
 
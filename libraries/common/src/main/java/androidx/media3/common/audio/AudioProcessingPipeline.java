@@ -65,6 +65,11 @@ import java.util.List;
  *   <li>Begin {@linkplain #queueInput(ByteBuffer) queuing input} and handling the {@linkplain
  *       #getOutput() output} in the new configuration.
  * </ul>
+ *
+ * <p>If {@linkplain #AudioProcessingPipeline(ImmutableList, boolean) in-place processing is
+ * enabled}, {@link BaseAudioProcessor} instances after the first active processor may overwrite the
+ * output of the preceding processor and output it in place, rather than copying it to a buffer of
+ * their own.
  */
 @UnstableApi
 public final class AudioProcessingPipeline {
@@ -72,6 +77,9 @@ public final class AudioProcessingPipeline {
   /** The {@link AudioProcessor} instances passed to {@link AudioProcessingPipeline}. */
   private final ImmutableList<AudioProcessor> audioProcessors;
 
+  /** Whether {@link BaseAudioProcessor} instances may process their input in place. */
+  private final boolean allowInPlaceProcessing;
+
   /**
    * The processors that are {@linkplain AudioProcessor#isActive() active} based on the current
    * configuration.
@@ -84,6 +92,12 @@ public final class AudioProcessingPipeline {
    */
   private ByteBuffer[] outputBuffers;
 
+  /**
+   * Whether in-place processing is enabled for each of the {@link #activeAudioProcessors}. The
+   * output of a processor may share the output buffer of the preceding processor if this is true.
+   */
+  private boolean[] inPlaceProcessingEnabled;
+
   /** The {@link AudioFormat} currently being output by the pipeline. */
   private AudioFormat outputAudioFormat;
 
@@ -93,15 +107,38 @@ public final class AudioProcessingPipeline {
   /** Whether input has ended, either due to configuration change or end of stream. */
   private boolean inputEnded;
 
+  /**
+   * Whether the end of stream still needs to be queued to the first active processor, because its
+   * output buffer was in use by processors after it.
+   */
+  private boolean pendingEndOfStream;
+
   /**
    * Creates an instance.
    *
    * @param audioProcessors The {@link AudioProcessor} instances to be used for processing buffers.
    */
   public AudioProcessingPipeline(ImmutableList<AudioProcessor> audioProcessors) {
+    this(audioProcessors, /* allowInPlaceProcessing= */ false);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param audioProcessors The {@link AudioProcessor} instances to be used for processing buffers.
+   * @param allowInPlaceProcessing Whether {@link BaseAudioProcessor} instances after the first
+   *     active processor may overwrite and output the data returned by the preceding processor's
+   *     {@link AudioProcessor#getOutput()}, avoiding a copy. This must only be enabled if none of
+   *     the {@code audioProcessors} reads the contents of a buffer after returning it from {@link
+   *     AudioProcessor#getOutput()}, which is the case for all processors in this library.
+   */
+  public AudioProcessingPipeline(
+      ImmutableList<AudioProcessor> audioProcessors, boolean allowInPlaceProcessing) {
     this.audioProcessors = audioProcessors;
+    this.allowInPlaceProcessing = allowInPlaceProcessing;
     activeAudioProcessors = new ArrayList<>();
     outputBuffers = new ByteBuffer[0];
+    inPlaceProcessingEnabled = new boolean[0];
     outputAudioFormat = AudioFormat.NOT_SET;
     pendingOutputAudioFormat = AudioFormat.NOT_SET;
     inputEnded = false;
@@ -155,18 +192,32 @@ public final class AudioProcessingPipeline {
     activeAudioProcessors.clear();
     outputAudioFormat = pendingOutputAudioFormat;
     inputEnded = false;
+    pendingEndOfStream = false;
 
     for (int i = 0; i < audioProcessors.size(); i++) {
       AudioProcessor audioProcessor = audioProcessors.get(i);
       audioProcessor.flush();
+      if (audioProcessor instanceof BaseAudioProcessor) {
+        // The first active processor's input is owned by the caller, so can't be overwritten.
+        ((BaseAudioProcessor) audioProcessor)
+            .setInPlaceProcessingEnabled(
+                allowInPlaceProcessing
+                    && audioProcessor.isActive()
+                    && !activeAudioProcessors.isEmpty());
+      }
       if (audioProcessor.isActive()) {
         activeAudioProcessors.add(audioProcessor);
       }
     }
 
     outputBuffers = new ByteBuffer[activeAudioProcessors.size()];
+    inPlaceProcessingEnabled = new boolean[activeAudioProcessors.size()];
     for (int i = 0; i <= getFinalOutputBufferIndex(); i++) {
-      outputBuffers[i] = activeAudioProcessors.get(i).getOutput();
+      AudioProcessor audioProcessor = activeAudioProcessors.get(i);
+      outputBuffers[i] = audioProcessor.getOutput();
+      inPlaceProcessingEnabled[i] =
+          audioProcessor instanceof BaseAudioProcessor
+              && ((BaseAudioProcessor) audioProcessor).isInPlaceProcessingEnabled();
     }
   }
 
@@ -242,7 +293,11 @@ public final class AudioProcessingPipeline {
       return;
     }
     inputEnded = true;
-    activeAudioProcessors.get(0).queueEndOfStream();
+    if (isOutputInUseDownstream(/* index= */ 0)) {
+      pendingEndOfStream = true;
+    } else {
+      activeAudioProcessors.get(0).queueEndOfStream();
+    }
   }
 
   /**
@@ -271,11 +326,16 @@ public final class AudioProcessingPipeline {
       AudioProcessor audioProcessor = audioProcessors.get(i);
       audioProcessor.flush();
       audioProcessor.reset();
+      if (audioProcessor instanceof BaseAudioProcessor) {
+        ((BaseAudioProcessor) audioProcessor).setInPlaceProcessingEnabled(false);
+      }
     }
     outputBuffers = new ByteBuffer[0];
+    inPlaceProcessingEnabled = new boolean[0];
     outputAudioFormat = AudioFormat.NOT_SET;
     pendingOutputAudioFormat = AudioFormat.NOT_SET;
     inputEnded = false;
+    pendingEndOfStream = false;
   }
 
   /**
@@ -314,6 +374,10 @@ public final class AudioProcessingPipeline {
     boolean progressMade = true;
     while (progressMade) {
       progressMade = false;
+      if (pendingEndOfStream && !isOutputInUseDownstream(/* index= */ 0)) {
+        pendingEndOfStream = false;
+        activeAudioProcessors.get(0).queueEndOfStream();
+      }
       for (int index = 0; index <= getFinalOutputBufferIndex(); index++) {
         if (outputBuffers[index].hasRemaining()) {
           // Processor at this index has output that has not been consumed. Do not queue input.
@@ -323,12 +387,20 @@ public final class AudioProcessingPipeline {
         AudioProcessor audioProcessor = activeAudioProcessors.get(index);
 
         if (audioProcessor.isEnded()) {
-          if (!outputBuffers[index].hasRemaining() && index < getFinalOutputBufferIndex()) {
+          if (!outputBuffers[index].hasRemaining()
+              && index < getFinalOutputBufferIndex()
+              && !isOutputInUseDownstream(index + 1)) {
             activeAudioProcessors.get(index + 1).queueEndOfStream();
           }
           continue;
         }
 
+        if (isOutputInUseDownstream(index)) {
+          // Processors after this index are outputting this processor's output buffer in place.
+          // Do not queue input, as that would overwrite it.
+          continue;
+        }
+
         ByteBuffer input =
             index > 0
                 ? outputBuffers[index - 1]
@@ -342,6 +414,19 @@ public final class AudioProcessingPipeline {
     }
   }
 
+  /**
+   * Returns whether output of processors after {@code index} may still share the output buffer of
+   * the processor at {@code index}, because it was processed in place and has not been consumed.
+   */
+  private boolean isOutputInUseDownstream(int index) {
+    for (int i = index + 1; i <= getFinalOutputBufferIndex() && inPlaceProcessingEnabled[i]; i++) {
+      if (outputBuffers[i].hasRemaining()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private int getFinalOutputBufferIndex() {
     return outputBuffers.length - 1;
   }
@@ -15,6 +15,8 @@
  */
 package androidx.media3.common.audio;
 
+import static androidx.media3.common.util.Assertions.checkState;
+
 import androidx.annotation.CallSuper;
 import androidx.media3.common.util.UnstableApi;
 import java.nio.ByteBuffer;
@@ -39,6 +41,9 @@ public abstract class BaseAudioProcessor implements AudioProcessor {
   private ByteBuffer buffer;
   private ByteBuffer outputBuffer;
   private boolean inputEnded;
+  private boolean inPlaceProcessingEnabled;
+  private long outputBufferAllocationCount;
+  private long outputBufferByteCount;
 
   public BaseAudioProcessor() {
     buffer = EMPTY_BUFFER;
@@ -70,9 +75,13 @@ public abstract class BaseAudioProcessor implements AudioProcessor {
   }
 
   @CallSuper
+  @SuppressWarnings("ReferenceEquality")
   @Override
   public ByteBuffer getOutput() {
     ByteBuffer outputBuffer = this.outputBuffer;
+    if (outputBuffer == buffer) {
+      outputBufferByteCount += outputBuffer.remaining();
+    }
     this.outputBuffer = EMPTY_BUFFER;
     return outputBuffer;
   }
@@ -104,6 +113,30 @@ public abstract class BaseAudioProcessor implements AudioProcessor {
     onReset();
   }
 
+  /**
+   * Returns the number of times this processor has allocated an output buffer since it was
+   * created.
+   */
+  public final long getOutputBufferAllocationCount() {
+    return outputBufferAllocationCount;
+  }
+
+  /**
+   * Returns the number of bytes this processor has output from its own buffer since it was created.
+   * Output {@linkplain #replaceOutputBufferInPlace(ByteBuffer) processed in place} is not counted.
+   */
+  public final long getOutputBufferByteCount() {
+    return outputBufferByteCount;
+  }
+
+  /**
+   * Sets whether input buffers may be {@linkplain #replaceOutputBufferInPlace(ByteBuffer) processed
+   * in place}. Called by {@link AudioProcessingPipeline} when it's flushed or reset.
+   */
+  /* package */ final void setInPlaceProcessingEnabled(boolean inPlaceProcessingEnabled) {
+    this.inPlaceProcessingEnabled = inPlaceProcessingEnabled;
+  }
+
   /**
    * Replaces the current output buffer with a buffer of at least {@code size} bytes and returns it.
    * Callers should write to the returned buffer then {@link ByteBuffer#flip()} it so it can be read
@@ -112,6 +145,7 @@ public abstract class BaseAudioProcessor implements AudioProcessor {
   protected final ByteBuffer replaceOutputBuffer(int size) {
     if (buffer.capacity() < size) {
       buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+      outputBufferAllocationCount++;
     } else {
       buffer.clear();
     }
@@ -119,6 +153,34 @@ public abstract class BaseAudioProcessor implements AudioProcessor {
     return buffer;
   }
 
+  /**
+   * Returns whether the processor may overwrite the contents of its input buffers and output them
+   * using {@link #replaceOutputBufferInPlace(ByteBuffer)}, instead of copying them to a buffer of
+   * its own.
+   *
+   * <p>This is only the case for processors that receive the output of another processor in an
+   * {@link AudioProcessingPipeline} with in-place processing enabled.
+   */
+  protected final boolean isInPlaceProcessingEnabled() {
+    return inPlaceProcessingEnabled;
+  }
+
+  /**
+   * Replaces the current output buffer with a buffer sharing the remaining bytes of {@code
+   * inputBuffer} and returns it. Callers should write to the returned buffer then {@link
+   * ByteBuffer#flip()} it so it can be read via {@link #getOutput()}, as for {@link
+   * #replaceOutputBuffer(int)}. Each byte must be read from {@code inputBuffer} before it's
+   * overwritten, so the output for each part of the input can be at most as large as that part.
+   *
+   * <p>Must only be called if {@link #isInPlaceProcessingEnabled()}. The position of {@code
+   * inputBuffer} is not modified.
+   */
+  protected final ByteBuffer replaceOutputBufferInPlace(ByteBuffer inputBuffer) {
+    checkState(inPlaceProcessingEnabled);
+    outputBuffer = inputBuffer.slice().order(ByteOrder.nativeOrder());
+    return outputBuffer;
+  }
+
   /** Returns whether the current output buffer has any data remaining. */
   protected final boolean hasPendingOutput() {
     return outputBuffer.hasRemaining();
@@ -26,16 +26,19 @@ import java.nio.ByteBuffer;
 /**
  * An {@link AudioProcessor} that handles mixing and scaling audio channels. Call {@link
  * #putChannelMixingMatrix(ChannelMixingMatrix)} specifying mixing matrices to apply for each
- * possible input channel count before using the audio processor. Input and output are 16-bit PCM.
+ * possible input channel count before using the audio processor. Input and output are 16-bit or
+ * float PCM, and the output has the same encoding as the input.
  */
 @UnstableApi
 public final class ChannelMixingAudioProcessor extends BaseAudioProcessor {
 
   private final SparseArray<ChannelMixingMatrix> matrixByInputChannelCount;
+  private final AudioMixingUtil.SampleArrays sampleArrays;
 
   /** Creates a new audio processor for mixing and scaling audio channels. */
   public ChannelMixingAudioProcessor() {
     matrixByInputChannelCount = new SparseArray<>();
+    sampleArrays = new AudioMixingUtil.SampleArrays();
   }
 
   /**
@@ -51,8 +54,8 @@ public final class ChannelMixingAudioProcessor extends BaseAudioProcessor {
   @Override
   protected AudioFormat onConfigure(AudioFormat inputAudioFormat)
       throws UnhandledAudioFormatException {
-    // TODO(b/290002731): Expand to allow float due to AudioMixingUtil built-in support for float.
-    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledAudioFormatException(inputAudioFormat);
     }
     @Nullable
@@ -68,7 +71,7 @@ public final class ChannelMixingAudioProcessor extends BaseAudioProcessor {
     return new AudioFormat(
         inputAudioFormat.sampleRate,
         channelMixingMatrix.getOutputChannelCount(),
-        C.ENCODING_PCM_16BIT);
+        inputAudioFormat.encoding);
   }
 
   @Override
@@ -77,7 +80,13 @@ public final class ChannelMixingAudioProcessor extends BaseAudioProcessor {
         checkStateNotNull(matrixByInputChannelCount.get(inputAudioFormat.channelCount));
 
     int framesToMix = inputBuffer.remaining() / inputAudioFormat.bytesPerFrame;
-    ByteBuffer outputBuffer = replaceOutputBuffer(framesToMix * outputAudioFormat.bytesPerFrame);
+    // Frames are mixed in blocks that are read before they're written, so if the output frames are
+    // no larger than the input frames they can be written over the input.
+    ByteBuffer outputBuffer =
+        isInPlaceProcessingEnabled()
+                && outputAudioFormat.bytesPerFrame <= inputAudioFormat.bytesPerFrame
+            ? replaceOutputBufferInPlace(inputBuffer)
+            : replaceOutputBuffer(framesToMix * outputAudioFormat.bytesPerFrame);
     AudioMixingUtil.mix(
         inputBuffer,
         inputAudioFormat,
@@ -86,7 +95,8 @@ public final class ChannelMixingAudioProcessor extends BaseAudioProcessor {
         channelMixingMatrix,
         framesToMix,
         /* accumulate= */ false,
-        /* clipFloatOutput= */ true);
+        /* clipFloatOutput= */ true,
+        sampleArrays);
     outputBuffer.flip();
   }
 }
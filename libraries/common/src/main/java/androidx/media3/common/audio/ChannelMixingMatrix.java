@@ -148,6 +148,11 @@ public final class ChannelMixingMatrix {
     return coefficients[inputChannel * outputChannelCount + outputChannel];
   }
 
+  /** Returns the coefficients in row-major order. The array must not be modified. */
+  /* package */ float[] getCoefficients() {
+    return coefficients;
+  }
+
   /** Returns whether all mixing coefficients are zero. */
   public boolean isZero() {
     return isZero;
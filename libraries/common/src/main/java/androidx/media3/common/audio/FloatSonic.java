@@ -0,0 +1,569 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ * Copyright (C) 2010 Bill Cox, Sonic Library
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.common.audio;
+
+import static androidx.media3.common.audio.Sonic.AMDF_FREQUENCY;
+import static androidx.media3.common.audio.Sonic.MAXIMUM_PITCH;
+import static androidx.media3.common.audio.Sonic.MINIMUM_PITCH;
+import static androidx.media3.common.audio.Sonic.MINIMUM_SLOWDOWN_RATE;
+import static androidx.media3.common.audio.Sonic.MINIMUM_SPEEDUP_RATE;
+import static androidx.media3.common.util.Assertions.checkState;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Sonic audio stream processor for time/pitch stretching of float PCM audio.
+ *
+ * <p>This uses the same algorithm as {@link Sonic}, without converting samples to 16-bit integers.
+ * Samples are held in one array per channel rather than interleaved, so that the loops over
+ * samples access contiguous memory.
+ */
+/* package */ final class FloatSonic {
+
+  private static final int BYTES_PER_SAMPLE = 4;
+
+  private final int inputSampleRateHz;
+  private final int channelCount;
+  private final float speed;
+  private final float pitch;
+  private final float rate;
+  private final int minPeriod;
+  private final int maxPeriod;
+  private final int maxRequiredFrameCount;
+  private final float[] downSampleBuffer;
+
+  private float[][] inputBuffer;
+  private int inputFrameCount;
+  private float[][] outputBuffer;
+  private int outputFrameCount;
+  private float[][] pitchBuffer;
+  private int pitchFrameCount;
+  private float[] interleavedBuffer;
+  private int oldRatePosition;
+  private int newRatePosition;
+
+  /**
+   * Number of frames pending to be copied from {@link #inputBuffer} directly to {@link
+   * #outputBuffer}. See {@link Sonic} for details.
+   */
+  private int remainingInputToCopyFrameCount;
+
+  private int prevPeriod;
+  private float prevMinDiff;
+  private float minDiff;
+  private float maxDiff;
+  private double accumulatedSpeedAdjustmentError;
+
+  /**
+   * Creates a new float Sonic audio stream processor.
+   *
+   * @param inputSampleRateHz The sample rate of input audio, in hertz.
+   * @param channelCount The number of channels in the input audio.
+   * @param speed The speedup factor for output audio.
+   * @param pitch The pitch factor for output audio.
+   * @param outputSampleRateHz The sample rate for output audio, in hertz.
+   */
+  public FloatSonic(
+      int inputSampleRateHz, int channelCount, float speed, float pitch, int outputSampleRateHz) {
+    this.inputSampleRateHz = inputSampleRateHz;
+    this.channelCount = channelCount;
+    this.speed = speed;
+    this.pitch = pitch;
+    rate = (float) inputSampleRateHz / outputSampleRateHz;
+    minPeriod = inputSampleRateHz / MAXIMUM_PITCH;
+    maxPeriod = inputSampleRateHz / MINIMUM_PITCH;
+    maxRequiredFrameCount = 2 * maxPeriod;
+    downSampleBuffer = new float[maxRequiredFrameCount];
+    inputBuffer = new float[channelCount][maxRequiredFrameCount];
+    outputBuffer = new float[channelCount][maxRequiredFrameCount];
+    pitchBuffer = new float[channelCount][maxRequiredFrameCount];
+    interleavedBuffer = new float[0];
+  }
+
+  /**
+   * Returns the number of bytes that have been input, but will not be processed until more input
+   * data is provided.
+   */
+  public int getPendingInputBytes() {
+    return inputFrameCount * channelCount * BYTES_PER_SAMPLE;
+  }
+
+  /**
+   * Queues remaining data from {@code buffer}, and advances its position by the number of samples
+   * consumed.
+   *
+   * @param buffer A {@link FloatBuffer} containing input data between its position and limit.
+   */
+  public void queueInput(FloatBuffer buffer) {
+    int framesToWrite = buffer.remaining() / channelCount;
+    int samplesToWrite = framesToWrite * channelCount;
+    ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, framesToWrite);
+    if (interleavedBuffer.length < samplesToWrite) {
+      interleavedBuffer = new float[samplesToWrite];
+    }
+    buffer.get(interleavedBuffer, 0, samplesToWrite);
+    for (int channel = 0; channel < channelCount; channel++) {
+      float[] channelSamples = inputBuffer[channel];
+      for (int i = 0; i < framesToWrite; i++) {
+        channelSamples[inputFrameCount + i] = interleavedBuffer[i * channelCount + channel];
+      }
+    }
+    inputFrameCount += framesToWrite;
+    processStreamInput();
+  }
+
+  /**
+   * Gets available output, outputting to the start of {@code buffer}. The buffer's position will be
+   * advanced by the number of samples written.
+   *
+   * @param buffer A {@link FloatBuffer} into which output will be written.
+   */
+  public void getOutput(FloatBuffer buffer) {
+    checkState(outputFrameCount >= 0);
+    int framesToRead = min(buffer.remaining() / channelCount, outputFrameCount);
+    int samplesToRead = framesToRead * channelCount;
+    if (interleavedBuffer.length < samplesToRead) {
+      interleavedBuffer = new float[samplesToRead];
+    }
+    for (int channel = 0; channel < channelCount; channel++) {
+      float[] channelSamples = outputBuffer[channel];
+      for (int i = 0; i < framesToRead; i++) {
+        interleavedBuffer[i * channelCount + channel] = channelSamples[i];
+      }
+    }
+    buffer.put(interleavedBuffer, 0, samplesToRead);
+    outputFrameCount -= framesToRead;
+    for (float[] channelSamples : outputBuffer) {
+      System.arraycopy(channelSamples, framesToRead, channelSamples, 0, outputFrameCount);
+    }
+  }
+
+  /**
+   * Forces generating output using whatever data has been queued already. No extra delay will be
+   * added to the output, but flushing in the middle of words could introduce distortion.
+   */
+  public void queueEndOfStream() {
+    int remainingFrameCount = inputFrameCount;
+    double s = speed / pitch;
+    double r = rate * pitch;
+
+    // Frames to be copied directly onto the output buffer are not processed, so they are added to
+    // the output as they are. See Sonic.queueEndOfStream.
+    int adjustedRemainingFrames = remainingFrameCount - remainingInputToCopyFrameCount;
+    int expectedOutputFrames =
+        outputFrameCount
+            + (int)
+                ((adjustedRemainingFrames / s
+                            + remainingInputToCopyFrameCount
+                            + accumulatedSpeedAdjustmentError
+                            + pitchFrameCount)
+                        / r
+                    + 0.5);
+    accumulatedSpeedAdjustmentError = 0;
+
+    // Add enough silence to flush both input and pitch buffers.
+    int silenceFrameCount = 2 * maxRequiredFrameCount;
+    ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, silenceFrameCount);
+    for (float[] channelSamples : inputBuffer) {
+      Arrays.fill(
+          channelSamples, remainingFrameCount, remainingFrameCount + silenceFrameCount, 0f);
+    }
+    inputFrameCount += silenceFrameCount;
+    processStreamInput();
+    // Throw away any extra frames we generated due to the silence we added.
+    if (outputFrameCount > expectedOutputFrames) {
+      // expectedOutputFrames might be negative, so set lower bound to 0.
+      outputFrameCount = max(expectedOutputFrames, 0);
+    }
+    // Empty input and pitch buffers.
+    inputFrameCount = 0;
+    remainingInputToCopyFrameCount = 0;
+    pitchFrameCount = 0;
+  }
+
+  /** Clears state in preparation for receiving a new stream of input buffers. */
+  public void flush() {
+    inputFrameCount = 0;
+    outputFrameCount = 0;
+    pitchFrameCount = 0;
+    oldRatePosition = 0;
+    newRatePosition = 0;
+    remainingInputToCopyFrameCount = 0;
+    prevPeriod = 0;
+    prevMinDiff = 0;
+    minDiff = 0;
+    maxDiff = 0;
+    accumulatedSpeedAdjustmentError = 0;
+  }
+
+  /** Returns the size of output that can be read with {@link #getOutput(FloatBuffer)}, in bytes. */
+  public int getOutputSize() {
+    checkState(outputFrameCount >= 0);
+    return outputFrameCount * channelCount * BYTES_PER_SAMPLE;
+  }
+
+  // Internal methods.
+
+  /**
+   * Replaces the per-channel arrays of {@code buffer} with larger copies if needed, such that they
+   * have enough space to store {@code additionalFrameCount} additional frames.
+   *
+   * @param buffer The per-channel arrays.
+   * @param frameCount The number of frames already in the arrays.
+   * @param additionalFrameCount The number of additional frames that need to be stored.
+   */
+  private static void ensureSpaceForAdditionalFrames(
+      float[][] buffer, int frameCount, int additionalFrameCount) {
+    int currentCapacityFrames = buffer[0].length;
+    if (frameCount + additionalFrameCount <= currentCapacityFrames) {
+      return;
+    }
+    int newCapacityFrames = 3 * currentCapacityFrames / 2 + additionalFrameCount;
+    for (int channel = 0; channel < buffer.length; channel++) {
+      buffer[channel] = Arrays.copyOf(buffer[channel], newCapacityFrames);
+    }
+  }
+
+  private void removeProcessedInputFrames(int positionFrames) {
+    int remainingFrames = inputFrameCount - positionFrames;
+    for (float[] channelSamples : inputBuffer) {
+      System.arraycopy(channelSamples, positionFrames, channelSamples, 0, remainingFrames);
+    }
+    inputFrameCount = remainingFrames;
+  }
+
+  private void copyToOutput(float[][] samples, int positionFrames, int frameCount) {
+    ensureSpaceForAdditionalFrames(outputBuffer, outputFrameCount, frameCount);
+    for (int channel = 0; channel < channelCount; channel++) {
+      System.arraycopy(
+          samples[channel], positionFrames, outputBuffer[channel], outputFrameCount, frameCount);
+    }
+    outputFrameCount += frameCount;
+  }
+
+  private int copyInputToOutput(int positionFrames) {
+    int frameCount = min(maxRequiredFrameCount, remainingInputToCopyFrameCount);
+    copyToOutput(inputBuffer, positionFrames, frameCount);
+    remainingInputToCopyFrameCount -= frameCount;
+    return frameCount;
+  }
+
+  private void downSampleInput(int position, int skip) {
+    // Average skip frames of all channels together and write them to the down-sample buffer.
+    int frameCount = maxRequiredFrameCount / skip;
+    Arrays.fill(downSampleBuffer, 0, frameCount, 0f);
+    for (float[] channelSamples : inputBuffer) {
+      if (skip == 1) {
+        for (int i = 0; i < frameCount; i++) {
+          downSampleBuffer[i] += channelSamples[position + i];
+        }
+        continue;
+      }
+      int samplePosition = position;
+      for (int i = 0; i < frameCount; i++) {
+        float value = 0;
+        for (int j = 0; j < skip; j++) {
+          value += channelSamples[samplePosition++];
+        }
+        downSampleBuffer[i] += value;
+      }
+    }
+    float scale = 1f / (channelCount * skip);
+    for (int i = 0; i < frameCount; i++) {
+      downSampleBuffer[i] *= scale;
+    }
+  }
+
+  private int findPitchPeriodInRange(float[] samples, int position, int minPeriod, int maxPeriod) {
+    // Find the best frequency match in the range, and given a sample skip multiple.
+    int bestPeriod = 0;
+    int worstPeriod = 255;
+    float minDiff = 1;
+    float maxDiff = 0;
+    for (int period = minPeriod; period <= maxPeriod; period++) {
+      // Accumulate into independent sums, so that the additions don't all depend on each other.
+      float diff0 = 0;
+      float diff1 = 0;
+      float diff2 = 0;
+      float diff3 = 0;
+      int i = 0;
+      for (; i + 3 < period; i += 4) {
+        int p = position + i;
+        diff0 += Math.abs(samples[p] - samples[p + period]);
+        diff1 += Math.abs(samples[p + 1] - samples[p + period + 1]);
+        diff2 += Math.abs(samples[p + 2] - samples[p + period + 2]);
+        diff3 += Math.abs(samples[p + 3] - samples[p + period + 3]);
+      }
+      for (; i < period; i++) {
+        diff0 += Math.abs(samples[position + i] - samples[position + period + i]);
+      }
+      float diff = (diff0 + diff1) + (diff2 + diff3);
+      if (diff * bestPeriod < minDiff * period) {
+        minDiff = diff;
+        bestPeriod = period;
+      }
+      if (diff * worstPeriod > maxDiff * period) {
+        maxDiff = diff;
+        worstPeriod = period;
+      }
+    }
+    this.minDiff = minDiff / bestPeriod;
+    this.maxDiff = maxDiff / worstPeriod;
+    return bestPeriod;
+  }
+
+  /**
+   * Returns whether the previous pitch period estimate is a better approximation, which can occur
+   * at the abrupt end of voiced words.
+   */
+  private boolean previousPeriodBetter(float minDiff, float maxDiff) {
+    if (minDiff == 0 || prevPeriod == 0) {
+      return false;
+    }
+    if (maxDiff > minDiff * 3) {
+      // Got a reasonable match this period.
+      return false;
+    }
+    if (minDiff * 2 <= prevMinDiff * 3) {
+      // Mismatch is not that much greater this period.
+      return false;
+    }
+    return true;
+  }
+
+  private int findPitchPeriod(int position) {
+    // Find the pitch period of the input, first at around 4 kHz and then again with a narrower
+    // range without down sampling. See Sonic.findPitchPeriod.
+    int period;
+    int retPeriod;
+    int skip = inputSampleRateHz > AMDF_FREQUENCY ? inputSampleRateHz / AMDF_FREQUENCY : 1;
+    if (channelCount == 1 && skip == 1) {
+      period = findPitchPeriodInRange(inputBuffer[0], position, minPeriod, maxPeriod);
+    } else {
+      downSampleInput(position, skip);
+      period = findPitchPeriodInRange(downSampleBuffer, 0, minPeriod / skip, maxPeriod / skip);
+      if (skip != 1) {
+        period *= skip;
+        int minP = max(period - (skip * 4), minPeriod);
+        int maxP = min(period + (skip * 4), maxPeriod);
+        if (channelCount == 1) {
+          period = findPitchPeriodInRange(inputBuffer[0], position, minP, maxP);
+        } else {
+          downSampleInput(position, 1);
+          period = findPitchPeriodInRange(downSampleBuffer, 0, minP, maxP);
+        }
+      }
+    }
+    if (previousPeriodBetter(minDiff, maxDiff)) {
+      retPeriod = prevPeriod;
+    } else {
+      retPeriod = period;
+    }
+    prevMinDiff = minDiff;
+    prevPeriod = period;
+    return retPeriod;
+  }
+
+  private void moveNewSamplesToPitchBuffer(int originalOutputFrameCount) {
+    int frameCount = outputFrameCount - originalOutputFrameCount;
+    ensureSpaceForAdditionalFrames(pitchBuffer, pitchFrameCount, frameCount);
+    for (int channel = 0; channel < channelCount; channel++) {
+      System.arraycopy(
+          outputBuffer[channel],
+          originalOutputFrameCount,
+          pitchBuffer[channel],
+          pitchFrameCount,
+          frameCount);
+    }
+    outputFrameCount = originalOutputFrameCount;
+    pitchFrameCount += frameCount;
+  }
+
+  private void removePitchFrames(int frameCount) {
+    if (frameCount == 0) {
+      return;
+    }
+    for (float[] channelSamples : pitchBuffer) {
+      System.arraycopy(
+          channelSamples, frameCount, channelSamples, 0, pitchFrameCount - frameCount);
+    }
+    pitchFrameCount -= frameCount;
+  }
+
+  private void adjustRate(float rate, int originalOutputFrameCount) {
+    if (outputFrameCount == originalOutputFrameCount) {
+      return;
+    }
+
+    long newSampleRate = (long) (inputSampleRateHz / rate);
+    long oldSampleRate = inputSampleRateHz;
+    // Reduce the values to keep the position products small.
+    while (newSampleRate != 0
+        && oldSampleRate != 0
+        && newSampleRate % 2 == 0
+        && oldSampleRate % 2 == 0) {
+      newSampleRate /= 2;
+      oldSampleRate /= 2;
+    }
+    moveNewSamplesToPitchBuffer(originalOutputFrameCount);
+    // Leave at least one pitch sample in the buffer.
+    for (int position = 0; position < pitchFrameCount - 1; position++) {
+      while ((oldRatePosition + 1) * newSampleRate > newRatePosition * oldSampleRate) {
+        ensureSpaceForAdditionalFrames(
+            outputBuffer, outputFrameCount, /* additionalFrameCount= */ 1);
+        // Interpolate linearly between the frames at position and position + 1.
+        long ratio = (oldRatePosition + 1) * newSampleRate - newRatePosition * oldSampleRate;
+        float leftWeight = (float) ratio / newSampleRate;
+        float rightWeight = 1f - leftWeight;
+        for (int channel = 0; channel < channelCount; channel++) {
+          float[] channelSamples = pitchBuffer[channel];
+          outputBuffer[channel][outputFrameCount] =
+              channelSamples[position] * leftWeight + channelSamples[position + 1] * rightWeight;
+        }
+        newRatePosition++;
+        outputFrameCount++;
+      }
+      oldRatePosition++;
+      if (oldRatePosition == oldSampleRate) {
+        oldRatePosition = 0;
+        checkState(newRatePosition == newSampleRate);
+        newRatePosition = 0;
+      }
+    }
+    removePitchFrames(pitchFrameCount - 1);
+  }
+
+  private int skipPitchPeriod(int position, double speed, int period) {
+    // Skip over a pitch period, and copy period/speed samples to the output.
+    int newFrameCount;
+    if (speed >= 2.0f) {
+      double expectedFrameCount = period / (speed - 1.0) + accumulatedSpeedAdjustmentError;
+      newFrameCount = (int) Math.round(expectedFrameCount);
+      accumulatedSpeedAdjustmentError = expectedFrameCount - newFrameCount;
+    } else {
+      newFrameCount = period;
+      double expectedInputToCopy =
+          period * (2.0f - speed) / (speed - 1.0f) + accumulatedSpeedAdjustmentError;
+      remainingInputToCopyFrameCount = (int) Math.round(expectedInputToCopy);
+      accumulatedSpeedAdjustmentError = expectedInputToCopy - remainingInputToCopyFrameCount;
+    }
+    ensureSpaceForAdditionalFrames(outputBuffer, outputFrameCount, newFrameCount);
+    overlapAdd(
+        newFrameCount,
+        outputBuffer,
+        outputFrameCount,
+        inputBuffer,
+        position,
+        inputBuffer,
+        position + period);
+    outputFrameCount += newFrameCount;
+    return newFrameCount;
+  }
+
+  private int insertPitchPeriod(int position, double speed, int period) {
+    // Insert a pitch period, and determine how much input to copy directly.
+    int newFrameCount;
+    if (speed < 0.5f) {
+      double expectedFrameCount = period * speed / (1.0f - speed) + accumulatedSpeedAdjustmentError;
+      newFrameCount = (int) Math.round(expectedFrameCount);
+      accumulatedSpeedAdjustmentError = expectedFrameCount - newFrameCount;
+    } else {
+      newFrameCount = period;
+      double expectedInputToCopy =
+          period * (2.0f * speed - 1.0f) / (1.0f - speed) + accumulatedSpeedAdjustmentError;
+      remainingInputToCopyFrameCount = (int) Math.round(expectedInputToCopy);
+      accumulatedSpeedAdjustmentError = expectedInputToCopy - remainingInputToCopyFrameCount;
+    }
+    ensureSpaceForAdditionalFrames(outputBuffer, outputFrameCount, period + newFrameCount);
+    for (int channel = 0; channel < channelCount; channel++) {
+      System.arraycopy(
+          inputBuffer[channel], position, outputBuffer[channel], outputFrameCount, period);
+    }
+    overlapAdd(
+        newFrameCount,
+        outputBuffer,
+        outputFrameCount + period,
+        inputBuffer,
+        position + period,
+        inputBuffer,
+        position);
+    outputFrameCount += period + newFrameCount;
+    return newFrameCount;
+  }
+
+  private void changeSpeed(double speed) {
+    if (inputFrameCount < maxRequiredFrameCount) {
+      return;
+    }
+    int frameCount = inputFrameCount;
+    int positionFrames = 0;
+    do {
+      if (remainingInputToCopyFrameCount > 0) {
+        positionFrames += copyInputToOutput(positionFrames);
+      } else {
+        int period = findPitchPeriod(positionFrames);
+        if (speed > 1.0) {
+          positionFrames += period + skipPitchPeriod(positionFrames, speed, period);
+        } else {
+          positionFrames += insertPitchPeriod(positionFrames, speed, period);
+        }
+      }
+    } while (positionFrames + maxRequiredFrameCount <= frameCount);
+    removeProcessedInputFrames(positionFrames);
+  }
+
+  private void processStreamInput() {
+    // Resample as many pitch periods as we have buffered on the input.
+    int originalOutputFrameCount = outputFrameCount;
+    double s = speed / pitch;
+    float r = rate * pitch;
+    if (s > MINIMUM_SPEEDUP_RATE || s < MINIMUM_SLOWDOWN_RATE) {
+      changeSpeed(s);
+    } else {
+      copyToOutput(inputBuffer, 0, inputFrameCount);
+      inputFrameCount = 0;
+    }
+    if (r != 1.0f) {
+      adjustRate(r, originalOutputFrameCount);
+    }
+  }
+
+  private void overlapAdd(
+      int frameCount,
+      float[][] out,
+      int outPosition,
+      float[][] rampDown,
+      int rampDownPosition,
+      float[][] rampUp,
+      int rampUpPosition) {
+    float scale = 1f / frameCount;
+    for (int channel = 0; channel < channelCount; channel++) {
+      float[] outSamples = out[channel];
+      float[] rampDownSamples = rampDown[channel];
+      float[] rampUpSamples = rampUp[channel];
+      for (int t = 0; t < frameCount; t++) {
+        outSamples[outPosition + t] =
+            (rampDownSamples[rampDownPosition + t] * (frameCount - t)
+                    + rampUpSamples[rampUpPosition + t] * t)
+                * scale;
+      }
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.common.audio;
+
+import static androidx.media3.common.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.media3.common.util.UnstableApi;
+import java.util.Arrays;
+
+/**
+ * Measures the integrated loudness of audio, as defined by ITU-R BS.1770-4.
+ *
+ * <p>Samples are K-weighted and their mean square is measured over gating blocks of 400 ms that
+ * overlap by 75%. The integrated loudness is the loudness of the blocks that pass an absolute gate
+ * of -70 LUFS and a relative gate 10 LU below the loudness of the blocks passing the absolute gate.
+ *
+ * <p>Block loudnesses are counted in a histogram with a resolution of 0.1 LU, so the memory used
+ * doesn't grow with the duration of the audio. This limits the precision of the relative gate, but
+ * the energy of each block is accounted for exactly.
+ */
+@UnstableApi
+public final class LoudnessMeter {
+
+  private static final double ABSOLUTE_GATE_LUFS = -70;
+  private static final double RELATIVE_GATE_LU = -10;
+  private static final double HISTOGRAM_MAX_LUFS = 10;
+  private static final double HISTOGRAM_BIN_WIDTH_LU = 0.1;
+  private static final int HISTOGRAM_BIN_COUNT =
+      (int) Math.round((HISTOGRAM_MAX_LUFS - ABSOLUTE_GATE_LUFS) / HISTOGRAM_BIN_WIDTH_LU);
+
+  /** The number of 100 ms steps in each 400 ms gating block. */
+  private static final int STEPS_PER_BLOCK = 4;
+
+  private final int channelCount;
+  private final int stepFrameCount;
+  private final double[] channelWeights;
+
+  // Coefficients of the two K-weighting filter stages, normalized so that a0 is 1. The second stage
+  // has b0 = 1, b1 = -2 and b2 = 1.
+  private final double shelfB0;
+  private final double shelfB1;
+  private final double shelfB2;
+  private final double shelfA1;
+  private final double shelfA2;
+  private final double highPassA1;
+  private final double highPassA2;
+
+  // Filter state for each channel, in direct form II.
+  private final double[] shelfState1;
+  private final double[] shelfState2;
+  private final double[] highPassState1;
+  private final double[] highPassState2;
+
+  private final double[] stepEnergies;
+  private final long[] histogramBlockCounts;
+  private final double[] histogramBlockEnergies;
+
+  private int channel;
+  private int stepFrameIndex;
+  private double stepEnergy;
+  private int stepIndex;
+  private long stepCount;
+  private long frameCount;
+
+  /**
+   * Creates an instance.
+   *
+   * @param sampleRate The sample rate of the audio, in Hz.
+   * @param channelCount The number of channels. For five or six channels, the channels are assumed
+   *     to be in the order L, R, C, (LFE,) Ls, Rs, and weighted accordingly.
+   */
+  public LoudnessMeter(int sampleRate, int channelCount) {
+    checkArgument(sampleRate > 0 && channelCount > 0);
+    this.channelCount = channelCount;
+    stepFrameCount = max(1, sampleRate / 10);
+    channelWeights = new double[channelCount];
+    Arrays.fill(channelWeights, 1);
+    if (channelCount == 5) {
+      channelWeights[3] = 1.41;
+      channelWeights[4] = 1.41;
+    } else if (channelCount == 6) {
+      channelWeights[3] = 0;
+      channelWeights[4] = 1.41;
+      channelWeights[5] = 1.41;
+    }
+
+    // The filters are defined for 48 kHz in BS.1770. Derive them for other sample rates from the
+    // analog prototypes, as in the EBU reference implementation.
+    double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+    double q = 0.7071752369554196;
+    double vh = Math.pow(10, 3.999843853973347 / 20);
+    double vb = Math.pow(vh, 0.4996667741545416);
+    double a0 = 1 + k / q + k * k;
+    shelfB0 = (vh + vb * k / q + k * k) / a0;
+    shelfB1 = 2 * (k * k - vh) / a0;
+    shelfB2 = (vh - vb * k / q + k * k) / a0;
+    shelfA1 = 2 * (k * k - 1) / a0;
+    shelfA2 = (1 - k / q + k * k) / a0;
+    k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+    q = 0.5003270373238773;
+    a0 = 1 + k / q + k * k;
+    highPassA1 = 2 * (k * k - 1) / a0;
+    highPassA2 = (1 - k / q + k * k) / a0;
+
+    shelfState1 = new double[channelCount];
+    shelfState2 = new double[channelCount];
+    highPassState1 = new double[channelCount];
+    highPassState2 = new double[channelCount];
+    stepEnergies = new double[STEPS_PER_BLOCK];
+    histogramBlockCounts = new long[HISTOGRAM_BIN_COUNT];
+    histogramBlockEnergies = new double[HISTOGRAM_BIN_COUNT];
+  }
+
+  /**
+   * Adds the next sample to the measurement. Samples must be added in interleaved channel order.
+   *
+   * @param sample The sample, with full scale corresponding to the range [-1, 1].
+   */
+  public void addSample(float sample) {
+    int channel = this.channel;
+    double shelfOutput = sample - shelfA1 * shelfState1[channel] - shelfA2 * shelfState2[channel];
+    double filteredSample =
+        shelfB0 * shelfOutput + shelfB1 * shelfState1[channel] + shelfB2 * shelfState2[channel];
+    shelfState2[channel] = shelfState1[channel];
+    shelfState1[channel] = shelfOutput;
+    double highPassOutput =
+        filteredSample
+            - highPassA1 * highPassState1[channel]
+            - highPassA2 * highPassState2[channel];
+    filteredSample = highPassOutput - 2 * highPassState1[channel] + highPassState2[channel];
+    highPassState2[channel] = highPassState1[channel];
+    highPassState1[channel] = highPassOutput;
+    stepEnergy += channelWeights[channel] * filteredSample * filteredSample;
+
+    if (++this.channel < channelCount) {
+      return;
+    }
+    this.channel = 0;
+    frameCount++;
+    if (++stepFrameIndex == stepFrameCount) {
+      onStepEnded();
+    }
+  }
+
+  /** Returns the number of complete frames added since the meter was created or reset. */
+  public long getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Returns the integrated loudness of the audio added since the meter was created or reset, in
+   * LUFS, or {@link Double#NEGATIVE_INFINITY} if no gating block passed the gates. This is the case
+   * for silence and for audio shorter than one gating block.
+   */
+  public double getIntegratedLoudness() {
+    long blockCount = 0;
+    double blockEnergy = 0;
+    for (int i = 0; i < HISTOGRAM_BIN_COUNT; i++) {
+      blockCount += histogramBlockCounts[i];
+      blockEnergy += histogramBlockEnergies[i];
+    }
+    if (blockCount == 0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    double relativeGateLufs = energyToLoudness(blockEnergy / blockCount) + RELATIVE_GATE_LU;
+    blockCount = 0;
+    blockEnergy = 0;
+    for (int i = getHistogramBinIndex(relativeGateLufs); i < HISTOGRAM_BIN_COUNT; i++) {
+      blockCount += histogramBlockCounts[i];
+      blockEnergy += histogramBlockEnergies[i];
+    }
+    return blockCount == 0
+        ? Double.NEGATIVE_INFINITY
+        : energyToLoudness(blockEnergy / blockCount);
+  }
+
+  /** Discards the measurement and the filter state, so that a new measurement can start. */
+  public void reset() {
+    Arrays.fill(shelfState1, 0);
+    Arrays.fill(shelfState2, 0);
+    Arrays.fill(highPassState1, 0);
+    Arrays.fill(highPassState2, 0);
+    Arrays.fill(stepEnergies, 0);
+    Arrays.fill(histogramBlockCounts, 0);
+    Arrays.fill(histogramBlockEnergies, 0);
+    channel = 0;
+    stepFrameIndex = 0;
+    stepEnergy = 0;
+    stepIndex = 0;
+    stepCount = 0;
+    frameCount = 0;
+  }
+
+  private void onStepEnded() {
+    stepEnergies[stepIndex] = stepEnergy;
+    stepIndex = (stepIndex + 1) % STEPS_PER_BLOCK;
+    stepEnergy = 0;
+    stepFrameIndex = 0;
+    if (++stepCount < STEPS_PER_BLOCK) {
+      return;
+    }
+    double blockEnergy = 0;
+    for (double energy : stepEnergies) {
+      blockEnergy += energy;
+    }
+    blockEnergy /= (double) STEPS_PER_BLOCK * stepFrameCount;
+    double blockLoudness = energyToLoudness(blockEnergy);
+    if (blockLoudness > ABSOLUTE_GATE_LUFS) {
+      int binIndex = getHistogramBinIndex(blockLoudness);
+      histogramBlockCounts[binIndex]++;
+      histogramBlockEnergies[binIndex] += blockEnergy;
+    }
+  }
+
+  private static double energyToLoudness(double energy) {
+    return -0.691 + 10 * Math.log10(energy);
+  }
+
+  private static int getHistogramBinIndex(double loudness) {
+    int binIndex = (int) ((loudness - ABSOLUTE_GATE_LUFS) / HISTOGRAM_BIN_WIDTH_LU);
+    return max(0, min(HISTOGRAM_BIN_COUNT - 1, binIndex));
+  }
+}
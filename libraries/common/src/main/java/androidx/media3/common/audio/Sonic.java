@@ -32,13 +32,13 @@ import java.util.Arrays;
  */
 /* package */ final class Sonic {
 
-  private static final int MINIMUM_PITCH = 65;
-  private static final int MAXIMUM_PITCH = 400;
-  private static final int AMDF_FREQUENCY = 4000;
+  /* package */ static final int MINIMUM_PITCH = 65;
+  /* package */ static final int MAXIMUM_PITCH = 400;
+  /* package */ static final int AMDF_FREQUENCY = 4000;
   private static final int BYTES_PER_SAMPLE = 2;
 
-  private static final float MINIMUM_SPEEDUP_RATE = 1.00001f;
-  private static final float MINIMUM_SLOWDOWN_RATE = 0.99999f;
+  /* package */ static final float MINIMUM_SPEEDUP_RATE = 1.00001f;
+  /* package */ static final float MINIMUM_SLOWDOWN_RATE = 0.99999f;
 
   private final int inputSampleRateHz;
   private final int channelCount;
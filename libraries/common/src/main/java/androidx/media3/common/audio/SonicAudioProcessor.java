@@ -27,10 +27,14 @@ import androidx.media3.common.util.UnstableApi;
 import androidx.media3.common.util.Util;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 /**
  * An {@link AudioProcessor} that uses the Sonic library to modify audio speed/pitch/sample rate.
+ *
+ * <p>Supports {@link C#ENCODING_PCM_16BIT} and {@link C#ENCODING_PCM_FLOAT} input, and outputs
+ * audio with the same encoding as the input.
  */
 @UnstableApi
 public final class SonicAudioProcessor implements AudioProcessor {
@@ -60,8 +64,10 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   private boolean pendingSonicRecreation;
   @Nullable private Sonic sonic;
+  @Nullable private FloatSonic floatSonic;
   private ByteBuffer buffer;
   private ShortBuffer shortBuffer;
+  private FloatBuffer floatBuffer;
   private ByteBuffer outputBuffer;
   private long inputBytes;
   private long outputBytes;
@@ -88,6 +94,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
     outputAudioFormat = AudioFormat.NOT_SET;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRate = SAMPLE_RATE_NO_CHANGE;
     shouldBeActiveWithDefaultParameters = keepActiveWithDefaultParameters;
@@ -149,7 +156,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
    */
   public long getMediaDuration(long playoutDuration) {
     if (outputBytes >= MIN_BYTES_FOR_DURATION_SCALING_CALCULATION) {
-      long processedInputBytes = inputBytes - checkNotNull(sonic).getPendingInputBytes();
+      long processedInputBytes = inputBytes - getPendingInputBytes();
       return outputAudioFormat.sampleRate == inputAudioFormat.sampleRate
           ? Util.scaleLargeTimestamp(playoutDuration, processedInputBytes, outputBytes)
           : Util.scaleLargeTimestamp(
@@ -174,7 +181,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
    */
   public long getPlayoutDuration(long mediaDuration) {
     if (outputBytes >= MIN_BYTES_FOR_DURATION_SCALING_CALCULATION) {
-      long processedInputBytes = inputBytes - checkNotNull(sonic).getPendingInputBytes();
+      long processedInputBytes = inputBytes - getPendingInputBytes();
       return outputAudioFormat.sampleRate == inputAudioFormat.sampleRate
           ? Util.scaleLargeTimestamp(mediaDuration, outputBytes, processedInputBytes)
           : Util.scaleLargeTimestamp(
@@ -188,7 +195,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   /** Returns the number of bytes processed since last flush or reset. */
   public long getProcessedInputBytes() {
-    return inputBytes - checkNotNull(sonic).getPendingInputBytes();
+    return inputBytes - getPendingInputBytes();
   }
 
   @Override
@@ -198,7 +205,8 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public AudioFormat configure(AudioFormat inputAudioFormat) throws UnhandledAudioFormatException {
-    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledAudioFormatException(inputAudioFormat);
     }
     int outputSampleRateHz =
@@ -207,7 +215,8 @@ public final class SonicAudioProcessor implements AudioProcessor {
             : pendingOutputSampleRate;
     pendingInputAudioFormat = inputAudioFormat;
     pendingOutputAudioFormat =
-        new AudioFormat(outputSampleRateHz, inputAudioFormat.channelCount, C.ENCODING_PCM_16BIT);
+        new AudioFormat(
+            outputSampleRateHz, inputAudioFormat.channelCount, inputAudioFormat.encoding);
     pendingSonicRecreation = true;
     return pendingOutputAudioFormat;
   }
@@ -229,11 +238,13 @@ public final class SonicAudioProcessor implements AudioProcessor {
     if (!inputBuffer.hasRemaining()) {
       return;
     }
-    Sonic sonic = checkNotNull(this.sonic);
-    ShortBuffer shortBuffer = inputBuffer.asShortBuffer();
     int inputSize = inputBuffer.remaining();
     inputBytes += inputSize;
-    sonic.queueInput(shortBuffer);
+    if (floatSonic != null) {
+      floatSonic.queueInput(inputBuffer.asFloatBuffer());
+    } else {
+      checkNotNull(sonic).queueInput(inputBuffer.asShortBuffer());
+    }
     inputBuffer.position(inputBuffer.position() + inputSize);
   }
 
@@ -242,28 +253,33 @@ public final class SonicAudioProcessor implements AudioProcessor {
     // TODO(internal b/174554082): assert sonic is non-null here and in getOutput.
     if (sonic != null) {
       sonic.queueEndOfStream();
+    } else if (floatSonic != null) {
+      floatSonic.queueEndOfStream();
     }
     inputEnded = true;
   }
 
   @Override
   public ByteBuffer getOutput() {
-    @Nullable Sonic sonic = this.sonic;
-    if (sonic != null) {
-      int outputSize = sonic.getOutputSize();
-      if (outputSize > 0) {
-        if (buffer.capacity() < outputSize) {
-          buffer = ByteBuffer.allocateDirect(outputSize).order(ByteOrder.nativeOrder());
-          shortBuffer = buffer.asShortBuffer();
-        } else {
-          buffer.clear();
-          shortBuffer.clear();
-        }
-        sonic.getOutput(shortBuffer);
-        outputBytes += outputSize;
-        buffer.limit(outputSize);
-        outputBuffer = buffer;
+    int outputSize = getSonicOutputSize();
+    if (outputSize > 0) {
+      if (buffer.capacity() < outputSize) {
+        buffer = ByteBuffer.allocateDirect(outputSize).order(ByteOrder.nativeOrder());
+        shortBuffer = buffer.asShortBuffer();
+        floatBuffer = buffer.asFloatBuffer();
+      } else {
+        buffer.clear();
+        shortBuffer.clear();
+        floatBuffer.clear();
       }
+      if (floatSonic != null) {
+        floatSonic.getOutput(floatBuffer);
+      } else {
+        checkNotNull(sonic).getOutput(shortBuffer);
+      }
+      outputBytes += outputSize;
+      buffer.limit(outputSize);
+      outputBuffer = buffer;
     }
     ByteBuffer outputBuffer = this.outputBuffer;
     this.outputBuffer = EMPTY_BUFFER;
@@ -272,7 +288,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public boolean isEnded() {
-    return inputEnded && (sonic == null || sonic.getOutputSize() == 0);
+    return inputEnded && getSonicOutputSize() == 0;
   }
 
   @Override
@@ -281,15 +297,29 @@ public final class SonicAudioProcessor implements AudioProcessor {
       inputAudioFormat = pendingInputAudioFormat;
       outputAudioFormat = pendingOutputAudioFormat;
       if (pendingSonicRecreation) {
-        sonic =
-            new Sonic(
-                inputAudioFormat.sampleRate,
-                inputAudioFormat.channelCount,
-                speed,
-                pitch,
-                outputAudioFormat.sampleRate);
+        if (inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT) {
+          sonic = null;
+          floatSonic =
+              new FloatSonic(
+                  inputAudioFormat.sampleRate,
+                  inputAudioFormat.channelCount,
+                  speed,
+                  pitch,
+                  outputAudioFormat.sampleRate);
+        } else {
+          floatSonic = null;
+          sonic =
+              new Sonic(
+                  inputAudioFormat.sampleRate,
+                  inputAudioFormat.channelCount,
+                  speed,
+                  pitch,
+                  outputAudioFormat.sampleRate);
+        }
       } else if (sonic != null) {
         sonic.flush();
+      } else if (floatSonic != null) {
+        floatSonic.flush();
       }
     }
     outputBuffer = EMPTY_BUFFER;
@@ -308,12 +338,30 @@ public final class SonicAudioProcessor implements AudioProcessor {
     outputAudioFormat = AudioFormat.NOT_SET;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRate = SAMPLE_RATE_NO_CHANGE;
     pendingSonicRecreation = false;
     sonic = null;
+    floatSonic = null;
     inputBytes = 0;
     outputBytes = 0;
     inputEnded = false;
   }
+
+  private int getPendingInputBytes() {
+    if (floatSonic != null) {
+      return floatSonic.getPendingInputBytes();
+    }
+    return checkNotNull(sonic).getPendingInputBytes();
+  }
+
+  private int getSonicOutputSize() {
+    if (sonic != null) {
+      return sonic.getOutputSize();
+    } else if (floatSonic != null) {
+      return floatSonic.getOutputSize();
+    }
+    return 0;
+  }
 }
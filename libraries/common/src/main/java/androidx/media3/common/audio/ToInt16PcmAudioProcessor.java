@@ -89,8 +89,12 @@ public final class ToInt16PcmAudioProcessor extends BaseAudioProcessor {
         throw new IllegalStateException();
     }
 
-    // Resample the little endian input and update the input/output buffers.
-    ByteBuffer buffer = replaceOutputBuffer(resampledSize);
+    // Resample the little endian input and update the input/output buffers. Each input sample is
+    // read before the output sample is written, so samples that don't grow can be written in place.
+    ByteBuffer buffer =
+        isInPlaceProcessingEnabled() && resampledSize <= size
+            ? replaceOutputBufferInPlace(inputBuffer)
+            : replaceOutputBuffer(resampledSize);
     switch (inputAudioFormat.encoding) {
       case C.ENCODING_PCM_8BIT:
         // 8 -> 16 bit resampling. Shift each byte from [0, 256) to [-128, 128) and scale up.
@@ -102,8 +106,9 @@ public final class ToInt16PcmAudioProcessor extends BaseAudioProcessor {
       case C.ENCODING_PCM_16BIT_BIG_ENDIAN:
         // Big endian to little endian resampling. Swap the byte order.
         for (int i = position; i < limit; i += 2) {
+          byte mostSignificantByte = inputBuffer.get(i);
           buffer.put(inputBuffer.get(i + 1));
-          buffer.put(inputBuffer.get(i));
+          buffer.put(mostSignificantByte);
         }
         break;
       case C.ENCODING_PCM_24BIT:
@@ -116,8 +121,9 @@ public final class ToInt16PcmAudioProcessor extends BaseAudioProcessor {
       case C.ENCODING_PCM_24BIT_BIG_ENDIAN:
         // 24 BE -> 16 bit resampling. Drop the least significant byte.
         for (int i = position; i < limit; i += 3) {
+          byte mostSignificantByte = inputBuffer.get(i);
           buffer.put(inputBuffer.get(i + 1));
-          buffer.put(inputBuffer.get(i));
+          buffer.put(mostSignificantByte);
         }
         break;
       case C.ENCODING_PCM_32BIT:
@@ -130,8 +136,9 @@ public final class ToInt16PcmAudioProcessor extends BaseAudioProcessor {
       case C.ENCODING_PCM_32BIT_BIG_ENDIAN:
         // 32 BE -> 16 bit resampling. Drop the two least significant bytes.
         for (int i = position; i < limit; i += 4) {
+          byte mostSignificantByte = inputBuffer.get(i);
           buffer.put(inputBuffer.get(i + 1));
-          buffer.put(inputBuffer.get(i));
+          buffer.put(mostSignificantByte);
         }
         break;
       case C.ENCODING_PCM_FLOAT:
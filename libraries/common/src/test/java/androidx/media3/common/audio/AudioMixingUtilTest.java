@@ -417,4 +417,88 @@ public final class AudioMixingUtilTest {
     mixingBuffer.rewind();
     assertThat(createFloatArray(mixingBuffer)).isEqualTo(new float[] {1.4f, -1.1f});
   }
+
+  @Test
+  public void mixToStereoFloat_withManySurroundFloatInputFrames_mixesAllFrames() {
+    AudioFormat surroundFormat =
+        new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 6, C.ENCODING_PCM_FLOAT);
+    ChannelMixingMatrix surroundToStereo =
+        new ChannelMixingMatrix(
+            /* inputChannelCount= */ 6,
+            /* outputChannelCount= */ 2,
+            new float[] {
+              /* front left */ 1f, 0f,
+              /* front right */ 0f, 1f,
+              /* front center */ 0.5f, 0.5f,
+              /* low frequency */ 0f, 0f,
+              /* back left */ 0.5f, 0f,
+              /* back right */ 0f, 0.5f
+            });
+    int frameCount = 1000;
+    float[] sourceSamples = new float[frameCount * 6];
+    float[] mixingSamples = new float[frameCount * 2];
+    for (int i = 0; i < frameCount; i++) {
+      System.arraycopy(
+          new float[] {0.1f, 0.2f, 0.4f, 0.8f, 0.2f, 0.6f}, 0, sourceSamples, i * 6, 6);
+      mixingSamples[i * 2] = 0.1f;
+      mixingSamples[i * 2 + 1] = -0.1f;
+    }
+    ByteBuffer sourceBuffer = createByteBuffer(sourceSamples);
+    ByteBuffer mixingBuffer = createByteBuffer(mixingSamples);
+
+    AudioMixingUtil.mix(
+        sourceBuffer,
+        surroundFormat,
+        mixingBuffer,
+        STEREO_44100_PCM_FLOAT,
+        surroundToStereo,
+        frameCount,
+        /* accumulate= */ true,
+        /* clipFloatOutput= */ true);
+
+    assertWithMessage("Source buffer").that(sourceBuffer.remaining()).isEqualTo(0);
+    assertWithMessage("Mixing buffer").that(mixingBuffer.remaining()).isEqualTo(0);
+    mixingBuffer.rewind();
+    float[] mixedSamples = createFloatArray(mixingBuffer);
+    for (int i = 0; i < frameCount; i++) {
+      assertThat(mixedSamples[i * 2]).isWithin(1e-6f).of(0.5f);
+      assertThat(mixedSamples[i * 2 + 1]).isWithin(1e-6f).of(0.6f);
+    }
+  }
+
+  @Test
+  public void mix_reusingSampleArraysForDifferentChannelCounts_mixesEachCall() {
+    AudioMixingUtil.SampleArrays sampleArrays = new AudioMixingUtil.SampleArrays();
+    ByteBuffer monoSourceBuffer = createByteBuffer(new float[] {0.5f, -0.25f});
+    ByteBuffer stereoMixingBuffer = createByteBuffer(new float[4]);
+    ByteBuffer stereoSourceBuffer = createByteBuffer(new float[] {0.25f, -0.5f});
+    ByteBuffer monoMixingBuffer = createByteBuffer(new float[1]);
+
+    AudioMixingUtil.mix(
+        monoSourceBuffer,
+        MONO_44100_PCM_FLOAT,
+        stereoMixingBuffer,
+        STEREO_44100_PCM_FLOAT,
+        MONO_TO_STEREO,
+        /* framesToMix= */ 2,
+        /* accumulate= */ false,
+        /* clipFloatOutput= */ true,
+        sampleArrays);
+    AudioMixingUtil.mix(
+        stereoSourceBuffer,
+        STEREO_44100_PCM_FLOAT,
+        monoMixingBuffer,
+        MONO_44100_PCM_FLOAT,
+        STEREO_TO_MONO,
+        /* framesToMix= */ 1,
+        /* accumulate= */ false,
+        /* clipFloatOutput= */ true,
+        sampleArrays);
+
+    stereoMixingBuffer.rewind();
+    assertThat(createFloatArray(stereoMixingBuffer))
+        .isEqualTo(new float[] {0.5f, 0.5f, -0.25f, -0.25f});
+    monoMixingBuffer.rewind();
+    assertThat(createFloatArray(monoMixingBuffer)).isEqualTo(new float[] {-0.125f});
+  }
 }
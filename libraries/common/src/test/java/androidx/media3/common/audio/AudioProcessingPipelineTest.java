@@ -254,6 +254,77 @@ public final class AudioProcessingPipelineTest {
     assertThat(bytesOutput.get(12)).isEqualTo((byte) 0);
   }
 
+  @Test
+  public void inPlaceProcessing_processesOutputOfPrecedingProcessorWithoutCopying()
+      throws Exception {
+    FakeAudioProcessor duplicatingAudioProcessor =
+        new FakeAudioProcessor(
+            /* active= */ true, /* maxInputBytesAtOnce= */ 100, /* duplicateBytes= */ true);
+    IncrementingAudioProcessor incrementingAudioProcessorOne = new IncrementingAudioProcessor();
+    IncrementingAudioProcessor incrementingAudioProcessorTwo = new IncrementingAudioProcessor();
+    AudioProcessingPipeline audioProcessingPipeline =
+        new AudioProcessingPipeline(
+            ImmutableList.of(
+                duplicatingAudioProcessor,
+                incrementingAudioProcessorOne,
+                incrementingAudioProcessorTwo),
+            /* allowInPlaceProcessing= */ true);
+    audioProcessingPipeline.configure(AUDIO_FORMAT);
+    audioProcessingPipeline.flush();
+    ByteBuffer inputBuffer = ByteBuffer.allocateDirect(1000).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < inputBuffer.limit(); i++) {
+      inputBuffer.put(i, (byte) i);
+    }
+    int bytesInput = inputBuffer.remaining();
+
+    List<Byte> bytesOutput = new ArrayList<>();
+    while (!audioProcessingPipeline.isEnded()) {
+      ByteBuffer outputBuffer = audioProcessingPipeline.getOutput();
+      // Only partially consume the output, so that more input is queued while it's pending.
+      for (int i = 0; i < 7 && outputBuffer.hasRemaining(); i++) {
+        bytesOutput.add(outputBuffer.get());
+      }
+      if (!inputBuffer.hasRemaining()) {
+        audioProcessingPipeline.queueEndOfStream();
+      } else {
+        audioProcessingPipeline.queueInput(inputBuffer);
+      }
+    }
+
+    assertThat(bytesOutput).hasSize(2 * bytesInput);
+    for (int i = 0; i < bytesOutput.size(); i++) {
+      assertThat(bytesOutput.get(i)).isEqualTo((byte) (i / 2 + 2));
+    }
+    // The caller's input buffer is not overwritten.
+    assertThat(inputBuffer.get(1)).isEqualTo((byte) 1);
+    assertThat(duplicatingAudioProcessor.getOutputBufferAllocationCount()).isEqualTo(1);
+    assertThat(duplicatingAudioProcessor.getOutputBufferByteCount()).isEqualTo(2 * bytesInput);
+    assertThat(incrementingAudioProcessorOne.getOutputBufferAllocationCount()).isEqualTo(0);
+    assertThat(incrementingAudioProcessorOne.getOutputBufferByteCount()).isEqualTo(0);
+    assertThat(incrementingAudioProcessorTwo.getOutputBufferAllocationCount()).isEqualTo(0);
+    assertThat(incrementingAudioProcessorTwo.getOutputBufferByteCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void inPlaceProcessing_firstActiveProcessor_copiesInput() throws Exception {
+    IncrementingAudioProcessor incrementingAudioProcessor = new IncrementingAudioProcessor();
+    AudioProcessingPipeline audioProcessingPipeline =
+        new AudioProcessingPipeline(
+            ImmutableList.of(
+                new FakeAudioProcessor(/* active= */ false), incrementingAudioProcessor),
+            /* allowInPlaceProcessing= */ true);
+    audioProcessingPipeline.configure(AUDIO_FORMAT);
+    audioProcessingPipeline.flush();
+    ByteBuffer inputBuffer = createOneSecondDefaultSilenceBuffer(AUDIO_FORMAT);
+
+    audioProcessingPipeline.queueInput(inputBuffer);
+    ByteBuffer outputBuffer = audioProcessingPipeline.getOutput();
+
+    assertThat(outputBuffer.get(0)).isEqualTo((byte) 1);
+    assertThat(inputBuffer.get(0)).isEqualTo((byte) 0);
+    assertThat(incrementingAudioProcessor.getOutputBufferAllocationCount()).isEqualTo(1);
+  }
+
   private static class FakeAudioProcessor extends BaseAudioProcessor {
     private final int maxInputBytesAtOnce;
     private final boolean duplicateBytes;
@@ -310,6 +381,27 @@ public final class AudioProcessingPipelineTest {
     }
   }
 
+  /** Adds one to each byte of its input, in place if possible. */
+  private static final class IncrementingAudioProcessor extends BaseAudioProcessor {
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+      ByteBuffer outputBuffer =
+          isInPlaceProcessingEnabled()
+              ? replaceOutputBufferInPlace(inputBuffer)
+              : replaceOutputBuffer(inputBuffer.remaining());
+      while (inputBuffer.hasRemaining()) {
+        outputBuffer.put((byte) (inputBuffer.get() + 1));
+      }
+      outputBuffer.flip();
+    }
+
+    @Override
+    protected AudioFormat onConfigure(AudioFormat inputAudioFormat) {
+      return inputAudioFormat;
+    }
+  }
+
   /** Creates a one second silence buffer for the given {@link AudioFormat}. */
   private static ByteBuffer createOneSecondDefaultSilenceBuffer(AudioFormat audioFormat) {
     return ByteBuffer.allocateDirect(audioFormat.sampleRate * audioFormat.bytesPerFrame)
@@ -15,6 +15,8 @@
  */
 package androidx.media3.common.audio;
 
+import static androidx.media3.test.utils.TestUtil.createByteBuffer;
+import static androidx.media3.test.utils.TestUtil.createFloatArray;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
@@ -155,6 +157,20 @@ public final class ChannelMixingAudioProcessorTest {
     assertThat(audioProcessor.getOutput()).isEqualTo(getByteBufferFromShortValues(32767, 0, 16383));
   }
 
+  @Test
+  public void stereoToMonoMixingMatrix_queueFloatInput_outputIsFloatMono() throws Exception {
+    AudioFormat outputAudioFormat =
+        audioProcessor.configure(
+            new AudioFormat(/* sampleRate= */ 48000, /* channelCount= */ 2, C.ENCODING_PCM_FLOAT));
+    audioProcessor.flush();
+    audioProcessor.queueInput(createByteBuffer(new float[] {0f, 0f, 0.5f, 0.25f, -1f, -1f}));
+
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+    assertThat(outputAudioFormat.channelCount).isEqualTo(1);
+    assertThat(createFloatArray(audioProcessor.getOutput()))
+        .isEqualTo(new float[] {0f, 0.375f, -1f});
+  }
+
   private static ByteBuffer getByteBufferFromShortValues(int... values) {
     ByteBuffer buffer = ByteBuffer.allocateDirect(values.length * 2).order(ByteOrder.nativeOrder());
     for (int s : values) {
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.common.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link FloatSonic}. */
+@RunWith(AndroidJUnit4.class)
+public final class FloatSonicTest {
+
+  @Rule public final Timeout globalTimeout = Timeout.millis(1000);
+
+  @Test
+  public void resample_toDoubleRate_linearlyInterpolatesSamples() {
+    FloatBuffer inputBuffer = FloatBuffer.wrap(new float[] {0f, 0.1f, 0.2f, 0.3f, 0.4f, 0.5f});
+    FloatSonic sonic =
+        new FloatSonic(
+            /* inputSampleRateHz= */ 44100,
+            /* channelCount= */ 1,
+            /* speed= */ 1,
+            /* pitch= */ 1,
+            /* outputSampleRateHz= */ 88200);
+    sonic.queueInput(inputBuffer);
+    sonic.queueEndOfStream();
+    FloatBuffer outputBuffer = FloatBuffer.allocate(sonic.getOutputSize() / 4);
+    sonic.getOutput(outputBuffer);
+
+    // End of stream is padded with silence, so last sample will be interpolated between (0.5; 0).
+    float[] expectedOutput = {
+      0f, 0.05f, 0.1f, 0.15f, 0.2f, 0.25f, 0.3f, 0.35f, 0.4f, 0.45f, 0.5f, 0.25f
+    };
+    assertThat(outputBuffer.array())
+        .usingTolerance(1e-6)
+        .containsExactly(expectedOutput)
+        .inOrder();
+  }
+
+  @Test
+  public void resample_withStereoInput_keepsChannelsInterleaved() {
+    FloatBuffer inputBuffer = FloatBuffer.wrap(new float[] {0f, -0.5f, 0.2f, -0.3f, 0.4f, -0.1f});
+    FloatSonic sonic =
+        new FloatSonic(
+            /* inputSampleRateHz= */ 44100,
+            /* channelCount= */ 2,
+            /* speed= */ 1,
+            /* pitch= */ 1,
+            /* outputSampleRateHz= */ 88200);
+    sonic.queueInput(inputBuffer);
+    sonic.queueEndOfStream();
+    FloatBuffer outputBuffer = FloatBuffer.allocate(sonic.getOutputSize() / 4);
+    sonic.getOutput(outputBuffer);
+
+    float[] expectedOutput = {
+      0f, -0.5f, 0.1f, -0.4f, 0.2f, -0.3f, 0.3f, -0.2f, 0.4f, -0.1f, 0.2f, -0.05f
+    };
+    assertThat(outputBuffer.array())
+        .usingTolerance(1e-6)
+        .containsExactly(expectedOutput)
+        .inOrder();
+  }
+
+  @Test
+  public void changeSpeed_matchesSonicWith16BitSamples() {
+    int channelCount = 2;
+    int frameCount = 48_000;
+    short[] shortSamples = new short[frameCount * channelCount];
+    float[] floatSamples = new float[frameCount * channelCount];
+    for (int i = 0; i < frameCount; i++) {
+      short sample = (short) (Short.MAX_VALUE / 2 * Math.sin(2 * Math.PI * 220 * i / 48_000.0));
+      for (int channel = 0; channel < channelCount; channel++) {
+        shortSamples[i * channelCount + channel] = sample;
+        floatSamples[i * channelCount + channel] = sample / 32768f;
+      }
+    }
+    Sonic sonic =
+        new Sonic(
+            /* inputSampleRateHz= */ 48_000,
+            channelCount,
+            /* speed= */ 1.5f,
+            /* pitch= */ 1,
+            /* outputSampleRateHz= */ 48_000);
+    FloatSonic floatSonic =
+        new FloatSonic(
+            /* inputSampleRateHz= */ 48_000,
+            channelCount,
+            /* speed= */ 1.5f,
+            /* pitch= */ 1,
+            /* outputSampleRateHz= */ 48_000);
+
+    sonic.queueInput(ShortBuffer.wrap(shortSamples));
+    sonic.queueEndOfStream();
+    floatSonic.queueInput(FloatBuffer.wrap(floatSamples));
+    floatSonic.queueEndOfStream();
+    ShortBuffer shortOutput = ShortBuffer.allocate(sonic.getOutputSize() / 2);
+    sonic.getOutput(shortOutput);
+    FloatBuffer floatOutput = FloatBuffer.allocate(floatSonic.getOutputSize() / 4);
+    floatSonic.getOutput(floatOutput);
+
+    assertThat(floatOutput.capacity()).isEqualTo(shortOutput.capacity());
+    for (int i = 0; i < shortOutput.capacity(); i++) {
+      // Sonic truncates intermediate values to 16-bit integers, so allow an error of a few LSBs.
+      assertThat(floatOutput.get(i)).isWithin(2 / 32768f).of(shortOutput.get(i) / 32768f);
+    }
+  }
+
+  @Test
+  public void queueEndOfStream_withNoInput_setsNonNegativeOutputSize() {
+    FloatSonic sonic =
+        new FloatSonic(
+            /* inputSampleRateHz= */ 48000,
+            /* channelCount= */ 1,
+            /* speed= */ 0.95f,
+            /* pitch= */ 1,
+            /* outputSampleRateHz= */ 48000);
+    FloatBuffer outputBuffer = FloatBuffer.allocate(sonic.getOutputSize() / 4);
+
+    sonic.getOutput(outputBuffer);
+    sonic.queueEndOfStream();
+
+    assertThat(sonic.getOutputSize()).isAtLeast(0);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.common.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link LoudnessMeter}. */
+@RunWith(AndroidJUnit4.class)
+public final class LoudnessMeterTest {
+
+  private static final int SAMPLE_RATE = 48_000;
+
+  @Test
+  public void getIntegratedLoudness_fullScaleSineInOneChannel_returnsReferenceLoudness() {
+    LoudnessMeter loudnessMeter = new LoudnessMeter(SAMPLE_RATE, /* channelCount= */ 2);
+
+    addSine(
+        loudnessMeter,
+        SAMPLE_RATE,
+        /* leftAmplitudeDbfs= */ 0,
+        /* rightAmplitudeDbfs= */ Double.NEGATIVE_INFINITY);
+
+    // BS.1770 defines the loudness of a 997 Hz sine at full scale in one channel as -3.01 LUFS.
+    assertThat(loudnessMeter.getIntegratedLoudness()).isWithin(0.05).of(-3.01);
+  }
+
+  @Test
+  public void getIntegratedLoudness_withOtherSampleRate_returnsSameLoudness() {
+    LoudnessMeter loudnessMeter =
+        new LoudnessMeter(/* sampleRate= */ 44_100, /* channelCount= */ 2);
+
+    addSine(loudnessMeter, /* sampleRate= */ 44_100, /* amplitudeDbfs= */ -23);
+
+    assertThat(loudnessMeter.getIntegratedLoudness()).isWithin(0.05).of(-23);
+  }
+
+  @Test
+  public void getIntegratedLoudness_withQuietSections_gatesQuietSections() {
+    LoudnessMeter loudnessMeter = new LoudnessMeter(SAMPLE_RATE, /* channelCount= */ 2);
+
+    // EBU Tech 3341 test case 3: 10 s at -36 dBFS, 60 s at -23 dBFS and 10 s at -36 dBFS.
+    for (int second = 0; second < 80; second++) {
+      addSine(
+          loudnessMeter,
+          SAMPLE_RATE,
+          /* amplitudeDbfs= */ second >= 10 && second < 70 ? -23 : -36);
+    }
+
+    assertThat(loudnessMeter.getIntegratedLoudness()).isWithin(0.1).of(-23);
+    assertThat(loudnessMeter.getFrameCount()).isEqualTo(80 * SAMPLE_RATE);
+  }
+
+  @Test
+  public void getIntegratedLoudness_withSilence_returnsNegativeInfinity() {
+    LoudnessMeter loudnessMeter = new LoudnessMeter(SAMPLE_RATE, /* channelCount= */ 1);
+
+    for (int i = 0; i < SAMPLE_RATE; i++) {
+      loudnessMeter.addSample(0);
+    }
+
+    assertThat(loudnessMeter.getIntegratedLoudness()).isNegativeInfinity();
+  }
+
+  @Test
+  public void reset_discardsMeasurement() {
+    LoudnessMeter loudnessMeter = new LoudnessMeter(SAMPLE_RATE, /* channelCount= */ 2);
+    addSine(loudnessMeter, SAMPLE_RATE, /* amplitudeDbfs= */ 0);
+
+    loudnessMeter.reset();
+    addSine(loudnessMeter, SAMPLE_RATE, /* amplitudeDbfs= */ -30);
+
+    assertThat(loudnessMeter.getIntegratedLoudness()).isWithin(0.05).of(-30);
+    assertThat(loudnessMeter.getFrameCount()).isEqualTo(SAMPLE_RATE);
+  }
+
+  /** Adds one second of a 997 Hz sine with the same amplitude in both channels. */
+  private static void addSine(LoudnessMeter loudnessMeter, int sampleRate, double amplitudeDbfs) {
+    addSine(loudnessMeter, sampleRate, amplitudeDbfs, amplitudeDbfs);
+  }
+
+  /** Adds one second of a stereo 997 Hz sine. */
+  private static void addSine(
+      LoudnessMeter loudnessMeter,
+      int sampleRate,
+      double leftAmplitudeDbfs,
+      double rightAmplitudeDbfs) {
+    double leftAmplitude = Math.pow(10, leftAmplitudeDbfs / 20);
+    double rightAmplitude = Math.pow(10, rightAmplitudeDbfs / 20);
+    for (int i = 0; i < sampleRate; i++) {
+      double sine = Math.sin(2 * Math.PI * 997 * i / sampleRate);
+      loudnessMeter.addSample((float) (leftAmplitude * sine));
+      loudnessMeter.addSample((float) (rightAmplitude * sine));
+    }
+  }
+}
@@ -23,6 +23,8 @@ import androidx.media3.common.C;
 import androidx.media3.common.audio.AudioProcessor.AudioFormat;
 import androidx.media3.common.audio.AudioProcessor.UnhandledAudioFormatException;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -116,6 +118,51 @@ public final class SonicAudioProcessorTest {
     assertThat(sonicAudioProcessor.isEnded()).isTrue();
   }
 
+  @Test
+  public void configure_withFloatInput_outputsFloat() throws Exception {
+    sonicAudioProcessor.setOutputSampleRateHz(48000);
+
+    AudioFormat outputAudioFormat =
+        sonicAudioProcessor.configure(
+            new AudioFormat(
+                /* sampleRate= */ 44100,
+                /* channelCount= */ 2,
+                /* encoding= */ C.ENCODING_PCM_FLOAT));
+
+    assertThat(sonicAudioProcessor.isActive()).isTrue();
+    assertThat(outputAudioFormat.sampleRate).isEqualTo(48000);
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+  }
+
+  @Test
+  public void queueInput_withFloatInputAndSpeedChange_outputsExpectedFrameCount()
+      throws Exception {
+    AudioFormat audioFormat =
+        new AudioFormat(
+            /* sampleRate= */ 48000, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_FLOAT);
+    sonicAudioProcessor.setSpeed(2f);
+    sonicAudioProcessor.configure(audioFormat);
+    sonicAudioProcessor.flush();
+    int inputFrameCount = 48000;
+    ByteBuffer inputBuffer =
+        ByteBuffer.allocateDirect(inputFrameCount * audioFormat.bytesPerFrame)
+            .order(ByteOrder.nativeOrder());
+    for (int i = 0; i < inputFrameCount * 2; i++) {
+      inputBuffer.putFloat((float) Math.sin(2 * Math.PI * 200 * (i / 2) / 48000.0));
+    }
+    inputBuffer.flip();
+
+    sonicAudioProcessor.queueInput(inputBuffer);
+    sonicAudioProcessor.queueEndOfStream();
+    int outputBytes = 0;
+    while (!sonicAudioProcessor.isEnded()) {
+      outputBytes += sonicAudioProcessor.getOutput().remaining();
+    }
+
+    assertThat(inputBuffer.hasRemaining()).isFalse();
+    assertThat(outputBytes / audioFormat.bytesPerFrame).isEqualTo(inputFrameCount / 2);
+  }
+
   @Test
   public void doesNotSupportNon16BitInput() throws Exception {
     try {
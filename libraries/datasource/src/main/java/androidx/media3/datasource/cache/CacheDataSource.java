@@ -108,7 +108,9 @@ public final class CacheDataSource implements DataSource {
      * Sets the {@link DataSource.Factory} for {@link DataSource DataSources} for reading from the
      * cache.
      *
-     * <p>The default is a {@link FileDataSource.Factory} in its default configuration.
+     * <p>The default is a {@link FileDataSource.Factory} in its default configuration. A {@link
+     * MappedCacheFileDataSource.Factory} can be used to read from memory mappings of the cache
+     * files instead.
      *
      * @param cacheReadDataSourceFactory The {@link DataSource.Factory} for reading from the cache.
      * @return This factory.
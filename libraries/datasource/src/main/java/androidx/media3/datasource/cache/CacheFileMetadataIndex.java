@@ -21,19 +21,39 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.media3.common.util.Assertions;
+import androidx.media3.common.util.Log;
+import androidx.media3.common.util.NullableType;
+import androidx.media3.common.util.Util;
 import androidx.media3.database.DatabaseIOException;
 import androidx.media3.database.DatabaseProvider;
 import androidx.media3.database.VersionTable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
-/** Maintains an index of cache file metadata. */
+/**
+ * Maintains an index of cache file metadata.
+ *
+ * <p>In write-behind mode, calls to {@link #set}, {@link #remove} and {@link #removeAll} only
+ * record the change in memory. Changes to the same file are coalesced, and are written to the
+ * database in a single transaction on a background thread. Since each flush is a single
+ * transaction, the database always reflects the index as it was at the time of some flush. A crash
+ * can lose changes that hadn't been flushed yet, but this only leaves the database with an older
+ * length or last touch timestamp for a file, or with a stale entry for a removed file, all of which
+ * the cache recovers from when it's next initialized.
+ */
 /* package */ final class CacheFileMetadataIndex {
 
+  private static final String TAG = "CacheFileMetadataIndex";
+
   private static final String TABLE_PREFIX = DatabaseProvider.TABLE_PREFIX + "CacheFileMetadata";
   private static final int TABLE_VERSION = 1;
 
@@ -61,9 +81,26 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           + " INTEGER NOT NULL)";
 
   private final DatabaseProvider databaseProvider;
+  @Nullable private final Executor writeBehindExecutor;
+  @Nullable private final ExecutorService ownedExecutorService;
+  private final Object flushLock;
+  private final Object executorLock;
 
   private @MonotonicNonNull String tableName;
 
+  /** Changes that haven't been flushed yet, keyed by file name. Removals are mapped to null. */
+  @GuardedBy("this")
+  private HashMap<String, @NullableType CacheFileMetadata> pendingUpdates;
+
+  @GuardedBy("this")
+  private boolean flushScheduled;
+
+  @GuardedBy("this")
+  private long flushedUpdateCount;
+
+  @GuardedBy("executorLock")
+  private boolean released;
+
   /**
    * Deletes index data for the specified cache.
    *
@@ -98,7 +135,46 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * @param databaseProvider Provides the database in which the index is stored.
    */
   public CacheFileMetadataIndex(DatabaseProvider databaseProvider) {
+    this(databaseProvider, /* writeBehind= */ false);
+  }
+
+  /**
+   * @param databaseProvider Provides the database in which the index is stored.
+   * @param writeBehind Whether changes are written to the database asynchronously on a background
+   *     thread, rather than synchronously. If true, {@link #release()} must be called when the
+   *     index is no longer used.
+   */
+  public CacheFileMetadataIndex(DatabaseProvider databaseProvider, boolean writeBehind) {
+    this(
+        databaseProvider,
+        writeBehind ? Util.newSingleThreadExecutor("ExoPlayer:CacheFileMetadataIndex") : null,
+        /* ownsExecutor= */ true);
+  }
+
+  /**
+   * @param databaseProvider Provides the database in which the index is stored.
+   * @param writeBehindExecutor The executor on which changes are written to the database, or null
+   *     to write changes synchronously.
+   */
+  @VisibleForTesting
+  /* package */ CacheFileMetadataIndex(
+      DatabaseProvider databaseProvider, @Nullable Executor writeBehindExecutor) {
+    this(databaseProvider, writeBehindExecutor, /* ownsExecutor= */ false);
+  }
+
+  private CacheFileMetadataIndex(
+      DatabaseProvider databaseProvider,
+      @Nullable Executor writeBehindExecutor,
+      boolean ownsExecutor) {
     this.databaseProvider = databaseProvider;
+    this.writeBehindExecutor = writeBehindExecutor;
+    ownedExecutorService =
+        ownsExecutor && writeBehindExecutor instanceof ExecutorService
+            ? (ExecutorService) writeBehindExecutor
+            : null;
+    flushLock = new Object();
+    executorLock = new Object();
+    pendingUpdates = new HashMap<>();
   }
 
   /**
@@ -147,6 +223,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    */
   @WorkerThread
   public Map<String, CacheFileMetadata> getAll() throws DatabaseIOException {
+    flush();
     try (Cursor cursor = getCursor()) {
       Map<String, CacheFileMetadata> fileMetadata = new HashMap<>(cursor.getCount());
       while (cursor.moveToNext()) {
@@ -164,7 +241,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   /**
    * Sets metadata for a given file.
    *
-   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   * <p>This method may be slow and shouldn't normally be called on the main thread, unless the
+   * index is in write-behind mode.
    *
    * @param name The name of the file.
    * @param length The file length.
@@ -174,6 +252,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   @WorkerThread
   public void set(String name, long length, long lastTouchTimestamp) throws DatabaseIOException {
     Assertions.checkNotNull(tableName);
+    if (writeBehindExecutor != null) {
+      enqueueUpdate(name, new CacheFileMetadata(length, lastTouchTimestamp));
+      return;
+    }
     try {
       SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
       ContentValues values = new ContentValues();
@@ -189,7 +271,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   /**
    * Removes metadata.
    *
-   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   * <p>This method may be slow and shouldn't normally be called on the main thread, unless the
+   * index is in write-behind mode.
    *
    * @param name The name of the file whose metadata is to be removed.
    * @throws DatabaseIOException If an error occurs removing the metadata.
@@ -197,6 +280,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   @WorkerThread
   public void remove(String name) throws DatabaseIOException {
     Assertions.checkNotNull(tableName);
+    if (writeBehindExecutor != null) {
+      enqueueUpdate(name, /* metadata= */ null);
+      return;
+    }
     try {
       SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
       writableDatabase.delete(tableName, WHERE_NAME_EQUALS, new String[] {name});
@@ -208,7 +295,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   /**
    * Removes metadata.
    *
-   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   * <p>This method may be slow and shouldn't normally be called on the main thread, unless the
+   * index is in write-behind mode.
    *
    * @param names The names of the files whose metadata is to be removed.
    * @throws DatabaseIOException If an error occurs removing the metadata.
@@ -216,6 +304,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   @WorkerThread
   public void removeAll(Set<String> names) throws DatabaseIOException {
     Assertions.checkNotNull(tableName);
+    if (writeBehindExecutor != null) {
+      for (String name : names) {
+        enqueueUpdate(name, /* metadata= */ null);
+      }
+      return;
+    }
     try {
       SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
       writableDatabase.beginTransactionNonExclusive();
@@ -232,6 +326,145 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
+  /**
+   * Writes any changes that haven't been written to the database yet, in a single transaction. Does
+   * nothing if the index isn't in write-behind mode.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @throws DatabaseIOException If an error occurs writing the changes. The changes are kept, and
+   *     will be written by the next flush.
+   */
+  @WorkerThread
+  public void flush() throws DatabaseIOException {
+    synchronized (flushLock) {
+      HashMap<String, @NullableType CacheFileMetadata> updates;
+      synchronized (this) {
+        if (pendingUpdates.isEmpty()) {
+          return;
+        }
+        updates = pendingUpdates;
+        pendingUpdates = new HashMap<>();
+      }
+      try {
+        writeUpdates(updates);
+      } catch (DatabaseIOException e) {
+        synchronized (this) {
+          // Keep the updates that haven't been superseded whilst writing.
+          for (Map.Entry<String, @NullableType CacheFileMetadata> update : updates.entrySet()) {
+            if (!pendingUpdates.containsKey(update.getKey())) {
+              pendingUpdates.put(update.getKey(), update.getValue());
+            }
+          }
+        }
+        throw e;
+      }
+      synchronized (this) {
+        flushedUpdateCount += updates.size();
+      }
+    }
+  }
+
+  /**
+   * Flushes any pending changes and releases the background thread used in write-behind mode.
+   * Changes made after the index is released are written synchronously.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   */
+  @WorkerThread
+  public void release() {
+    synchronized (executorLock) {
+      released = true;
+    }
+    try {
+      flush();
+    } catch (DatabaseIOException e) {
+      Log.e(TAG, "Failed to flush file metadata", e);
+    }
+    if (ownedExecutorService != null) {
+      ownedExecutorService.shutdown();
+    }
+  }
+
+  /** Returns the number of changes that are waiting to be written to the database. */
+  public synchronized int getPendingUpdateCount() {
+    return pendingUpdates.size();
+  }
+
+  /**
+   * Returns the number of changes that have been written to the database in write-behind mode.
+   * Changes that were coalesced before being flushed are only counted once.
+   */
+  public synchronized long getFlushedUpdateCount() {
+    return flushedUpdateCount;
+  }
+
+  private void enqueueUpdate(String name, @Nullable CacheFileMetadata metadata)
+      throws DatabaseIOException {
+    boolean scheduleFlush;
+    synchronized (this) {
+      pendingUpdates.put(name, metadata);
+      scheduleFlush = !flushScheduled;
+      flushScheduled = true;
+    }
+    if (!scheduleFlush) {
+      return;
+    }
+    synchronized (executorLock) {
+      // Scheduling whilst holding the lock ensures the executor isn't shut down in between.
+      if (!released) {
+        checkNotNull(writeBehindExecutor).execute(this::flushInBackground);
+        return;
+      }
+    }
+    // The background thread has been released, so write the change synchronously.
+    synchronized (this) {
+      flushScheduled = false;
+    }
+    flush();
+  }
+
+  private void flushInBackground() {
+    synchronized (this) {
+      // Updates enqueued from now on will schedule another flush.
+      flushScheduled = false;
+    }
+    try {
+      flush();
+    } catch (DatabaseIOException e) {
+      Log.w(TAG, "Failed to flush file metadata", e);
+    }
+  }
+
+  private void writeUpdates(Map<String, @NullableType CacheFileMetadata> updates)
+      throws DatabaseIOException {
+    String tableName = checkNotNull(this.tableName);
+    try {
+      SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+      writableDatabase.beginTransactionNonExclusive();
+      try {
+        for (Map.Entry<String, @NullableType CacheFileMetadata> update : updates.entrySet()) {
+          String name = update.getKey();
+          @Nullable CacheFileMetadata metadata = update.getValue();
+          if (metadata == null) {
+            writableDatabase.delete(tableName, WHERE_NAME_EQUALS, new String[] {name});
+          } else {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_NAME, name);
+            values.put(COLUMN_LENGTH, metadata.length);
+            values.put(COLUMN_LAST_TOUCH_TIMESTAMP, metadata.lastTouchTimestamp);
+            writableDatabase.replaceOrThrow(tableName, /* nullColumnHack= */ null, values);
+          }
+        }
+        writableDatabase.setTransactionSuccessful();
+      } finally {
+        writableDatabase.endTransaction();
+      }
+    } catch (SQLException e) {
+      throw new DatabaseIOException(e);
+    }
+  }
+
   private Cursor getCursor() {
     Assertions.checkNotNull(tableName);
     return databaseProvider
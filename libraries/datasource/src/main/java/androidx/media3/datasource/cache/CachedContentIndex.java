@@ -18,6 +18,7 @@ package androidx.media3.datasource.cache;
 import static androidx.media3.common.util.Assertions.checkNotNull;
 import static androidx.media3.common.util.Assertions.checkState;
 import static androidx.media3.common.util.Util.castNonNull;
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 import android.content.ContentValues;
@@ -27,11 +28,14 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.util.SparseArray;
 import android.util.SparseBooleanArray;
+import androidx.annotation.GuardedBy;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
+import androidx.media3.common.C;
 import androidx.media3.common.util.Assertions;
 import androidx.media3.common.util.AtomicFile;
+import androidx.media3.common.util.Log;
 import androidx.media3.common.util.NullableType;
 import androidx.media3.common.util.Util;
 import androidx.media3.database.DatabaseIOException;
@@ -44,6 +48,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -57,6 +63,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
@@ -68,6 +75,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 /** Maintains the index of cached content. */
 /* package */ class CachedContentIndex {
 
+  private static final String TAG = "CachedContentIndex";
+
   /* package */ static final String FILE_NAME_ATOMIC = "cached_content_index.exi";
 
   private static final int INCREMENTAL_METADATA_READ_LENGTH = 10 * 1024 * 1024;
@@ -161,6 +170,40 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       @Nullable byte[] legacyStorageSecretKey,
       boolean legacyStorageEncrypt,
       boolean preferLegacyStorage) {
+    this(
+        databaseProvider,
+        legacyStorageDir,
+        legacyStorageSecretKey,
+        legacyStorageEncrypt,
+        preferLegacyStorage,
+        /* legacyStorageJournaled= */ false);
+  }
+
+  /**
+   * Creates an instance supporting either or both of database and legacy storage.
+   *
+   * @param databaseProvider Provides the database in which the index is stored, or {@code null} to
+   *     use only legacy storage.
+   * @param legacyStorageDir The directory in which any legacy storage is stored, or {@code null} to
+   *     use only database storage.
+   * @param legacyStorageSecretKey A 16 byte AES key for reading, and optionally writing, legacy
+   *     storage.
+   * @param legacyStorageEncrypt Whether to encrypt when writing to legacy storage. Must be false if
+   *     {@code legacyStorageSecretKey} is null.
+   * @param preferLegacyStorage Whether to use prefer legacy storage if both storage types are
+   *     enabled. This option is only useful for downgrading from database storage back to legacy
+   *     storage.
+   * @param legacyStorageJournaled Whether legacy storage appends changes to a journal file instead
+   *     of rewriting the whole index file each time the index is stored. Must be false if {@code
+   *     legacyStorageEncrypt} is true.
+   */
+  public CachedContentIndex(
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable File legacyStorageDir,
+      @Nullable byte[] legacyStorageSecretKey,
+      boolean legacyStorageEncrypt,
+      boolean preferLegacyStorage,
+      boolean legacyStorageJournaled) {
     checkState(databaseProvider != null || legacyStorageDir != null);
     keyToContent = new HashMap<>();
     idToKey = new SparseArray<>();
@@ -175,7 +218,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             ? new LegacyStorage(
                 new File(legacyStorageDir, FILE_NAME_ATOMIC),
                 legacyStorageSecretKey,
-                legacyStorageEncrypt)
+                legacyStorageEncrypt,
+                legacyStorageJournaled)
             : null;
     if (databaseStorage == null || (legacyStorage != null && preferLegacyStorage)) {
       storage = castNonNull(legacyStorage);
@@ -489,24 +533,54 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     void onRemove(CachedContent cachedContent, boolean neverStored);
   }
 
-  /** {@link Storage} implementation that uses an {@link AtomicFile}. */
+  /**
+   * {@link Storage} implementation that uses an {@link AtomicFile}.
+   *
+   * <p>If journaled, changes are appended to a journal file when the index is stored, rather than
+   * rewriting the whole index file. Once the journal has grown larger than the index, it is
+   * compacted into the index file on a background thread. The journal that's being compacted is
+   * kept until compaction completes, so that the index can be recovered if the process dies.
+   */
   private static class LegacyStorage implements Storage {
 
     private static final int VERSION = 2;
     private static final int VERSION_METADATA_INTRODUCED = 2;
     private static final int FLAG_ENCRYPTED_INDEX = 1;
 
+    private static final String JOURNAL_FILE_SUFFIX = ".journal";
+    private static final String COMPACTING_JOURNAL_FILE_SUFFIX = ".journal.compacting";
+    private static final int JOURNAL_VERSION = 1;
+    private static final int JOURNAL_RECORD_TYPE_UPDATE = 0;
+    private static final int JOURNAL_RECORD_TYPE_REMOVE = 1;
+
+    /** The minimum number of journal records before the journal is compacted. */
+    private static final int MIN_JOURNAL_RECORD_COUNT_FOR_COMPACTION = 1024;
+
     private final boolean encrypt;
     @Nullable private final Cipher cipher;
     @Nullable private final SecretKeySpec secretKeySpec;
     @Nullable private final SecureRandom random;
     private final AtomicFile atomicFile;
+    private final boolean journaled;
+    private final File journalFile;
+    private final File compactingJournalFile;
+    private final SparseArray<@NullableType CachedContent> pendingJournalUpdates;
 
     private boolean changed;
     @Nullable private ReusableBufferedOutputStream bufferedOutputStream;
+    private int journalRecordCount;
+    private boolean fullStoreRequired;
+
+    /** Incremented by full stores, which supersede any compaction that's in progress. */
+    @GuardedBy("this")
+    private int fullStoreCount;
+
+    @Nullable private Thread compactionThread;
 
-    public LegacyStorage(File file, @Nullable byte[] secretKey, boolean encrypt) {
+    public LegacyStorage(
+        File file, @Nullable byte[] secretKey, boolean encrypt, boolean journaled) {
       checkState(secretKey != null || !encrypt);
+      Assertions.checkArgument(!journaled || !encrypt);
       @Nullable Cipher cipher = null;
       @Nullable SecretKeySpec secretKeySpec = null;
       if (secretKey != null) {
@@ -523,8 +597,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       this.encrypt = encrypt;
       this.cipher = cipher;
       this.secretKeySpec = secretKeySpec;
+      this.journaled = journaled;
       random = encrypt ? new SecureRandom() : null;
       atomicFile = new AtomicFile(file);
+      journalFile = new File(file.getPath() + JOURNAL_FILE_SUFFIX);
+      compactingJournalFile = new File(file.getPath() + COMPACTING_JOURNAL_FILE_SUFFIX);
+      pendingJournalUpdates = new SparseArray<>();
     }
 
     @Override
@@ -538,8 +616,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
 
     @Override
-    public void delete() {
+    public synchronized void delete() {
+      fullStoreCount++;
       atomicFile.delete();
+      journalFile.delete();
+      compactingJournalFile.delete();
     }
 
     @Override
@@ -549,14 +630,40 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       if (!readFile(content, idToKey)) {
         content.clear();
         idToKey.clear();
-        atomicFile.delete();
+        delete();
+        return;
+      }
+      boolean journalExists = compactingJournalFile.exists() || journalFile.exists();
+      if (!journalExists) {
+        return;
+      }
+      // Changes in the journal that's being compacted precede those in the current journal.
+      int compactingJournalRecordCount = readJournal(compactingJournalFile, content, idToKey);
+      int journalRecordCount = readJournal(journalFile, content, idToKey);
+      if (!journaled
+          || compactingJournalRecordCount == C.LENGTH_UNSET
+          || journalRecordCount == C.LENGTH_UNSET) {
+        // Write the loaded index to the index file, which also deletes the journals. This is
+        // required if journaling has been disabled, or if the end of a journal was not fully
+        // written, in which case appending more records to it would leave them unreadable.
+        changed = true;
+        fullStoreRequired = true;
+      } else {
+        this.journalRecordCount = compactingJournalRecordCount + journalRecordCount;
       }
     }
 
     @Override
-    public void storeFully(HashMap<String, CachedContent> content) throws IOException {
+    public synchronized void storeFully(HashMap<String, CachedContent> content) throws IOException {
+      // Prevent any compaction that's in progress from overwriting the index file afterwards.
+      fullStoreCount++;
       writeFile(content);
+      journalFile.delete();
+      compactingJournalFile.delete();
       changed = false;
+      fullStoreRequired = false;
+      pendingJournalUpdates.clear();
+      journalRecordCount = 0;
     }
 
     @Override
@@ -564,17 +671,210 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       if (!changed) {
         return;
       }
-      storeFully(content);
+      if (!journaled || fullStoreRequired || !atomicFile.exists()) {
+        storeFully(content);
+        return;
+      }
+      appendToJournal();
+      changed = false;
+      if (journalRecordCount >= max(MIN_JOURNAL_RECORD_COUNT_FOR_COMPACTION, content.size())) {
+        maybeStartCompaction(content);
+      }
     }
 
     @Override
     public void onUpdate(CachedContent cachedContent) {
       changed = true;
+      if (journaled) {
+        pendingJournalUpdates.put(cachedContent.id, cachedContent);
+      }
     }
 
     @Override
     public void onRemove(CachedContent cachedContent, boolean neverStored) {
       changed = true;
+      if (journaled) {
+        if (neverStored) {
+          pendingJournalUpdates.delete(cachedContent.id);
+        } else {
+          pendingJournalUpdates.put(cachedContent.id, null);
+        }
+      }
+    }
+
+    private void appendToJournal() throws IOException {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(outputStream);
+      if (!journalFile.exists() || journalFile.length() == 0) {
+        output.writeInt(JOURNAL_VERSION);
+      }
+      for (int i = 0; i < pendingJournalUpdates.size(); i++) {
+        writeJournalRecord(
+            pendingJournalUpdates.keyAt(i), pendingJournalUpdates.valueAt(i), output);
+      }
+      output.flush();
+      try (FileOutputStream fileOutputStream =
+          new FileOutputStream(journalFile, /* append= */ true)) {
+        fileOutputStream.write(outputStream.toByteArray());
+        fileOutputStream.getFD().sync();
+      }
+      journalRecordCount += pendingJournalUpdates.size();
+      pendingJournalUpdates.clear();
+    }
+
+    private void maybeStartCompaction(HashMap<String, CachedContent> content) {
+      if (compactionThread != null && compactionThread.isAlive()) {
+        return;
+      }
+      if (compactingJournalFile.exists() || !journalFile.renameTo(compactingJournalFile)) {
+        // A previous compaction failed. Fall back to storing the index fully next time.
+        fullStoreRequired = true;
+        changed = true;
+        return;
+      }
+      journalRecordCount = 0;
+      // Copy the content, since it's modified by the caller whilst the compaction is in progress.
+      HashMap<String, CachedContent> contentCopy = new HashMap<>();
+      for (CachedContent cachedContent : content.values()) {
+        contentCopy.put(
+            cachedContent.key,
+            new CachedContent(cachedContent.id, cachedContent.key, cachedContent.getMetadata()));
+      }
+      int fullStoreCount;
+      synchronized (this) {
+        fullStoreCount = this.fullStoreCount;
+      }
+      compactionThread =
+          new Thread("ExoPlayer:CachedContentIndexCompaction") {
+            @Override
+            public void run() {
+              compact(contentCopy, fullStoreCount);
+            }
+          };
+      compactionThread.start();
+    }
+
+    private synchronized void compact(HashMap<String, CachedContent> content, int fullStoreCount) {
+      if (fullStoreCount != this.fullStoreCount) {
+        // The index has been stored fully since the compaction was started.
+        return;
+      }
+      try {
+        writeFile(content);
+        compactingJournalFile.delete();
+      } catch (IOException e) {
+        // The journal being compacted is kept, so no changes are lost.
+        Log.e(TAG, "Failed to compact journal", e);
+      }
+    }
+
+    /**
+     * Reads a journal, applying its records to {@code content} and {@code idToKey}.
+     *
+     * @return The number of records read, or {@link C#LENGTH_UNSET} if the journal wasn't fully
+     *     readable. Records preceding the unreadable part of the journal are still applied.
+     */
+    private static int readJournal(
+        File journalFile,
+        HashMap<String, CachedContent> content,
+        SparseArray<@NullableType String> idToKey) {
+      if (!journalFile.exists()) {
+        return 0;
+      }
+      long remainingLength = journalFile.length();
+      @Nullable DataInputStream input = null;
+      try {
+        input = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+        if (remainingLength < 4 || input.readInt() != JOURNAL_VERSION) {
+          return C.LENGTH_UNSET;
+        }
+        remainingLength -= 4;
+        int recordCount = 0;
+        while (remainingLength > 0) {
+          // Each record consists of the payload length, the payload and its CRC32.
+          if (remainingLength < 8) {
+            return C.LENGTH_UNSET;
+          }
+          int payloadLength = input.readInt();
+          remainingLength -= 8;
+          if (payloadLength < 0 || payloadLength > remainingLength) {
+            return C.LENGTH_UNSET;
+          }
+          byte[] payload = new byte[payloadLength];
+          input.readFully(payload);
+          CRC32 crc32 = new CRC32();
+          crc32.update(payload);
+          if (input.readInt() != (int) crc32.getValue()) {
+            return C.LENGTH_UNSET;
+          }
+          remainingLength -= payloadLength;
+          applyJournalRecord(payload, content, idToKey);
+          recordCount++;
+        }
+        return recordCount;
+      } catch (IOException e) {
+        return C.LENGTH_UNSET;
+      } finally {
+        Util.closeQuietly(input);
+      }
+    }
+
+    private static void applyJournalRecord(
+        byte[] payload,
+        HashMap<String, CachedContent> content,
+        SparseArray<@NullableType String> idToKey)
+        throws IOException {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+      int type = input.readByte();
+      int id = input.readInt();
+      @Nullable String previousKey = idToKey.get(id);
+      if (previousKey != null) {
+        content.remove(previousKey);
+        idToKey.remove(id);
+      }
+      if (type == JOURNAL_RECORD_TYPE_UPDATE) {
+        String key = input.readUTF();
+        DefaultContentMetadata metadata = readContentMetadata(input);
+        @Nullable CachedContent previousContent = content.get(key);
+        if (previousContent != null) {
+          idToKey.remove(previousContent.id);
+        }
+        content.put(key, new CachedContent(id, key, metadata));
+        idToKey.put(id, key);
+      } else if (type != JOURNAL_RECORD_TYPE_REMOVE) {
+        throw new IOException("Unexpected journal record type: " + type);
+      }
+    }
+
+    /**
+     * Writes a journal record for the {@link CachedContent} with the given id.
+     *
+     * @param id The id of the {@link CachedContent}.
+     * @param cachedContent The updated {@link CachedContent}, or {@code null} if it was removed.
+     * @param output Output stream to write the record to.
+     * @throws IOException If an error occurs writing the record.
+     */
+    private static void writeJournalRecord(
+        int id, @Nullable CachedContent cachedContent, DataOutputStream output)
+        throws IOException {
+      ByteArrayOutputStream payloadOutputStream = new ByteArrayOutputStream();
+      DataOutputStream payloadOutput = new DataOutputStream(payloadOutputStream);
+      if (cachedContent != null) {
+        payloadOutput.writeByte(JOURNAL_RECORD_TYPE_UPDATE);
+        payloadOutput.writeInt(id);
+        payloadOutput.writeUTF(cachedContent.key);
+        writeContentMetadata(cachedContent.getMetadata(), payloadOutput);
+      } else {
+        payloadOutput.writeByte(JOURNAL_RECORD_TYPE_REMOVE);
+        payloadOutput.writeInt(id);
+      }
+      payloadOutput.flush();
+      byte[] payload = payloadOutputStream.toByteArray();
+      CRC32 crc32 = new CRC32();
+      crc32.update(payload);
+      output.writeInt(payload.length);
+      output.write(payload);
+      output.writeInt((int) crc32.getValue());
     }
 
     private boolean readFile(
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.datasource.cache;
+
+import static androidx.media3.common.util.Assertions.checkArgument;
+import static androidx.media3.common.util.Assertions.checkNotNull;
+import static androidx.media3.common.util.Util.castNonNull;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.PlaybackException;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.BaseDataSource;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.FileDataSource.FileDataSourceException;
+import androidx.media3.datasource.TransferListener;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} for reading cache files, which reads from memory mappings of the files
+ * rather than issuing a read system call for each read.
+ *
+ * <p>This data source can be set as the cache read data source of a {@link CacheDataSource} using
+ * {@link CacheDataSource.Factory#setCacheReadDataSourceFactory}. It must only be used to read files
+ * that aren't modified once written, such as the committed files of a {@link SimpleCache}.
+ *
+ * <p>Data sources created by the same {@link Factory} share a pool of recently used mappings. A
+ * mapping is reused when a file is opened again, for example when consecutive loads read adjacent
+ * ranges of the same cache file. A pooled mapping is only reused if the length and last modified
+ * time of the file are unchanged.
+ */
+@UnstableApi
+public final class MappedCacheFileDataSource extends BaseDataSource {
+
+  /** {@link DataSource.Factory} for {@link MappedCacheFileDataSource} instances. */
+  public static final class Factory implements DataSource.Factory {
+
+    /** The default maximum number of mappings kept in the pool for reuse. */
+    public static final int DEFAULT_MAX_POOLED_MAPPING_COUNT = 8;
+
+    private final MappingPool mappingPool;
+
+    @Nullable private TransferListener listener;
+
+    public Factory() {
+      mappingPool = new MappingPool(DEFAULT_MAX_POOLED_MAPPING_COUNT);
+    }
+
+    /**
+     * Sets a {@link TransferListener} for {@link MappedCacheFileDataSource} instances created by
+     * this factory.
+     *
+     * @param listener The {@link TransferListener}.
+     * @return This factory.
+     */
+    @CanIgnoreReturnValue
+    public Factory setListener(@Nullable TransferListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of mappings that are kept for reuse by the {@link
+     * MappedCacheFileDataSource} instances created by this factory. The default is {@link
+     * #DEFAULT_MAX_POOLED_MAPPING_COUNT}.
+     *
+     * <p>Mappings use address space rather than heap memory, and are released once they're no
+     * longer pooled or in use by a data source, and have been garbage collected.
+     *
+     * @param maxPooledMappingCount The maximum number of pooled mappings, or 0 to disable reuse.
+     * @return This factory.
+     */
+    @CanIgnoreReturnValue
+    public Factory setMaxPooledMappingCount(int maxPooledMappingCount) {
+      checkArgument(maxPooledMappingCount >= 0);
+      mappingPool.setMaxMappingCount(maxPooledMappingCount);
+      return this;
+    }
+
+    @Override
+    public MappedCacheFileDataSource createDataSource() {
+      MappedCacheFileDataSource dataSource = new MappedCacheFileDataSource(mappingPool);
+      if (listener != null) {
+        dataSource.addTransferListener(listener);
+      }
+      return dataSource;
+    }
+  }
+
+  /** The maximum length of a single mapping. */
+  private static final long MAX_MAPPING_LENGTH = Integer.MAX_VALUE;
+
+  private final MappingPool mappingPool;
+
+  @Nullable private Uri uri;
+  @Nullable private File file;
+  @Nullable private ByteBuffer buffer;
+  private long fileLength;
+  private long lastModified;
+  private long readPosition;
+  private long bytesRemaining;
+  private boolean opened;
+
+  /** Creates an instance that doesn't share mappings with any other instance. */
+  public MappedCacheFileDataSource() {
+    this(new MappingPool(/* maxMappingCount= */ 1));
+  }
+
+  private MappedCacheFileDataSource(MappingPool mappingPool) {
+    super(/* isNetwork= */ false);
+    this.mappingPool = mappingPool;
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws FileDataSourceException {
+    Uri uri = dataSpec.uri;
+    this.uri = uri;
+    transferInitializing(dataSpec);
+    File file = new File(checkNotNull(uri.getPath()));
+    try {
+      if (!file.isFile()) {
+        throw new FileDataSourceException(
+            "File not found: " + file,
+            /* cause= */ null,
+            PlaybackException.ERROR_CODE_IO_FILE_NOT_FOUND);
+      }
+      fileLength = file.length();
+      lastModified = file.lastModified();
+    } catch (SecurityException e) {
+      throw new FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_NO_PERMISSION);
+    }
+    if (dataSpec.position > fileLength) {
+      throw new FileDataSourceException(
+          /* message= */ null,
+          /* cause= */ null,
+          PlaybackException.ERROR_CODE_IO_READ_POSITION_OUT_OF_RANGE);
+    }
+    this.file = file;
+    readPosition = dataSpec.position;
+    bytesRemaining =
+        dataSpec.length == C.LENGTH_UNSET ? fileLength - dataSpec.position : dataSpec.length;
+    buffer = getMapping(file, readPosition);
+
+    opened = true;
+    transferStarted(dataSpec);
+
+    return bytesRemaining;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws FileDataSourceException {
+    if (length == 0) {
+      return 0;
+    } else if (bytesRemaining == 0) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    ByteBuffer mapping = castNonNull(this.buffer);
+    if (!mapping.hasRemaining()) {
+      if (readPosition >= fileLength) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      // The file is too large for a single mapping.
+      mapping = getMapping(castNonNull(file), readPosition);
+      this.buffer = mapping;
+    }
+    int bytesRead = (int) min(min(bytesRemaining, length), mapping.remaining());
+    mapping.get(buffer, offset, bytesRead);
+    readPosition += bytesRead;
+    bytesRemaining -= bytesRead;
+    bytesTransferred(bytesRead);
+    return bytesRead;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    return uri;
+  }
+
+  @Override
+  public void close() {
+    uri = null;
+    file = null;
+    buffer = null;
+    if (opened) {
+      opened = false;
+      transferEnded();
+    }
+  }
+
+  /**
+   * Returns a buffer backed by a mapping of the file, positioned at {@code position}. The buffer's
+   * limit is the end of the mapping.
+   */
+  private ByteBuffer getMapping(File file, long position) throws FileDataSourceException {
+    String path = file.getPath();
+    @Nullable Mapping mapping = mappingPool.get(path);
+    if (mapping == null
+        || mapping.fileLength != fileLength
+        || mapping.lastModified != lastModified
+        || !mapping.contains(position)) {
+      long mappingPosition = fileLength <= MAX_MAPPING_LENGTH ? 0 : position;
+      long mappingLength = min(fileLength - mappingPosition, MAX_MAPPING_LENGTH);
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+        // The mapping remains valid after the channel is closed.
+        ByteBuffer buffer =
+            randomAccessFile
+                .getChannel()
+                .map(FileChannel.MapMode.READ_ONLY, mappingPosition, mappingLength);
+        mapping = new Mapping(fileLength, lastModified, mappingPosition, buffer);
+      } catch (IOException e) {
+        throw new FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_UNSPECIFIED);
+      } catch (SecurityException e) {
+        throw new FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_NO_PERMISSION);
+      }
+      mappingPool.put(path, mapping);
+    }
+    // Each data source reads from its own view of the shared mapping.
+    ByteBuffer buffer = mapping.buffer.duplicate();
+    buffer.position((int) (position - mapping.position));
+    return buffer;
+  }
+
+  private static final class Mapping {
+
+    public final long fileLength;
+    public final long lastModified;
+    public final long position;
+    public final ByteBuffer buffer;
+
+    public Mapping(long fileLength, long lastModified, long position, ByteBuffer buffer) {
+      this.fileLength = fileLength;
+      this.lastModified = lastModified;
+      this.position = position;
+      this.buffer = buffer;
+    }
+
+    /** Returns whether a read starting at {@code position} can be served by this mapping. */
+    public boolean contains(long position) {
+      long endPosition = this.position + buffer.capacity();
+      return position >= this.position
+          && (position < endPosition || (position == endPosition && endPosition == fileLength));
+    }
+  }
+
+  /** Keeps the most recently used mappings, keyed by file path. */
+  private static final class MappingPool {
+
+    private final LinkedHashMap<String, Mapping> mappings;
+
+    private int maxMappingCount;
+
+    public MappingPool(int maxMappingCount) {
+      this.maxMappingCount = maxMappingCount;
+      mappings =
+          new LinkedHashMap<String, Mapping>(
+              /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Mapping> eldest) {
+              return size() > MappingPool.this.maxMappingCount;
+            }
+          };
+    }
+
+    public synchronized void setMaxMappingCount(int maxMappingCount) {
+      this.maxMappingCount = maxMappingCount;
+      while (mappings.size() > maxMappingCount) {
+        mappings.remove(mappings.keySet().iterator().next());
+      }
+    }
+
+    @Nullable
+    public synchronized Mapping get(String path) {
+      return mappings.get(path);
+    }
+
+    public synchronized void put(String path, Mapping mapping) {
+      mappings.put(path, mapping);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.datasource.cache;
+
+import static androidx.media3.common.util.Assertions.checkArgument;
+import static androidx.media3.common.util.Assertions.checkNotNull;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.util.UnstableApi;
+import java.util.HashMap;
+
+/**
+ * Evicts cache files using a segmented least recently used policy, so that content that's read
+ * repeatedly isn't evicted by large amounts of content that's only read once.
+ *
+ * <p>New cache files enter a probationary segment. Files that are touched are moved to a protected
+ * segment, whose size is limited to a fraction of the maximum cache size. When the protected
+ * segment is full, its least recently used files are moved back to the probationary segment. Files
+ * are evicted from the probationary segment first. Hence playing a long video once, which adds
+ * many files that aren't touched again, can't evict files that are frequently replayed.
+ *
+ * <p>The evictor also keeps an approximate count of how often each file has been added or touched,
+ * in a fixed size table whose counts are periodically halved. A file that's added again after
+ * being evicted, and that has been used frequently in the recent past, enters the protected
+ * segment directly.
+ */
+@UnstableApi
+public final class SegmentedLeastRecentlyUsedCacheEvictor implements CacheEvictor {
+
+  /** The default fraction of the maximum cache size that can be used by the protected segment. */
+  public static final float DEFAULT_PROTECTED_FRACTION = 0.8f;
+
+  /** The frequency at which a newly added file enters the protected segment directly. */
+  private static final int PROTECTED_ADMISSION_FREQUENCY = 2;
+
+  private final long maxBytes;
+  private final long maxProtectedBytes;
+  private final HashMap<String, HashMap<Long, Node>> nodesByKey;
+  private final Node probationary;
+  private final Node protectedNodes;
+  private final FrequencySketch frequencySketch;
+
+  private long currentSize;
+  private long protectedSize;
+
+  /**
+   * Creates an instance using {@link #DEFAULT_PROTECTED_FRACTION}.
+   *
+   * @param maxBytes The maximum size of the cache, in bytes.
+   */
+  public SegmentedLeastRecentlyUsedCacheEvictor(long maxBytes) {
+    this(maxBytes, DEFAULT_PROTECTED_FRACTION);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxBytes The maximum size of the cache, in bytes.
+   * @param protectedFraction The fraction of {@code maxBytes} that can be used by files in the
+   *     protected segment. Must be between 0 and 1.
+   */
+  public SegmentedLeastRecentlyUsedCacheEvictor(long maxBytes, float protectedFraction) {
+    checkArgument(protectedFraction >= 0 && protectedFraction <= 1);
+    this.maxBytes = maxBytes;
+    this.maxProtectedBytes = (long) (maxBytes * protectedFraction);
+    nodesByKey = new HashMap<>();
+    probationary = new Node(/* span= */ null);
+    protectedNodes = new Node(/* span= */ null);
+    frequencySketch = new FrequencySketch();
+  }
+
+  @Override
+  public boolean requiresCacheSpanTouches() {
+    return true;
+  }
+
+  @Override
+  public void onCacheInitialized() {
+    // Do nothing.
+  }
+
+  @Override
+  public void onStartFile(Cache cache, String key, long position, long length) {
+    if (length != C.LENGTH_UNSET) {
+      evictCache(cache, length);
+    }
+  }
+
+  @Override
+  public void onSpanAdded(Cache cache, CacheSpan span) {
+    int frequency = frequencySketch.increment(span);
+    addNode(new Node(span), /* isProtected= */ frequency >= PROTECTED_ADMISSION_FREQUENCY);
+    demoteProtectedNodes();
+    evictCache(cache, 0);
+  }
+
+  @Override
+  public void onSpanRemoved(Cache cache, CacheSpan span) {
+    @Nullable Node node = removeNode(span);
+    if (node != null) {
+      node.unlink();
+    }
+  }
+
+  @Override
+  public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    frequencySketch.increment(oldSpan);
+    @Nullable Node node = removeNode(oldSpan);
+    if (node != null) {
+      node.unlink();
+    }
+    addNode(new Node(newSpan), /* isProtected= */ true);
+    demoteProtectedNodes();
+  }
+
+  private void addNode(Node node, boolean isProtected) {
+    CacheSpan span = node.getSpan();
+    @Nullable HashMap<Long, Node> nodesByPosition = nodesByKey.get(span.key);
+    if (nodesByPosition == null) {
+      nodesByPosition = new HashMap<>();
+      nodesByKey.put(span.key, nodesByPosition);
+    }
+    nodesByPosition.put(span.position, node);
+    currentSize += span.length;
+    if (isProtected) {
+      node.linkBefore(protectedNodes);
+      node.isProtected = true;
+      protectedSize += span.length;
+    } else {
+      node.linkBefore(probationary);
+    }
+  }
+
+  @Nullable
+  private Node removeNode(CacheSpan span) {
+    @Nullable HashMap<Long, Node> nodesByPosition = nodesByKey.get(span.key);
+    if (nodesByPosition == null) {
+      return null;
+    }
+    @Nullable Node node = nodesByPosition.remove(span.position);
+    if (node == null) {
+      return null;
+    }
+    if (nodesByPosition.isEmpty()) {
+      nodesByKey.remove(span.key);
+    }
+    long length = node.getSpan().length;
+    currentSize -= length;
+    if (node.isProtected) {
+      protectedSize -= length;
+    }
+    return node;
+  }
+
+  /** Moves least recently used protected files to the probationary segment until it fits. */
+  private void demoteProtectedNodes() {
+    while (protectedSize > maxProtectedBytes && protectedNodes.next != protectedNodes) {
+      Node node = protectedNodes.next;
+      node.unlink();
+      node.isProtected = false;
+      protectedSize -= node.getSpan().length;
+      node.linkBefore(probationary);
+    }
+  }
+
+  private void evictCache(Cache cache, long requiredSpace) {
+    while (currentSize + requiredSpace > maxBytes) {
+      Node victim;
+      if (probationary.next != probationary) {
+        victim = probationary.next;
+      } else if (protectedNodes.next != protectedNodes) {
+        victim = protectedNodes.next;
+      } else {
+        return;
+      }
+      cache.removeSpan(victim.getSpan());
+    }
+  }
+
+  /**
+   * An entry in one of the circular doubly linked lists that order the files in each segment from
+   * least to most recently used. Each list has a sentinel node with a null span.
+   */
+  private static final class Node {
+
+    @Nullable private final CacheSpan span;
+
+    private Node previous;
+    private Node next;
+    private boolean isProtected;
+
+    public Node(@Nullable CacheSpan span) {
+      this.span = span;
+      previous = this;
+      next = this;
+    }
+
+    public CacheSpan getSpan() {
+      return checkNotNull(span);
+    }
+
+    /** Inserts this node before {@code sentinel}, at the most recently used end of its list. */
+    public void linkBefore(Node sentinel) {
+      previous = sentinel.previous;
+      next = sentinel;
+      sentinel.previous.next = this;
+      sentinel.previous = this;
+    }
+
+    public void unlink() {
+      previous.next = next;
+      next.previous = previous;
+      previous = this;
+      next = this;
+    }
+  }
+
+  /**
+   * A count-min sketch of 4-bit counters, which estimates how often each file has been used. Once
+   * enough counts have been recorded, all counters are halved so that the estimates favor recent
+   * use.
+   */
+  private static final class FrequencySketch {
+
+    private static final int TABLE_LENGTH = 1024;
+    private static final int COUNTER_COUNT = TABLE_LENGTH * 16;
+    private static final int MAX_COUNT = 15;
+    private static final int RESET_INCREMENT_COUNT = COUNTER_COUNT;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {
+      0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+
+    private final long[] table;
+
+    private int incrementCount;
+
+    public FrequencySketch() {
+      table = new long[TABLE_LENGTH];
+    }
+
+    /** Increments the count of the given file, returning the new estimated count. */
+    public int increment(CacheSpan span) {
+      int hash = hash(span);
+      int frequency = MAX_COUNT;
+      boolean incremented = false;
+      for (int i = 0; i < SEEDS.length; i++) {
+        int counterIndex = getCounterIndex(hash, i);
+        int shift = (counterIndex & 15) << 2;
+        int count = (int) ((table[counterIndex >>> 4] >>> shift) & MAX_COUNT);
+        if (count < MAX_COUNT) {
+          table[counterIndex >>> 4] += 1L << shift;
+          count++;
+          incremented = true;
+        }
+        frequency = min(frequency, count);
+      }
+      if (incremented && ++incrementCount == RESET_INCREMENT_COUNT) {
+        reset();
+      }
+      return frequency;
+    }
+
+    private void reset() {
+      for (int i = 0; i < table.length; i++) {
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      incrementCount /= 2;
+    }
+
+    private static int getCounterIndex(int hash, int i) {
+      long counterHash = (hash + SEEDS[i]) * SEEDS[i];
+      counterHash += counterHash >>> 32;
+      return (int) counterHash & (COUNTER_COUNT - 1);
+    }
+
+    private static int hash(CacheSpan span) {
+      int hash = span.key.hashCode();
+      hash = 31 * hash + (int) (span.position ^ (span.position >>> 32));
+      return hash ^ (hash >>> 16);
+    }
+  }
+}
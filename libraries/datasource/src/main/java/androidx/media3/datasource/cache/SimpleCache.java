@@ -15,7 +15,10 @@
  */
 package androidx.media3.datasource.cache;
 
+import static java.lang.annotation.ElementType.TYPE_USE;
+
 import android.os.ConditionVariable;
+import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 import androidx.media3.common.C;
@@ -27,6 +30,10 @@ import androidx.media3.database.DatabaseIOException;
 import androidx.media3.database.DatabaseProvider;
 import java.io.File;
 import java.io.IOException;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,6 +43,8 @@ import java.util.NavigableSet;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /**
@@ -46,10 +55,57 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  * <p>To delete a SimpleCache, use {@link #delete(File, DatabaseProvider)} rather than deleting the
  * directory and its contents directly. This is necessary to ensure that associated index data is
  * also removed.
+ *
+ * <p>By default all operations on the cache are mutually exclusive. If key-level locking is enabled
+ * on construction, operations that only read the in-memory representation, or that only affect a
+ * single key, can run concurrently with each other. Operations that modify the index or interact
+ * with the {@link CacheEvictor} are still mutually exclusive, but perform file system queries and
+ * file index updates outside of the exclusive section where possible.
  */
 @UnstableApi
 public final class SimpleCache implements Cache {
 
+  /**
+   * Flags controlling the cache's behavior. Possible flag values are {@link
+   * #FLAG_ENABLE_KEY_LEVEL_LOCKING}, {@link #FLAG_JOURNAL_LEGACY_INDEX} and {@link
+   * #FLAG_WRITE_BEHIND_FILE_METADATA}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @Target(TYPE_USE)
+  @IntDef(
+      flag = true,
+      value = {
+        FLAG_ENABLE_KEY_LEVEL_LOCKING,
+        FLAG_JOURNAL_LEGACY_INDEX,
+        FLAG_WRITE_BEHIND_FILE_METADATA
+      })
+  public @interface Flags {}
+
+  /**
+   * A flag indicating whether operations that only read the cache, or that only affect a single
+   * key, are allowed to run concurrently. This reduces contention when the cache is accessed from
+   * many threads, for example by a player and several downloads at once.
+   */
+  public static final int FLAG_ENABLE_KEY_LEVEL_LOCKING = 1;
+
+  /**
+   * A flag indicating whether changes to the legacy index should be appended to a journal, rather
+   * than rewriting the whole index each time it's stored. This reduces the cost of storing a large
+   * legacy index. Must not be set if the legacy index is encrypted. Not used by the database index.
+   */
+  public static final int FLAG_JOURNAL_LEGACY_INDEX = 1 << 1; // 2
+
+  /**
+   * A flag indicating whether the lengths and last touch timestamps of cache files should be
+   * written to the database asynchronously, rather than synchronously whenever a file is committed
+   * or touched. Changes are coalesced in memory and written in a single transaction on a background
+   * thread. Changes that haven't been written when the process dies are lost, in which case the
+   * cache falls back to the lengths of the files, and to older last touch timestamps. Only used by
+   * the database index.
+   */
+  public static final int FLAG_WRITE_BEHIND_FILE_METADATA = 1 << 2; // 4
+
   private static final String TAG = "SimpleCache";
 
   /**
@@ -62,6 +118,9 @@ public final class SimpleCache implements Cache {
 
   private static final String UID_FILE_SUFFIX = ".uid";
 
+  /** The number of locks between which the lock ranges of the cache keys are striped. */
+  private static final int KEY_LOCK_COUNT = 32;
+
   private static final HashSet<File> lockedCacheDirs = new HashSet<>();
 
   private final File cacheDir;
@@ -72,9 +131,19 @@ public final class SimpleCache implements Cache {
   private final Random random;
   private final boolean touchCacheSpans;
 
+  /**
+   * Guards the in-memory representation, the indices, the evictor and the listeners. Lock ranges
+   * of {@link CachedContent} are additionally guarded by the corresponding {@link KeyLock}, so they
+   * can be acquired and released whilst holding {@link #indexReadLock}.
+   */
+  private final Lock indexReadLock;
+
+  private final Lock indexWriteLock;
+  private final KeyLock[] keyLocks;
+
   private long uid;
   private long totalSpace;
-  private boolean released;
+  private volatile boolean released;
   private @MonotonicNonNull CacheException initializationException;
 
   /**
@@ -193,6 +262,45 @@ public final class SimpleCache implements Cache {
       @Nullable byte[] legacyIndexSecretKey,
       boolean legacyIndexEncrypt,
       boolean preferLegacyIndex) {
+    this(
+        cacheDir,
+        evictor,
+        databaseProvider,
+        legacyIndexSecretKey,
+        legacyIndexEncrypt,
+        preferLegacyIndex,
+        /* flags= */ 0);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored, or {@code
+   *     null} to use a legacy index. Using a database index is highly recommended for performance
+   *     reasons.
+   * @param legacyIndexSecretKey A 16 byte AES key for reading, and optionally writing, the legacy
+   *     index. Not used by the database index, however should still be provided when using the
+   *     database index in cases where upgrading from the legacy index may be necessary.
+   * @param legacyIndexEncrypt Whether to encrypt when writing to the legacy index. Must be {@code
+   *     false} if {@code legacyIndexSecretKey} is {@code null}. Not used by the database index.
+   * @param preferLegacyIndex Whether to use the legacy index even if a {@code databaseProvider} is
+   *     provided. Should be {@code false} in nearly all cases. Setting this to {@code true} is only
+   *     useful for downgrading from the database index back to the legacy index.
+   * @param flags A bitwise OR of {@link #FLAG_ENABLE_KEY_LEVEL_LOCKING}, {@link
+   *     #FLAG_JOURNAL_LEGACY_INDEX} and {@link #FLAG_WRITE_BEHIND_FILE_METADATA}, or 0.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable byte[] legacyIndexSecretKey,
+      boolean legacyIndexEncrypt,
+      boolean preferLegacyIndex,
+      @Flags int flags) {
     this(
         cacheDir,
         evictor,
@@ -201,10 +309,14 @@ public final class SimpleCache implements Cache {
             cacheDir,
             legacyIndexSecretKey,
             legacyIndexEncrypt,
-            preferLegacyIndex),
+            preferLegacyIndex,
+            /* legacyStorageJournaled= */ (flags & FLAG_JOURNAL_LEGACY_INDEX) != 0),
         databaseProvider != null && !preferLegacyIndex
-            ? new CacheFileMetadataIndex(databaseProvider)
-            : null);
+            ? new CacheFileMetadataIndex(
+                databaseProvider,
+                /* writeBehind= */ (flags & FLAG_WRITE_BEHIND_FILE_METADATA) != 0)
+            : null,
+        /* enableKeyLevelLocking= */ (flags & FLAG_ENABLE_KEY_LEVEL_LOCKING) != 0);
   }
 
   /* package */ SimpleCache(
@@ -212,6 +324,15 @@ public final class SimpleCache implements Cache {
       CacheEvictor evictor,
       CachedContentIndex contentIndex,
       @Nullable CacheFileMetadataIndex fileIndex) {
+    this(cacheDir, evictor, contentIndex, fileIndex, /* enableKeyLevelLocking= */ false);
+  }
+
+  /* package */ SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      CachedContentIndex contentIndex,
+      @Nullable CacheFileMetadataIndex fileIndex,
+      boolean enableKeyLevelLocking) {
     if (!lockFolder(cacheDir)) {
       throw new IllegalStateException("Another SimpleCache instance uses the folder: " + cacheDir);
     }
@@ -223,6 +344,14 @@ public final class SimpleCache implements Cache {
     listeners = new HashMap<>();
     random = new Random();
     touchCacheSpans = evictor.requiresCacheSpanTouches();
+    ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    indexWriteLock = indexLock.writeLock();
+    // Without key-level locking, all operations take the exclusive lock.
+    indexReadLock = enableKeyLevelLocking ? indexLock.readLock() : indexWriteLock;
+    keyLocks = new KeyLock[KEY_LOCK_COUNT];
+    for (int i = 0; i < KEY_LOCK_COUNT; i++) {
+      keyLocks[i] = new KeyLock();
+    }
     uid = UID_UNSET;
 
     // Start cache initialization.
@@ -230,10 +359,13 @@ public final class SimpleCache implements Cache {
     new Thread("ExoPlayer:SimpleCacheInit") {
       @Override
       public void run() {
-        synchronized (SimpleCache.this) {
+        indexWriteLock.lock();
+        try {
           conditionVariable.open();
           initialize();
           SimpleCache.this.evictor.onCacheInitialized();
+        } finally {
+          indexWriteLock.unlock();
         }
       }
     }.start();
@@ -245,90 +377,135 @@ public final class SimpleCache implements Cache {
    *
    * @throws CacheException If an error occurred during initialization.
    */
-  public synchronized void checkInitialization() throws CacheException {
-    if (initializationException != null) {
-      throw initializationException;
+  public void checkInitialization() throws CacheException {
+    indexReadLock.lock();
+    try {
+      if (initializationException != null) {
+        throw initializationException;
+      }
+    } finally {
+      indexReadLock.unlock();
     }
   }
 
   @Override
-  public synchronized long getUid() {
-    return uid;
+  public long getUid() {
+    indexReadLock.lock();
+    try {
+      return uid;
+    } finally {
+      indexReadLock.unlock();
+    }
   }
 
   @Override
-  public synchronized void release() {
-    if (released) {
-      return;
-    }
-    listeners.clear();
-    removeStaleSpans();
+  public void release() {
+    indexWriteLock.lock();
     try {
-      contentIndex.store();
-    } catch (IOException e) {
-      Log.e(TAG, "Storing index file failed", e);
+      if (released) {
+        return;
+      }
+      listeners.clear();
+      removeStaleSpans();
+      if (fileIndex != null) {
+        fileIndex.release();
+      }
+      try {
+        contentIndex.store();
+      } catch (IOException e) {
+        Log.e(TAG, "Storing index file failed", e);
+      } finally {
+        unlockFolder(cacheDir);
+        released = true;
+      }
     } finally {
-      unlockFolder(cacheDir);
-      released = true;
+      indexWriteLock.unlock();
     }
   }
 
   @Override
-  public synchronized NavigableSet<CacheSpan> addListener(String key, Listener listener) {
-    Assertions.checkState(!released);
-    Assertions.checkNotNull(key);
-    Assertions.checkNotNull(listener);
-    ArrayList<Listener> listenersForKey = listeners.get(key);
-    if (listenersForKey == null) {
-      listenersForKey = new ArrayList<>();
-      listeners.put(key, listenersForKey);
+  public NavigableSet<CacheSpan> addListener(String key, Listener listener) {
+    indexWriteLock.lock();
+    try {
+      Assertions.checkState(!released);
+      Assertions.checkNotNull(key);
+      Assertions.checkNotNull(listener);
+      ArrayList<Listener> listenersForKey = listeners.get(key);
+      if (listenersForKey == null) {
+        listenersForKey = new ArrayList<>();
+        listeners.put(key, listenersForKey);
+      }
+      listenersForKey.add(listener);
+      return getCachedSpans(key);
+    } finally {
+      indexWriteLock.unlock();
     }
-    listenersForKey.add(listener);
-    return getCachedSpans(key);
   }
 
   @Override
-  public synchronized void removeListener(String key, Listener listener) {
-    if (released) {
-      return;
-    }
-    ArrayList<Listener> listenersForKey = listeners.get(key);
-    if (listenersForKey != null) {
-      listenersForKey.remove(listener);
-      if (listenersForKey.isEmpty()) {
-        listeners.remove(key);
+  public void removeListener(String key, Listener listener) {
+    indexWriteLock.lock();
+    try {
+      if (released) {
+        return;
+      }
+      ArrayList<Listener> listenersForKey = listeners.get(key);
+      if (listenersForKey != null) {
+        listenersForKey.remove(listener);
+        if (listenersForKey.isEmpty()) {
+          listeners.remove(key);
+        }
       }
+    } finally {
+      indexWriteLock.unlock();
     }
   }
 
   @Override
-  public synchronized NavigableSet<CacheSpan> getCachedSpans(String key) {
-    Assertions.checkState(!released);
-    CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent == null || cachedContent.isEmpty()
-        ? new TreeSet<>()
-        : new TreeSet<CacheSpan>(cachedContent.getSpans());
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent == null || cachedContent.isEmpty()
+          ? new TreeSet<>()
+          : new TreeSet<CacheSpan>(cachedContent.getSpans());
+    } finally {
+      indexReadLock.unlock();
+    }
   }
 
   @Override
-  public synchronized Set<String> getKeys() {
-    Assertions.checkState(!released);
-    return new HashSet<>(contentIndex.getKeys());
+  public Set<String> getKeys() {
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      return new HashSet<>(contentIndex.getKeys());
+    } finally {
+      indexReadLock.unlock();
+    }
   }
 
   @Override
-  public synchronized long getCacheSpace() {
-    Assertions.checkState(!released);
-    return totalSpace;
+  public long getCacheSpace() {
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      return totalSpace;
+    } finally {
+      indexReadLock.unlock();
+    }
   }
 
   @Override
-  public synchronized CacheSpan startReadWrite(String key, long position, long length)
+  public CacheSpan startReadWrite(String key, long position, long length)
       throws InterruptedException, CacheException {
-    Assertions.checkState(!released);
     checkInitialization();
 
+    KeyLock keyLock = getKeyLock(key);
     while (true) {
+      // Read the version before trying, so that a change made after the attempt isn't missed.
+      int keyLockVersion = keyLock.getVersion();
       CacheSpan span = startReadWriteNonBlocking(key, position, length);
       if (span != null) {
         return span;
@@ -338,63 +515,107 @@ public final class SimpleCache implements Cache {
         // 1. A span is added for the requested key that covers the requested position, in which
         //    case a read can be started.
         // 2. The lock for the requested key is released, in which case a write can be started.
-        wait();
+        keyLock.awaitVersionChange(keyLockVersion);
       }
     }
   }
 
   @Override
   @Nullable
-  public synchronized CacheSpan startReadWriteNonBlocking(String key, long position, long length)
+  public CacheSpan startReadWriteNonBlocking(String key, long position, long length)
       throws CacheException {
-    Assertions.checkState(!released);
     checkInitialization();
 
-    SimpleCacheSpan span = getSpan(key, position, length);
-
-    if (span.isCached) {
-      // Read case.
-      return touchSpan(key, span);
-    }
+    while (true) {
+      @Nullable SimpleCacheSpan span;
+      long lastTouchTimestamp = C.TIME_UNSET;
+      indexReadLock.lock();
+      try {
+        Assertions.checkState(!released);
+        span = getSpanIfNotStale(key, position, length);
+        if (span != null && span.isCached) {
+          // Read case.
+          if (!touchCacheSpans) {
+            return span;
+          }
+          lastTouchTimestamp = System.currentTimeMillis();
+          persistTouch(span, lastTouchTimestamp);
+        } else if (span != null) {
+          @Nullable CachedContent cachedContent = contentIndex.get(key);
+          if (cachedContent != null) {
+            synchronized (getKeyLock(key)) {
+              // Write case, or null if the lock is not available.
+              return cachedContent.lockRange(position, span.length) ? span : null;
+            }
+          }
+        }
+      } finally {
+        indexReadLock.unlock();
+      }
 
-    CachedContent cachedContent = contentIndex.getOrAdd(key);
-    if (cachedContent.lockRange(position, span.length)) {
-      // Write case.
-      return span;
+      // The remaining cases modify the in-memory representation, which requires exclusive access.
+      // Another thread may have modified it in the meantime, in which case the request is retried.
+      indexWriteLock.lock();
+      try {
+        Assertions.checkState(!released);
+        if (span == null) {
+          removeStaleSpans();
+        } else if (span.isCached) {
+          @Nullable SimpleCacheSpan touchedSpan = touchSpan(key, span, lastTouchTimestamp);
+          if (touchedSpan != null) {
+            return touchedSpan;
+          }
+        } else {
+          contentIndex.getOrAdd(key);
+        }
+      } finally {
+        indexWriteLock.unlock();
+      }
     }
-
-    // Lock not available.
-    return null;
   }
 
   @Override
-  public synchronized File startFile(String key, long position, long length) throws CacheException {
-    Assertions.checkState(!released);
+  public File startFile(String key, long position, long length) throws CacheException {
     checkInitialization();
 
-    CachedContent cachedContent = contentIndex.get(key);
-    Assertions.checkNotNull(cachedContent);
-    Assertions.checkState(cachedContent.isFullyLocked(position, length));
-    if (!cacheDir.exists()) {
-      // The cache directory has been deleted from underneath us. Recreate it, and remove in-memory
-      // spans corresponding to cache files that no longer exist.
-      createCacheDirectories(cacheDir);
-      removeStaleSpans();
+    int id;
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      CachedContent cachedContent = contentIndex.get(key);
+      Assertions.checkNotNull(cachedContent);
+      synchronized (getKeyLock(key)) {
+        Assertions.checkState(cachedContent.isFullyLocked(position, length));
+      }
+      id = cachedContent.id;
+    } finally {
+      indexReadLock.unlock();
+    }
+
+    indexWriteLock.lock();
+    try {
+      Assertions.checkState(!released);
+      if (!cacheDir.exists()) {
+        // The cache directory has been deleted from underneath us. Recreate it, and remove
+        // in-memory spans corresponding to cache files that no longer exist.
+        createCacheDirectories(cacheDir);
+        removeStaleSpans();
+      }
+      evictor.onStartFile(this, key, position, length);
+    } finally {
+      indexWriteLock.unlock();
     }
-    evictor.onStartFile(this, key, position, length);
     // Randomly distribute files into subdirectories with a uniform distribution.
     File cacheSubDir = new File(cacheDir, Integer.toString(random.nextInt(SUBDIRECTORY_COUNT)));
     if (!cacheSubDir.exists()) {
       createCacheDirectories(cacheSubDir);
     }
     long lastTouchTimestamp = System.currentTimeMillis();
-    return SimpleCacheSpan.getCacheFile(
-        cacheSubDir, cachedContent.id, position, lastTouchTimestamp);
+    return SimpleCacheSpan.getCacheFile(cacheSubDir, id, position, lastTouchTimestamp);
   }
 
   @Override
-  public synchronized void commitFile(File file, long length) throws CacheException {
-    Assertions.checkState(!released);
+  public void commitFile(File file, long length) throws CacheException {
     if (!file.exists()) {
       return;
     }
@@ -403,115 +624,186 @@ public final class SimpleCache implements Cache {
       return;
     }
 
-    SimpleCacheSpan span =
-        Assertions.checkNotNull(SimpleCacheSpan.createCacheEntry(file, length, contentIndex));
-    CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(span.key));
-    Assertions.checkState(cachedContent.isFullyLocked(span.position, span.length));
+    SimpleCacheSpan span;
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      span = Assertions.checkNotNull(SimpleCacheSpan.createCacheEntry(file, length, contentIndex));
+      CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(span.key));
+      synchronized (getKeyLock(span.key)) {
+        Assertions.checkState(cachedContent.isFullyLocked(span.position, span.length));
+      }
 
-    // Check if the span conflicts with the set content length
-    long contentLength = ContentMetadata.getContentLength(cachedContent.getMetadata());
-    if (contentLength != C.LENGTH_UNSET) {
-      Assertions.checkState((span.position + span.length) <= contentLength);
+      // Check if the span conflicts with the set content length
+      long contentLength = ContentMetadata.getContentLength(cachedContent.getMetadata());
+      if (contentLength != C.LENGTH_UNSET) {
+        Assertions.checkState((span.position + span.length) <= contentLength);
+      }
+
+      if (fileIndex != null) {
+        String fileName = file.getName();
+        try {
+          fileIndex.set(fileName, span.length, span.lastTouchTimestamp);
+        } catch (IOException e) {
+          throw new CacheException(e);
+        }
+      }
+    } finally {
+      indexReadLock.unlock();
     }
 
-    if (fileIndex != null) {
-      String fileName = file.getName();
+    indexWriteLock.lock();
+    try {
+      Assertions.checkState(!released);
+      addSpan(span);
       try {
-        fileIndex.set(fileName, span.length, span.lastTouchTimestamp);
+        contentIndex.store();
       } catch (IOException e) {
         throw new CacheException(e);
       }
+    } finally {
+      indexWriteLock.unlock();
+      getKeyLock(span.key).incrementVersion();
     }
-    addSpan(span);
-    try {
-      contentIndex.store();
-    } catch (IOException e) {
-      throw new CacheException(e);
-    }
-    notifyAll();
   }
 
   @Override
-  public synchronized void releaseHoleSpan(CacheSpan holeSpan) {
-    Assertions.checkState(!released);
-    CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(holeSpan.key));
-    cachedContent.unlockRange(holeSpan.position);
-    contentIndex.maybeRemove(cachedContent.key);
-    notifyAll();
+  public void releaseHoleSpan(CacheSpan holeSpan) {
+    boolean maybeRemovable;
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(holeSpan.key));
+      KeyLock keyLock = getKeyLock(holeSpan.key);
+      synchronized (keyLock) {
+        cachedContent.unlockRange(holeSpan.position);
+        maybeRemovable = cachedContent.isFullyUnlocked() && cachedContent.isEmpty();
+        keyLock.incrementVersion();
+      }
+    } finally {
+      indexReadLock.unlock();
+    }
+    if (maybeRemovable) {
+      indexWriteLock.lock();
+      try {
+        if (released) {
+          return;
+        }
+        contentIndex.maybeRemove(holeSpan.key);
+      } finally {
+        indexWriteLock.unlock();
+      }
+    }
   }
 
   @Override
-  public synchronized void removeResource(String key) {
-    Assertions.checkState(!released);
-    for (CacheSpan span : getCachedSpans(key)) {
-      removeSpanInternal(span);
+  public void removeResource(String key) {
+    indexWriteLock.lock();
+    try {
+      Assertions.checkState(!released);
+      for (CacheSpan span : getCachedSpans(key)) {
+        removeSpanInternal(span);
+      }
+    } finally {
+      indexWriteLock.unlock();
     }
   }
 
   @Override
-  public synchronized void removeSpan(CacheSpan span) {
-    Assertions.checkState(!released);
-    removeSpanInternal(span);
+  public void removeSpan(CacheSpan span) {
+    indexWriteLock.lock();
+    try {
+      Assertions.checkState(!released);
+      removeSpanInternal(span);
+    } finally {
+      indexWriteLock.unlock();
+    }
   }
 
   @Override
-  public synchronized boolean isCached(String key, long position, long length) {
-    Assertions.checkState(!released);
-    @Nullable CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent != null && cachedContent.getCachedBytesLength(position, length) >= length;
+  public boolean isCached(String key, long position, long length) {
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent != null
+          && cachedContent.getCachedBytesLength(position, length) >= length;
+    } finally {
+      indexReadLock.unlock();
+    }
   }
 
   @Override
-  public synchronized long getCachedLength(String key, long position, long length) {
-    Assertions.checkState(!released);
-    if (length == C.LENGTH_UNSET) {
-      length = Long.MAX_VALUE;
+  public long getCachedLength(String key, long position, long length) {
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      if (length == C.LENGTH_UNSET) {
+        length = Long.MAX_VALUE;
+      }
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
+    } finally {
+      indexReadLock.unlock();
     }
-    @Nullable CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
   }
 
   @Override
-  public synchronized long getCachedBytes(String key, long position, long length) {
+  public long getCachedBytes(String key, long position, long length) {
     long endPosition = length == C.LENGTH_UNSET ? Long.MAX_VALUE : position + length;
     if (endPosition < 0) {
       // The calculation rolled over (length is probably Long.MAX_VALUE).
       endPosition = Long.MAX_VALUE;
     }
-    long currentPosition = position;
-    long cachedBytes = 0;
-    while (currentPosition < endPosition) {
-      long maxRemainingLength = endPosition - currentPosition;
-      long blockLength = getCachedLength(key, currentPosition, maxRemainingLength);
-      if (blockLength > 0) {
-        cachedBytes += blockLength;
-      } else {
-        // There's a hole of length -blockLength.
-        blockLength = -blockLength;
+    indexReadLock.lock();
+    try {
+      long currentPosition = position;
+      long cachedBytes = 0;
+      while (currentPosition < endPosition) {
+        long maxRemainingLength = endPosition - currentPosition;
+        long blockLength = getCachedLength(key, currentPosition, maxRemainingLength);
+        if (blockLength > 0) {
+          cachedBytes += blockLength;
+        } else {
+          // There's a hole of length -blockLength.
+          blockLength = -blockLength;
+        }
+        currentPosition += blockLength;
       }
-      currentPosition += blockLength;
+      return cachedBytes;
+    } finally {
+      indexReadLock.unlock();
     }
-    return cachedBytes;
   }
 
   @Override
-  public synchronized void applyContentMetadataMutations(
-      String key, ContentMetadataMutations mutations) throws CacheException {
-    Assertions.checkState(!released);
+  public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations)
+      throws CacheException {
     checkInitialization();
 
-    contentIndex.applyContentMetadataMutations(key, mutations);
+    indexWriteLock.lock();
     try {
-      contentIndex.store();
-    } catch (IOException e) {
-      throw new CacheException(e);
+      Assertions.checkState(!released);
+      contentIndex.applyContentMetadataMutations(key, mutations);
+      try {
+        contentIndex.store();
+      } catch (IOException e) {
+        throw new CacheException(e);
+      }
+    } finally {
+      indexWriteLock.unlock();
     }
   }
 
   @Override
-  public synchronized ContentMetadata getContentMetadata(String key) {
-    Assertions.checkState(!released);
-    return contentIndex.getContentMetadata(key);
+  public ContentMetadata getContentMetadata(String key) {
+    indexReadLock.lock();
+    try {
+      Assertions.checkState(!released);
+      return contentIndex.getContentMetadata(key);
+    } finally {
+      indexReadLock.unlock();
+    }
   }
 
   /** Ensures that the cache's in-memory representation has been initialized. */
@@ -625,35 +917,44 @@ public final class SimpleCache implements Cache {
   }
 
   /**
-   * Touches a cache span, returning the updated result. If the evictor does not require cache spans
-   * to be touched, then this method does nothing and the span is returned without modification.
+   * Persists a new last touch timestamp of a cache span to the file index, if there is one.
    *
-   * @param key The key of the span being touched.
    * @param span The span being touched.
-   * @return The updated span.
+   * @param lastTouchTimestamp The new last touch timestamp.
    */
-  private SimpleCacheSpan touchSpan(String key, SimpleCacheSpan span) {
-    if (!touchCacheSpans) {
-      return span;
-    }
-    String fileName = Assertions.checkNotNull(span.file).getName();
-    long length = span.length;
-    long lastTouchTimestamp = System.currentTimeMillis();
-    boolean updateFile = false;
+  private void persistTouch(SimpleCacheSpan span, long lastTouchTimestamp) {
     if (fileIndex != null) {
+      String fileName = Assertions.checkNotNull(span.file).getName();
       try {
-        fileIndex.set(fileName, length, lastTouchTimestamp);
+        fileIndex.set(fileName, span.length, lastTouchTimestamp);
       } catch (IOException e) {
         Log.w(TAG, "Failed to update index with new touch timestamp.");
       }
-    } else {
-      // Updating the file itself to incorporate the new last touch timestamp is much slower than
-      // updating the file index. Hence we only update the file if we don't have a file index.
-      updateFile = true;
     }
+  }
+
+  /**
+   * Touches a cache span in the in-memory representation, returning the updated result. Must only
+   * be called if the evictor requires cache spans to be touched.
+   *
+   * @param key The key of the span being touched.
+   * @param span The span being touched.
+   * @param lastTouchTimestamp The new last touch timestamp.
+   * @return The updated span, or {@code null} if the span is no longer part of the in-memory
+   *     representation.
+   */
+  @Nullable
+  private SimpleCacheSpan touchSpan(String key, SimpleCacheSpan span, long lastTouchTimestamp) {
+    @Nullable CachedContent cachedContent = contentIndex.get(key);
+    if (cachedContent == null || cachedContent.getSpans().floor(span) != span) {
+      // The span was removed or touched by another thread after it was looked up.
+      return null;
+    }
+    // Updating the file itself to incorporate the new last touch timestamp is much slower than
+    // updating the file index. Hence we only update the file if we don't have a file index.
+    boolean updateFile = fileIndex == null;
     SimpleCacheSpan newSpan =
-        Assertions.checkNotNull(contentIndex.get(key))
-            .setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
+        cachedContent.setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
     notifySpanTouched(span, newSpan);
     return newSpan;
   }
@@ -665,23 +966,23 @@ public final class SimpleCache implements Cache {
    * @param key The key of the span being requested.
    * @param position The position of the span being requested.
    * @param length The length of the span, or {@link C#LENGTH_UNSET} if unbounded.
-   * @return The corresponding cache {@link SimpleCacheSpan}.
+   * @return The corresponding cache {@link SimpleCacheSpan}, or {@code null} if the file of the
+   *     corresponding cached span has been modified or deleted, in which case {@link
+   *     #removeStaleSpans()} should be called before trying again.
    */
-  private SimpleCacheSpan getSpan(String key, long position, long length) {
+  @Nullable
+  private SimpleCacheSpan getSpanIfNotStale(String key, long position, long length) {
     @Nullable CachedContent cachedContent = contentIndex.get(key);
     if (cachedContent == null) {
       return SimpleCacheSpan.createHole(key, position, length);
     }
-    while (true) {
-      SimpleCacheSpan span = cachedContent.getSpan(position, length);
-      if (span.isCached && Assertions.checkNotNull(span.file).length() != span.length) {
-        // The file has been modified or deleted underneath us. It's likely that other files will
-        // have been modified too, so scan the whole in-memory representation.
-        removeStaleSpans();
-        continue;
-      }
-      return span;
+    SimpleCacheSpan span = cachedContent.getSpan(position, length);
+    if (span.isCached && Assertions.checkNotNull(span.file).length() != span.length) {
+      // The file has been modified or deleted underneath us. It's likely that other files will
+      // have been modified too, so the whole in-memory representation needs to be scanned.
+      return null;
     }
+    return span;
   }
 
   /**
@@ -820,4 +1121,40 @@ public final class SimpleCache implements Cache {
   private static synchronized void unlockFolder(File cacheDir) {
     lockedCacheDirs.remove(cacheDir.getAbsoluteFile());
   }
+
+  private KeyLock getKeyLock(String key) {
+    return keyLocks[(key.hashCode() & Integer.MAX_VALUE) % KEY_LOCK_COUNT];
+  }
+
+  /**
+   * Guards the lock ranges of the {@link CachedContent CachedContents} whose keys map to it, and
+   * allows threads to wait for them to change.
+   */
+  private static final class KeyLock {
+
+    private int version;
+
+    /** Returns the current version, which is incremented whenever a guarded key changes. */
+    public synchronized int getVersion() {
+      return version;
+    }
+
+    /** Increments the version and wakes up all threads waiting for a change. */
+    public synchronized void incrementVersion() {
+      version++;
+      notifyAll();
+    }
+
+    /**
+     * Blocks until the version differs from {@code version}.
+     *
+     * @param version The version that was observed before the guarded state was checked.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    public synchronized void awaitVersionChange(int version) throws InterruptedException {
+      while (this.version == version) {
+        wait();
+      }
+    }
+  }
 }
@@ -18,8 +18,11 @@ package androidx.media3.datasource.cache;
 import static com.google.common.truth.Truth.assertThat;
 
 import androidx.media3.database.DatabaseIOException;
+import androidx.media3.database.DatabaseProvider;
 import androidx.media3.test.utils.TestUtil;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Map;
 import org.junit.Test;
@@ -126,6 +129,109 @@ public class CacheFileMetadataIndexTest {
     assertThat(metadata.lastTouchTimestamp).isEqualTo(123);
   }
 
+  @Test
+  public void writeBehind_coalescesUpdatesAndFlushesInBackground() throws DatabaseIOException {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    ArrayDeque<Runnable> backgroundTasks = new ArrayDeque<>();
+    CacheFileMetadataIndex index =
+        new CacheFileMetadataIndex(
+            databaseProvider, /* writeBehindExecutor= */ backgroundTasks::add);
+    index.initialize(/* uid= */ 1234);
+    CacheFileMetadataIndex synchronousIndex = new CacheFileMetadataIndex(databaseProvider);
+    synchronousIndex.initialize(/* uid= */ 1234);
+
+    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    index.set("name2", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 789);
+    index.remove("name2");
+
+    assertThat(index.getPendingUpdateCount()).isEqualTo(2);
+    assertThat(index.getFlushedUpdateCount()).isEqualTo(0);
+    assertThat(backgroundTasks).hasSize(1);
+    assertThat(synchronousIndex.getAll()).isEmpty();
+
+    backgroundTasks.remove().run();
+
+    assertThat(index.getPendingUpdateCount()).isEqualTo(0);
+    assertThat(index.getFlushedUpdateCount()).isEqualTo(2);
+    Map<String, CacheFileMetadata> all = synchronousIndex.getAll();
+    assertThat(all.keySet()).containsExactly("name1");
+    assertThat(all.get("name1").length).isEqualTo(123);
+    assertThat(all.get("name1").lastTouchTimestamp).isEqualTo(789);
+  }
+
+  @Test
+  public void writeBehind_schedulesFlushForUpdatesAfterPreviousFlushStarted()
+      throws DatabaseIOException {
+    ArrayDeque<Runnable> backgroundTasks = new ArrayDeque<>();
+    CacheFileMetadataIndex index =
+        new CacheFileMetadataIndex(
+            TestUtil.getInMemoryDatabaseProvider(),
+            /* writeBehindExecutor= */ backgroundTasks::add);
+    index.initialize(/* uid= */ 1234);
+
+    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    backgroundTasks.remove().run();
+    index.set("name2", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+    index.removeAll(ImmutableSet.of("name1"));
+
+    assertThat(backgroundTasks).hasSize(1);
+    backgroundTasks.remove().run();
+    assertThat(index.getPendingUpdateCount()).isEqualTo(0);
+    assertThat(index.getFlushedUpdateCount()).isEqualTo(3);
+    assertThat(index.getAll().keySet()).containsExactly("name2");
+  }
+
+  @Test
+  public void writeBehind_getAll_includesPendingUpdates() throws DatabaseIOException {
+    ArrayDeque<Runnable> backgroundTasks = new ArrayDeque<>();
+    CacheFileMetadataIndex index =
+        new CacheFileMetadataIndex(
+            TestUtil.getInMemoryDatabaseProvider(),
+            /* writeBehindExecutor= */ backgroundTasks::add);
+    index.initialize(/* uid= */ 1234);
+
+    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    Map<String, CacheFileMetadata> all = index.getAll();
+
+    assertThat(all.keySet()).containsExactly("name1");
+    assertThat(index.getPendingUpdateCount()).isEqualTo(0);
+    // The background flush has nothing left to write.
+    backgroundTasks.remove().run();
+    assertThat(index.getFlushedUpdateCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void writeBehind_release_flushesPendingUpdates() throws DatabaseIOException {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    CacheFileMetadataIndex index =
+        new CacheFileMetadataIndex(databaseProvider, /* writeBehind= */ true);
+    index.initialize(/* uid= */ 1234);
+
+    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    index.release();
+
+    CacheFileMetadataIndex synchronousIndex = new CacheFileMetadataIndex(databaseProvider);
+    synchronousIndex.initialize(/* uid= */ 1234);
+    assertThat(synchronousIndex.getAll().keySet()).containsExactly("name1");
+  }
+
+  @Test
+  public void writeBehind_setAfterRelease_writesSynchronously() throws DatabaseIOException {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    CacheFileMetadataIndex index =
+        new CacheFileMetadataIndex(databaseProvider, /* writeBehind= */ true);
+    index.initialize(/* uid= */ 1234);
+    index.release();
+
+    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+
+    assertThat(index.getPendingUpdateCount()).isEqualTo(0);
+    CacheFileMetadataIndex synchronousIndex = new CacheFileMetadataIndex(databaseProvider);
+    synchronousIndex.initialize(/* uid= */ 1234);
+    assertThat(synchronousIndex.getAll().keySet()).containsExactly("name1");
+  }
+
   private static CacheFileMetadataIndex newInitializedIndex() throws DatabaseIOException {
     CacheFileMetadataIndex index =
         new CacheFileMetadataIndex(TestUtil.getInMemoryDatabaseProvider());
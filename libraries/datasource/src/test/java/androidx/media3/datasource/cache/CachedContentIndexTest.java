@@ -324,6 +324,137 @@ public class CachedContentIndexTest {
     assertThat(ContentMetadata.getContentLength(metadata2)).isEqualTo(2560);
   }
 
+  @Test
+  public void legacyJournaledStoreAndLoad() throws Exception {
+    assertStoredAndLoadedEqual(newJournaledLegacyInstance(), newJournaledLegacyInstance());
+  }
+
+  @Test
+  public void legacyJournaledStore_appendsChangesToJournal() throws Exception {
+    CachedContentIndex index = newJournaledLegacyInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.getOrAdd("key2");
+    index.store();
+    File indexFile = new File(cacheDir, CachedContentIndex.FILE_NAME_ATOMIC);
+    long indexFileLength = indexFile.length();
+
+    index.getOrAdd("key3");
+    index.maybeRemove("key1");
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, 100);
+    index.applyContentMetadataMutations("key2", mutations);
+    index.store();
+
+    assertThat(indexFile.length()).isEqualTo(indexFileLength);
+    assertThat(getJournalFile().exists()).isTrue();
+    CachedContentIndex index2 = newJournaledLegacyInstance();
+    assertLoadedEqual(index, index2);
+    assertThat(index2.getKeys()).containsExactly("key2", "key3");
+    assertThat(ContentMetadata.getContentLength(index2.getContentMetadata("key2")))
+        .isEqualTo(100);
+  }
+
+  @Test
+  public void legacyJournaledLoad_withTruncatedJournal_keepsPrecedingChanges() throws Exception {
+    CachedContentIndex index = newJournaledLegacyInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.store();
+    index.getOrAdd("key2");
+    index.store();
+    long journalLength = getJournalFile().length();
+    index.getOrAdd("key3");
+    index.store();
+    // Simulate the process dying whilst the last record was being appended.
+    byte[] journal = TestUtil.getByteArrayFromFilePath(getJournalFile().getPath());
+    try (FileOutputStream outputStream = new FileOutputStream(getJournalFile())) {
+      outputStream.write(journal, 0, (int) journalLength + 5);
+    }
+
+    CachedContentIndex index2 = newJournaledLegacyInstance();
+    index2.initialize(/* uid= */ 0);
+    assertThat(index2.getKeys()).containsExactly("key1", "key2");
+
+    // The recovered index is stored fully, so that the corrupt journal is discarded.
+    index2.store();
+    assertThat(getJournalFile().exists()).isFalse();
+    CachedContentIndex index3 = newJournaledLegacyInstance();
+    index3.initialize(/* uid= */ 0);
+    assertThat(index3.getKeys()).containsExactly("key1", "key2");
+  }
+
+  @Test
+  public void legacyJournaledLoad_withCorruptJournalRecord_discardsFollowingChanges()
+      throws Exception {
+    CachedContentIndex index = newJournaledLegacyInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.store();
+    index.getOrAdd("key2");
+    index.store();
+    long journalLength = getJournalFile().length();
+    index.getOrAdd("key3");
+    index.store();
+    byte[] journal = TestUtil.getByteArrayFromFilePath(getJournalFile().getPath());
+    journal[(int) journalLength + 10] ^= 0xFF;
+    try (FileOutputStream outputStream = new FileOutputStream(getJournalFile())) {
+      outputStream.write(journal);
+    }
+
+    CachedContentIndex index2 = newJournaledLegacyInstance();
+    index2.initialize(/* uid= */ 0);
+
+    assertThat(index2.getKeys()).containsExactly("key1", "key2");
+  }
+
+  @Test
+  public void legacyLoad_withJournalFromJournaledInstance_appliesJournalAndDeletesIt()
+      throws Exception {
+    CachedContentIndex index = newJournaledLegacyInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.store();
+    index.getOrAdd("key2");
+    index.store();
+
+    CachedContentIndex index2 = newLegacyInstance();
+    assertLoadedEqual(index, index2);
+    index2.store();
+
+    assertThat(getJournalFile().exists()).isFalse();
+    assertLoadedEqual(index, newLegacyInstance());
+  }
+
+  @Test
+  public void legacyJournaledStore_withLargeJournal_compactsJournal() throws Exception {
+    CachedContentIndex index = newJournaledLegacyInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key");
+    index.store();
+    for (int i = 0; i < 1100; i++) {
+      index.getOrAdd("key" + i);
+    }
+    index.store();
+    for (int i = 0; i < 1000; i++) {
+      index.maybeRemove("key" + i);
+    }
+
+    // The journal now has more records than the index has keys, so storing triggers compaction.
+    index.store();
+
+    assertThat(getJournalFile().exists()).isFalse();
+    File compactingJournalFile =
+        new File(cacheDir, CachedContentIndex.FILE_NAME_ATOMIC + ".journal.compacting");
+    long timeoutMs = System.currentTimeMillis() + 10_000;
+    while (compactingJournalFile.exists() && System.currentTimeMillis() < timeoutMs) {
+      Thread.sleep(10);
+    }
+    assertThat(compactingJournalFile.exists()).isFalse();
+    assertLoadedEqual(index, newJournaledLegacyInstance());
+    assertThat(index.getKeys()).hasSize(101);
+  }
+
   @Test
   public void assignIdForKeyAndGetKeyForId() {
     CachedContentIndex index = newInstance();
@@ -461,6 +592,20 @@ public class CachedContentIndexTest {
     }
   }
 
+  private void assertLoadedEqual(CachedContentIndex index, CachedContentIndex index2)
+      throws IOException {
+    index2.initialize(/* uid= */ 0);
+    Set<String> keys = index.getKeys();
+    assertThat(index2.getKeys()).isEqualTo(keys);
+    for (String key : keys) {
+      assertThat(index2.get(key)).isEqualTo(index.get(key));
+    }
+  }
+
+  private File getJournalFile() {
+    return new File(cacheDir, CachedContentIndex.FILE_NAME_ATOMIC + ".journal");
+  }
+
   private CachedContentIndex newInstance() {
     return new CachedContentIndex(TestUtil.getInMemoryDatabaseProvider());
   }
@@ -477,4 +622,14 @@ public class CachedContentIndexTest {
         /* legacyStorageEncrypt= */ key != null,
         /* preferLegacyStorage= */ true);
   }
+
+  private CachedContentIndex newJournaledLegacyInstance() {
+    return new CachedContentIndex(
+        /* databaseProvider= */ null,
+        cacheDir,
+        /* legacyStorageSecretKey= */ null,
+        /* legacyStorageEncrypt= */ false,
+        /* preferLegacyStorage= */ true,
+        /* legacyStorageJournaled= */ true);
+  }
 }
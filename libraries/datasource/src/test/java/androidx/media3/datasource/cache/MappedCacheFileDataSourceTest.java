@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.datasource.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSourceUtil;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.test.utils.TestUtil;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.common.io.Files;
+import java.io.File;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link MappedCacheFileDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public class MappedCacheFileDataSourceTest {
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void readAdjacentRanges_withSharedFactory_readsExpectedData() throws Exception {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100);
+    File file = tempFolder.newFile();
+    Files.write(data, file);
+    MappedCacheFileDataSource.Factory factory = new MappedCacheFileDataSource.Factory();
+
+    byte[] firstRange = read(factory.createDataSource(), file, /* position= */ 0, /* length= */ 40);
+    byte[] secondRange =
+        read(factory.createDataSource(), file, /* position= */ 40, /* length= */ 60);
+
+    assertThat(firstRange).isEqualTo(Arrays.copyOfRange(data, 0, 40));
+    assertThat(secondRange).isEqualTo(Arrays.copyOfRange(data, 40, 100));
+  }
+
+  @Test
+  public void read_afterFileReplaced_readsNewData() throws Exception {
+    File file = tempFolder.newFile();
+    Files.write(TestUtil.buildTestData(/* length= */ 50, /* seed= */ 1), file);
+    MappedCacheFileDataSource.Factory factory = new MappedCacheFileDataSource.Factory();
+    read(factory.createDataSource(), file, /* position= */ 0, /* length= */ 50);
+
+    byte[] newData = TestUtil.buildTestData(/* length= */ 60, /* seed= */ 2);
+    Files.write(newData, file);
+
+    assertThat(read(factory.createDataSource(), file, /* position= */ 0, /* length= */ 60))
+        .isEqualTo(newData);
+  }
+
+  @Test
+  public void read_withPoolingDisabled_readsExpectedData() throws Exception {
+    byte[] data = TestUtil.buildTestData(/* length= */ 100);
+    File file = tempFolder.newFile();
+    Files.write(data, file);
+    MappedCacheFileDataSource.Factory factory =
+        new MappedCacheFileDataSource.Factory().setMaxPooledMappingCount(0);
+
+    read(factory.createDataSource(), file, /* position= */ 0, /* length= */ 10);
+    byte[] range = read(factory.createDataSource(), file, /* position= */ 10, /* length= */ 90);
+
+    assertThat(range).isEqualTo(Arrays.copyOfRange(data, 10, 100));
+  }
+
+  private static byte[] read(DataSource dataSource, File file, long position, int length)
+      throws Exception {
+    try {
+      dataSource.open(
+          new DataSpec.Builder()
+              .setUri(Uri.fromFile(file))
+              .setPosition(position)
+              .setLength(length)
+              .build());
+      return DataSourceUtil.readToEnd(dataSource);
+    } finally {
+      dataSource.close();
+    }
+  }
+}
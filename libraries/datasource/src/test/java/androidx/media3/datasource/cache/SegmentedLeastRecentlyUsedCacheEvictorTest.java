@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.datasource.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.media3.common.util.Util;
+import androidx.media3.test.utils.TestUtil;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+/** Unit tests for {@link SegmentedLeastRecentlyUsedCacheEvictor}. */
+@RunWith(AndroidJUnit4.class)
+public class SegmentedLeastRecentlyUsedCacheEvictorTest {
+
+  private static final int SPAN_LENGTH = 100;
+
+  private File testDir;
+
+  @Before
+  public void createTestDir() throws Exception {
+    testDir =
+        Util.createTempDirectory(
+            ApplicationProvider.getApplicationContext(), "SegmentedLruCacheEvictorTest");
+  }
+
+  @After
+  public void deleteTestDir() {
+    Util.recursiveDelete(testDir);
+  }
+
+  @Test
+  public void contentBiggerThanMaxSizeDoesNotThrowException() throws Exception {
+    int maxBytes = 100;
+    SegmentedLeastRecentlyUsedCacheEvictor evictor =
+        new SegmentedLeastRecentlyUsedCacheEvictor(maxBytes);
+    evictor.onCacheInitialized();
+    evictor.onStartFile(Mockito.mock(Cache.class), "key", 0, maxBytes + 1);
+  }
+
+  @Test
+  public void touchedSpan_isNotEvictedBySpansThatAreNotTouched() throws Exception {
+    SimpleCache cache =
+        newSimpleCache(new SegmentedLeastRecentlyUsedCacheEvictor(3 * SPAN_LENGTH), "cache");
+    access(cache, "a");
+    access(cache, "b");
+    access(cache, "a");
+
+    access(cache, "c");
+    access(cache, "d");
+    access(cache, "e");
+
+    assertThat(cache.getKeys()).containsExactly("a", "d", "e");
+    cache.release();
+  }
+
+  @Test
+  public void protectedSegmentFull_demotesLeastRecentlyUsedProtectedSpan() throws Exception {
+    SimpleCache cache =
+        newSimpleCache(
+            new SegmentedLeastRecentlyUsedCacheEvictor(
+                4 * SPAN_LENGTH, /* protectedFraction= */ 0.5f),
+            "cache");
+    access(cache, "a");
+    access(cache, "b");
+    access(cache, "c");
+    access(cache, "a");
+    access(cache, "b");
+    // Protecting c demotes a, which is then the most recently used probationary span.
+    access(cache, "c");
+
+    access(cache, "d");
+    access(cache, "e");
+
+    assertThat(cache.getKeys()).containsExactly("b", "c", "d", "e");
+    cache.release();
+  }
+
+  @Test
+  public void spanAddedAgainAfterEviction_isProtectedIfFrequentlyUsed() throws Exception {
+    SimpleCache cache =
+        newSimpleCache(new SegmentedLeastRecentlyUsedCacheEvictor(2 * SPAN_LENGTH), "cache");
+    access(cache, "a");
+    access(cache, "b");
+    access(cache, "c");
+    assertThat(cache.getKeys()).containsExactly("b", "c");
+
+    // a has now been added twice, so it enters the protected segment and isn't evicted by d.
+    access(cache, "a");
+    access(cache, "d");
+
+    assertThat(cache.getKeys()).containsExactly("a", "d");
+    cache.release();
+  }
+
+  @Test
+  public void replayTrace_withLongVideoBetweenReplayedClips_hasHigherHitRatioThanLru()
+      throws Exception {
+    // Each round replays five short clips, and then continues watching a long video.
+    List<CacheAccess> trace = new ArrayList<>();
+    for (int round = 0; round < 10; round++) {
+      for (int clip = 0; clip < 5; clip++) {
+        trace.add(new CacheAccess("clip" + clip, /* position= */ 0));
+      }
+      for (int segment = 0; segment < 30; segment++) {
+        trace.add(new CacheAccess("video", (round * 30 + segment) * SPAN_LENGTH));
+      }
+    }
+    long maxBytes = 10 * SPAN_LENGTH;
+
+    int lruHitCount =
+        replayTrace(newSimpleCache(new LeastRecentlyUsedCacheEvictor(maxBytes), "lru"), trace);
+    int segmentedLruHitCount =
+        replayTrace(
+            newSimpleCache(new SegmentedLeastRecentlyUsedCacheEvictor(maxBytes), "slru"), trace);
+
+    // Every clip is evicted by the long video under LRU. Under segmented LRU, clips are protected
+    // once they have been played twice.
+    assertThat(lruHitCount).isEqualTo(0);
+    assertThat(segmentedLruHitCount).isEqualTo(40);
+  }
+
+  private SimpleCache newSimpleCache(CacheEvictor evictor, String directoryName) {
+    return new SimpleCache(
+        new File(testDir, directoryName), evictor, TestUtil.getInMemoryDatabaseProvider());
+  }
+
+  /**
+   * Replays a trace of accesses against a cache, writing each span that isn't cached, and then
+   * releases the cache.
+   *
+   * @return The number of accesses for which the span was cached.
+   */
+  private static int replayTrace(SimpleCache cache, List<CacheAccess> trace) throws Exception {
+    int hitCount = 0;
+    for (CacheAccess cacheAccess : trace) {
+      if (access(cache, cacheAccess.key, cacheAccess.position)) {
+        hitCount++;
+      }
+    }
+    cache.release();
+    return hitCount;
+  }
+
+  private static boolean access(SimpleCache cache, String key) throws Exception {
+    return access(cache, key, /* position= */ 0);
+  }
+
+  /** Reads a span from the cache, writing it if it isn't cached. Returns whether it was cached. */
+  private static boolean access(SimpleCache cache, String key, long position)
+      throws IOException, InterruptedException, Cache.CacheException {
+    CacheSpan span = cache.startReadWrite(key, position, SPAN_LENGTH);
+    if (span.isCached) {
+      return true;
+    }
+    File file = cache.startFile(key, position, SPAN_LENGTH);
+    TestUtil.createTestFile(file, SPAN_LENGTH);
+    cache.commitFile(file, SPAN_LENGTH);
+    cache.releaseHoleSpan(span);
+    return false;
+  }
+
+  private static final class CacheAccess {
+
+    public final String key;
+    public final long position;
+
+    public CacheAccess(String key, long position) {
+      this.key = key;
+      this.position = position;
+    }
+  }
+}
@@ -17,6 +17,8 @@ package androidx.media3.datasource.cache;
 
 import static androidx.media3.common.C.LENGTH_UNSET;
 import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.Mockito.doAnswer;
 
@@ -32,8 +34,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -620,6 +629,152 @@ public class SimpleCacheTest {
     assertThat(fileSpan.length).isEqualTo(15);
   }
 
+  @Test
+  public void keyLevelLocking_startReadWrite_blocksUntilHoleSpanReleased() throws Exception {
+    SimpleCache simpleCache = getSimpleCacheWithKeyLevelLocking(new NoOpCacheEvictor());
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    AtomicReference<CacheSpan> blockedSpan = new AtomicReference<>();
+    CountDownLatch blockedSpanLatch = new CountDownLatch(1);
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                blockedSpan.set(simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET));
+              } catch (InterruptedException | CacheException e) {
+                throw new IllegalStateException(e);
+              }
+              blockedSpanLatch.countDown();
+            });
+    thread.start();
+
+    // A different key can be locked whilst the other thread is blocked.
+    CacheSpan otherHoleSpan = simpleCache.startReadWrite(KEY_2, 0, LENGTH_UNSET);
+    simpleCache.releaseHoleSpan(otherHoleSpan);
+    assertThat(blockedSpanLatch.await(/* timeout= */ 100, MILLISECONDS)).isFalse();
+    simpleCache.releaseHoleSpan(holeSpan);
+
+    assertThat(blockedSpanLatch.await(/* timeout= */ 5, SECONDS)).isTrue();
+    assertThat(blockedSpan.get().isCached).isFalse();
+    simpleCache.releaseHoleSpan(blockedSpan.get());
+  }
+
+  @Test
+  public void keyLevelLocking_concurrentWritersAndReaders_cachesAllData() throws Exception {
+    SimpleCache simpleCache = getSimpleCacheWithKeyLevelLocking(new NoOpCacheEvictor());
+    int threadCount = 8;
+    int spanCount = 20;
+    int spanLength = 10;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      String key = "key" + i;
+      futures.add(
+          executorService.submit(
+              () -> {
+                for (int j = 0; j < spanCount; j++) {
+                  CacheSpan holeSpan =
+                      simpleCache.startReadWrite(key, j * spanLength, LENGTH_UNSET);
+                  addCache(simpleCache, key, j * spanLength, spanLength);
+                  simpleCache.releaseHoleSpan(holeSpan);
+                  assertCachedDataReadCorrect(
+                      simpleCache.startReadWrite(key, j * spanLength, LENGTH_UNSET));
+                }
+                return null;
+              }));
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      futures.get(i).get();
+    }
+    executorService.shutdown();
+
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(threadCount * spanCount * spanLength);
+    for (int i = 0; i < threadCount; i++) {
+      assertThat(simpleCache.getCachedBytes("key" + i, 0, LENGTH_UNSET))
+          .isEqualTo(spanCount * spanLength);
+    }
+  }
+
+  @Test
+  public void keyLevelLocking_withLeastRecentlyUsedCacheEvictor_evictsLeastRecentlyUsedSpan()
+      throws Exception {
+    SimpleCache simpleCache =
+        getSimpleCacheWithKeyLevelLocking(new LeastRecentlyUsedCacheEvictor(/* maxBytes= */ 20));
+    CacheSpan holeSpan1 = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(simpleCache, KEY_1, 0, 10);
+    simpleCache.releaseHoleSpan(holeSpan1);
+    CacheSpan holeSpan2 = simpleCache.startReadWrite(KEY_2, 0, LENGTH_UNSET);
+    addCache(simpleCache, KEY_2, 0, 10);
+    simpleCache.releaseHoleSpan(holeSpan2);
+    // Touch the first span, so that the second one becomes the least recently used.
+    Thread.sleep(10);
+    assertThat(simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET).isCached).isTrue();
+
+    CacheSpan holeSpan3 = simpleCache.startReadWrite(KEY_1, 10, LENGTH_UNSET);
+    addCache(simpleCache, KEY_1, 10, 10);
+    simpleCache.releaseHoleSpan(holeSpan3);
+
+    assertThat(simpleCache.getCachedBytes(KEY_1, 0, LENGTH_UNSET)).isEqualTo(20);
+    assertThat(simpleCache.getCachedSpans(KEY_2)).isEmpty();
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(20);
+  }
+
+  @Test
+  public void writeBehindFileMetadata_releaseDuringCommits_rejectsLaterOperations()
+      throws Exception {
+    SimpleCache simpleCache =
+        new SimpleCache(
+            cacheDir,
+            new NoOpCacheEvictor(),
+            databaseProvider,
+            /* legacyIndexSecretKey= */ null,
+            /* legacyIndexEncrypt= */ false,
+            /* preferLegacyIndex= */ false,
+            SimpleCache.FLAG_ENABLE_KEY_LEVEL_LOCKING
+                | SimpleCache.FLAG_WRITE_BEHIND_FILE_METADATA);
+    int threadCount = 4;
+    int spanLength = 10;
+    CountDownLatch writingLatch = new CountDownLatch(threadCount);
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      String key = "key" + i;
+      futures.add(
+          executorService.submit(
+              () -> {
+                int committedSpanCount = 0;
+                try {
+                  while (true) {
+                    long position = (long) committedSpanCount * spanLength;
+                    CacheSpan holeSpan = simpleCache.startReadWrite(key, position, LENGTH_UNSET);
+                    addCache(simpleCache, key, (int) position, spanLength);
+                    committedSpanCount++;
+                    writingLatch.countDown();
+                    simpleCache.releaseHoleSpan(holeSpan);
+                  }
+                } catch (IllegalStateException e) {
+                  // The cache has been released.
+                }
+                return committedSpanCount;
+              }));
+    }
+    assertThat(writingLatch.await(/* timeout= */ 5, SECONDS)).isTrue();
+
+    simpleCache.release();
+
+    // Operations that raced with the release either completed or failed with an
+    // IllegalStateException, rather than failing to schedule a file metadata write.
+    int[] committedSpanCounts = new int[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      committedSpanCounts[i] = futures.get(i).get();
+    }
+    executorService.shutdown();
+    SimpleCache reloadedCache = getSimpleCache();
+    for (int i = 0; i < threadCount; i++) {
+      assertThat(reloadedCache.getCachedBytes("key" + i, 0, LENGTH_UNSET))
+          .isAtLeast((long) committedSpanCounts[i] * spanLength);
+    }
+  }
+
   @Test
   public void usingReleasedCache_throwsException() {
     SimpleCache simpleCache = getSimpleCache();
@@ -633,6 +788,17 @@ public class SimpleCacheTest {
     return new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
   }
 
+  private SimpleCache getSimpleCacheWithKeyLevelLocking(CacheEvictor evictor) {
+    return new SimpleCache(
+        cacheDir,
+        evictor,
+        databaseProvider,
+        /* legacyIndexSecretKey= */ null,
+        /* legacyIndexEncrypt= */ false,
+        /* preferLegacyIndex= */ false,
+        SimpleCache.FLAG_ENABLE_KEY_LEVEL_LOCKING);
+  }
+
   private static void addCache(SimpleCache simpleCache, String key, int position, int length)
       throws IOException {
     File file = simpleCache.startFile(key, position, length);
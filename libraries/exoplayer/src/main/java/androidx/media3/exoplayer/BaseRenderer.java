@@ -22,6 +22,7 @@ import androidx.annotation.GuardedBy;
 import androidx.annotation.Nullable;
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.Timeline;
 import androidx.media3.common.util.Assertions;
@@ -485,6 +486,45 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
     return timeline;
   }
 
+  /**
+   * Returns the {@link MediaItem} of a period in the {@linkplain #getTimeline() current timeline},
+   * or null if the timeline doesn't contain the period.
+   *
+   * @param mediaPeriodId The {@link MediaSource.MediaPeriodId} of the period.
+   */
+  @Nullable
+  protected final MediaItem getMediaItem(MediaSource.MediaPeriodId mediaPeriodId) {
+    if (timeline.getIndexOfPeriod(mediaPeriodId.periodUid) == C.INDEX_UNSET) {
+      return null;
+    }
+    int windowIndex =
+        timeline.getPeriodByUid(mediaPeriodId.periodUid, new Timeline.Period()).windowIndex;
+    return timeline.getWindow(windowIndex, new Timeline.Window()).mediaItem;
+  }
+
+  /**
+   * Returns whether a stream of a period in the {@linkplain #getTimeline() current timeline} plays
+   * its {@link MediaItem} from the start. This is the case if the period isn't an ad, is the only
+   * period of a window that isn't live, and the stream starts at or before the start of the window,
+   * which is after the start of the period for clipped items.
+   *
+   * @param mediaPeriodId The {@link MediaSource.MediaPeriodId} of the period.
+   * @param startPositionInPeriodUs The start position of the stream in the period, in microseconds.
+   */
+  protected final boolean isStartOfMediaItem(
+      MediaSource.MediaPeriodId mediaPeriodId, long startPositionInPeriodUs) {
+    int periodIndex = timeline.getIndexOfPeriod(mediaPeriodId.periodUid);
+    if (mediaPeriodId.isAd() || periodIndex == C.INDEX_UNSET) {
+      return false;
+    }
+    int windowIndex = timeline.getPeriod(periodIndex, new Timeline.Period()).windowIndex;
+    Timeline.Window window = timeline.getWindow(windowIndex, new Timeline.Window());
+    return !window.isLive()
+        && window.firstPeriodIndex == periodIndex
+        && window.lastPeriodIndex == periodIndex
+        && startPositionInPeriodUs <= window.positionInFirstPeriodUs;
+  }
+
   /**
    * Creates an {@link ExoPlaybackException} of type {@link ExoPlaybackException#TYPE_RENDERER} for
    * this renderer.
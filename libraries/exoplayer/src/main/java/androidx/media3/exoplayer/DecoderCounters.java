@@ -39,6 +39,12 @@ public final class DecoderCounters {
   /** The number of input buffers queued to the decoder. */
   public int queuedInputBufferCount;
 
+  /**
+   * The total size of the sample data in the input buffers queued to the decoder, in bytes. This is
+   * the amount of sample data copied out of the renderer's stream.
+   */
+  public long queuedInputByteCount;
+
   /**
    * The number of skipped input buffers.
    *
@@ -141,6 +147,7 @@ public final class DecoderCounters {
     decoderInitCount += other.decoderInitCount;
     decoderReleaseCount += other.decoderReleaseCount;
     queuedInputBufferCount += other.queuedInputBufferCount;
+    queuedInputByteCount += other.queuedInputByteCount;
     skippedInputBufferCount += other.skippedInputBufferCount;
     renderedOutputBufferCount += other.renderedOutputBufferCount;
     skippedOutputBufferCount += other.skippedOutputBufferCount;
@@ -177,6 +184,7 @@ public final class DecoderCounters {
             + "decoderInits=%s,\n "
             + "decoderReleases=%s\n "
             + "queuedInputBuffers=%s\n "
+            + "queuedInputBytes=%s\n "
             + "skippedInputBuffers=%s\n "
             + "renderedOutputBuffers=%s\n "
             + "skippedOutputBuffers=%s\n "
@@ -189,6 +197,7 @@ public final class DecoderCounters {
         decoderInitCount,
         decoderReleaseCount,
         queuedInputBufferCount,
+        queuedInputByteCount,
         skippedInputBufferCount,
         renderedOutputBufferCount,
         skippedOutputBufferCount,
@@ -26,6 +26,7 @@ import androidx.media3.common.AudioAttributes;
 import androidx.media3.common.AuxEffectInfo;
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.PlaybackParameters;
 import androidx.media3.common.Player;
@@ -591,6 +592,20 @@ public interface AudioSink {
    */
   default void setOutputStreamOffsetUs(long outputStreamOffsetUs) {}
 
+  /**
+   * Sets the {@link MediaItem} of a stream, whose output starts when {@link
+   * #setOutputStreamOffsetUs(long)} is next called with the same offset.
+   *
+   * @param outputStreamOffsetUs The output stream offset of the stream, in microseconds.
+   * @param mediaItem The {@link MediaItem} of the stream.
+   * @param startsAtBeginning Whether the stream plays the {@link MediaItem} from its start, which
+   *     is the start of the clip for clipped items. False if the stream starts at a position that
+   *     playback was resumed or seeked to, is one of several periods of the item, is an ad, or is
+   *     live.
+   */
+  default void setStreamMediaItem(
+      long outputStreamOffsetUs, MediaItem mediaItem, boolean startsAtBeginning) {}
+
   /**
    * Enables tunneling, if possible. The sink is reset if tunneling was previously disabled.
    * Enabling tunneling is only possible if the sink is based on a platform {@link AudioTrack}, and
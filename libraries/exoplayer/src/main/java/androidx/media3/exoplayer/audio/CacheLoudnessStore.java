@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.audio;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.util.Log;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.common.util.Util;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheKeyFactory;
+import androidx.media3.datasource.cache.ContentMetadata;
+import androidx.media3.datasource.cache.ContentMetadataMutations;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Saves the integrated loudness measured by a {@link LoudnessAudioProcessor} in the {@link
+ * ContentMetadata} of the cached content of a {@link MediaItem}, so that it's kept for as long as
+ * the content itself and removed with it.
+ *
+ * <p>The content is identified by the URI and {@linkplain
+ * MediaItem.LocalConfiguration#customCacheKey custom cache key} of the {@link MediaItem}, as when
+ * it's loaded through a {@link androidx.media3.datasource.cache.CacheDataSource} or downloaded.
+ *
+ * <p>The store is a {@link LoudnessAudioProcessor.Listener} that saves each measurement, and
+ * {@link #createGainProvider(double)} creates the {@link LoudnessAudioProcessor.GainProvider} that
+ * normalizes the items with a saved loudness, for example:
+ *
+ * <pre>{@code
+ * new LoudnessAudioProcessor(
+ *     loudnessStore,
+ *     loudnessStore.createGainProvider(LoudnessAudioProcessor.DEFAULT_TARGET_LOUDNESS_LUFS));
+ * }</pre>
+ *
+ * <p>The cache is only accessed on an {@link Executor}, as its index may be written to disk. The
+ * saved loudnesses are loaded into memory on the executor when the store is created, and the
+ * {@link LoudnessAudioProcessor.GainProvider} only reads them from memory, so that it can be
+ * called on the playback thread. Items played before the loudnesses are loaded aren't
+ * normalized. Loudnesses of items that have no cached data are only kept in memory, so that
+ * measuring streamed items doesn't add entries to the cache index.
+ */
+@UnstableApi
+public final class CacheLoudnessStore implements LoudnessAudioProcessor.Listener {
+
+  /**
+   * The name of the {@link ContentMetadata} entry holding the integrated loudness in LUFS, as a
+   * decimal string.
+   */
+  public static final String METADATA_NAME_INTEGRATED_LOUDNESS = "exo_loudness";
+
+  private static final String TAG = "CacheLoudnessStore";
+
+  private final Cache cache;
+  private final CacheKeyFactory cacheKeyFactory;
+  private final Executor executor;
+  private final Map<String, Double> integratedLoudnessByCacheKey;
+
+  /**
+   * Creates an instance that uses {@link CacheKeyFactory#DEFAULT}.
+   *
+   * @param cache The {@link Cache} holding the content.
+   */
+  public CacheLoudnessStore(Cache cache) {
+    this(cache, CacheKeyFactory.DEFAULT);
+  }
+
+  /**
+   * Creates an instance that accesses the cache on its own thread.
+   *
+   * @param cache The {@link Cache} holding the content.
+   * @param cacheKeyFactory The {@link CacheKeyFactory} used to cache the content.
+   */
+  public CacheLoudnessStore(Cache cache, CacheKeyFactory cacheKeyFactory) {
+    this(cache, cacheKeyFactory, Util.newSingleThreadExecutor("ExoPlayer:CacheLoudnessStore"));
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param cache The {@link Cache} holding the content.
+   * @param cacheKeyFactory The {@link CacheKeyFactory} used to cache the content.
+   * @param executor The {@link Executor} on which the cache is accessed. It shouldn't run tasks on
+   *     the playback thread.
+   */
+  public CacheLoudnessStore(Cache cache, CacheKeyFactory cacheKeyFactory, Executor executor) {
+    this.cache = cache;
+    this.cacheKeyFactory = cacheKeyFactory;
+    this.executor = executor;
+    integratedLoudnessByCacheKey = new ConcurrentHashMap<>();
+    Map<String, Double> integratedLoudnessByCacheKey = this.integratedLoudnessByCacheKey;
+    executor.execute(() -> loadIntegratedLoudnesses(cache, integratedLoudnessByCacheKey));
+  }
+
+  /**
+   * Returns the integrated loudness saved for a {@link MediaItem} in LUFS, or {@link Double#NaN} if
+   * there is none.
+   *
+   * <p>If the loudness isn't in memory yet, it's read from the cache on the calling thread.
+   */
+  public double getIntegratedLoudness(MediaItem mediaItem) {
+    @Nullable String cacheKey = buildCacheKey(mediaItem);
+    if (cacheKey == null) {
+      return Double.NaN;
+    }
+    @Nullable Double integratedLoudness = integratedLoudnessByCacheKey.get(cacheKey);
+    if (integratedLoudness != null) {
+      return integratedLoudness;
+    }
+    double savedIntegratedLoudness = readIntegratedLoudness(cache, cacheKey);
+    if (!Double.isNaN(savedIntegratedLoudness)) {
+      integratedLoudnessByCacheKey.putIfAbsent(cacheKey, savedIntegratedLoudness);
+    }
+    return savedIntegratedLoudness;
+  }
+
+  /**
+   * Returns the gain that normalizes a {@link MediaItem} to a target loudness, or 1 if no loudness
+   * was saved for it.
+   *
+   * @param mediaItem The {@link MediaItem}.
+   * @param targetLoudnessLufs The target loudness, in LUFS.
+   */
+  public float getGain(MediaItem mediaItem, double targetLoudnessLufs) {
+    return LoudnessAudioProcessor.getGainForTargetLoudness(
+        getIntegratedLoudness(mediaItem), targetLoudnessLufs);
+  }
+
+  /**
+   * Saves the integrated loudness of a {@link MediaItem}, replacing any loudness saved before.
+   * Loudnesses that aren't finite, for example of silence, aren't saved.
+   *
+   * <p>The loudness is kept in memory at once, and written to the cache on the executor if the
+   * item has cached data.
+   *
+   * @param mediaItem The {@link MediaItem}.
+   * @param integratedLoudnessLufs The integrated loudness, in LUFS.
+   */
+  public void setIntegratedLoudness(MediaItem mediaItem, double integratedLoudnessLufs) {
+    @Nullable String cacheKey = buildCacheKey(mediaItem);
+    if (cacheKey == null
+        || Double.isInfinite(integratedLoudnessLufs)
+        || Double.isNaN(integratedLoudnessLufs)) {
+      return;
+    }
+    integratedLoudnessByCacheKey.put(cacheKey, integratedLoudnessLufs);
+    executor.execute(() -> writeIntegratedLoudness(cache, cacheKey, integratedLoudnessLufs));
+  }
+
+  /**
+   * Creates a {@link LoudnessAudioProcessor.GainProvider} that normalizes each {@link MediaItem}
+   * with a loudness in memory to a target loudness. The provider doesn't access the cache.
+   *
+   * @param targetLoudnessLufs The target loudness, in LUFS.
+   */
+  public LoudnessAudioProcessor.GainProvider createGainProvider(double targetLoudnessLufs) {
+    return mediaItem -> {
+      @Nullable String cacheKey = buildCacheKey(mediaItem);
+      @Nullable
+      Double integratedLoudness =
+          cacheKey != null ? integratedLoudnessByCacheKey.get(cacheKey) : null;
+      return LoudnessAudioProcessor.getGainForTargetLoudness(
+          integratedLoudness != null ? integratedLoudness : Double.NaN, targetLoudnessLufs);
+    };
+  }
+
+  // LoudnessAudioProcessor.Listener implementation.
+
+  @Override
+  public void onLoudnessMeasured(
+      MediaItem mediaItem, double integratedLoudnessLufs, long measuredDurationUs) {
+    setIntegratedLoudness(mediaItem, integratedLoudnessLufs);
+  }
+
+  private static void loadIntegratedLoudnesses(
+      Cache cache, Map<String, Double> integratedLoudnessByCacheKey) {
+    for (String cacheKey : cache.getKeys()) {
+      double integratedLoudness = readIntegratedLoudness(cache, cacheKey);
+      if (!Double.isNaN(integratedLoudness)) {
+        // Don't replace a loudness measured while loading.
+        integratedLoudnessByCacheKey.putIfAbsent(cacheKey, integratedLoudness);
+      }
+    }
+  }
+
+  private static double readIntegratedLoudness(Cache cache, String cacheKey) {
+    @Nullable
+    String integratedLoudness =
+        cache
+            .getContentMetadata(cacheKey)
+            .get(METADATA_NAME_INTEGRATED_LOUDNESS, /* defaultValue= */ (String) null);
+    if (integratedLoudness == null) {
+      return Double.NaN;
+    }
+    try {
+      return Double.parseDouble(integratedLoudness);
+    } catch (NumberFormatException e) {
+      Log.w(TAG, "Ignoring malformed integrated loudness: " + integratedLoudness);
+      return Double.NaN;
+    }
+  }
+
+  private static void writeIntegratedLoudness(
+      Cache cache, String cacheKey, double integratedLoudnessLufs) {
+    if (cache.getCachedSpans(cacheKey).isEmpty()) {
+      // Don't create an index entry for content that isn't cached.
+      return;
+    }
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    mutations.set(METADATA_NAME_INTEGRATED_LOUDNESS, Double.toString(integratedLoudnessLufs));
+    try {
+      cache.applyContentMetadataMutations(cacheKey, mutations);
+    } catch (Cache.CacheException e) {
+      Log.w(TAG, "Failed to save integrated loudness", e);
+    }
+  }
+
+  @Nullable
+  private String buildCacheKey(MediaItem mediaItem) {
+    @Nullable MediaItem.LocalConfiguration localConfiguration = mediaItem.localConfiguration;
+    if (localConfiguration == null) {
+      return null;
+    }
+    return cacheKeyFactory.buildCacheKey(
+        new DataSpec.Builder()
+            .setUri(localConfiguration.uri)
+            .setKey(localConfiguration.customCacheKey)
+            .build());
+  }
+}
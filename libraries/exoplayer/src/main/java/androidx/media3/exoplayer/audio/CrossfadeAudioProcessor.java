@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.audio;
+
+import static androidx.media3.common.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.audio.AudioProcessor;
+import androidx.media3.common.audio.BaseAudioProcessor;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.common.util.Util;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An {@link AudioProcessor} that crossfades the end of each stream into the start of the next one,
+ * so that consecutive streams overlap instead of playing back to back.
+ *
+ * <p>The processor holds back the last {@code crossfadeDurationUs} of its input. If {@linkplain
+ * #setStreamTransitionPending(boolean) a stream transition is pending} when the end of stream is
+ * queued, the held back audio is kept when the processor is next flushed, and mixed with the start
+ * of the following input by applying the {@linkplain FadeCurve fade curve}. Otherwise it's output
+ * unmodified at the end of stream, and discarded when the processor is flushed.
+ *
+ * <p>Streams are only crossfaded if they have the same format. The audio that overlaps is removed
+ * from the output, so each crossfade shortens the output by up to {@code crossfadeDurationUs}.
+ */
+@UnstableApi
+public final class CrossfadeAudioProcessor extends BaseAudioProcessor {
+
+  /**
+   * Curves for fading the end of one stream out and the start of the next stream in. One of {@link
+   * #FADE_CURVE_LINEAR} or {@link #FADE_CURVE_EQUAL_POWER}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @Target(TYPE_USE)
+  @IntDef({FADE_CURVE_LINEAR, FADE_CURVE_EQUAL_POWER})
+  public @interface FadeCurve {}
+
+  /** Gains change linearly, so their sum is constant. Suits correlated audio. */
+  public static final int FADE_CURVE_LINEAR = 0;
+
+  /**
+   * Gains follow a quarter period of a sine and cosine, so the sum of their squares (the power) is
+   * constant. Suits uncorrelated audio, like different songs.
+   */
+  public static final int FADE_CURVE_EQUAL_POWER = 1;
+
+  private final long crossfadeDurationUs;
+  private final @FadeCurve int fadeCurve;
+
+  private AudioFormat configuredInputAudioFormat;
+  private boolean streamTransitionPending;
+  private boolean holdingTailForTransition;
+
+  /** The end of the current stream, which is held back, between zero and its position. */
+  private ByteBuffer tailBuffer;
+
+  /**
+   * The end of the previous stream being faded out. The frames between its position and limit are
+   * still to be mixed with input.
+   */
+  private ByteBuffer fadeOutBuffer;
+
+  /** The start of the current stream, mixed with the {@link #fadeOutBuffer}. */
+  private ByteBuffer mixedBuffer;
+
+  private int fadeFrameCount;
+
+  /**
+   * Creates an instance.
+   *
+   * @param crossfadeDurationUs The duration for which the end of each stream overlaps the start of
+   *     the next one, in microseconds. The processor is inactive if this is zero.
+   * @param fadeCurve The {@link FadeCurve} to apply.
+   */
+  public CrossfadeAudioProcessor(long crossfadeDurationUs, @FadeCurve int fadeCurve) {
+    checkArgument(crossfadeDurationUs >= 0);
+    this.crossfadeDurationUs = crossfadeDurationUs;
+    this.fadeCurve = fadeCurve;
+    configuredInputAudioFormat = AudioFormat.NOT_SET;
+    tailBuffer = EMPTY_BUFFER;
+    fadeOutBuffer = EMPTY_BUFFER;
+    mixedBuffer = EMPTY_BUFFER;
+  }
+
+  /**
+   * Sets whether the input is about to be drained and flushed to transition to another stream,
+   * whose start should be crossfaded with the end of the current one.
+   *
+   * <p>This should be set before queuing the end of stream. It's cleared when the processor is
+   * flushed. Setting it to {@code false} before flushing prevents the held back audio from being
+   * crossfaded, for example when seeking.
+   */
+  public void setStreamTransitionPending(boolean streamTransitionPending) {
+    this.streamTransitionPending = streamTransitionPending;
+    if (!streamTransitionPending) {
+      holdingTailForTransition = false;
+    }
+  }
+
+  @Override
+  protected AudioFormat onConfigure(AudioFormat inputAudioFormat)
+      throws UnhandledAudioFormatException {
+    if (crossfadeDurationUs == 0) {
+      return AudioFormat.NOT_SET;
+    }
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
+      throw new UnhandledAudioFormatException(inputAudioFormat);
+    }
+    configuredInputAudioFormat = inputAudioFormat;
+    return inputAudioFormat;
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    if (!inputBuffer.hasRemaining()) {
+      return;
+    }
+    ByteBuffer mixedBuffer = EMPTY_BUFFER;
+    if (fadeOutBuffer.hasRemaining()) {
+      mixedBuffer = crossfade(inputBuffer);
+    }
+
+    // Keep tailBuffer as full as possible. Output the oldest held back bytes, followed by the mixed
+    // bytes and the input, and hold back whatever isn't output.
+    int bytesToOutput =
+        max(
+            0,
+            tailBuffer.position()
+                + mixedBuffer.remaining()
+                + inputBuffer.remaining()
+                - tailBuffer.capacity());
+    ByteBuffer outputBuffer = replaceOutputBuffer(bytesToOutput);
+    tailBuffer.flip();
+    bytesToOutput -= transfer(tailBuffer, outputBuffer, bytesToOutput);
+    tailBuffer.compact();
+    bytesToOutput -= transfer(mixedBuffer, outputBuffer, bytesToOutput);
+    tailBuffer.put(mixedBuffer);
+    transfer(inputBuffer, outputBuffer, bytesToOutput);
+    tailBuffer.put(inputBuffer);
+    outputBuffer.flip();
+  }
+
+  @Override
+  public ByteBuffer getOutput() {
+    if (super.isEnded() && !holdingTailForTransition && hasHeldBackAudio()) {
+      // Output the end of the stream, followed by the rest of any unfinished fade out.
+      ByteBuffer fadeOutRemainder = fadeOutBuffer.hasRemaining() ? crossfade(null) : EMPTY_BUFFER;
+      tailBuffer.flip();
+      replaceOutputBuffer(tailBuffer.remaining() + fadeOutRemainder.remaining())
+          .put(tailBuffer)
+          .put(fadeOutRemainder)
+          .flip();
+      tailBuffer.clear();
+    }
+    return super.getOutput();
+  }
+
+  @Override
+  public boolean isEnded() {
+    return super.isEnded() && (holdingTailForTransition || !hasHeldBackAudio());
+  }
+
+  @Override
+  protected void onQueueEndOfStream() {
+    holdingTailForTransition =
+        streamTransitionPending && configuredInputAudioFormat.equals(inputAudioFormat);
+  }
+
+  @Override
+  protected void onFlush() {
+    int tailBufferSize =
+        (int) Util.durationUsToSampleCount(crossfadeDurationUs, inputAudioFormat.sampleRate)
+            * inputAudioFormat.bytesPerFrame;
+    if (holdingTailForTransition) {
+      if (fadeOutBuffer.hasRemaining()) {
+        // Finish the unfinished fade out of an earlier stream, so it can be faded out again. This
+        // fits in the tail buffer because all input since that stream ended is still held back.
+        tailBuffer.put(crossfade(/* inputBuffer= */ null));
+      }
+      if (tailBuffer.position() > 0) {
+        // The stream format is unchanged, so the buffers can be swapped.
+        ByteBuffer previousTailBuffer = tailBuffer;
+        tailBuffer = fadeOutBuffer;
+        tailBuffer.clear();
+        fadeOutBuffer = previousTailBuffer;
+        fadeOutBuffer.flip();
+        fadeFrameCount = fadeOutBuffer.remaining() / inputAudioFormat.bytesPerFrame;
+      }
+    } else {
+      if (tailBuffer.capacity() != tailBufferSize) {
+        tailBuffer = allocateBuffer(tailBufferSize);
+        fadeOutBuffer = allocateBuffer(tailBufferSize);
+        mixedBuffer = allocateBuffer(tailBufferSize);
+      }
+      tailBuffer.clear();
+      fadeOutBuffer.clear().limit(0);
+    }
+    streamTransitionPending = false;
+    holdingTailForTransition = false;
+  }
+
+  @Override
+  protected void onReset() {
+    configuredInputAudioFormat = AudioFormat.NOT_SET;
+    streamTransitionPending = false;
+    holdingTailForTransition = false;
+    tailBuffer = EMPTY_BUFFER;
+    fadeOutBuffer = EMPTY_BUFFER;
+    mixedBuffer = EMPTY_BUFFER;
+  }
+
+  private boolean hasHeldBackAudio() {
+    return tailBuffer.position() > 0 || fadeOutBuffer.hasRemaining();
+  }
+
+  /**
+   * Mixes frames from the {@link #fadeOutBuffer} with frames from {@code inputBuffer}, or with
+   * silence if {@code inputBuffer} is {@code null}, and returns the mixed frames.
+   */
+  private ByteBuffer crossfade(@Nullable ByteBuffer inputBuffer) {
+    int bytesPerFrame = inputAudioFormat.bytesPerFrame;
+    int channelCount = inputAudioFormat.channelCount;
+    boolean isFloat = inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT;
+    int frameCount =
+        (inputBuffer == null
+                ? fadeOutBuffer.remaining()
+                : min(inputBuffer.remaining(), fadeOutBuffer.remaining()))
+            / bytesPerFrame;
+    int firstFrameIndex = fadeOutBuffer.position() / bytesPerFrame;
+    mixedBuffer.clear();
+    for (int i = 0; i < frameCount; i++) {
+      float fadeInProgress = (float) (firstFrameIndex + i) / fadeFrameCount;
+      float fadeOutGain;
+      float fadeInGain;
+      if (fadeCurve == FADE_CURVE_EQUAL_POWER) {
+        fadeOutGain = (float) Math.cos(fadeInProgress * Math.PI / 2);
+        fadeInGain = (float) Math.sin(fadeInProgress * Math.PI / 2);
+      } else {
+        fadeOutGain = 1 - fadeInProgress;
+        fadeInGain = fadeInProgress;
+      }
+      for (int channel = 0; channel < channelCount; channel++) {
+        if (isFloat) {
+          float inputSample = inputBuffer == null ? 0 : inputBuffer.getFloat();
+          mixedBuffer.putFloat(fadeOutBuffer.getFloat() * fadeOutGain + inputSample * fadeInGain);
+        } else {
+          int inputSample = inputBuffer == null ? 0 : inputBuffer.getShort();
+          float mixedSample = fadeOutBuffer.getShort() * fadeOutGain + inputSample * fadeInGain;
+          mixedBuffer.putShort(
+              (short) Util.constrainValue(mixedSample, Short.MIN_VALUE, Short.MAX_VALUE));
+        }
+      }
+    }
+    mixedBuffer.flip();
+    return mixedBuffer;
+  }
+
+  /**
+   * Copies up to {@code maxBytes} bytes from {@code source} to {@code target}, returning the number
+   * of bytes copied.
+   */
+  private static int transfer(ByteBuffer source, ByteBuffer target, int maxBytes) {
+    int bytes = min(source.remaining(), maxBytes);
+    if (bytes == 0) {
+      return 0;
+    }
+    int limit = source.limit();
+    source.limit(source.position() + bytes);
+    target.put(source);
+    source.limit(limit);
+    return bytes;
+  }
+
+  private static ByteBuffer allocateBuffer(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+  }
+}
@@ -35,6 +35,7 @@ import androidx.media3.common.AudioAttributes;
 import androidx.media3.common.AuxEffectInfo;
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.MimeTypes;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.PlaybackParameters;
@@ -571,9 +572,11 @@ public abstract class DecoderAudioRenderer<
         }
         inputBuffer.flip();
         inputBuffer.format = inputFormat;
+        int inputSize = inputBuffer.data != null ? inputBuffer.data.limit() : 0;
         decoder.queueInputBuffer(inputBuffer);
         decoderReceivedBuffers = true;
         decoderCounters.queuedInputBufferCount++;
+        decoderCounters.queuedInputByteCount += inputSize;
         inputBuffer = null;
         return true;
       default:
@@ -707,6 +710,13 @@ public abstract class DecoderAudioRenderer<
       throws ExoPlaybackException {
     super.onStreamChanged(formats, startPositionUs, offsetUs, mediaPeriodId);
     firstStreamSampleRead = false;
+    @Nullable MediaItem mediaItem = getMediaItem(mediaPeriodId);
+    if (mediaItem != null) {
+      audioSink.setStreamMediaItem(
+          offsetUs,
+          mediaItem,
+          /* startsAtBeginning= */ isStartOfMediaItem(mediaPeriodId, startPositionUs - offsetUs));
+    }
     if (outputStreamOffsetUs == C.TIME_UNSET) {
       setOutputStreamOffsetUs(offsetUs);
     } else {
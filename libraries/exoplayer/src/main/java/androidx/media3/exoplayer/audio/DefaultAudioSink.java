@@ -45,6 +45,7 @@ import androidx.media3.common.AudioAttributes;
 import androidx.media3.common.AuxEffectInfo;
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.MimeTypes;
 import androidx.media3.common.PlaybackParameters;
 import androidx.media3.common.audio.AudioProcessingPipeline;
@@ -122,6 +123,11 @@ public final class DefaultAudioSink implements AudioSink {
   /** The time it takes to ramp AudioTrack's volume up or down when pausing or starting to play. */
   private static final int AUDIO_TRACK_VOLUME_RAMP_TIME_MS = 20;
 
+  /**
+   * The maximum number of streams whose {@link MediaItem} is kept until their output offset is set.
+   */
+  private static final int MAX_PENDING_STREAM_MEDIA_ITEMS = 16;
+
   /**
    * Thrown when the audio track has provided a spurious timestamp, if {@link
    * #failOnSpuriousAudioTimestamp} is set.
@@ -279,6 +285,10 @@ public final class DefaultAudioSink implements AudioSink {
     @Nullable private androidx.media3.common.audio.AudioProcessorChain audioProcessorChain;
     private boolean enableFloatOutput;
     private boolean enableAudioTrackPlaybackParams;
+    private boolean enableInPlaceAudioProcessing;
+    private long crossfadeDurationUs;
+    private @CrossfadeAudioProcessor.FadeCurve int crossfadeCurve;
+    @Nullable private LoudnessAudioProcessor loudnessAudioProcessor;
 
     private boolean buildCalled;
     private AudioTrackBufferSizeProvider audioTrackBufferSizeProvider;
@@ -295,6 +305,7 @@ public final class DefaultAudioSink implements AudioSink {
       audioCapabilities = DEFAULT_AUDIO_CAPABILITIES;
       audioTrackBufferSizeProvider = AudioTrackBufferSizeProvider.DEFAULT;
       audioTrackProvider = AudioTrackProvider.DEFAULT;
+      crossfadeCurve = CrossfadeAudioProcessor.FADE_CURVE_EQUAL_POWER;
     }
 
     /**
@@ -307,6 +318,7 @@ public final class DefaultAudioSink implements AudioSink {
       audioCapabilities = DEFAULT_AUDIO_CAPABILITIES;
       audioTrackBufferSizeProvider = AudioTrackBufferSizeProvider.DEFAULT;
       audioTrackProvider = AudioTrackProvider.DEFAULT;
+      crossfadeCurve = CrossfadeAudioProcessor.FADE_CURVE_EQUAL_POWER;
     }
 
     /**
@@ -379,6 +391,61 @@ public final class DefaultAudioSink implements AudioSink {
       return this;
     }
 
+    /**
+     * Sets whether audio processors may process the output of the preceding processor in place,
+     * rather than copying it to a buffer of their own. See {@link
+     * AudioProcessingPipeline#AudioProcessingPipeline(ImmutableList, boolean)} for the requirements
+     * on the audio processors.
+     *
+     * <p>The default value is {@code false}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setEnableInPlaceAudioProcessing(boolean enableInPlaceAudioProcessing) {
+      this.enableInPlaceAudioProcessing = enableInPlaceAudioProcessing;
+      return this;
+    }
+
+    /**
+     * Sets the duration for which the end of each stream is crossfaded with the start of the next
+     * one, when playing a sequence of streams with the same format without a seek in between.
+     *
+     * <p>The overlapping audio is held back and mixed in the PCM audio processing pipeline, so the
+     * crossfade doesn't apply to offloaded or passthrough playback. See {@link
+     * CrossfadeAudioProcessor} for details.
+     *
+     * <p>The default duration is zero, which disables crossfading.
+     *
+     * @param crossfadeDurationUs The crossfade duration, in microseconds.
+     * @param crossfadeCurve The {@link CrossfadeAudioProcessor.FadeCurve} to apply. The default is
+     *     {@link CrossfadeAudioProcessor#FADE_CURVE_EQUAL_POWER}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setCrossfade(
+        long crossfadeDurationUs, @CrossfadeAudioProcessor.FadeCurve int crossfadeCurve) {
+      Assertions.checkArgument(crossfadeDurationUs >= 0);
+      this.crossfadeDurationUs = crossfadeDurationUs;
+      this.crossfadeCurve = crossfadeCurve;
+      return this;
+    }
+
+    /**
+     * Sets a {@link LoudnessAudioProcessor} to measure the loudness of PCM audio and normalize it.
+     * The processor is applied after trimming gapless padding and before any crossfade, so that it
+     * processes each stream on its own.
+     *
+     * <p>The default value is {@code null}, which disables loudness measurement and normalization.
+     *
+     * @param loudnessAudioProcessor The {@link LoudnessAudioProcessor}, or null.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setLoudnessAudioProcessor(
+        @Nullable LoudnessAudioProcessor loudnessAudioProcessor) {
+      this.loudnessAudioProcessor = loudnessAudioProcessor;
+      return this;
+    }
+
     /**
      * Sets an {@link AudioTrackBufferSizeProvider} to compute the buffer size when {@link
      * #configure} is called with {@code specifiedBufferSize == 0}.
@@ -516,12 +583,16 @@ public final class DefaultAudioSink implements AudioSink {
   @Nullable private final Context context;
   private final androidx.media3.common.audio.AudioProcessorChain audioProcessorChain;
   private final boolean enableFloatOutput;
+  private final boolean enableInPlaceAudioProcessing;
   private final ChannelMappingAudioProcessor channelMappingAudioProcessor;
   private final TrimmingAudioProcessor trimmingAudioProcessor;
+  private final CrossfadeAudioProcessor crossfadeAudioProcessor;
   private final ImmutableList<AudioProcessor> toIntPcmAvailableAudioProcessors;
   private final ImmutableList<AudioProcessor> toFloatPcmAvailableAudioProcessors;
   private final AudioTrackPositionTracker audioTrackPositionTracker;
   private final ArrayDeque<MediaPositionParameters> mediaPositionParametersCheckpoints;
+  @Nullable private final LoudnessAudioProcessor loudnessAudioProcessor;
+  private final ArrayDeque<PendingStreamMediaItem> pendingStreamMediaItems;
   private final boolean preferAudioTrackPlaybackParams;
   private @OffloadMode int offloadMode;
   private @MonotonicNonNull StreamEventCallbackV29 offloadStreamEventCallbackV29;
@@ -559,6 +630,7 @@ public final class DefaultAudioSink implements AudioSink {
   private int framesPerEncodedSample;
   private boolean startMediaTimeUsNeedsSync;
   private boolean startMediaTimeUsNeedsInit;
+  private boolean streamChangePending;
   private long startMediaTimeUs;
   private float volume;
 
@@ -591,6 +663,7 @@ public final class DefaultAudioSink implements AudioSink {
     audioCapabilities = context != null ? null : builder.audioCapabilities;
     audioProcessorChain = builder.audioProcessorChain;
     enableFloatOutput = builder.enableFloatOutput;
+    enableInPlaceAudioProcessing = builder.enableInPlaceAudioProcessing;
     preferAudioTrackPlaybackParams = Util.SDK_INT >= 23 && builder.enableAudioTrackPlaybackParams;
     offloadMode = OFFLOAD_MODE_DISABLED;
     audioTrackBufferSizeProvider = builder.audioTrackBufferSizeProvider;
@@ -598,12 +671,28 @@ public final class DefaultAudioSink implements AudioSink {
     audioTrackPositionTracker = new AudioTrackPositionTracker(new PositionTrackerListener());
     channelMappingAudioProcessor = new ChannelMappingAudioProcessor();
     trimmingAudioProcessor = new TrimmingAudioProcessor();
+    crossfadeAudioProcessor =
+        new CrossfadeAudioProcessor(builder.crossfadeDurationUs, builder.crossfadeCurve);
+    loudnessAudioProcessor = builder.loudnessAudioProcessor;
+    ImmutableList<AudioProcessor> pcmAudioProcessors =
+        loudnessAudioProcessor != null
+            ? ImmutableList.of(
+                channelMappingAudioProcessor,
+                trimmingAudioProcessor,
+                loudnessAudioProcessor,
+                crossfadeAudioProcessor)
+            : ImmutableList.of(
+                channelMappingAudioProcessor, trimmingAudioProcessor, crossfadeAudioProcessor);
     toIntPcmAvailableAudioProcessors =
-        ImmutableList.of(
-            new ToInt16PcmAudioProcessor(), channelMappingAudioProcessor, trimmingAudioProcessor);
+        new ImmutableList.Builder<AudioProcessor>()
+            .add(new ToInt16PcmAudioProcessor())
+            .addAll(pcmAudioProcessors)
+            .build();
     toFloatPcmAvailableAudioProcessors =
-        ImmutableList.of(
-            new ToFloatPcmAudioProcessor(), channelMappingAudioProcessor, trimmingAudioProcessor);
+        new ImmutableList.Builder<AudioProcessor>()
+            .add(new ToFloatPcmAudioProcessor())
+            .addAll(pcmAudioProcessors)
+            .build();
     volume = 1f;
     audioSessionId = C.AUDIO_SESSION_ID_UNSET;
     auxEffectInfo = new AuxEffectInfo(AuxEffectInfo.NO_AUX_EFFECT_ID, 0f);
@@ -613,6 +702,7 @@ public final class DefaultAudioSink implements AudioSink {
     playbackParameters = PlaybackParameters.DEFAULT;
     skipSilenceEnabled = DEFAULT_SKIP_SILENCE;
     mediaPositionParametersCheckpoints = new ArrayDeque<>();
+    pendingStreamMediaItems = new ArrayDeque<>();
     initializationExceptionPendingExceptionHolder = new PendingExceptionHolder<>();
     writeExceptionPendingExceptionHolder = new PendingExceptionHolder<>();
     audioOffloadListener = builder.audioOffloadListener;
@@ -707,7 +797,8 @@ public final class DefaultAudioSink implements AudioSink {
         pipelineProcessors.addAll(toIntPcmAvailableAudioProcessors);
         pipelineProcessors.add(audioProcessorChain.getAudioProcessors());
       }
-      audioProcessingPipeline = new AudioProcessingPipeline(pipelineProcessors.build());
+      audioProcessingPipeline =
+          new AudioProcessingPipeline(pipelineProcessors.build(), enableInPlaceAudioProcessing);
 
       // If the underlying processors of the new pipeline are the same as the existing pipeline,
       // then use the existing one when the configuration is used.
@@ -895,6 +986,15 @@ public final class DefaultAudioSink implements AudioSink {
     Assertions.checkArgument(inputBuffer == null || buffer == inputBuffer);
 
     if (pendingConfiguration != null) {
+      if (streamChangePending && startMediaTimeUsNeedsSync) {
+        // The previous stream has ended.
+        setLoudnessStreamEndPending();
+        if (pendingConfiguration.canReuseAudioTrack(configuration)) {
+          // Hold back the end of the previous stream to crossfade into the next stream.
+          crossfadeAudioProcessor.setStreamTransitionPending(true);
+        }
+        streamChangePending = false;
+      }
       if (!drainToEndOfStream()) {
         // There's still pending data in audio processors to write to the track.
         return false;
@@ -947,6 +1047,8 @@ public final class DefaultAudioSink implements AudioSink {
       startMediaTimeUs = max(0, presentationTimeUs);
       startMediaTimeUsNeedsSync = false;
       startMediaTimeUsNeedsInit = false;
+      // There's no previous stream to crossfade from.
+      streamChangePending = false;
 
       if (useAudioTrackPlaybackParams()) {
         setAudioTrackPlaybackParametersV23();
@@ -1006,6 +1108,13 @@ public final class DefaultAudioSink implements AudioSink {
         startMediaTimeUsNeedsSync = true;
       }
       if (startMediaTimeUsNeedsSync) {
+        if (streamChangePending) {
+          // The previous stream has ended, so hold back its end to crossfade into the next stream.
+          // Other discontinuities, like timestamp jumps within a stream, aren't crossfaded.
+          crossfadeAudioProcessor.setStreamTransitionPending(true);
+          setLoudnessStreamEndPending();
+          streamChangePending = false;
+        }
         if (!drainToEndOfStream()) {
           // Don't update timing until pending AudioProcessor buffers are completely drained.
           return false;
@@ -1326,7 +1435,11 @@ public final class DefaultAudioSink implements AudioSink {
 
   @Override
   public void playToEndOfStream() throws WriteException {
-    if (!handledEndOfStream && isAudioTrackInitialized() && drainToEndOfStream()) {
+    if (handledEndOfStream || !isAudioTrackInitialized()) {
+      return;
+    }
+    setLoudnessStreamEndPending();
+    if (drainToEndOfStream()) {
       playPendingData();
       handledEndOfStream = true;
     }
@@ -1478,6 +1591,44 @@ public final class DefaultAudioSink implements AudioSink {
     this.offloadMode = offloadMode;
   }
 
+  @Override
+  public void setOutputStreamOffsetUs(long outputStreamOffsetUs) {
+    // Renderers set the offset when they move on to the next stream, ahead of the discontinuity at
+    // its start.
+    streamChangePending = true;
+    if (loudnessAudioProcessor != null) {
+      @Nullable PendingStreamMediaItem streamMediaItem = null;
+      for (PendingStreamMediaItem pendingStreamMediaItem : pendingStreamMediaItems) {
+        if (pendingStreamMediaItem.outputStreamOffsetUs == outputStreamOffsetUs) {
+          streamMediaItem = pendingStreamMediaItem;
+          break;
+        }
+      }
+      if (streamMediaItem != null) {
+        // Also remove the items of streams that were replaced before they started playing.
+        while (pendingStreamMediaItems.remove() != streamMediaItem) {}
+        loudnessAudioProcessor.setNextStream(
+            streamMediaItem.mediaItem, streamMediaItem.startsAtBeginning);
+      } else {
+        loudnessAudioProcessor.setNextStream(
+            /* mediaItem= */ null, /* startsAtBeginning= */ false);
+      }
+    }
+  }
+
+  @Override
+  public void setStreamMediaItem(
+      long outputStreamOffsetUs, MediaItem mediaItem, boolean startsAtBeginning) {
+    if (loudnessAudioProcessor == null) {
+      return;
+    }
+    if (pendingStreamMediaItems.size() == MAX_PENDING_STREAM_MEDIA_ITEMS) {
+      pendingStreamMediaItems.remove();
+    }
+    pendingStreamMediaItems.add(
+        new PendingStreamMediaItem(outputStreamOffsetUs, mediaItem, startsAtBeginning));
+  }
+
   @RequiresApi(29)
   @Override
   public void setOffloadDelayPadding(int delayInFrames, int paddingInFrames) {
@@ -1562,6 +1713,7 @@ public final class DefaultAudioSink implements AudioSink {
     }
     playing = false;
     offloadDisabledUntilNextConfiguration = false;
+    pendingStreamMediaItems.clear();
   }
 
   @Override
@@ -1618,9 +1770,21 @@ public final class DefaultAudioSink implements AudioSink {
     avSyncHeader = null;
     bytesUntilNextAvSync = 0;
     trimmingAudioProcessor.resetTrimmedFrameCount();
+    streamChangePending = false;
+    crossfadeAudioProcessor.setStreamTransitionPending(false);
+    if (loudnessAudioProcessor != null) {
+      // The current stream is interrupted, for example by a seek.
+      loudnessAudioProcessor.discardMeasurement();
+    }
     setupAudioProcessors();
   }
 
+  private void setLoudnessStreamEndPending() {
+    if (loudnessAudioProcessor != null) {
+      loudnessAudioProcessor.setStreamEndPending(true);
+    }
+  }
+
   @RequiresApi(23)
   private void setAudioTrackPlaybackParametersV23() {
     if (isAudioTrackInitialized()) {
@@ -1697,7 +1861,8 @@ public final class DefaultAudioSink implements AudioSink {
     //   https://github.com/google/ExoPlayer/issues/4803);
     // - when playing encoded audio via passthrough/offload, because modifying the audio stream
     //   would require decoding/re-encoding; and
-    // - when outputting float PCM audio, because SonicAudioProcessor outputs 16-bit integer PCM.
+    // - when outputting float PCM audio, because the audio processors in the default chain, such as
+    //   SilenceSkippingAudioProcessor, only handle 16-bit integer PCM.
     return !tunneling
         && configuration.outputMode == OUTPUT_MODE_PCM
         && !shouldUseFloatOutput(configuration.inputFormat.pcmEncoding);
@@ -2084,6 +2249,21 @@ public final class DefaultAudioSink implements AudioSink {
     }
   }
 
+  /** The {@link MediaItem} of a stream whose output offset hasn't been set yet. */
+  private static final class PendingStreamMediaItem {
+
+    public final long outputStreamOffsetUs;
+    public final MediaItem mediaItem;
+    public final boolean startsAtBeginning;
+
+    public PendingStreamMediaItem(
+        long outputStreamOffsetUs, MediaItem mediaItem, boolean startsAtBeginning) {
+      this.outputStreamOffsetUs = outputStreamOffsetUs;
+      this.mediaItem = mediaItem;
+      this.startsAtBeginning = startsAtBeginning;
+    }
+  }
+
   /** Stores parameters used to calculate the current media position. */
   private static final class MediaPositionParameters {
 
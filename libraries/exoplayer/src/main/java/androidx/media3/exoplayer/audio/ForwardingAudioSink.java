@@ -21,6 +21,7 @@ import androidx.annotation.RequiresApi;
 import androidx.media3.common.AudioAttributes;
 import androidx.media3.common.AuxEffectInfo;
 import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.PlaybackParameters;
 import androidx.media3.common.util.Clock;
 import androidx.media3.common.util.UnstableApi;
@@ -162,6 +163,12 @@ public class ForwardingAudioSink implements AudioSink {
     sink.setOutputStreamOffsetUs(outputStreamOffsetUs);
   }
 
+  @Override
+  public void setStreamMediaItem(
+      long outputStreamOffsetUs, MediaItem mediaItem, boolean startsAtBeginning) {
+    sink.setStreamMediaItem(outputStreamOffsetUs, mediaItem, startsAtBeginning);
+  }
+
   @Override
   public void enableTunnelingV21() {
     sink.enableTunnelingV21();
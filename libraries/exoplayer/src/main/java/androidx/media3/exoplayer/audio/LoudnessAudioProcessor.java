@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.audio;
+
+import static androidx.media3.common.util.Assertions.checkArgument;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.audio.AudioProcessor;
+import androidx.media3.common.audio.BaseAudioProcessor;
+import androidx.media3.common.audio.LoudnessMeter;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.common.util.Util;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link AudioProcessor} that measures the integrated loudness of each stream with a {@link
+ * LoudnessMeter}, and applies a gain to normalize the loudness of streams measured before.
+ *
+ * <p>The loudness is measured before the gain is applied, in the same pass over the input and
+ * without buffering any audio. In an {@link androidx.media3.common.audio.AudioProcessingPipeline}
+ * that allows in-place processing, the input is overwritten rather than copied.
+ *
+ * <p>When the processor is {@linkplain DefaultAudioSink.Builder#setLoudnessAudioProcessor set on a
+ * DefaultAudioSink}, the audio renderers tell it the {@link MediaItem} of each stream. The {@link
+ * Listener} then receives the loudness of each item that was played from its beginning to its end,
+ * and the {@link GainProvider} provides the gain of each item as it starts. A {@link
+ * CacheLoudnessStore} can be used as both, so that items are normalized when they're played again.
+ *
+ * <p>Only items that are played from their start are measured, since the loudness of the whole
+ * item is needed. Items resumed from a saved position or seeked in, live items, items with several
+ * periods and ads aren't measured. For clipped items, the loudness of the clip is measured. The
+ * gain of each item is provided however it's played.
+ */
+@UnstableApi
+public final class LoudnessAudioProcessor extends BaseAudioProcessor {
+
+  /** Receives loudness measurements. */
+  public interface Listener {
+
+    /**
+     * Called on the playback thread when a stream that was played from its beginning has ended.
+     *
+     * <p>Streams that were seeked in, or whose playback was stopped before their end, aren't
+     * reported.
+     *
+     * @param mediaItem The {@link MediaItem} of the stream.
+     * @param integratedLoudnessLufs The integrated loudness, in LUFS. See {@link
+     *     LoudnessMeter#getIntegratedLoudness()}.
+     * @param measuredDurationUs The duration of the measured audio, in microseconds.
+     */
+    void onLoudnessMeasured(
+        MediaItem mediaItem, double integratedLoudnessLufs, long measuredDurationUs);
+  }
+
+  /** Provides the gain to apply to the stream of a {@link MediaItem}. */
+  public interface GainProvider {
+
+    /**
+     * Returns the linear gain to apply to a stream. Called on the playback thread when the stream
+     * starts.
+     *
+     * @param mediaItem The {@link MediaItem} of the stream.
+     */
+    float getGain(MediaItem mediaItem);
+  }
+
+  /** The default target loudness, in LUFS, which is commonly used by music streaming services. */
+  public static final double DEFAULT_TARGET_LOUDNESS_LUFS = -14;
+
+  @Nullable private final Listener listener;
+  @Nullable private final GainProvider gainProvider;
+
+  private volatile float pendingGain;
+  private float gain;
+  @Nullable private LoudnessMeter pendingLoudnessMeter;
+  @Nullable private LoudnessMeter loudnessMeter;
+
+  private boolean nextStreamPending;
+  @Nullable private MediaItem nextStreamMediaItem;
+  private boolean nextStreamStartsAtBeginning;
+  @Nullable private MediaItem streamMediaItem;
+  private boolean measuringWholeStream;
+  private boolean streamEndPending;
+
+  /**
+   * Creates an instance that applies the {@linkplain #setGain(float) gain set by the app}.
+   *
+   * @param listener The {@link Listener} to receive measurements, or null to not measure loudness.
+   */
+  public LoudnessAudioProcessor(@Nullable Listener listener) {
+    this(listener, /* gainProvider= */ null);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param listener The {@link Listener} to receive measurements, or null to not measure loudness.
+   * @param gainProvider The {@link GainProvider} of the gain of each stream whose {@link MediaItem}
+   *     is known, or null to apply the {@linkplain #setGain(float) gain set by the app} to all
+   *     streams.
+   */
+  public LoudnessAudioProcessor(
+      @Nullable Listener listener, @Nullable GainProvider gainProvider) {
+    this.listener = listener;
+    this.gainProvider = gainProvider;
+    pendingGain = 1f;
+    gain = 1f;
+  }
+
+  /**
+   * Returns the linear gain that changes a measured loudness to a target loudness.
+   *
+   * @param integratedLoudnessLufs The measured integrated loudness, in LUFS.
+   * @param targetLoudnessLufs The target loudness, in LUFS.
+   * @return The gain, or 1 if the measured loudness isn't finite.
+   */
+  public static float getGainForTargetLoudness(
+      double integratedLoudnessLufs, double targetLoudnessLufs) {
+    if (Double.isInfinite(integratedLoudnessLufs) || Double.isNaN(integratedLoudnessLufs)) {
+      return 1f;
+    }
+    return (float) Math.pow(10, (targetLoudnessLufs - integratedLoudnessLufs) / 20);
+  }
+
+  /**
+   * Sets the linear gain to apply to streams whose gain isn't provided by the {@link
+   * GainProvider}. The gain applies from the next time the processor is flushed, which happens at
+   * the start of the next stream or on a seek. This method can be called from any thread.
+   *
+   * <p>16-bit samples are clipped if the gain makes them exceed full scale.
+   *
+   * @param gain The gain. The default is 1, which leaves the audio unchanged.
+   */
+  public void setGain(float gain) {
+    checkArgument(gain >= 0);
+    this.pendingGain = gain;
+  }
+
+  /**
+   * Sets the {@link MediaItem} of the next stream, which starts when the processor is next
+   * flushed.
+   *
+   * @param mediaItem The {@link MediaItem}, or null if it's unknown.
+   * @param startsAtBeginning Whether the stream starts at the beginning of the {@link MediaItem}.
+   */
+  /* package */ void setNextStream(@Nullable MediaItem mediaItem, boolean startsAtBeginning) {
+    nextStreamPending = true;
+    nextStreamMediaItem = mediaItem;
+    nextStreamStartsAtBeginning = startsAtBeginning;
+  }
+
+  /**
+   * Sets whether the end of stream about to be queued is the real end of the current stream,
+   * rather than a drain within it. Cleared when the processor is flushed.
+   */
+  /* package */ void setStreamEndPending(boolean streamEndPending) {
+    this.streamEndPending = streamEndPending;
+  }
+
+  /** Discards the measurement of the current stream, for example because it was seeked in. */
+  /* package */ void discardMeasurement() {
+    measuringWholeStream = false;
+  }
+
+  @Override
+  protected AudioFormat onConfigure(AudioFormat inputAudioFormat)
+      throws UnhandledAudioFormatException {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
+      throw new UnhandledAudioFormatException(inputAudioFormat);
+    }
+    // The current meter is still used until the next flush, so create one for the new format.
+    pendingLoudnessMeter =
+        listener != null
+                && (loudnessMeter == null
+                    || inputAudioFormat.sampleRate != this.inputAudioFormat.sampleRate
+                    || inputAudioFormat.channelCount != this.inputAudioFormat.channelCount)
+            ? new LoudnessMeter(inputAudioFormat.sampleRate, inputAudioFormat.channelCount)
+            : null;
+    // Stay active even if the gain is currently 1, so that a later gain applies without
+    // reconfiguring the pipeline.
+    return inputAudioFormat;
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    int position = inputBuffer.position();
+    int limit = inputBuffer.limit();
+    int size = limit - position;
+    if (size == 0) {
+      return;
+    }
+    @Nullable LoudnessMeter loudnessMeter = this.loudnessMeter;
+    float gain = this.gain;
+    ByteBuffer buffer =
+        isInPlaceProcessingEnabled()
+            ? replaceOutputBufferInPlace(inputBuffer)
+            : replaceOutputBuffer(size);
+    if (inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT) {
+      for (int i = position; i < limit; i += 4) {
+        float sample = inputBuffer.getFloat(i);
+        if (loudnessMeter != null) {
+          loudnessMeter.addSample(sample);
+        }
+        buffer.putFloat(sample * gain);
+      }
+    } else {
+      for (int i = position; i < limit; i += 2) {
+        short sample = inputBuffer.getShort(i);
+        if (loudnessMeter != null) {
+          loudnessMeter.addSample(sample / 32768f);
+        }
+        buffer.putShort(
+            gain == 1f
+                ? sample
+                : (short) Util.constrainValue(sample * gain, Short.MIN_VALUE, Short.MAX_VALUE));
+      }
+    }
+    inputBuffer.position(limit);
+    buffer.flip();
+  }
+
+  @Override
+  protected void onQueueEndOfStream() {
+    if (!streamEndPending) {
+      // The input is drained within the stream, for example to change the playback parameters.
+      return;
+    }
+    if (listener != null
+        && measuringWholeStream
+        && streamMediaItem != null
+        && loudnessMeter != null
+        && loudnessMeter.getFrameCount() > 0) {
+      listener.onLoudnessMeasured(
+          streamMediaItem,
+          loudnessMeter.getIntegratedLoudness(),
+          Util.sampleCountToDurationUs(loudnessMeter.getFrameCount(), inputAudioFormat.sampleRate));
+    }
+    measuringWholeStream = false;
+  }
+
+  @Override
+  protected void onFlush() {
+    if (pendingLoudnessMeter != null) {
+      loudnessMeter = pendingLoudnessMeter;
+      pendingLoudnessMeter = null;
+      // The new meter can't continue the measurement of the previous format.
+      measuringWholeStream = false;
+    }
+    if (nextStreamPending) {
+      nextStreamPending = false;
+      streamMediaItem = nextStreamMediaItem;
+      measuringWholeStream = nextStreamStartsAtBeginning;
+      if (loudnessMeter != null) {
+        loudnessMeter.reset();
+      }
+    }
+    // Other flushes, like those after draining for playback parameter changes, continue the
+    // current stream.
+    streamEndPending = false;
+    gain =
+        gainProvider != null && streamMediaItem != null
+            ? gainProvider.getGain(streamMediaItem)
+            : pendingGain;
+  }
+
+  @Override
+  protected void onReset() {
+    gain = 1f;
+    pendingLoudnessMeter = null;
+    loudnessMeter = null;
+    nextStreamPending = false;
+    nextStreamMediaItem = null;
+    streamMediaItem = null;
+    measuringWholeStream = false;
+    streamEndPending = false;
+  }
+}
@@ -38,6 +38,7 @@ import androidx.media3.common.AudioAttributes;
 import androidx.media3.common.AuxEffectInfo;
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.MimeTypes;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.PlaybackParameters;
@@ -65,6 +66,7 @@ import androidx.media3.exoplayer.mediacodec.MediaCodecRenderer;
 import androidx.media3.exoplayer.mediacodec.MediaCodecSelector;
 import androidx.media3.exoplayer.mediacodec.MediaCodecUtil;
 import androidx.media3.exoplayer.mediacodec.MediaCodecUtil.DecoderQueryException;
+import androidx.media3.exoplayer.source.MediaSource;
 import androidx.media3.extractor.VorbisUtil;
 import com.google.common.collect.ImmutableList;
 import java.nio.ByteBuffer;
@@ -672,6 +674,24 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     audioSink.setClock(getClock());
   }
 
+  @Override
+  protected void onStreamChanged(
+      Format[] formats,
+      long startPositionUs,
+      long offsetUs,
+      MediaSource.MediaPeriodId mediaPeriodId)
+      throws ExoPlaybackException {
+    // Set before the superclass sets the output stream offset, which it may do immediately.
+    @Nullable MediaItem mediaItem = getMediaItem(mediaPeriodId);
+    if (mediaItem != null) {
+      audioSink.setStreamMediaItem(
+          offsetUs,
+          mediaItem,
+          /* startsAtBeginning= */ isStartOfMediaItem(mediaPeriodId, startPositionUs - offsetUs));
+    }
+    super.onStreamChanged(formats, startPositionUs, offsetUs, mediaPeriodId);
+  }
+
   @Override
   protected void onPositionReset(long positionUs, boolean joining) throws ExoPlaybackException {
     super.onPositionReset(positionUs, joining);
@@ -83,7 +83,12 @@ public final class TeeAudioProcessor extends BaseAudioProcessor {
       return;
     }
     audioBufferSink.handleBuffer(Util.createReadOnlyByteBuffer(inputBuffer));
-    replaceOutputBuffer(remaining).put(inputBuffer).flip();
+    if (isInPlaceProcessingEnabled()) {
+      replaceOutputBufferInPlace(inputBuffer).position(remaining).flip();
+      inputBuffer.position(inputBuffer.limit());
+    } else {
+      replaceOutputBuffer(remaining).put(inputBuffer).flip();
+    }
   }
 
   @Override
@@ -93,6 +93,7 @@ public class WaveformAudioBufferSink implements TeeAudioProcessor.AudioBufferSin
   private final Listener listener;
   private final SparseArray<WaveformBar> outputChannels;
   private final ByteBuffer mixingBuffer;
+  private final AudioMixingUtil.SampleArrays sampleArrays;
   private @MonotonicNonNull AudioFormat inputAudioFormat;
   private @MonotonicNonNull AudioFormat mixingAudioFormat;
   private @MonotonicNonNull ChannelMixingMatrix channelMixingMatrix;
@@ -112,6 +113,7 @@ public class WaveformAudioBufferSink implements TeeAudioProcessor.AudioBufferSin
     this.listener = listener;
     mixingBuffer =
         ByteBuffer.allocate(Util.getPcmFrameSize(C.ENCODING_PCM_FLOAT, outputChannelCount));
+    sampleArrays = new AudioMixingUtil.SampleArrays();
     outputChannels = new SparseArray<>(outputChannelCount);
     for (int i = 0; i < outputChannelCount; i++) {
       outputChannels.append(i, new WaveformBar());
@@ -141,7 +143,8 @@ public class WaveformAudioBufferSink implements TeeAudioProcessor.AudioBufferSin
           channelMixingMatrix,
           /* framesToMix= */ 1,
           /* accumulate= */ false,
-          /* clipFloatOutput= */ true);
+          /* clipFloatOutput= */ true,
+          sampleArrays);
       mixingBuffer.rewind();
       for (int i = 0; i < outputChannels.size(); i++) {
         WaveformBar bar = outputChannels.get(i);
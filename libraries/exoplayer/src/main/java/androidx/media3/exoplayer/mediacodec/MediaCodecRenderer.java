@@ -1468,6 +1468,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
 
     onQueueInputBuffer(buffer);
     int flags = getCodecBufferFlags(buffer);
+    int inputSize = checkNotNull(buffer.data).limit();
     if (bufferEncrypted) {
       checkNotNull(codec)
           .queueSecureInputBuffer(
@@ -1477,7 +1478,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
           .queueInputBuffer(
               inputIndex,
               /* offset= */ 0,
-              checkNotNull(buffer.data).limit(),
+              inputSize,
               presentationTimeUs,
               flags);
     }
@@ -1486,6 +1487,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     codecReceivedBuffers = true;
     codecReconfigurationState = RECONFIGURATION_STATE_NONE;
     decoderCounters.queuedInputBufferCount++;
+    decoderCounters.queuedInputByteCount += inputSize;
     return true;
   }
 
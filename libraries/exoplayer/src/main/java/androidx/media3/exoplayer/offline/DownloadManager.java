@@ -56,6 +56,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Manages downloads.
@@ -234,6 +235,25 @@ public final class DownloadManager {
    */
   public DownloadManager(
       Context context, WritableDownloadIndex downloadIndex, DownloaderFactory downloaderFactory) {
+    this(context, downloadIndex, downloaderFactory, /* taskThreadFactory= */ Thread::new);
+  }
+
+  /**
+   * Constructs a {@link DownloadManager}.
+   *
+   * @param context Any context.
+   * @param downloadIndex The download index used to hold the download information.
+   * @param downloaderFactory A factory for creating {@link Downloader}s.
+   * @param taskThreadFactory A {@link ThreadFactory} for creating the thread on which each download
+   *     or remove task runs. Downloads block their thread while reading data, so a factory that
+   *     creates lightweight threads (for example, virtual threads where available) allows many
+   *     parallel downloads to run cheaply.
+   */
+  public DownloadManager(
+      Context context,
+      WritableDownloadIndex downloadIndex,
+      DownloaderFactory downloaderFactory,
+      ThreadFactory taskThreadFactory) {
     this.context = context.getApplicationContext();
     this.downloadIndex = downloadIndex;
 
@@ -253,6 +273,7 @@ public final class DownloadManager {
             internalThread,
             downloadIndex,
             downloaderFactory,
+            taskThreadFactory,
             mainHandler,
             maxParallelDownloads,
             minRetryCount,
@@ -686,6 +707,7 @@ public final class DownloadManager {
     private final HandlerThread thread;
     private final WritableDownloadIndex downloadIndex;
     private final DownloaderFactory downloaderFactory;
+    private final ThreadFactory taskThreadFactory;
     private final Handler mainHandler;
     private final ArrayList<Download> downloads;
     private final HashMap<String, Task> activeTasks;
@@ -701,6 +723,7 @@ public final class DownloadManager {
         HandlerThread thread,
         WritableDownloadIndex downloadIndex,
         DownloaderFactory downloaderFactory,
+        ThreadFactory taskThreadFactory,
         Handler mainHandler,
         int maxParallelDownloads,
         int minRetryCount,
@@ -709,6 +732,7 @@ public final class DownloadManager {
       this.thread = thread;
       this.downloadIndex = downloadIndex;
       this.downloaderFactory = downloaderFactory;
+      this.taskThreadFactory = taskThreadFactory;
       this.mainHandler = mainHandler;
       this.maxParallelDownloads = maxParallelDownloads;
       this.minRetryCount = minRetryCount;
@@ -1023,7 +1047,7 @@ public final class DownloadManager {
       if (activeDownloadTaskCount++ == 0) {
         sendEmptyMessageDelayed(MSG_UPDATE_PROGRESS, UPDATE_PROGRESS_INTERVAL_MS);
       }
-      activeTask.start();
+      activeTask.start(taskThreadFactory);
       return activeTask;
     }
 
@@ -1063,7 +1087,7 @@ public final class DownloadManager {
               /* internalHandler= */ this);
       activeTasks.put(download.request.id, activeTask);
       hasActiveRemoveTask = true;
-      activeTask.start();
+      activeTask.start(taskThreadFactory);
     }
 
     // Task event processing.
@@ -1282,7 +1306,7 @@ public final class DownloadManager {
     }
   }
 
-  private static class Task extends Thread implements Downloader.ProgressListener {
+  private static class Task implements Runnable, Downloader.ProgressListener {
 
     private final DownloadRequest request;
     private final Downloader downloader;
@@ -1293,6 +1317,7 @@ public final class DownloadManager {
     @Nullable private volatile InternalHandler internalHandler;
     private volatile boolean isCanceled;
     @Nullable private Exception finalException;
+    @Nullable private Thread thread;
 
     private long contentLength;
 
@@ -1312,6 +1337,12 @@ public final class DownloadManager {
       contentLength = C.LENGTH_UNSET;
     }
 
+    public void start(ThreadFactory threadFactory) {
+      Thread thread = threadFactory.newThread(this);
+      this.thread = thread;
+      thread.start();
+    }
+
     @SuppressWarnings("nullness:assignment")
     public void cancel(boolean released) {
       if (released) {
@@ -1324,7 +1355,9 @@ public final class DownloadManager {
       if (!isCanceled) {
         isCanceled = true;
         downloader.cancel();
-        interrupt();
+        if (thread != null) {
+          thread.interrupt();
+        }
       }
     }
 
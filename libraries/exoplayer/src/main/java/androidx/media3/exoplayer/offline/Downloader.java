@@ -18,6 +18,7 @@ package androidx.media3.exoplayer.offline;
 import androidx.annotation.Nullable;
 import androidx.media3.common.C;
 import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSpec;
 import java.io.IOException;
 import java.util.concurrent.CancellationException;
 
@@ -42,6 +43,23 @@ public interface Downloader {
      *     C#PERCENTAGE_UNSET}.
      */
     void onProgress(long contentLength, long bytesDownloaded, float percentDownloaded);
+
+    /**
+     * Called when a segment of the content has been downloaded, by downloaders that download the
+     * content in segments.
+     *
+     * <p>May be called from any thread used by the downloader, and for several segments at once.
+     * In all cases, {@link #download} is guaranteed not to return until after the last call to this
+     * method has finished executing.
+     *
+     * @param dataSpec The {@link DataSpec} defining the segment. Adjacent segments may have been
+     *     merged into a single request.
+     * @param bytesDownloaded The number of bytes downloaded for the segment, excluding any that
+     *     were already cached.
+     * @param downloadDurationMs The time taken to download the segment, in milliseconds.
+     */
+    default void onSegmentDownloaded(
+        DataSpec dataSpec, long bytesDownloaded, long downloadDurationMs) {}
   }
 
   /**
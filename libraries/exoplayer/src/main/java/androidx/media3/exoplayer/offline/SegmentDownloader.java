@@ -15,9 +15,11 @@
  */
 package androidx.media3.exoplayer.offline;
 
+import static androidx.media3.common.util.Assertions.checkArgument;
 import static androidx.media3.common.util.Assertions.checkNotNull;
 
 import android.net.Uri;
+import android.os.SystemClock;
 import androidx.annotation.Nullable;
 import androidx.media3.common.C;
 import androidx.media3.common.MediaItem;
@@ -90,6 +92,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   private final Executor executor;
   private final long maxMergedSegmentStartTimeDiffUs;
 
+  private int maxParallelSegmentDownloads;
+  private long maxMergedSegmentGapBytes;
+
   /**
    * The currently active runnables.
    *
@@ -149,6 +154,39 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     priorityTaskManager = cacheDataSourceFactory.getUpstreamPriorityTaskManager();
     activeRunnables = new ArrayList<>();
     maxMergedSegmentStartTimeDiffUs = Util.msToUs(maxMergedSegmentStartTimeDiffMs);
+    maxParallelSegmentDownloads = Integer.MAX_VALUE;
+  }
+
+  /**
+   * Sets the maximum number of segments that are downloaded in parallel. The default is {@link
+   * Integer#MAX_VALUE}, in which case the number is limited only by the number of threads used by
+   * the {@link Executor}.
+   *
+   * <p>Must be called before {@link #download}.
+   *
+   * @param maxParallelSegmentDownloads The maximum number of segments downloaded in parallel.
+   */
+  public final void setMaxParallelSegmentDownloads(int maxParallelSegmentDownloads) {
+    checkArgument(maxParallelSegmentDownloads > 0);
+    this.maxParallelSegmentDownloads = maxParallelSegmentDownloads;
+  }
+
+  /**
+   * Sets the maximum number of bytes between the byte ranges of two segments of the same resource,
+   * up to which the segments are merged into a single request. The bytes between the segments are
+   * downloaded as part of the merged request. The default is 0, in which case only segments whose
+   * byte ranges are adjacent are merged.
+   *
+   * <p>Segments are only merged if their start times are also within the {@code
+   * maxMergedSegmentStartTimeDiffMs} passed to the constructor.
+   *
+   * <p>Must be called before {@link #download}.
+   *
+   * @param maxMergedSegmentGapBytes The maximum gap between merged segments, in bytes.
+   */
+  public final void setMaxMergedSegmentGapBytes(long maxMergedSegmentGapBytes) {
+    checkArgument(maxMergedSegmentGapBytes >= 0);
+    this.maxMergedSegmentGapBytes = maxMergedSegmentGapBytes;
   }
 
   @Override
@@ -171,7 +209,8 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       // Sort the segments so that we download media in the right order from the start of the
       // content, and merge segments where possible to minimize the number of server round trips.
       Collections.sort(segments);
-      mergeSegments(segments, cacheKeyFactory, maxMergedSegmentStartTimeDiffUs);
+      mergeSegments(
+          segments, cacheKeyFactory, maxMergedSegmentStartTimeDiffUs, maxMergedSegmentGapBytes);
 
       // Scan the segments, removing any that are fully downloaded.
       int totalSegments = segments.size();
@@ -224,6 +263,11 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
           priorityTaskManager.proceed(C.PRIORITY_DOWNLOAD);
         }
 
+        // Wait for the oldest runnable to finish if the maximum number of segments are in flight.
+        while (activeRunnables.size() >= maxParallelSegmentDownloads) {
+          finishActiveRunnable(/* index= */ 0, pendingSegments, recycledRunnables);
+        }
+
         // Create and execute a runnable to download the next segment.
         CacheDataSource segmentDataSource;
         byte[] temporaryBuffer;
@@ -249,24 +293,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
           // to start. If we do have pending segments to start then only process the runnable if
           // it's already finished.
           if (pendingSegments.isEmpty() || activeRunnable.isDone()) {
-            try {
-              activeRunnable.get();
-              removeActiveRunnable(j);
-              recycledRunnables.addLast(activeRunnable);
-            } catch (ExecutionException e) {
-              Throwable cause = Assertions.checkNotNull(e.getCause());
-              if (cause instanceof PriorityTooLowException) {
-                // We need to schedule this segment again in a future loop iteration.
-                pendingSegments.addFirst(activeRunnable.segment);
-                removeActiveRunnable(j);
-                recycledRunnables.addLast(activeRunnable);
-              } else if (cause instanceof IOException) {
-                throw (IOException) cause;
-              } else {
-                // The cause must be an uncaught Throwable type.
-                Util.sneakyThrow(cause);
-              }
-            }
+            finishActiveRunnable(j, pendingSegments, recycledRunnables);
           }
         }
 
@@ -421,6 +448,43 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     return new DataSpec.Builder().setUri(uri).setFlags(DataSpec.FLAG_ALLOW_GZIP).build();
   }
 
+  /**
+   * Blocks until the active {@link SegmentDownloadRunnable} at {@code index} has finished, and then
+   * removes it from the active runnables.
+   *
+   * @param index The index of the runnable in {@link #activeRunnables}.
+   * @param pendingSegments The segments still to be downloaded, to which the runnable's segment is
+   *     added if it needs to be downloaded again.
+   * @param recycledRunnables The runnables whose resources can be reused.
+   * @throws IOException If the runnable failed to download its segment.
+   * @throws InterruptedException If the thread was interrupted.
+   */
+  private void finishActiveRunnable(
+      int index,
+      ArrayDeque<Segment> pendingSegments,
+      ArrayDeque<SegmentDownloadRunnable> recycledRunnables)
+      throws IOException, InterruptedException {
+    SegmentDownloadRunnable activeRunnable = (SegmentDownloadRunnable) activeRunnables.get(index);
+    try {
+      activeRunnable.get();
+      removeActiveRunnable(index);
+      recycledRunnables.addLast(activeRunnable);
+    } catch (ExecutionException e) {
+      Throwable cause = Assertions.checkNotNull(e.getCause());
+      if (cause instanceof PriorityTooLowException) {
+        // We need to schedule this segment again in a future loop iteration.
+        pendingSegments.addFirst(activeRunnable.segment);
+        removeActiveRunnable(index);
+        recycledRunnables.addLast(activeRunnable);
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else {
+        // The cause must be an uncaught Throwable type.
+        Util.sneakyThrow(cause);
+      }
+    }
+  }
+
   private <T> void addActiveRunnable(RunnableFutureTask<T, ?> runnable)
       throws InterruptedException {
     synchronized (activeRunnables) {
@@ -444,7 +508,10 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   }
 
   private static void mergeSegments(
-      List<Segment> segments, CacheKeyFactory keyFactory, long maxMergedSegmentStartTimeDiffUs) {
+      List<Segment> segments,
+      CacheKeyFactory keyFactory,
+      long maxMergedSegmentStartTimeDiffUs,
+      long maxMergedSegmentGapBytes) {
     HashMap<String, Integer> lastIndexByCacheKey = new HashMap<>();
     int nextOutIndex = 0;
     for (int i = 0; i < segments.size(); i++) {
@@ -454,7 +521,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       @Nullable Segment lastSegment = lastIndex == null ? null : segments.get(lastIndex);
       if (lastSegment == null
           || segment.startTimeUs > lastSegment.startTimeUs + maxMergedSegmentStartTimeDiffUs
-          || !canMergeSegments(lastSegment.dataSpec, segment.dataSpec)) {
+          || !canMergeSegments(lastSegment.dataSpec, segment.dataSpec, maxMergedSegmentGapBytes)) {
         lastIndexByCacheKey.put(cacheKey, nextOutIndex);
         segments.set(nextOutIndex, segment);
         nextOutIndex++;
@@ -462,7 +529,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
         long mergedLength =
             segment.dataSpec.length == C.LENGTH_UNSET
                 ? C.LENGTH_UNSET
-                : lastSegment.dataSpec.length + segment.dataSpec.length;
+                : segment.dataSpec.position
+                    + segment.dataSpec.length
+                    - lastSegment.dataSpec.position;
         DataSpec mergedDataSpec = lastSegment.dataSpec.subrange(/* offset= */ 0, mergedLength);
         segments.set(
             Assertions.checkNotNull(lastIndex),
@@ -472,10 +541,13 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     Util.removeRange(segments, /* fromIndex= */ nextOutIndex, /* toIndex= */ segments.size());
   }
 
-  private static boolean canMergeSegments(DataSpec dataSpec1, DataSpec dataSpec2) {
+  private static boolean canMergeSegments(
+      DataSpec dataSpec1, DataSpec dataSpec2, long maxMergedSegmentGapBytes) {
+    long gapBytes = dataSpec2.position - (dataSpec1.position + dataSpec1.length);
     return dataSpec1.uri.equals(dataSpec2.uri)
         && dataSpec1.length != C.LENGTH_UNSET
-        && (dataSpec1.position + dataSpec1.length == dataSpec2.position)
+        && gapBytes >= 0
+        && gapBytes <= maxMergedSegmentGapBytes
         && Objects.equals(dataSpec1.key, dataSpec2.key)
         && dataSpec1.flags == dataSpec2.flags
         && dataSpec1.httpMethod == dataSpec2.httpMethod
@@ -488,6 +560,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     public final CacheDataSource dataSource;
     @Nullable private final ProgressNotifier progressNotifier;
     public final byte[] temporaryBuffer;
+    @Nullable private final SegmentProgressListener segmentProgressListener;
     private final CacheWriter cacheWriter;
 
     public SegmentDownloadRunnable(
@@ -499,15 +572,21 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       this.dataSource = dataSource;
       this.progressNotifier = progressNotifier;
       this.temporaryBuffer = temporaryBuffer;
+      segmentProgressListener =
+          progressNotifier != null ? new SegmentProgressListener(progressNotifier) : null;
       this.cacheWriter =
-          new CacheWriter(dataSource, segment.dataSpec, temporaryBuffer, progressNotifier);
+          new CacheWriter(dataSource, segment.dataSpec, temporaryBuffer, segmentProgressListener);
     }
 
     @Override
     protected Void doWork() throws IOException {
+      long startTimeMs = SystemClock.elapsedRealtime();
       cacheWriter.cache();
       if (progressNotifier != null) {
-        progressNotifier.onSegmentDownloaded();
+        progressNotifier.onSegmentDownloaded(
+            segment.dataSpec,
+            checkNotNull(segmentProgressListener).newBytesCached,
+            SystemClock.elapsedRealtime() - startTimeMs);
       }
       return null;
     }
@@ -518,6 +597,24 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     }
   }
 
+  /** Forwards the progress of one segment download, counting the bytes downloaded. */
+  private static final class SegmentProgressListener implements CacheWriter.ProgressListener {
+
+    private final ProgressNotifier progressNotifier;
+
+    private long newBytesCached;
+
+    public SegmentProgressListener(ProgressNotifier progressNotifier) {
+      this.progressNotifier = progressNotifier;
+    }
+
+    @Override
+    public void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+      this.newBytesCached += newBytesCached;
+      progressNotifier.onProgress(requestLength, bytesCached, newBytesCached);
+    }
+  }
+
   private static final class ProgressNotifier implements CacheWriter.ProgressListener {
 
     private final ProgressListener progressListener;
@@ -547,9 +644,11 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       progressListener.onProgress(contentLength, bytesDownloaded, getPercentDownloaded());
     }
 
-    public void onSegmentDownloaded() {
+    public void onSegmentDownloaded(
+        DataSpec dataSpec, long segmentBytesDownloaded, long downloadDurationMs) {
       segmentsDownloaded++;
       progressListener.onProgress(contentLength, bytesDownloaded, getPercentDownloaded());
+      progressListener.onSegmentDownloaded(dataSpec, segmentBytesDownloaded, downloadDurationMs);
     }
 
     private float getPercentDownloaded() {
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.source;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.util.Log;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheKeyFactory;
+import androidx.media3.datasource.cache.ContentMetadata;
+import androidx.media3.datasource.cache.ContentMetadataMutations;
+
+/**
+ * A {@link MetadataRangeStore} that saves metadata ranges in the {@link ContentMetadata} of the
+ * cached content, so that they're kept for as long as the content itself and removed with it.
+ */
+@UnstableApi
+public final class CacheMetadataRangeStore implements MetadataRangeStore {
+
+  /** The name of the {@link ContentMetadata} entry holding the position of the metadata range. */
+  public static final String METADATA_NAME_RANGE_POSITION = "exo_metadata_pos";
+
+  /** The name of the {@link ContentMetadata} entry holding the length of the metadata range. */
+  public static final String METADATA_NAME_RANGE_LENGTH = "exo_metadata_len";
+
+  /**
+   * The name of the {@link ContentMetadata} entry holding the length of the stream in which the
+   * metadata range was found.
+   */
+  public static final String METADATA_NAME_STREAM_LENGTH = "exo_metadata_stream_len";
+
+  private static final String TAG = "CacheMetadataRangeStore";
+
+  private final Cache cache;
+  private final CacheKeyFactory cacheKeyFactory;
+
+  /**
+   * Creates an instance that uses {@link CacheKeyFactory#DEFAULT}.
+   *
+   * @param cache The {@link Cache} holding the content.
+   */
+  public CacheMetadataRangeStore(Cache cache) {
+    this(cache, CacheKeyFactory.DEFAULT);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param cache The {@link Cache} holding the content.
+   * @param cacheKeyFactory The {@link CacheKeyFactory} used to cache the content.
+   */
+  public CacheMetadataRangeStore(Cache cache, CacheKeyFactory cacheKeyFactory) {
+    this.cache = cache;
+    this.cacheKeyFactory = cacheKeyFactory;
+  }
+
+  @Override
+  @Nullable
+  public MetadataRange load(DataSpec dataSpec) {
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    ContentMetadata contentMetadata = cache.getContentMetadata(key);
+    long position = contentMetadata.get(METADATA_NAME_RANGE_POSITION, C.INDEX_UNSET);
+    long length = contentMetadata.get(METADATA_NAME_RANGE_LENGTH, C.LENGTH_UNSET);
+    long streamLength = contentMetadata.get(METADATA_NAME_STREAM_LENGTH, C.LENGTH_UNSET);
+    if (position == C.INDEX_UNSET || length == C.LENGTH_UNSET || streamLength == C.LENGTH_UNSET) {
+      return null;
+    }
+    return new MetadataRange(position, length, streamLength);
+  }
+
+  @Override
+  public void save(DataSpec dataSpec, MetadataRange metadataRange) {
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    mutations.set(METADATA_NAME_RANGE_POSITION, metadataRange.position);
+    mutations.set(METADATA_NAME_RANGE_LENGTH, metadataRange.length);
+    mutations.set(METADATA_NAME_STREAM_LENGTH, metadataRange.streamLength);
+    try {
+      cache.applyContentMetadataMutations(key, mutations);
+    } catch (Cache.CacheException e) {
+      Log.w(TAG, "Failed to save metadata range", e);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.source;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.util.Log;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheKeyFactory;
+import androidx.media3.datasource.cache.ContentMetadata;
+import androidx.media3.datasource.cache.ContentMetadataMutations;
+
+/**
+ * A {@link SeekIndexStore} that saves seek indices in the {@link ContentMetadata} of the cached
+ * content, so that they're kept for as long as the content itself and removed with it.
+ */
+@UnstableApi
+public final class CacheSeekIndexStore implements SeekIndexStore {
+
+  /** The name of the {@link ContentMetadata} entry holding the serialized seek index. */
+  public static final String METADATA_NAME_SEEK_INDEX = "exo_seek_index";
+
+  private static final String TAG = "CacheSeekIndexStore";
+
+  private final Cache cache;
+  private final CacheKeyFactory cacheKeyFactory;
+
+  /**
+   * Creates an instance that uses {@link CacheKeyFactory#DEFAULT}.
+   *
+   * @param cache The {@link Cache} holding the content.
+   */
+  public CacheSeekIndexStore(Cache cache) {
+    this(cache, CacheKeyFactory.DEFAULT);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param cache The {@link Cache} holding the content.
+   * @param cacheKeyFactory The {@link CacheKeyFactory} used to cache the content.
+   */
+  public CacheSeekIndexStore(Cache cache, CacheKeyFactory cacheKeyFactory) {
+    this.cache = cache;
+    this.cacheKeyFactory = cacheKeyFactory;
+  }
+
+  @Override
+  @Nullable
+  public byte[] load(DataSpec dataSpec) {
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    ContentMetadata contentMetadata = cache.getContentMetadata(key);
+    return contentMetadata.get(METADATA_NAME_SEEK_INDEX, /* defaultValue= */ (byte[]) null);
+  }
+
+  @Override
+  public void save(DataSpec dataSpec, byte[] seekIndex) {
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    mutations.set(METADATA_NAME_SEEK_INDEX, seekIndex);
+    try {
+      cache.applyContentMetadataMutations(key, mutations);
+    } catch (Cache.CacheException e) {
+      Log.w(TAG, "Failed to save seek index", e);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.source;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSpec;
+
+/**
+ * Persists the range of a progressive stream holding metadata that the extractor had to seek to
+ * before the stream could be prepared, such as the {@code moov} box of an MP4 file that follows its
+ * media data. When the stream is played again, the range is requested in parallel with the start
+ * of the stream, rather than after it.
+ *
+ * <p>Methods are called on the loading thread.
+ */
+@UnstableApi
+public interface MetadataRangeStore {
+
+  /** A range of a progressive stream holding metadata. */
+  final class MetadataRange {
+
+    /** The position of the first byte of the range in the stream. */
+    public final long position;
+
+    /** The length of the range in bytes. */
+    public final long length;
+
+    /**
+     * The length of the stream in which the range was found, which is used to detect that the
+     * content has changed.
+     */
+    public final long streamLength;
+
+    /**
+     * Creates an instance.
+     *
+     * @param position See {@link #position}.
+     * @param length See {@link #length}.
+     * @param streamLength See {@link #streamLength}.
+     */
+    public MetadataRange(long position, long length, long streamLength) {
+      this.position = position;
+      this.length = length;
+      this.streamLength = streamLength;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      MetadataRange other = (MetadataRange) obj;
+      return position == other.position
+          && length == other.length
+          && streamLength == other.streamLength;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) position;
+      result = 31 * result + (int) length;
+      result = 31 * result + (int) streamLength;
+      return result;
+    }
+  }
+
+  /**
+   * Returns the {@link MetadataRange} saved for a stream, or null if there is none.
+   *
+   * @param dataSpec The {@link DataSpec} of the stream.
+   */
+  @Nullable
+  MetadataRange load(DataSpec dataSpec);
+
+  /**
+   * Saves the {@link MetadataRange} of a stream, replacing any range saved before.
+   *
+   * @param dataSpec The {@link DataSpec} of the stream.
+   * @param metadataRange The {@link MetadataRange}.
+   */
+  void save(DataSpec dataSpec, MetadataRange metadataRange);
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.source;
+
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.util.Assertions;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a stream from a position whose following bytes have already been loaded, serving them from
+ * memory and only opening the upstream {@link DataSource} once they've all been read.
+ */
+/* package */ final class PreloadedRangeDataSource implements DataSource {
+
+  private final DataSource upstream;
+  private final byte[] data;
+  private final long streamLength;
+
+  @Nullable private DataSpec dataSpec;
+  private int readPosition;
+  private boolean upstreamOpened;
+
+  /**
+   * @param upstream The upstream {@link DataSource}, which is opened to read the stream after the
+   *     loaded bytes.
+   * @param data The bytes of the stream from the position at which it's opened.
+   * @param streamLength The length of the stream, or {@link C#LENGTH_UNSET} if unknown.
+   */
+  public PreloadedRangeDataSource(DataSource upstream, byte[] data, long streamLength) {
+    this.upstream = upstream;
+    this.data = data;
+    this.streamLength = streamLength;
+  }
+
+  @Override
+  public void addTransferListener(TransferListener transferListener) {
+    Assertions.checkNotNull(transferListener);
+    upstream.addTransferListener(transferListener);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The position of {@code dataSpec} must be the one from which the bytes were loaded, and its
+   * length must be unset.
+   */
+  @Override
+  public long open(DataSpec dataSpec) {
+    Assertions.checkArgument(dataSpec.length == C.LENGTH_UNSET);
+    this.dataSpec = dataSpec;
+    readPosition = 0;
+    return streamLength == C.LENGTH_UNSET ? C.LENGTH_UNSET : streamLength - dataSpec.position;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (readPosition < data.length) {
+      int bytesToRead = min(length, data.length - readPosition);
+      System.arraycopy(data, readPosition, buffer, offset, bytesToRead);
+      readPosition += bytesToRead;
+      return bytesToRead;
+    }
+    if (!upstreamOpened) {
+      DataSpec dataSpec = Assertions.checkStateNotNull(this.dataSpec);
+      if (streamLength != C.LENGTH_UNSET && dataSpec.position + data.length >= streamLength) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      upstream.open(dataSpec.subrange(data.length));
+      upstreamOpened = true;
+    }
+    return upstream.read(buffer, offset, length);
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    if (upstreamOpened) {
+      return upstream.getUri();
+    }
+    return dataSpec != null ? dataSpec.uri : null;
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    return upstreamOpened ? upstream.getResponseHeaders() : Collections.emptyMap();
+  }
+
+  @Override
+  public void close() throws IOException {
+    dataSpec = null;
+    if (upstreamOpened) {
+      upstreamOpened = false;
+      upstream.close();
+    }
+  }
+}
@@ -45,27 +45,32 @@ import androidx.media3.exoplayer.LoadingInfo;
 import androidx.media3.exoplayer.SeekParameters;
 import androidx.media3.exoplayer.drm.DrmSessionEventListener;
 import androidx.media3.exoplayer.drm.DrmSessionManager;
+import androidx.media3.exoplayer.source.MetadataRangeStore.MetadataRange;
 import androidx.media3.exoplayer.source.SampleQueue.UpstreamFormatChangedListener;
 import androidx.media3.exoplayer.source.SampleStream.ReadFlags;
 import androidx.media3.exoplayer.trackselection.ExoTrackSelection;
 import androidx.media3.exoplayer.upstream.Allocator;
 import androidx.media3.exoplayer.upstream.LoadErrorHandlingPolicy;
+import androidx.media3.exoplayer.upstream.LoadScheduler;
 import androidx.media3.exoplayer.upstream.LoadErrorHandlingPolicy.LoadErrorInfo;
 import androidx.media3.exoplayer.upstream.Loader;
 import androidx.media3.exoplayer.upstream.Loader.LoadErrorAction;
 import androidx.media3.exoplayer.upstream.Loader.Loadable;
 import androidx.media3.exoplayer.util.ReleasableExecutor;
+import androidx.media3.extractor.BinarySearchSeeker.BinarySearchSeekMap;
 import androidx.media3.extractor.DiscardingTrackOutput;
 import androidx.media3.extractor.Extractor;
 import androidx.media3.extractor.ExtractorOutput;
 import androidx.media3.extractor.ForwardingSeekMap;
 import androidx.media3.extractor.IndexSeekMap;
 import androidx.media3.extractor.PositionHolder;
+import androidx.media3.extractor.SeekIndex;
 import androidx.media3.extractor.SeekMap;
 import androidx.media3.extractor.SeekMap.SeekPoints;
 import androidx.media3.extractor.SeekMap.Unseekable;
 import androidx.media3.extractor.TrackOutput;
 import androidx.media3.extractor.metadata.icy.IcyHeaders;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.Arrays;
@@ -105,6 +110,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    */
   private static final long DEFAULT_LAST_SAMPLE_DURATION_US = 10_000;
 
+  /** The maximum length of a metadata range that's saved and loaded in parallel. */
+  private static final int MAX_METADATA_RANGE_LENGTH = 16 * 1024 * 1024;
+
   private static final Map<String, String> ICY_METADATA_HEADERS = createIcyMetadataHeaders();
 
   private static final Format ICY_FORMAT =
@@ -123,6 +131,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private final int singleTrackId;
   @Nullable private final Format singleTrackFormat;
   private final long singleSampleDurationUs;
+  @Nullable private final SeekIndexStore seekIndexStore;
+  @Nullable private final MetadataRangeStore metadataRangeStore;
+  @Nullable private final DataSource metadataDataSource;
+  @Nullable private final ReleasableExecutor metadataLoadExecutor;
   private final Loader loader;
   private final ProgressiveMediaExtractor progressiveMediaExtractor;
   private final ConditionVariable loadCondition;
@@ -132,6 +144,16 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   @Nullable private Callback callback;
   @Nullable private IcyHeaders icyHeaders;
+  @Nullable private SeekIndex seekIndex;
+  private int savedSeekIndexModificationCount;
+  @Nullable private Loader metadataLoader;
+  @Nullable private volatile MetadataLoadable metadataLoadable;
+
+  // Accessed only on the loading thread.
+  private boolean seekMapOutput;
+  private boolean metadataRangeChecked;
+  @Nullable private MetadataRange savedMetadataRange;
+  private long metadataRangePosition;
   private SampleQueue[] sampleQueues;
   private TrackId[] sampleQueueTrackIds;
   private boolean sampleQueuesBuilt;
@@ -182,6 +204,16 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * @param singleSampleDurationUs The duration of media with a single sample in microseconds.
    * @param downloadExecutor An optional externally provided {@link ReleasableExecutor} for loading
    *     and extracting media.
+   * @param seekIndexStore An optional {@link SeekIndexStore} from which the {@link SeekIndex} of
+   *     the stream is restored, and to which it's saved when the period is released.
+   * @param metadataRangeStore An optional {@link MetadataRangeStore} to which the range of the
+   *     stream holding metadata that's needed for preparation is saved, and from which it's loaded
+   *     so that the range can be requested in parallel with the start of the stream.
+   * @param metadataDataSource The data source used to request the saved metadata range, or null
+   *     if {@code metadataRangeStore} is null.
+   * @param metadataLoadExecutor The {@link ReleasableExecutor} on which the saved metadata range is
+   *     loaded, or null if {@code metadataRangeStore} is null. Must not be the executor of {@code
+   *     downloadExecutor}, since the load of the stream may wait for the metadata range load.
    */
   // maybeFinishPrepare is not posted to the handler until initialization completes.
   @SuppressWarnings({"nullness:argument", "nullness:methodref.receiver.bound"})
@@ -200,7 +232,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       int singleTrackId,
       @Nullable Format singleTrackFormat,
       long singleSampleDurationUs,
-      @Nullable ReleasableExecutor downloadExecutor) {
+      @Nullable ReleasableExecutor downloadExecutor,
+      @Nullable SeekIndexStore seekIndexStore,
+      @Nullable MetadataRangeStore metadataRangeStore,
+      @Nullable DataSource metadataDataSource,
+      @Nullable ReleasableExecutor metadataLoadExecutor) {
     this.uri = uri;
     this.dataSource = dataSource;
     this.drmSessionManager = drmSessionManager;
@@ -219,6 +255,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             : new Loader("ProgressiveMediaPeriod");
     this.progressiveMediaExtractor = progressiveMediaExtractor;
     this.singleSampleDurationUs = singleSampleDurationUs;
+    this.seekIndexStore = seekIndexStore;
+    this.metadataRangeStore = metadataRangeStore;
+    this.metadataDataSource = metadataDataSource;
+    this.metadataLoadExecutor = metadataLoadExecutor;
     loadCondition = new ConditionVariable();
     maybeFinishPrepareRunnable = this::maybeFinishPrepare;
     onContinueLoadingRequestedRunnable =
@@ -232,6 +272,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     sampleQueues = new SampleQueue[0];
     pendingResetPositionUs = C.TIME_UNSET;
     dataType = C.DATA_TYPE_MEDIA;
+    metadataRangePosition = C.INDEX_UNSET;
   }
 
   public void release() {
@@ -243,6 +284,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       }
     }
     loader.release(/* callback= */ this);
+    if (metadataLoader != null) {
+      metadataLoader.release();
+    } else if (metadataLoadExecutor != null) {
+      metadataLoadExecutor.release();
+    }
     handler.removeCallbacksAndMessages(null);
     callback = null;
     released = true;
@@ -254,6 +300,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       sampleQueue.release();
     }
     progressiveMediaExtractor.release();
+    maybeSaveSeekIndex();
   }
 
   @Override
@@ -776,6 +823,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   @Override
   public void seekMap(SeekMap seekMap) {
+    seekMapOutput = true;
+    maybeRestoreSeekIndex(seekMap);
     handler.post(() -> setSeekMap(seekMap));
   }
 
@@ -794,6 +843,151 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   // Internal methods.
 
+  private void maybeRestoreSeekIndex(SeekMap seekMap) {
+    if (seekIndexStore == null || !(seekMap instanceof BinarySearchSeekMap)) {
+      return;
+    }
+    SeekIndex seekIndex = ((BinarySearchSeekMap) seekMap).getSeekIndex();
+    if (seekIndex == this.seekIndex) {
+      return;
+    }
+    maybeSaveSeekIndex();
+    this.seekIndex = seekIndex;
+    @Nullable byte[] savedSeekIndex = seekIndexStore.load(buildStoreDataSpec());
+    if (savedSeekIndex != null && !seekIndex.restore(savedSeekIndex)) {
+      Log.w(TAG, "Ignoring seek index saved for different content.");
+    }
+    savedSeekIndexModificationCount = seekIndex.getModificationCount();
+  }
+
+  private void maybeSaveSeekIndex() {
+    if (seekIndexStore == null
+        || seekIndex == null
+        || seekIndex.getModificationCount() == savedSeekIndexModificationCount) {
+      return;
+    }
+    seekIndexStore.save(buildStoreDataSpec(), seekIndex.toByteArray());
+    savedSeekIndexModificationCount = seekIndex.getModificationCount();
+  }
+
+  /**
+   * Starts loading the saved metadata range of the stream in parallel with its start, if there's
+   * a range saved for a stream of the same length. Called on the loading thread when the stream is
+   * opened at its start.
+   */
+  private void maybeStartLoadingMetadataRange(long streamLength) {
+    if (metadataRangeStore == null
+        || metadataDataSource == null
+        || metadataLoadExecutor == null
+        || metadataRangeChecked
+        || streamLength == C.LENGTH_UNSET) {
+      return;
+    }
+    metadataRangeChecked = true;
+    @Nullable MetadataRange metadataRange = metadataRangeStore.load(buildStoreDataSpec());
+    savedMetadataRange = metadataRange;
+    if (metadataRange == null
+        || metadataRange.streamLength != streamLength
+        || metadataRange.position <= 0
+        || metadataRange.length <= 0
+        || metadataRange.length > MAX_METADATA_RANGE_LENGTH
+        || metadataRange.position + metadataRange.length > streamLength) {
+      return;
+    }
+    DataSpec dataSpec =
+        new DataSpec.Builder()
+            .setUri(uri)
+            .setPosition(metadataRange.position)
+            .setLength(metadataRange.length)
+            .setKey(customCacheKey)
+            .setFlags(DataSpec.FLAG_ALLOW_CACHE_FRAGMENTATION)
+            .build();
+    MetadataLoadable metadataLoadable =
+        new MetadataLoadable(dataSpec, metadataDataSource, metadataRange);
+    this.metadataLoadable = metadataLoadable;
+    handler.post(() -> startLoadingMetadataRange(metadataLoadable));
+  }
+
+  private void startLoadingMetadataRange(MetadataLoadable metadataLoadable) {
+    if (released) {
+      return;
+    }
+    if (metadataLoader == null) {
+      metadataLoader = new Loader(checkNotNull(metadataLoadExecutor));
+    }
+    metadataLoader.startLoading(
+        metadataLoadable, new MetadataLoaderCallback(), /* defaultMinRetryCount= */ 0);
+  }
+
+  private void cancelLoadingMetadataRange() {
+    if (!released && metadataLoader != null && metadataLoader.isLoading()) {
+      metadataLoader.cancelLoading();
+    }
+  }
+
+  /**
+   * Returns the loaded bytes of the stream from a position, or null if they aren't being loaded or
+   * their load failed. Blocks until the load has finished. Called on the loading thread.
+   *
+   * <p>The bytes are kept until the extractor has prepared, so that they can be used again if the
+   * load of the stream is canceled and restarted before then.
+   */
+  @Nullable
+  private byte[] maybeBlockUntilMetadataRangeLoaded(long position) throws InterruptedIOException {
+    @Nullable MetadataLoadable metadataLoadable = this.metadataLoadable;
+    if (metadataLoadable == null || metadataLoadable.metadataRange.position != position) {
+      return null;
+    }
+    return metadataLoadable.blockUntilLoaded();
+  }
+
+  /**
+   * Called on the loading thread when the extractor asks for a seek. Seeks requested before the
+   * extractor has output its tracks and seek map are to metadata that's needed for preparation.
+   */
+  private void onExtractorSeek(long position) {
+    if (metadataRangeStore != null && (!sampleQueuesBuilt || !seekMapOutput)) {
+      metadataRangePosition = position;
+    }
+  }
+
+  /**
+   * Saves the range of the stream read since the last seek requested before preparation, once the
+   * extractor has output its tracks and seek map. Called on the loading thread.
+   */
+  private void maybeSaveMetadataRange(long inputPosition, long streamLength) {
+    if (!sampleQueuesBuilt || !seekMapOutput) {
+      return;
+    }
+    if (metadataLoadable != null) {
+      // The extractor has prepared, so the loaded range is no longer needed.
+      metadataLoadable = null;
+      handler.post(this::cancelLoadingMetadataRange);
+    }
+    if (metadataRangeStore == null || metadataRangePosition == C.INDEX_UNSET) {
+      return;
+    }
+    long position = metadataRangePosition;
+    metadataRangePosition = C.INDEX_UNSET;
+    long length = inputPosition - position;
+    if (streamLength == C.LENGTH_UNSET
+        || position <= 0
+        || length <= 0
+        || length > MAX_METADATA_RANGE_LENGTH
+        || inputPosition > streamLength) {
+      return;
+    }
+    MetadataRange metadataRange = new MetadataRange(position, length, streamLength);
+    if (!metadataRange.equals(savedMetadataRange)) {
+      metadataRangeStore.save(buildStoreDataSpec(), metadataRange);
+      savedMetadataRange = metadataRange;
+    }
+  }
+
+  private DataSpec buildStoreDataSpec() {
+    return new DataSpec.Builder().setUri(uri).setKey(customCacheKey).build();
+  }
+
   private void onLengthKnown() {
     handler.post(() -> isLengthKnown = true);
   }
@@ -1071,6 +1265,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     private boolean pendingExtractorSeek;
     private long seekTimeUs;
     private DataSpec dataSpec;
+    private DataSource openedDataSource;
+    private long streamLength;
     @Nullable private TrackOutput icyTrackOutput;
     private boolean seenIcyMetadata;
 
@@ -1090,6 +1286,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       this.pendingExtractorSeek = true;
       loadTaskId = LoadEventInfo.getNewId();
       dataSpec = buildDataSpec(/* position= */ 0);
+      openedDataSource = this.dataSource;
+      streamLength = C.LENGTH_UNSET;
     }
 
     // Loadable implementation.
@@ -1106,25 +1304,35 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         try {
           long position = positionHolder.position;
           dataSpec = buildDataSpec(position);
-          long length = dataSource.open(dataSpec);
+          @Nullable byte[] metadata = maybeBlockUntilMetadataRangeLoaded(position);
+          openedDataSource =
+              metadata != null
+                  ? new PreloadedRangeDataSource(dataSource, metadata, streamLength)
+                  : dataSource;
+          long length = openedDataSource.open(dataSpec);
           if (loadCanceled) {
             break;
           }
           if (length != C.LENGTH_UNSET) {
             length += position;
+            streamLength = length;
             onLengthKnown();
           }
-          icyHeaders = IcyHeaders.parse(dataSource.getResponseHeaders());
-          DataSource extractorDataSource = dataSource;
+          if (position == 0) {
+            maybeStartLoadingMetadataRange(length);
+          }
+          icyHeaders = IcyHeaders.parse(openedDataSource.getResponseHeaders());
+          DataSource extractorDataSource = openedDataSource;
           if (icyHeaders != null && icyHeaders.metadataInterval != C.LENGTH_UNSET) {
-            extractorDataSource = new IcyDataSource(dataSource, icyHeaders.metadataInterval, this);
+            extractorDataSource =
+                new IcyDataSource(openedDataSource, icyHeaders.metadataInterval, this);
             icyTrackOutput = icyTrack();
             icyTrackOutput.format(ICY_FORMAT);
           }
           progressiveMediaExtractor.init(
               extractorDataSource,
               uri,
-              dataSource.getResponseHeaders(),
+              openedDataSource.getResponseHeaders(),
               position,
               length,
               extractorOutput);
@@ -1139,12 +1347,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           }
           while (result == Extractor.RESULT_CONTINUE && !loadCanceled) {
             try {
-              loadCondition.block();
+              // Don't hold a shared loading thread slot while waiting for the player to need data.
+              LoadScheduler.blockUntilOpen(loadCondition);
             } catch (InterruptedException e) {
               throw new InterruptedIOException();
             }
             result = progressiveMediaExtractor.read(positionHolder);
             long currentInputPosition = progressiveMediaExtractor.getCurrentInputPosition();
+            maybeSaveMetadataRange(currentInputPosition, streamLength);
             if (currentInputPosition > position + continueLoadingCheckIntervalBytes) {
               position = currentInputPosition;
               loadCondition.close();
@@ -1154,10 +1364,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         } finally {
           if (result == Extractor.RESULT_SEEK) {
             result = Extractor.RESULT_CONTINUE;
+            onExtractorSeek(positionHolder.position);
           } else if (progressiveMediaExtractor.getCurrentInputPosition() != C.INDEX_UNSET) {
             positionHolder.position = progressiveMediaExtractor.getCurrentInputPosition();
           }
-          DataSourceUtil.closeQuietly(dataSource);
+          DataSourceUtil.closeQuietly(openedDataSource);
         }
       }
     }
@@ -1203,6 +1414,127 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
+  /** Loads a saved metadata range of the stream into memory. */
+  private static final class MetadataLoadable implements Loadable {
+
+    private final long loadTaskId;
+    private final DataSpec dataSpec;
+    private final StatsDataSource dataSource;
+    private final MetadataRange metadataRange;
+    private final ConditionVariable loadFinished;
+
+    private volatile boolean loadCanceled;
+    @Nullable private volatile byte[] data;
+
+    public MetadataLoadable(DataSpec dataSpec, DataSource dataSource, MetadataRange metadataRange) {
+      this.dataSpec = dataSpec;
+      this.dataSource = new StatsDataSource(dataSource);
+      this.metadataRange = metadataRange;
+      loadFinished = new ConditionVariable();
+      loadTaskId = LoadEventInfo.getNewId();
+    }
+
+    /**
+     * Blocks until the load has finished, and returns the loaded bytes or null if the load failed
+     * or was canceled.
+     */
+    @Nullable
+    public byte[] blockUntilLoaded() throws InterruptedIOException {
+      try {
+        loadFinished.block();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      return data;
+    }
+
+    @Override
+    public void cancelLoad() {
+      loadCanceled = true;
+      loadFinished.open();
+    }
+
+    @Override
+    public void load() throws IOException {
+      try {
+        dataSource.open(dataSpec);
+        byte[] data = new byte[(int) metadataRange.length];
+        int bytesLoaded = 0;
+        while (bytesLoaded < data.length && !loadCanceled) {
+          int bytesRead = dataSource.read(data, bytesLoaded, data.length - bytesLoaded);
+          if (bytesRead == C.RESULT_END_OF_INPUT) {
+            throw new EOFException();
+          }
+          bytesLoaded += bytesRead;
+        }
+        if (!loadCanceled) {
+          this.data = data;
+        }
+      } finally {
+        DataSourceUtil.closeQuietly(dataSource);
+        loadFinished.open();
+      }
+    }
+
+    private LoadEventInfo createLoadEventInfo(long elapsedRealtimeMs, long loadDurationMs) {
+      return new LoadEventInfo(
+          loadTaskId,
+          dataSpec,
+          dataSource.getLastOpenedUri(),
+          dataSource.getLastResponseHeaders(),
+          elapsedRealtimeMs,
+          loadDurationMs,
+          dataSource.getBytesRead());
+    }
+  }
+
+  /**
+   * Reports the loads of saved metadata ranges as {@link C#DATA_TYPE_MEDIA_INITIALIZATION} loads.
+   */
+  private final class MetadataLoaderCallback implements Loader.Callback<MetadataLoadable> {
+
+    @Override
+    public void onLoadStarted(
+        MetadataLoadable loadable, long elapsedRealtimeMs, long loadDurationMs, int retryCount) {
+      mediaSourceEventDispatcher.loadStarted(
+          new LoadEventInfo(loadable.loadTaskId, loadable.dataSpec, elapsedRealtimeMs),
+          C.DATA_TYPE_MEDIA_INITIALIZATION,
+          retryCount);
+    }
+
+    @Override
+    public void onLoadCompleted(
+        MetadataLoadable loadable, long elapsedRealtimeMs, long loadDurationMs) {
+      mediaSourceEventDispatcher.loadCompleted(
+          loadable.createLoadEventInfo(elapsedRealtimeMs, loadDurationMs),
+          C.DATA_TYPE_MEDIA_INITIALIZATION);
+    }
+
+    @Override
+    public void onLoadCanceled(
+        MetadataLoadable loadable, long elapsedRealtimeMs, long loadDurationMs, boolean released) {
+      mediaSourceEventDispatcher.loadCanceled(
+          loadable.createLoadEventInfo(elapsedRealtimeMs, loadDurationMs),
+          C.DATA_TYPE_MEDIA_INITIALIZATION);
+    }
+
+    @Override
+    public LoadErrorAction onLoadError(
+        MetadataLoadable loadable,
+        long elapsedRealtimeMs,
+        long loadDurationMs,
+        IOException error,
+        int errorCount) {
+      // The stream is read from the upstream data source instead, so the load isn't retried.
+      mediaSourceEventDispatcher.loadError(
+          loadable.createLoadEventInfo(elapsedRealtimeMs, loadDurationMs),
+          C.DATA_TYPE_MEDIA_INITIALIZATION,
+          error,
+          /* wasCanceled= */ true);
+      return Loader.DONT_RETRY;
+    }
+  }
+
   /** Stores track state. */
   private static final class TrackState {
 
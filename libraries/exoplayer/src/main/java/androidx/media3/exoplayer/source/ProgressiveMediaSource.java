@@ -37,14 +37,17 @@ import androidx.media3.exoplayer.trackselection.ExoTrackSelection;
 import androidx.media3.exoplayer.upstream.Allocator;
 import androidx.media3.exoplayer.upstream.DefaultLoadErrorHandlingPolicy;
 import androidx.media3.exoplayer.upstream.LoadErrorHandlingPolicy;
+import androidx.media3.exoplayer.upstream.LoadScheduler;
 import androidx.media3.exoplayer.util.ReleasableExecutor;
 import androidx.media3.extractor.DefaultExtractorsFactory;
 import androidx.media3.extractor.Extractor;
 import androidx.media3.extractor.ExtractorOutput;
 import androidx.media3.extractor.ExtractorsFactory;
+import androidx.media3.extractor.SeekIndex;
 import androidx.media3.extractor.SeekMap;
 import androidx.media3.extractor.TrackOutput;
 import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.util.Objects;
 import java.util.concurrent.Executor;
@@ -93,6 +96,9 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private int continueLoadingCheckIntervalBytes;
     @Nullable private Supplier<ReleasableExecutor> downloadExecutorSupplier;
+    @Nullable private SeekIndexStore seekIndexStore;
+    @Nullable private MetadataRangeStore metadataRangeStore;
+    @Nullable private LoadScheduler metadataLoadScheduler;
     private int singleTrackId;
     @Nullable private Format singleTrackFormat;
 
@@ -264,6 +270,56 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a {@link SeekIndexStore} that persists the {@link SeekIndex} of streams whose extractors
+     * seek by searching the stream, such as MPEG-TS, MPEG-PS and FLAC streams without a seek
+     * table. Seeks in a stream that's played again then start from the positions found while it
+     * was previously played, which saves requests when seeking in streamed content. The default
+     * is {@code null}, meaning seek indices aren't persisted.
+     *
+     * @param seekIndexStore The {@link SeekIndexStore}, or {@code null}.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory setSeekIndexStore(@Nullable SeekIndexStore seekIndexStore) {
+      this.seekIndexStore = seekIndexStore;
+      return this;
+    }
+
+    /**
+     * Sets a {@link MetadataRangeStore} that persists the range of a stream holding metadata the
+     * extractor has to seek to before the stream can be prepared, such as the {@code moov} box of
+     * an MP4 file that follows its media data. When a stream is played again, the range is then
+     * requested in parallel with the start of the stream, which saves a round trip when preparing
+     * streamed content. The default is {@code null}, meaning metadata ranges aren't persisted.
+     *
+     * @param metadataRangeStore The {@link MetadataRangeStore}, or {@code null}.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory setMetadataRangeStore(@Nullable MetadataRangeStore metadataRangeStore) {
+      this.metadataRangeStore = metadataRangeStore;
+      return this;
+    }
+
+    /**
+     * Sets the {@link LoadScheduler} on which saved metadata ranges are loaded, if a {@link
+     * MetadataRangeStore} is {@linkplain #setMetadataRangeStore set}. The default is {@code null},
+     * meaning the ranges are loaded on a scheduler shared by all {@link ProgressiveMediaSource
+     * ProgressiveMediaSources}.
+     *
+     * <p>The scheduler must not run tasks that wait for the streams' main loads, as these may wait
+     * for the metadata range to be loaded.
+     *
+     * @param metadataLoadScheduler The {@link LoadScheduler}, or {@code null}.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory setMetadataLoadScheduler(@Nullable LoadScheduler metadataLoadScheduler) {
+      this.metadataLoadScheduler = metadataLoadScheduler;
+      return this;
+    }
+
     /**
      * Returns a new {@link ProgressiveMediaSource} using the current parameters.
      *
@@ -283,7 +339,10 @@ public final class ProgressiveMediaSource extends BaseMediaSource
           continueLoadingCheckIntervalBytes,
           singleTrackId,
           singleTrackFormat,
-          downloadExecutorSupplier);
+          downloadExecutorSupplier,
+          seekIndexStore,
+          metadataRangeStore,
+          metadataLoadScheduler);
     }
 
     @Override
@@ -298,6 +357,13 @@ public final class ProgressiveMediaSource extends BaseMediaSource
    */
   public static final int DEFAULT_LOADING_CHECK_INTERVAL_BYTES = 1024 * 1024;
 
+  /**
+   * Loads the saved metadata ranges of sources without a {@link Factory#setMetadataLoadScheduler
+   * metadata load scheduler}, so that periods don't each need their own loading thread.
+   */
+  private static final Supplier<LoadScheduler> SHARED_METADATA_LOAD_SCHEDULER =
+      Suppliers.memoize(LoadScheduler::new);
+
   private final DataSource.Factory dataSourceFactory;
   private final ProgressiveMediaExtractor.Factory progressiveMediaExtractorFactory;
   private final DrmSessionManager drmSessionManager;
@@ -317,6 +383,9 @@ public final class ProgressiveMediaSource extends BaseMediaSource
   @Nullable private final Format singleTrackFormat;
 
   @Nullable private final Supplier<ReleasableExecutor> downloadExecutorSupplier;
+  @Nullable private final SeekIndexStore seekIndexStore;
+  @Nullable private final MetadataRangeStore metadataRangeStore;
+  @Nullable private final LoadScheduler metadataLoadScheduler;
 
   private boolean timelineIsPlaceholder;
   private long timelineDurationUs;
@@ -338,7 +407,10 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       int continueLoadingCheckIntervalBytes,
       int singleTrackId,
       @Nullable Format singleTrackFormat,
-      @Nullable Supplier<ReleasableExecutor> downloadExecutorSupplier) {
+      @Nullable Supplier<ReleasableExecutor> downloadExecutorSupplier,
+      @Nullable SeekIndexStore seekIndexStore,
+      @Nullable MetadataRangeStore metadataRangeStore,
+      @Nullable LoadScheduler metadataLoadScheduler) {
     this.mediaItem = mediaItem;
     this.dataSourceFactory = dataSourceFactory;
     this.progressiveMediaExtractorFactory = progressiveMediaExtractorFactory;
@@ -350,6 +422,9 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     this.timelineIsPlaceholder = true;
     this.timelineDurationUs = C.TIME_UNSET;
     this.downloadExecutorSupplier = downloadExecutorSupplier;
+    this.seekIndexStore = seekIndexStore;
+    this.metadataRangeStore = metadataRangeStore;
+    this.metadataLoadScheduler = metadataLoadScheduler;
   }
 
   @Override
@@ -392,6 +467,19 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     if (transferListener != null) {
       dataSource.addTransferListener(transferListener);
     }
+    @Nullable DataSource metadataDataSource = null;
+    @Nullable ReleasableExecutor metadataLoadExecutor = null;
+    if (metadataRangeStore != null) {
+      metadataDataSource = dataSourceFactory.createDataSource();
+      if (transferListener != null) {
+        metadataDataSource.addTransferListener(transferListener);
+      }
+      LoadScheduler metadataLoadScheduler =
+          this.metadataLoadScheduler != null
+              ? this.metadataLoadScheduler
+              : SHARED_METADATA_LOAD_SCHEDULER.get();
+      metadataLoadExecutor = metadataLoadScheduler.createExecutor(C.PRIORITY_PLAYBACK);
+    }
     MediaItem.LocalConfiguration localConfiguration = getLocalConfiguration();
     return new ProgressiveMediaPeriod(
         localConfiguration.uri,
@@ -408,7 +496,11 @@ public final class ProgressiveMediaSource extends BaseMediaSource
         singleTrackId,
         singleTrackFormat,
         Util.msToUs(localConfiguration.imageDurationMs),
-        downloadExecutorSupplier != null ? downloadExecutorSupplier.get() : null);
+        downloadExecutorSupplier != null ? downloadExecutorSupplier.get() : null,
+        seekIndexStore,
+        metadataRangeStore,
+        metadataDataSource,
+        metadataLoadExecutor);
   }
 
   @Override
@@ -51,6 +51,7 @@ import java.util.Arrays;
 
   // Accessed only by the loading thread (or the consuming thread when there is no loading thread).
   private long totalBytesWritten;
+  @Nullable private byte[] writeScratch;
 
   public SampleDataQueue(Allocator allocator) {
     this.allocator = allocator;
@@ -174,11 +175,26 @@ import java.util.Arrays;
 
   public int sampleData(DataReader input, int length, boolean allowEndOfInput) throws IOException {
     length = preAppend(length);
-    int bytesAppended =
-        input.read(
-            writeAllocationNode.allocation.data,
-            writeAllocationNode.translateOffset(totalBytesWritten),
-            length);
+    @Nullable ByteBuffer writeBuffer = writeAllocationNode.getWriteBuffer(totalBytesWritten);
+    int bytesAppended;
+    if (writeBuffer == null) {
+      bytesAppended =
+          input.read(
+              writeAllocationNode.allocation.data,
+              writeAllocationNode.translateOffset(totalBytesWritten),
+              length);
+    } else {
+      // DataReader can only read into an array, so the data is copied into the buffer. This is
+      // only the case if the buffer has no accessible backing array, which isn't the case on
+      // Android.
+      if (writeScratch == null) {
+        writeScratch = new byte[allocationLength];
+      }
+      bytesAppended = input.read(writeScratch, /* offset= */ 0, length);
+      if (bytesAppended > 0) {
+        writeBuffer.put(writeScratch, /* offset= */ 0, bytesAppended);
+      }
+    }
     if (bytesAppended == C.RESULT_END_OF_INPUT) {
       if (allowEndOfInput) {
         return C.RESULT_END_OF_INPUT;
@@ -192,10 +208,15 @@ import java.util.Arrays;
   public void sampleData(ParsableByteArray buffer, int length) {
     while (length > 0) {
       int bytesAppended = preAppend(length);
-      buffer.readBytes(
-          writeAllocationNode.allocation.data,
-          writeAllocationNode.translateOffset(totalBytesWritten),
-          bytesAppended);
+      @Nullable ByteBuffer writeBuffer = writeAllocationNode.getWriteBuffer(totalBytesWritten);
+      if (writeBuffer == null) {
+        buffer.readBytes(
+            writeAllocationNode.allocation.data,
+            writeAllocationNode.translateOffset(totalBytesWritten),
+            bytesAppended);
+      } else {
+        buffer.readBytes(writeBuffer, bytesAppended);
+      }
       length -= bytesAppended;
       postAppend(bytesAppended);
     }
@@ -404,8 +425,13 @@ import java.util.Arrays;
     int remaining = length;
     while (remaining > 0) {
       int toCopy = min(remaining, (int) (allocationNode.endPosition - absolutePosition));
-      Allocation allocation = allocationNode.allocation;
-      target.put(allocation.data, allocationNode.translateOffset(absolutePosition), toCopy);
+      @Nullable ByteBuffer source = allocationNode.getReadBuffer(absolutePosition, toCopy);
+      if (source == null) {
+        Allocation allocation = allocationNode.allocation;
+        target.put(allocation.data, allocationNode.translateOffset(absolutePosition), toCopy);
+      } else {
+        target.put(source);
+      }
       remaining -= toCopy;
       absolutePosition += toCopy;
       if (absolutePosition == allocationNode.endPosition) {
@@ -430,13 +456,18 @@ import java.util.Arrays;
     int remaining = length;
     while (remaining > 0) {
       int toCopy = min(remaining, (int) (allocationNode.endPosition - absolutePosition));
-      Allocation allocation = allocationNode.allocation;
-      System.arraycopy(
-          allocation.data,
-          allocationNode.translateOffset(absolutePosition),
-          target,
-          length - remaining,
-          toCopy);
+      @Nullable ByteBuffer source = allocationNode.getReadBuffer(absolutePosition, toCopy);
+      if (source == null) {
+        Allocation allocation = allocationNode.allocation;
+        System.arraycopy(
+            allocation.data,
+            allocationNode.translateOffset(absolutePosition),
+            target,
+            length - remaining,
+            toCopy);
+      } else {
+        source.get(target, length - remaining, toCopy);
+      }
       remaining -= toCopy;
       absolutePosition += toCopy;
       if (absolutePosition == allocationNode.endPosition) {
@@ -478,6 +509,11 @@ import java.util.Arrays;
      */
     @Nullable public AllocationNode next;
 
+    // Views of the allocation's direct buffer, or null if the allocation can be accessed through
+    // its array. Reads and writes use separate views because they happen on different threads.
+    @Nullable private ByteBuffer readBuffer;
+    @Nullable private ByteBuffer writeBuffer;
+
     /**
      * @param startPosition See {@link #startPosition}.
      * @param allocationLength The length of the {@link Allocation} with which this node will be
@@ -508,6 +544,10 @@ import java.util.Arrays;
     public void initialize(Allocation allocation, AllocationNode next) {
       this.allocation = allocation;
       this.next = next;
+      if (allocation.buffer != null && !allocation.buffer.hasArray()) {
+        readBuffer = allocation.buffer.duplicate();
+        writeBuffer = allocation.buffer.duplicate();
+      }
     }
 
     /**
@@ -521,6 +561,45 @@ import java.util.Arrays;
       return (int) (absolutePosition - startPosition) + allocation.offset;
     }
 
+    /**
+     * Returns a view of the {@link #allocation}'s {@link Allocation#buffer} for reading {@code
+     * length} bytes from the specified absolute position, or {@code null} if the allocation is
+     * accessible through its array.
+     *
+     * @param absolutePosition The absolute position.
+     * @param length The number of bytes to read.
+     * @return A buffer whose remaining bytes are those to read, or {@code null}.
+     */
+    @Nullable
+    public ByteBuffer getReadBuffer(long absolutePosition, int length) {
+      @Nullable ByteBuffer readBuffer = this.readBuffer;
+      if (readBuffer != null) {
+        int offset = translateOffset(absolutePosition);
+        readBuffer.clear();
+        readBuffer.position(offset);
+        readBuffer.limit(offset + length);
+      }
+      return readBuffer;
+    }
+
+    /**
+     * Returns a view of the {@link #allocation}'s {@link Allocation#buffer} for writing from the
+     * specified absolute position, or {@code null} if the allocation is accessible through its
+     * array.
+     *
+     * @param absolutePosition The absolute position.
+     * @return A buffer positioned at the corresponding offset, or {@code null}.
+     */
+    @Nullable
+    public ByteBuffer getWriteBuffer(long absolutePosition) {
+      @Nullable ByteBuffer writeBuffer = this.writeBuffer;
+      if (writeBuffer != null) {
+        writeBuffer.clear();
+        writeBuffer.position(translateOffset(absolutePosition));
+      }
+      return writeBuffer;
+    }
+
     /**
      * Clears {@link #allocation} and {@link #next}.
      *
@@ -528,6 +607,8 @@ import java.util.Arrays;
      */
     public AllocationNode clear() {
       allocation = null;
+      readBuffer = null;
+      writeBuffer = null;
       AllocationNode temp = next;
       next = null;
       return temp;
@@ -21,6 +21,7 @@ import static androidx.media3.exoplayer.source.SampleStream.FLAG_OMIT_SAMPLE_DAT
 import static androidx.media3.exoplayer.source.SampleStream.FLAG_PEEK;
 import static androidx.media3.exoplayer.source.SampleStream.FLAG_REQUIRE_FORMAT;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import android.os.Looper;
 import androidx.annotation.CallSuper;
@@ -92,6 +93,9 @@ public class SampleQueue implements TrackOutput {
   private int absoluteFirstIndex;
   private int relativeFirstIndex;
   private int readPosition;
+  // The number of samples whose timestamp is smaller than that of the preceding sample. While there
+  // are none, samples are found by binary search rather than by scanning the queue.
+  private int outOfOrderSampleCount;
 
   private long startTimeUs;
   private long largestDiscardedTimestampUs;
@@ -213,6 +217,7 @@ public class SampleQueue implements TrackOutput {
     absoluteFirstIndex = 0;
     relativeFirstIndex = 0;
     readPosition = 0;
+    outOfOrderSampleCount = 0;
     upstreamKeyframeRequired = true;
     startTimeUs = Long.MIN_VALUE;
     largestDiscardedTimestampUs = Long.MIN_VALUE;
@@ -810,6 +815,9 @@ public class SampleQueue implements TrackOutput {
       int previousSampleRelativeIndex = getRelativeIndex(length - 1);
       checkArgument(
           offsets[previousSampleRelativeIndex] + sizes[previousSampleRelativeIndex] <= offset);
+      if (timeUs < timesUs[previousSampleRelativeIndex]) {
+        outOfOrderSampleCount++;
+      }
     }
 
     isLastSampleQueued = (sampleFlags & C.BUFFER_FLAG_LAST_SAMPLE) != 0;
@@ -837,8 +845,9 @@ public class SampleQueue implements TrackOutput {
 
     length++;
     if (length == capacity) {
-      // Increase the capacity.
-      int newCapacity = capacity + SAMPLE_CAPACITY_INCREMENT;
+      // Increase the capacity. Grow proportionally once the queue is large, so that long buffers of
+      // short samples aren't copied each time another increment fills up.
+      int newCapacity = capacity + max(SAMPLE_CAPACITY_INCREMENT, capacity / 2);
       long[] newSourceIds = new long[newCapacity];
       long[] newOffsets = new long[newCapacity];
       long[] newTimesUs = new long[newCapacity];
@@ -892,6 +901,10 @@ public class SampleQueue implements TrackOutput {
   private long discardUpstreamSampleMetadata(int discardFromIndex) {
     int discardCount = getWriteIndex() - discardFromIndex;
     checkArgument(0 <= discardCount && discardCount <= (length - readPosition));
+    if (outOfOrderSampleCount > 0) {
+      outOfOrderSampleCount -=
+          countOutOfOrderSamples(/* fromOffset= */ max(1, length - discardCount), length);
+    }
     length -= discardCount;
     largestQueuedTimestampUs = max(largestDiscardedTimestampUs, getLargestTimestamp(length));
     isLastSampleQueued = discardCount == 0 && isLastSampleQueued;
@@ -971,9 +984,9 @@ public class SampleQueue implements TrackOutput {
    *     sample was found.
    */
   private int findSampleBefore(int relativeStartIndex, int length, long timeUs, boolean keyframe) {
-    // This could be optimized to use a binary search, however in practice callers to this method
-    // normally pass times near to the start of the search region. Hence it's unclear whether
-    // switching to a binary search would yield any real benefit.
+    if (outOfOrderSampleCount == 0) {
+      return findSampleBeforeInOrderedRange(relativeStartIndex, length, timeUs, keyframe);
+    }
     int sampleCountToTarget = -1;
     int searchIndex = relativeStartIndex;
     for (int i = 0; i < length && timesUs[searchIndex] <= timeUs; i++) {
@@ -1008,6 +1021,13 @@ public class SampleQueue implements TrackOutput {
    */
   private int findSampleAfter(
       int relativeStartIndex, int length, long timeUs, boolean allowTimeBeyondBuffer) {
+    if (outOfOrderSampleCount == 0) {
+      int sampleCountBefore =
+          countSamplesBefore(relativeStartIndex, length, timeUs, /* inclusive= */ false);
+      return sampleCountBefore < length
+          ? sampleCountBefore
+          : (allowTimeBeyondBuffer ? length : -1);
+    }
     int searchIndex = relativeStartIndex;
     for (int i = 0; i < length; i++) {
       if (timesUs[searchIndex] >= timeUs) {
@@ -1021,6 +1041,70 @@ public class SampleQueue implements TrackOutput {
     return allowTimeBeyondBuffer ? length : -1;
   }
 
+  /**
+   * Equivalent to {@link #findSampleBefore(int, int, long, boolean)}, for a range in which the
+   * timestamps are in non-decreasing order.
+   */
+  private int findSampleBeforeInOrderedRange(
+      int relativeStartIndex, int length, long timeUs, boolean keyframe) {
+    int sampleCountAtOrBefore =
+        countSamplesBefore(relativeStartIndex, length, timeUs, /* inclusive= */ true);
+    int sampleCountBefore =
+        countSamplesBefore(
+            relativeStartIndex, sampleCountAtOrBefore, timeUs, /* inclusive= */ false);
+    // Prefer the first suitable sample at the specified time, as the linear search does.
+    for (int i = sampleCountBefore; i < sampleCountAtOrBefore; i++) {
+      if (!keyframe || isKeyframe(relativeStartIndex, i)) {
+        return i;
+      }
+    }
+    for (int i = sampleCountBefore - 1; i >= 0; i--) {
+      if (!keyframe || isKeyframe(relativeStartIndex, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the number of samples at the start of a range in which the timestamps are in
+   * non-decreasing order that are before, or also at if {@code inclusive} is true, the specified
+   * time.
+   */
+  private int countSamplesBefore(
+      int relativeStartIndex, int length, long timeUs, boolean inclusive) {
+    int low = 0;
+    int high = length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      long midTimeUs = timesUs[getRelativeIndex(relativeStartIndex, mid)];
+      if (midTimeUs < timeUs || (inclusive && midTimeUs == timeUs)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private boolean isKeyframe(int relativeStartIndex, int offset) {
+    return (flags[getRelativeIndex(relativeStartIndex, offset)] & C.BUFFER_FLAG_KEY_FRAME) != 0;
+  }
+
+  /**
+   * Returns the number of samples in the specified range of offsets from the start of the queue
+   * whose timestamp is smaller than that of the preceding sample.
+   */
+  private int countOutOfOrderSamples(int fromOffset, int toOffset) {
+    int count = 0;
+    for (int i = fromOffset; i < toOffset; i++) {
+      if (timesUs[getRelativeIndex(i)] < timesUs[getRelativeIndex(i - 1)]) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   /**
    * Counts the number of samples that haven't been read that have a timestamp smaller than {@code
    * timeUs}.
@@ -1029,6 +1113,11 @@ public class SampleQueue implements TrackOutput {
    * @return The number of unread samples with a timestamp smaller than {@code timeUs}.
    */
   private int countUnreadSamplesBefore(long timeUs) {
+    if (outOfOrderSampleCount == 0) {
+      return max(
+          readPosition,
+          countSamplesBefore(relativeFirstIndex, length, timeUs, /* inclusive= */ false));
+    }
     int count = length;
     int relativeSampleIndex = getRelativeIndex(length - 1);
     while (count > readPosition && timesUs[relativeSampleIndex] >= timeUs) {
@@ -1051,6 +1140,11 @@ public class SampleQueue implements TrackOutput {
   private long discardSamples(int discardCount) {
     largestDiscardedTimestampUs =
         max(largestDiscardedTimestampUs, getLargestTimestamp(discardCount));
+    if (outOfOrderSampleCount > 0) {
+      // The first remaining sample no longer has a preceding sample.
+      outOfOrderSampleCount -=
+          countOutOfOrderSamples(/* fromOffset= */ 1, min(discardCount, length - 1) + 1);
+    }
     length -= discardCount;
     absoluteFirstIndex += discardCount;
     relativeFirstIndex += discardCount;
@@ -1104,7 +1198,11 @@ public class SampleQueue implements TrackOutput {
    * @param offset The offset, which must be in the range [0, length].
    */
   private int getRelativeIndex(int offset) {
-    int relativeIndex = relativeFirstIndex + offset;
+    return getRelativeIndex(relativeFirstIndex, offset);
+  }
+
+  private int getRelativeIndex(int relativeStartIndex, int offset) {
+    int relativeIndex = relativeStartIndex + offset;
     return relativeIndex < capacity ? relativeIndex : relativeIndex - capacity;
   }
 
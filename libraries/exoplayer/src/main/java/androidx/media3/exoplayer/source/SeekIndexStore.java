@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.source;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.extractor.SeekIndex;
+
+/**
+ * Persists the {@linkplain SeekIndex seek indices} of progressive streams, so that seeks in a
+ * stream that's played again can start from the positions found while it was previously played.
+ *
+ * <p>Methods are called on the loading thread.
+ */
+@UnstableApi
+public interface SeekIndexStore {
+
+  /**
+   * Returns the serialized {@link SeekIndex} saved for a stream, or null if there is none.
+   *
+   * @param dataSpec The {@link DataSpec} of the stream.
+   */
+  @Nullable
+  byte[] load(DataSpec dataSpec);
+
+  /**
+   * Saves the serialized {@link SeekIndex} of a stream, replacing any index saved before.
+   *
+   * @param dataSpec The {@link DataSpec} of the stream.
+   * @param seekIndex The serialized {@link SeekIndex}, as returned by {@link
+   *     SeekIndex#toByteArray()}.
+   */
+  void save(DataSpec dataSpec, byte[] seekIndex);
+}
@@ -15,10 +15,15 @@
  */
 package androidx.media3.exoplayer.upstream;
 
+import static androidx.media3.common.util.Assertions.checkArgument;
+
+import androidx.annotation.Nullable;
 import androidx.media3.common.util.UnstableApi;
+import androidx.media3.common.util.Util;
+import java.nio.ByteBuffer;
 
 /**
- * An allocation within a byte array.
+ * An allocation within a byte array, or within a direct {@link ByteBuffer}.
  *
  * <p>The allocation's length is obtained by calling {@link
  * Allocator#getIndividualAllocationLength()} on the {@link Allocator} from which it was obtained.
@@ -28,13 +33,24 @@ public final class Allocation {
 
   /**
    * The array containing the allocated space. The allocated space might not be at the start of the
-   * array, and so {@link #offset} must be used when indexing into it.
+   * array, and so {@link #offset} must be used when indexing into it. If the allocated space is in
+   * {@link #buffer}, this is the buffer's backing array if it's accessible, and is empty otherwise.
+   * Direct buffers have accessible backing arrays on Android, so the allocated space can be written
+   * and read through this array without copying.
    */
   public final byte[] data;
 
   /** The offset of the allocated space in {@link #data}. */
   public final int offset;
 
+  /**
+   * The direct buffer containing the allocated space, or null if the allocated space is in {@link
+   * #data}. The allocated space starts at index 0 of the buffer. The buffer's position and limit
+   * must not be modified, so {@link ByteBuffer#duplicate()} should be used to read from or write to
+   * it.
+   */
+  @Nullable public final ByteBuffer buffer;
+
   /**
    * @param data The array containing the allocated space.
    * @param offset The offset of the allocated space in {@code data}.
@@ -42,5 +58,21 @@ public final class Allocation {
   public Allocation(byte[] data, int offset) {
     this.data = data;
     this.offset = offset;
+    buffer = null;
+  }
+
+  /**
+   * @param buffer The direct buffer containing the allocated space, starting at index 0.
+   */
+  public Allocation(ByteBuffer buffer) {
+    checkArgument(buffer.isDirect());
+    this.buffer = buffer;
+    if (buffer.hasArray()) {
+      data = buffer.array();
+      offset = buffer.arrayOffset();
+    } else {
+      data = Util.EMPTY_BYTE_ARRAY;
+      offset = 0;
+    }
   }
 }
@@ -16,23 +16,83 @@
 package androidx.media3.exoplayer.upstream;
 
 import static java.lang.Math.max;
+import static java.lang.annotation.ElementType.TYPE_USE;
 
+import androidx.annotation.GuardedBy;
+import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
 import androidx.media3.common.util.Assertions;
 import androidx.media3.common.util.NullableType;
 import androidx.media3.common.util.UnstableApi;
 import androidx.media3.common.util.Util;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
-/** Default implementation of {@link Allocator}. */
+/**
+ * Default implementation of {@link Allocator}.
+ *
+ * <p>By default, the allocator synchronizes all calls. If {@link #FLAG_ENABLE_THREAD_LOCAL_CACHING}
+ * is set, each thread instead caches a small number of available allocations, and exchanges them
+ * with other threads through a lock-free pool. This avoids contention when many loading threads
+ * share one allocator, for example when multiple players share a {@link
+ * androidx.media3.exoplayer.LoadControl}.
+ *
+ * <p>By default, each allocation is backed by its own array. If {@link #FLAG_USE_DIRECT_BUFFERS}
+ * is set, allocations are instead slices of direct {@link ByteBuffer} slabs, so that a single
+ * non-movable buffer is allocated for several allocations.
+ */
 @UnstableApi
 public final class DefaultAllocator implements Allocator {
 
+  /**
+   * Flags controlling the allocator's behavior. Possible flag values are {@link
+   * #FLAG_ENABLE_THREAD_LOCAL_CACHING} and {@link #FLAG_USE_DIRECT_BUFFERS}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @Target(TYPE_USE)
+  @IntDef(
+      flag = true,
+      value = {FLAG_ENABLE_THREAD_LOCAL_CACHING, FLAG_USE_DIRECT_BUFFERS})
+  public @interface Flags {}
+
+  /**
+   * A flag indicating whether threads cache available allocations and exchange them through a
+   * lock-free pool, rather than synchronizing every call. When set, allocations cached by a thread
+   * are only discarded by {@link #trim()} the next time that thread uses the allocator.
+   */
+  public static final int FLAG_ENABLE_THREAD_LOCAL_CACHING = 1;
+
+  /**
+   * A flag indicating whether allocations are backed by direct {@link ByteBuffer ByteBuffers},
+   * rather than by arrays. Each allocation is then a slice of a larger direct buffer, whose memory
+   * is freed once all of its allocations have been discarded. This reduces the number of
+   * allocations made by the allocator.
+   *
+   * <p>On Android, a direct buffer is backed by a non-movable array, which is exposed as {@link
+   * Allocation#data}. The buffered media therefore still counts against the Java heap.
+   */
+  public static final int FLAG_USE_DIRECT_BUFFERS = 1 << 1; // 2
+
   private static final int AVAILABLE_EXTRA_CAPACITY = 100;
 
+  /** The number of allocations in each direct buffer slab. */
+  private static final int DIRECT_SLAB_ALLOCATION_COUNT = 16;
+
   private final boolean trimOnReset;
   private final int individualAllocationSize;
   @Nullable private final byte[] initialAllocationBlock;
+  @Nullable private final ThreadLocalAllocationPool threadLocalAllocationPool;
+  private final boolean useDirectBuffers;
+  private final Object directSlabLock;
+
+  @GuardedBy("directSlabLock")
+  @Nullable
+  private ByteBuffer directSlab;
 
   private int targetBufferSize;
   private int allocatedCount;
@@ -64,8 +124,31 @@ public final class DefaultAllocator implements Allocator {
    */
   public DefaultAllocator(
       boolean trimOnReset, int individualAllocationSize, int initialAllocationCount) {
+    this(trimOnReset, individualAllocationSize, initialAllocationCount, /* flags= */ 0);
+  }
+
+  /**
+   * Constructs an instance with some {@link Allocation}s created up front.
+   *
+   * <p>Note: {@link Allocation}s created up front will never be discarded by {@link #trim()}.
+   *
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances. If set to false, trimming can
+   *     be forced by calling {@link #setTargetBufferSize(int)} manually when required.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   * @param initialAllocationCount The number of allocations to create up front. Must be 0 if any
+   *     {@code flags} are set.
+   * @param flags A bitwise OR of {@link #FLAG_ENABLE_THREAD_LOCAL_CACHING} and {@link
+   *     #FLAG_USE_DIRECT_BUFFERS}, or 0.
+   */
+  public DefaultAllocator(
+      boolean trimOnReset,
+      int individualAllocationSize,
+      int initialAllocationCount,
+      @Flags int flags) {
     Assertions.checkArgument(individualAllocationSize > 0);
     Assertions.checkArgument(initialAllocationCount >= 0);
+    Assertions.checkArgument(flags == 0 || initialAllocationCount == 0);
     this.trimOnReset = trimOnReset;
     this.individualAllocationSize = individualAllocationSize;
     this.availableCount = initialAllocationCount;
@@ -79,31 +162,95 @@ public final class DefaultAllocator implements Allocator {
     } else {
       initialAllocationBlock = null;
     }
+    useDirectBuffers = (flags & FLAG_USE_DIRECT_BUFFERS) != 0;
+    directSlabLock = new Object();
+    threadLocalAllocationPool =
+        (flags & FLAG_ENABLE_THREAD_LOCAL_CACHING) != 0
+            ? new ThreadLocalAllocationPool(individualAllocationSize, this::createAllocation)
+            : null;
   }
 
-  public synchronized void reset() {
+  public void reset() {
     if (trimOnReset) {
       setTargetBufferSize(0);
     }
   }
 
-  public synchronized void setTargetBufferSize(int targetBufferSize) {
+  public void setTargetBufferSize(int targetBufferSize) {
+    if (threadLocalAllocationPool != null) {
+      threadLocalAllocationPool.setTargetBufferSize(targetBufferSize);
+    } else {
+      setTargetBufferSizeSynchronized(targetBufferSize);
+    }
+  }
+
+  @Override
+  public Allocation allocate() {
+    if (threadLocalAllocationPool != null) {
+      return threadLocalAllocationPool.allocate();
+    }
+    return allocateSynchronized();
+  }
+
+  @Override
+  public void release(Allocation allocation) {
+    if (threadLocalAllocationPool != null) {
+      threadLocalAllocationPool.release(allocation);
+    } else {
+      releaseSynchronized(allocation);
+    }
+  }
+
+  @Override
+  public void release(@Nullable AllocationNode allocationNode) {
+    if (threadLocalAllocationPool != null) {
+      while (allocationNode != null) {
+        threadLocalAllocationPool.release(allocationNode.getAllocation());
+        allocationNode = allocationNode.next();
+      }
+    } else {
+      releaseSynchronized(allocationNode);
+    }
+  }
+
+  @Override
+  public void trim() {
+    if (threadLocalAllocationPool != null) {
+      threadLocalAllocationPool.trim();
+    } else {
+      trimSynchronized();
+    }
+  }
+
+  @Override
+  public int getTotalBytesAllocated() {
+    if (threadLocalAllocationPool != null) {
+      return threadLocalAllocationPool.getTotalBytesAllocated();
+    }
+    return getTotalBytesAllocatedSynchronized();
+  }
+
+  @Override
+  public int getIndividualAllocationLength() {
+    return individualAllocationSize;
+  }
+
+  private synchronized void setTargetBufferSizeSynchronized(int targetBufferSize) {
     boolean targetBufferSizeReduced = targetBufferSize < this.targetBufferSize;
     this.targetBufferSize = targetBufferSize;
     if (targetBufferSizeReduced) {
-      trim();
+      trimSynchronized();
     }
   }
 
-  @Override
-  public synchronized Allocation allocate() {
+  private synchronized Allocation allocateSynchronized() {
     allocatedCount++;
     Allocation allocation;
     if (availableCount > 0) {
       allocation = Assertions.checkNotNull(availableAllocations[--availableCount]);
       availableAllocations[availableCount] = null;
     } else {
-      allocation = new Allocation(new byte[individualAllocationSize], 0);
+      allocation = createAllocation();
       if (allocatedCount > availableAllocations.length) {
         // Make availableAllocations be large enough to contain all allocations made by this
         // allocator so that release() does not need to grow the availableAllocations array. See
@@ -114,16 +261,14 @@ public final class DefaultAllocator implements Allocator {
     return allocation;
   }
 
-  @Override
-  public synchronized void release(Allocation allocation) {
+  private synchronized void releaseSynchronized(Allocation allocation) {
     availableAllocations[availableCount++] = allocation;
     allocatedCount--;
     // Wake up threads waiting for the allocated size to drop.
     notifyAll();
   }
 
-  @Override
-  public synchronized void release(@Nullable AllocationNode allocationNode) {
+  private synchronized void releaseSynchronized(@Nullable AllocationNode allocationNode) {
     while (allocationNode != null) {
       availableAllocations[availableCount++] = allocationNode.getAllocation();
       allocatedCount--;
@@ -133,8 +278,7 @@ public final class DefaultAllocator implements Allocator {
     notifyAll();
   }
 
-  @Override
-  public synchronized void trim() {
+  private synchronized void trimSynchronized() {
     int targetAllocationCount = Util.ceilDivide(targetBufferSize, individualAllocationSize);
     int targetAvailableCount = max(0, targetAllocationCount - allocatedCount);
     if (targetAvailableCount >= availableCount) {
@@ -175,13 +319,26 @@ public final class DefaultAllocator implements Allocator {
     availableCount = targetAvailableCount;
   }
 
-  @Override
-  public synchronized int getTotalBytesAllocated() {
+  private synchronized int getTotalBytesAllocatedSynchronized() {
     return allocatedCount * individualAllocationSize;
   }
 
-  @Override
-  public int getIndividualAllocationLength() {
-    return individualAllocationSize;
+  private Allocation createAllocation() {
+    if (!useDirectBuffers) {
+      return new Allocation(new byte[individualAllocationSize], 0);
+    }
+    synchronized (directSlabLock) {
+      @Nullable ByteBuffer directSlab = this.directSlab;
+      if (directSlab == null || !directSlab.hasRemaining()) {
+        directSlab =
+            ByteBuffer.allocateDirect(individualAllocationSize * DIRECT_SLAB_ALLOCATION_COUNT);
+        this.directSlab = directSlab;
+      }
+      directSlab.limit(directSlab.position() + individualAllocationSize);
+      ByteBuffer allocationBuffer = directSlab.slice();
+      directSlab.position(directSlab.limit());
+      directSlab.limit(directSlab.capacity());
+      return new Allocation(allocationBuffer);
+    }
   }
 }
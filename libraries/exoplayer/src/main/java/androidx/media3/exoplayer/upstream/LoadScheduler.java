@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.upstream;
+
+import static androidx.media3.common.util.Assertions.checkArgument;
+import static androidx.media3.common.util.Assertions.checkState;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.media3.common.C;
+import androidx.media3.common.util.Clock;
+import androidx.media3.common.util.ConditionVariable;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.util.ReleasableExecutor;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the load tasks of many {@link Loader Loaders} on a shared, bounded set of threads.
+ *
+ * <p>Each component that loads creates its own {@link PrioritizedExecutor}, which can be passed to
+ * {@link Loader#Loader(ReleasableExecutor)} or to a media source factory's {@code
+ * setDownloadExecutor} method, for example:
+ *
+ * <pre>{@code
+ * mediaSourceFactory.setDownloadExecutor(
+ *     () -> loadScheduler.createExecutor(C.PRIORITY_PLAYBACK), PrioritizedExecutor::release);
+ * }</pre>
+ *
+ * <p>Tasks submitted to the same executor run one at a time, in the order they were submitted, as
+ * they would on a loader's own thread. At most {@code maxConcurrentLoads} tasks run at once across
+ * all executors. When a thread becomes free, it runs the next task of the executor with the highest
+ * {@link C.Priority}. Executors with equal priority take turns, so that a component that submits
+ * many tasks can't starve the others. Tasks that are already running aren't preempted.
+ *
+ * <p>A task that waits for flow control, for example a load that waits until the player needs more
+ * data, should wait with {@link #blockUntilOpen(ConditionVariable)}. The task then doesn't count
+ * towards {@code maxConcurrentLoads} while it waits, so that paused or fully buffered loads can't
+ * stop other loads from starting. {@link androidx.media3.exoplayer.source.ProgressiveMediaSource}
+ * loads do this.
+ */
+@UnstableApi
+public final class LoadScheduler {
+
+  /** A listener for load scheduling events. */
+  public interface Listener {
+
+    /**
+     * Called on the loading thread when a task starts running.
+     *
+     * @param priority The {@link C.Priority} of the executor the task was submitted to.
+     * @param queueWaitTimeMs The time the task waited to start after it was submitted, in
+     *     milliseconds.
+     */
+    void onTaskStarted(@C.Priority int priority, long queueWaitTimeMs);
+  }
+
+  /** The default maximum number of tasks that can run at once. */
+  public static final int DEFAULT_MAX_CONCURRENT_LOADS = 4;
+
+  private static final String THREAD_NAME_PREFIX = "ExoPlayer:LoadScheduler:";
+
+  /** The scheduler running a task on the current thread, if any. */
+  private static final ThreadLocal<LoadScheduler> currentLoadScheduler = new ThreadLocal<>();
+
+  private final int maxConcurrentLoads;
+  private final Clock clock;
+  private final ExecutorService threadPool;
+  private final CopyOnWriteArraySet<Listener> listeners;
+  private final Object lock;
+
+  @GuardedBy("lock")
+  private final PriorityQueue<PrioritizedExecutor> readyExecutors;
+
+  @GuardedBy("lock")
+  private int runningTaskCount;
+
+  @GuardedBy("lock")
+  private int blockedTaskCount;
+
+  @GuardedBy("lock")
+  private long nextSequenceNumber;
+
+  @GuardedBy("lock")
+  private boolean released;
+
+  /** Creates an instance that runs at most {@link #DEFAULT_MAX_CONCURRENT_LOADS} tasks at once. */
+  public LoadScheduler() {
+    this(DEFAULT_MAX_CONCURRENT_LOADS);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxConcurrentLoads The maximum number of tasks that can run at once.
+   */
+  public LoadScheduler(int maxConcurrentLoads) {
+    this(maxConcurrentLoads, Clock.DEFAULT);
+  }
+
+  @VisibleForTesting
+  /* package */ LoadScheduler(int maxConcurrentLoads, Clock clock) {
+    checkArgument(maxConcurrentLoads > 0);
+    this.maxConcurrentLoads = maxConcurrentLoads;
+    this.clock = clock;
+    AtomicInteger threadCount = new AtomicInteger();
+    threadPool =
+        Executors.newCachedThreadPool(
+            runnable -> new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet()));
+    listeners = new CopyOnWriteArraySet<>();
+    lock = new Object();
+    readyExecutors =
+        new PriorityQueue<>(
+            /* initialCapacity= */ 11,
+            (executor1, executor2) -> {
+              if (executor1.queuedPriority != executor2.queuedPriority) {
+                return Integer.compare(executor2.queuedPriority, executor1.queuedPriority);
+              }
+              return Long.compare(executor1.sequenceNumber, executor2.sequenceNumber);
+            });
+  }
+
+  /**
+   * Blocks until a condition is opened. If the current thread is running a task of a {@link
+   * LoadScheduler}, the task doesn't count towards the scheduler's {@code maxConcurrentLoads} while
+   * it's blocked, so that other tasks can start. The task continues as soon as the condition is
+   * opened, even if the scheduler is then briefly running more than {@code maxConcurrentLoads}
+   * tasks.
+   *
+   * @param condition The {@link ConditionVariable} to wait for.
+   * @throws InterruptedException If the thread is interrupted, for example when the load is
+   *     canceled.
+   */
+  public static void blockUntilOpen(ConditionVariable condition) throws InterruptedException {
+    if (condition.isOpen()) {
+      return;
+    }
+    @Nullable LoadScheduler loadScheduler = currentLoadScheduler.get();
+    if (loadScheduler == null) {
+      condition.block();
+      return;
+    }
+    synchronized (loadScheduler.lock) {
+      loadScheduler.blockedTaskCount++;
+      loadScheduler.maybeStartTasks();
+    }
+    try {
+      condition.block();
+    } finally {
+      synchronized (loadScheduler.lock) {
+        loadScheduler.blockedTaskCount--;
+      }
+    }
+  }
+
+  /**
+   * Adds a {@link Listener}.
+   *
+   * @param listener The listener to add.
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a {@link Listener}.
+   *
+   * @param listener The listener to remove.
+   */
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Creates an executor whose tasks are run by this scheduler.
+   *
+   * @param priority The initial {@link C.Priority} of the executor's tasks.
+   * @return The executor.
+   */
+  public PrioritizedExecutor createExecutor(@C.Priority int priority) {
+    return new PrioritizedExecutor(priority);
+  }
+
+  /** Returns the number of tasks that are waiting for a thread. */
+  public int getQueuedTaskCount() {
+    synchronized (lock) {
+      int queuedTaskCount = 0;
+      for (PrioritizedExecutor executor : readyExecutors) {
+        queuedTaskCount += executor.tasks.size();
+      }
+      return queuedTaskCount;
+    }
+  }
+
+  /**
+   * Releases the scheduler. Tasks that are already running or queued will still run, but no new
+   * tasks can be submitted.
+   */
+  public void release() {
+    synchronized (lock) {
+      released = true;
+      if (runningTaskCount == 0) {
+        threadPool.shutdown();
+      }
+    }
+  }
+
+  @GuardedBy("lock")
+  private void enqueue(PrioritizedExecutor executor) {
+    executor.queuedPriority = executor.priority;
+    executor.sequenceNumber = nextSequenceNumber++;
+    readyExecutors.add(executor);
+    maybeStartTasks();
+  }
+
+  @GuardedBy("lock")
+  private void maybeStartTasks() {
+    while (runningTaskCount - blockedTaskCount < maxConcurrentLoads && !readyExecutors.isEmpty()) {
+      PrioritizedExecutor executor = readyExecutors.remove();
+      executor.running = true;
+      runningTaskCount++;
+      threadPool.execute(() -> runNextTask(executor));
+    }
+  }
+
+  private void runNextTask(PrioritizedExecutor executor) {
+    QueuedTask task;
+    int priority;
+    synchronized (lock) {
+      task = executor.tasks.remove();
+      priority = executor.queuedPriority;
+    }
+    long queueWaitTimeMs = clock.elapsedRealtime() - task.submitTimeMs;
+    for (Listener listener : listeners) {
+      listener.onTaskStarted(priority, queueWaitTimeMs);
+    }
+    currentLoadScheduler.set(this);
+    try {
+      task.runnable.run();
+    } finally {
+      currentLoadScheduler.remove();
+      // Loader interrupts the loading thread to cancel a load. Don't leak the interrupt into the
+      // next task run by this thread.
+      Thread.interrupted();
+      synchronized (lock) {
+        runningTaskCount--;
+        executor.running = false;
+        if (!executor.tasks.isEmpty()) {
+          // Re-enqueue behind other ready executors of the same priority.
+          enqueue(executor);
+        } else {
+          maybeStartTasks();
+        }
+        if (released && runningTaskCount == 0 && readyExecutors.isEmpty()) {
+          threadPool.shutdown();
+        }
+      }
+    }
+  }
+
+  /**
+   * A {@link ReleasableExecutor} that runs its tasks on the threads of a {@link LoadScheduler}, one
+   * at a time and in the order they were submitted.
+   */
+  public final class PrioritizedExecutor implements ReleasableExecutor {
+
+    @GuardedBy("lock")
+    private final ArrayDeque<QueuedTask> tasks;
+
+    @GuardedBy("lock")
+    private @C.Priority int priority;
+
+    @GuardedBy("lock")
+    private @C.Priority int queuedPriority;
+
+    @GuardedBy("lock")
+    private long sequenceNumber;
+
+    @GuardedBy("lock")
+    private boolean running;
+
+    private PrioritizedExecutor(@C.Priority int priority) {
+      this.priority = priority;
+      tasks = new ArrayDeque<>();
+    }
+
+    /**
+     * Sets the {@link C.Priority} of the executor's tasks, for example when a preloading player
+     * starts playing. Tasks that are already running aren't affected.
+     *
+     * @param priority The {@link C.Priority}.
+     */
+    public void setPriority(@C.Priority int priority) {
+      synchronized (lock) {
+        this.priority = priority;
+        if (readyExecutors.remove(this)) {
+          enqueue(this);
+        }
+      }
+    }
+
+    /** Returns the {@link C.Priority} of the executor's tasks. */
+    public @C.Priority int getPriority() {
+      synchronized (lock) {
+        return priority;
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException If the {@link LoadScheduler} has been released.
+     */
+    @Override
+    public void execute(Runnable command) {
+      synchronized (lock) {
+        checkState(!released);
+        tasks.add(new QueuedTask(command, clock.elapsedRealtime()));
+        if (!running && tasks.size() == 1) {
+          enqueue(this);
+        }
+      }
+    }
+
+    @Override
+    public void release() {
+      // Do nothing. The scheduler's threads are shared, and queued tasks still need to run.
+    }
+  }
+
+  private static final class QueuedTask {
+
+    public final Runnable runnable;
+    public final long submitTimeMs;
+
+    public QueuedTask(Runnable runnable, long submitTimeMs) {
+      this.runnable = runnable;
+      this.submitTimeMs = submitTimeMs;
+    }
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.upstream;
+
+import static java.lang.Math.max;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.util.NullableType;
+import androidx.media3.common.util.Util;
+import com.google.common.base.Supplier;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of {@link Allocation Allocations} that doesn't use locks.
+ *
+ * <p>Each thread caches available allocations in its own magazine, a small fixed size stack of
+ * allocations. When a thread's magazine is full, it's moved to a shared lock-free queue of
+ * magazines, from which threads whose magazines are empty take their next magazine. Hence threads
+ * only access shared state once per {@link #MAGAZINE_CAPACITY} allocations, and never block.
+ *
+ * <p>Trimming discards magazines from the shared queue. Allocations cached by other threads can't
+ * be discarded by the trimming thread, so each thread discards its cached allocations the next time
+ * it uses the pool after a trim, if the pool still has more available allocations than required.
+ *
+ * <p>Magazines of threads that have terminated are returned to the shared queue when the pool is
+ * trimmed, so that their allocations can be reused or discarded.
+ */
+/* package */ final class ThreadLocalAllocationPool {
+
+  /** The number of allocations in a full magazine. */
+  /* package */ static final int MAGAZINE_CAPACITY = 8;
+
+  private final int individualAllocationSize;
+  private final Supplier<Allocation> allocationFactory;
+  private final ThreadLocal<ThreadCache> threadCaches;
+  private final ConcurrentLinkedQueue<ThreadCache> registeredThreadCaches;
+  private final ConcurrentLinkedQueue<Magazine> fullMagazines;
+  private final AtomicInteger allocatedCount;
+  private final AtomicInteger availableCount;
+  private final AtomicInteger trimCount;
+
+  private volatile int targetBufferSize;
+
+  /**
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   * @param allocationFactory Creates new allocations when none are available.
+   */
+  public ThreadLocalAllocationPool(
+      int individualAllocationSize, Supplier<Allocation> allocationFactory) {
+    this.individualAllocationSize = individualAllocationSize;
+    this.allocationFactory = allocationFactory;
+    threadCaches = new ThreadLocal<>();
+    registeredThreadCaches = new ConcurrentLinkedQueue<>();
+    fullMagazines = new ConcurrentLinkedQueue<>();
+    allocatedCount = new AtomicInteger();
+    availableCount = new AtomicInteger();
+    trimCount = new AtomicInteger();
+  }
+
+  public void setTargetBufferSize(int targetBufferSize) {
+    boolean targetBufferSizeReduced = targetBufferSize < this.targetBufferSize;
+    this.targetBufferSize = targetBufferSize;
+    if (targetBufferSizeReduced) {
+      trim();
+    }
+  }
+
+  public Allocation allocate() {
+    allocatedCount.incrementAndGet();
+    ThreadCache threadCache = getThreadCache();
+    Magazine magazine = threadCache.magazine;
+    if (magazine.size == 0) {
+      @Nullable Magazine fullMagazine = fullMagazines.poll();
+      if (fullMagazine != null) {
+        fullMagazine.trimCount = magazine.trimCount;
+        threadCache.magazine = fullMagazine;
+        magazine = fullMagazine;
+      }
+    }
+    if (magazine.size > 0) {
+      availableCount.decrementAndGet();
+      return magazine.pop();
+    }
+    return allocationFactory.get();
+  }
+
+  public void release(Allocation allocation) {
+    ThreadCache threadCache = getThreadCache();
+    Magazine magazine = threadCache.magazine;
+    if (magazine.size == MAGAZINE_CAPACITY) {
+      fullMagazines.offer(magazine);
+      Magazine emptyMagazine = new Magazine(magazine.trimCount);
+      threadCache.magazine = emptyMagazine;
+      magazine = emptyMagazine;
+    }
+    magazine.push(allocation);
+    availableCount.incrementAndGet();
+    allocatedCount.decrementAndGet();
+  }
+
+  public void trim() {
+    reclaimTerminatedThreadMagazines();
+    trimCount.incrementAndGet();
+    int targetAvailableCount = getTargetAvailableCount();
+    while (availableCount.get() > targetAvailableCount) {
+      @Nullable Magazine magazine = fullMagazines.poll();
+      if (magazine == null) {
+        break;
+      }
+      availableCount.addAndGet(-magazine.size);
+    }
+  }
+
+  public int getTotalBytesAllocated() {
+    return allocatedCount.get() * individualAllocationSize;
+  }
+
+  private int getTargetAvailableCount() {
+    int targetAllocationCount = Util.ceilDivide(targetBufferSize, individualAllocationSize);
+    return max(0, targetAllocationCount - allocatedCount.get());
+  }
+
+  /**
+   * Returns the calling thread's cache, discarding the allocations of its magazine if required by
+   * a trim.
+   */
+  private ThreadCache getThreadCache() {
+    int trimCount = this.trimCount.get();
+    @Nullable ThreadCache threadCache = threadCaches.get();
+    if (threadCache == null) {
+      threadCache = new ThreadCache(Thread.currentThread(), new Magazine(trimCount));
+      threadCaches.set(threadCache);
+      registeredThreadCaches.offer(threadCache);
+      return threadCache;
+    }
+    Magazine magazine = threadCache.magazine;
+    if (magazine.trimCount != trimCount) {
+      magazine.trimCount = trimCount;
+      if (magazine.size > 0 && availableCount.get() > getTargetAvailableCount()) {
+        availableCount.addAndGet(-magazine.size);
+        magazine.clear();
+      }
+    }
+    return threadCache;
+  }
+
+  /**
+   * Moves the magazines of terminated threads to the shared queue, so that their allocations stay
+   * available to other threads and can be discarded by a trim.
+   */
+  private void reclaimTerminatedThreadMagazines() {
+    Iterator<ThreadCache> iterator = registeredThreadCaches.iterator();
+    while (iterator.hasNext()) {
+      ThreadCache threadCache = iterator.next();
+      // A thread's termination happens-before isAlive() returns false, so its magazine can be
+      // safely accessed from here on.
+      if (!threadCache.thread.isAlive()) {
+        iterator.remove();
+        if (threadCache.magazine.size > 0) {
+          fullMagazines.offer(threadCache.magazine);
+        }
+      }
+    }
+  }
+
+  /** The magazine of a single thread. */
+  private static final class ThreadCache {
+
+    public final Thread thread;
+    public Magazine magazine;
+
+    public ThreadCache(Thread thread, Magazine magazine) {
+      this.thread = thread;
+      this.magazine = magazine;
+    }
+  }
+
+  private static final class Magazine {
+
+    private final @NullableType Allocation[] allocations;
+
+    private int size;
+    private int trimCount;
+
+    public Magazine(int trimCount) {
+      this.trimCount = trimCount;
+      allocations = new Allocation[MAGAZINE_CAPACITY];
+    }
+
+    public void push(Allocation allocation) {
+      allocations[size++] = allocation;
+    }
+
+    public Allocation pop() {
+      Allocation allocation = Util.castNonNull(allocations[--size]);
+      allocations[size] = null;
+      return allocation;
+    }
+
+    public void clear() {
+      while (size > 0) {
+        allocations[--size] = null;
+      }
+    }
+  }
+}
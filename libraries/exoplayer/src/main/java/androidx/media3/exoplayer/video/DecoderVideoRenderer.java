@@ -781,10 +781,12 @@ public abstract class DecoderVideoRenderer extends BaseRenderer {
         inputBuffer.flip();
         inputBuffer.format = inputFormat;
         onQueueInputBuffer(inputBuffer);
+        int inputSize = inputBuffer.data != null ? inputBuffer.data.limit() : 0;
         checkNotNull(decoder).queueInputBuffer(inputBuffer);
         buffersInCodecCount++;
         decoderReceivedBuffers = true;
         decoderCounters.queuedInputBufferCount++;
+        decoderCounters.queuedInputByteCount += inputSize;
         this.inputBuffer = null;
         return true;
       default:
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.media3.common.C;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.util.Util;
+import androidx.media3.database.DatabaseProvider;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheKeyFactory;
+import androidx.media3.datasource.cache.CacheSpan;
+import androidx.media3.datasource.cache.NoOpCacheEvictor;
+import androidx.media3.datasource.cache.SimpleCache;
+import androidx.media3.test.utils.TestUtil;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link CacheLoudnessStore}. */
+@RunWith(AndroidJUnit4.class)
+public final class CacheLoudnessStoreTest {
+
+  private static final String URI = "https://test.test/audio.mp3";
+  private static final MediaItem MEDIA_ITEM = MediaItem.fromUri(URI);
+
+  private File testDir;
+  private Cache cache;
+
+  @Before
+  public void createCache() throws Exception {
+    testDir =
+        Util.createTempFile(ApplicationProvider.getApplicationContext(), "CacheLoudnessStoreTest");
+    assertThat(testDir.delete()).isTrue();
+    assertThat(testDir.mkdirs()).isTrue();
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    cache = new SimpleCache(testDir, new NoOpCacheEvictor(), databaseProvider);
+  }
+
+  @After
+  public void deleteCache() {
+    cache.release();
+    Util.recursiveDelete(testDir);
+  }
+
+  @Test
+  public void getIntegratedLoudness_withoutSavedLoudness_returnsNaN() {
+    CacheLoudnessStore loudnessStore = createLoudnessStore();
+
+    assertThat(loudnessStore.getIntegratedLoudness(MEDIA_ITEM)).isNaN();
+    assertThat(loudnessStore.getGain(MEDIA_ITEM, /* targetLoudnessLufs= */ -14)).isEqualTo(1f);
+  }
+
+  @Test
+  public void setIntegratedLoudness_withCachedContent_savesLoudnessInCache() throws Exception {
+    addCachedContent(URI);
+    CacheLoudnessStore loudnessStore = createLoudnessStore();
+
+    loudnessStore.setIntegratedLoudness(MEDIA_ITEM, /* integratedLoudnessLufs= */ -20);
+
+    assertThat(
+            cache
+                .getContentMetadata(URI)
+                .get(
+                    CacheLoudnessStore.METADATA_NAME_INTEGRATED_LOUDNESS,
+                    /* defaultValue= */ (String) null))
+        .isEqualTo("-20.0");
+  }
+
+  @Test
+  public void setIntegratedLoudness_withoutCachedContent_doesNotAddCacheEntry() {
+    CacheLoudnessStore loudnessStore = createLoudnessStore();
+
+    loudnessStore.setIntegratedLoudness(MEDIA_ITEM, /* integratedLoudnessLufs= */ -20);
+
+    assertThat(cache.getKeys()).isEmpty();
+    assertThat(loudnessStore.getIntegratedLoudness(MEDIA_ITEM)).isEqualTo(-20.0);
+  }
+
+  @Test
+  public void createGainProvider_inNewStore_appliesGainOfLoudnessSavedInCache() throws Exception {
+    addCachedContent(URI);
+    createLoudnessStore().setIntegratedLoudness(MEDIA_ITEM, /* integratedLoudnessLufs= */ -20);
+
+    LoudnessAudioProcessor.GainProvider gainProvider =
+        createLoudnessStore().createGainProvider(/* targetLoudnessLufs= */ -14);
+
+    assertThat(gainProvider.getGain(MEDIA_ITEM))
+        .isWithin(1e-6f)
+        .of((float) Math.pow(10, 6 / 20.0));
+  }
+
+  @Test
+  public void setIntegratedLoudness_returnsSavedLoudnessAndGain() {
+    CacheLoudnessStore loudnessStore = createLoudnessStore();
+
+    loudnessStore.setIntegratedLoudness(MEDIA_ITEM, /* integratedLoudnessLufs= */ -20);
+
+    assertThat(loudnessStore.getIntegratedLoudness(MEDIA_ITEM)).isEqualTo(-20.0);
+    assertThat(loudnessStore.getGain(MEDIA_ITEM, /* targetLoudnessLufs= */ -14))
+        .isWithin(1e-6f)
+        .of((float) Math.pow(10, 6 / 20.0));
+  }
+
+  @Test
+  public void setIntegratedLoudness_withInfiniteLoudness_doesNotSaveLoudness() {
+    CacheLoudnessStore loudnessStore = createLoudnessStore();
+
+    loudnessStore.setIntegratedLoudness(MEDIA_ITEM, Double.NEGATIVE_INFINITY);
+
+    assertThat(loudnessStore.getIntegratedLoudness(MEDIA_ITEM)).isNaN();
+  }
+
+  @Test
+  public void onLoudnessMeasured_appliesGainFromCreatedGainProvider() {
+    CacheLoudnessStore loudnessStore = createLoudnessStore();
+    LoudnessAudioProcessor.GainProvider gainProvider =
+        loudnessStore.createGainProvider(/* targetLoudnessLufs= */ -14);
+
+    loudnessStore.onLoudnessMeasured(
+        MEDIA_ITEM, /* integratedLoudnessLufs= */ -8, /* measuredDurationUs= */ 1_000_000);
+
+    assertThat(gainProvider.getGain(MEDIA_ITEM))
+        .isWithin(1e-6f)
+        .of((float) Math.pow(10, -6 / 20.0));
+    assertThat(gainProvider.getGain(MediaItem.fromUri("https://test.test/other.mp3")))
+        .isEqualTo(1f);
+  }
+
+  private CacheLoudnessStore createLoudnessStore() {
+    return new CacheLoudnessStore(cache, CacheKeyFactory.DEFAULT, /* executor= */ Runnable::run);
+  }
+
+  private void addCachedContent(String key) throws IOException, InterruptedException {
+    CacheSpan holeSpan = cache.startReadWrite(key, /* position= */ 0, C.LENGTH_UNSET);
+    File file = cache.startFile(key, /* position= */ 0, /* length= */ 1);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(0);
+    }
+    cache.commitFile(file, /* length= */ 1);
+    cache.releaseHoleSpan(holeSpan);
+  }
+}
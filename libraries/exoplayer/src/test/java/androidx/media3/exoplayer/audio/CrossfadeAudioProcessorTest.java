@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.audio;
+
+import static androidx.media3.test.utils.TestUtil.createByteBuffer;
+import static androidx.media3.test.utils.TestUtil.createFloatArray;
+import static androidx.media3.test.utils.TestUtil.createShortArray;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.media3.common.C;
+import androidx.media3.common.audio.AudioProcessor.AudioFormat;
+import androidx.media3.common.audio.AudioProcessor.UnhandledAudioFormatException;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link CrossfadeAudioProcessor}. */
+@RunWith(AndroidJUnit4.class)
+public final class CrossfadeAudioProcessorTest {
+
+  // One frame per millisecond, so that a crossfade of 4 ms covers 4 frames.
+  private static final AudioFormat MONO_PCM16_FORMAT =
+      new AudioFormat(/* sampleRate= */ 1000, /* channelCount= */ 1, C.ENCODING_PCM_16BIT);
+  private static final AudioFormat MONO_PCM_FLOAT_FORMAT =
+      new AudioFormat(/* sampleRate= */ 1000, /* channelCount= */ 1, C.ENCODING_PCM_FLOAT);
+
+  @Test
+  public void queueEndOfStream_withoutStreamTransition_outputsInputUnmodified() throws Exception {
+    CrossfadeAudioProcessor crossfadeAudioProcessor =
+        new CrossfadeAudioProcessor(
+            /* crossfadeDurationUs= */ 4000, CrossfadeAudioProcessor.FADE_CURVE_LINEAR);
+    crossfadeAudioProcessor.configure(MONO_PCM16_FORMAT);
+    crossfadeAudioProcessor.flush();
+    ByteBuffer resultBuffer = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder());
+
+    ByteBuffer inputBuffer = createByteBuffer(new short[] {1, 2, 3, 4, 5, 6});
+    crossfadeAudioProcessor.queueInput(inputBuffer);
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    crossfadeAudioProcessor.queueEndOfStream();
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    resultBuffer.flip();
+
+    assertThat(crossfadeAudioProcessor.isEnded()).isTrue();
+    assertThat(createShortArray(resultBuffer)).isEqualTo(new short[] {1, 2, 3, 4, 5, 6});
+  }
+
+  @Test
+  public void queueInput_afterStreamTransition_crossfadesStreamsLinearly() throws Exception {
+    CrossfadeAudioProcessor crossfadeAudioProcessor =
+        new CrossfadeAudioProcessor(
+            /* crossfadeDurationUs= */ 4000, CrossfadeAudioProcessor.FADE_CURVE_LINEAR);
+    crossfadeAudioProcessor.configure(MONO_PCM16_FORMAT);
+    crossfadeAudioProcessor.flush();
+    ByteBuffer resultBuffer = ByteBuffer.allocateDirect(16).order(ByteOrder.nativeOrder());
+
+    crossfadeAudioProcessor.queueInput(
+        createByteBuffer(new short[] {100, 100, 100, 100, 100, 100}));
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    drainForStreamTransition(crossfadeAudioProcessor, MONO_PCM16_FORMAT);
+    crossfadeAudioProcessor.queueInput(
+        createByteBuffer(new short[] {200, 200, 200, 200, 200, 200}));
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    crossfadeAudioProcessor.queueEndOfStream();
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    resultBuffer.flip();
+
+    assertThat(crossfadeAudioProcessor.isEnded()).isTrue();
+    assertThat(createShortArray(resultBuffer))
+        .isEqualTo(new short[] {100, 100, 100, 125, 150, 175, 200, 200});
+  }
+
+  @Test
+  public void queueInput_afterStreamTransitionWithFloatSamples_crossfadesStreamsWithEqualPower()
+      throws Exception {
+    CrossfadeAudioProcessor crossfadeAudioProcessor =
+        new CrossfadeAudioProcessor(
+            /* crossfadeDurationUs= */ 2000, CrossfadeAudioProcessor.FADE_CURVE_EQUAL_POWER);
+    crossfadeAudioProcessor.configure(MONO_PCM_FLOAT_FORMAT);
+    crossfadeAudioProcessor.flush();
+    ByteBuffer resultBuffer = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder());
+
+    crossfadeAudioProcessor.queueInput(createByteBuffer(new float[] {1f, 1f}));
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    drainForStreamTransition(crossfadeAudioProcessor, MONO_PCM_FLOAT_FORMAT);
+    crossfadeAudioProcessor.queueInput(createByteBuffer(new float[] {0f, 0f, 0f}));
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    crossfadeAudioProcessor.queueEndOfStream();
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    resultBuffer.flip();
+
+    assertThat(createFloatArray(resultBuffer))
+        .usingTolerance(1e-6)
+        .containsExactly(new float[] {1f, (float) Math.cos(Math.PI / 4), 0f})
+        .inOrder();
+  }
+
+  @Test
+  public void flush_withoutStreamTransition_discardsHeldBackAudio() throws Exception {
+    CrossfadeAudioProcessor crossfadeAudioProcessor =
+        new CrossfadeAudioProcessor(
+            /* crossfadeDurationUs= */ 4000, CrossfadeAudioProcessor.FADE_CURVE_LINEAR);
+    crossfadeAudioProcessor.configure(MONO_PCM16_FORMAT);
+    crossfadeAudioProcessor.flush();
+    ByteBuffer resultBuffer = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder());
+
+    crossfadeAudioProcessor.queueInput(createByteBuffer(new short[] {1, 2, 3, 4, 5, 6}));
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    crossfadeAudioProcessor.setStreamTransitionPending(true);
+    crossfadeAudioProcessor.setStreamTransitionPending(false);
+    crossfadeAudioProcessor.flush();
+    crossfadeAudioProcessor.queueInput(createByteBuffer(new short[] {7, 8}));
+    crossfadeAudioProcessor.queueEndOfStream();
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    resultBuffer.flip();
+
+    assertThat(createShortArray(resultBuffer)).isEqualTo(new short[] {1, 2, 7, 8});
+  }
+
+  @Test
+  public void queueEndOfStream_withStreamTransitionToOtherFormat_outputsHeldBackAudio()
+      throws Exception {
+    CrossfadeAudioProcessor crossfadeAudioProcessor =
+        new CrossfadeAudioProcessor(
+            /* crossfadeDurationUs= */ 4000, CrossfadeAudioProcessor.FADE_CURVE_LINEAR);
+    crossfadeAudioProcessor.configure(MONO_PCM16_FORMAT);
+    crossfadeAudioProcessor.flush();
+    ByteBuffer resultBuffer = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder());
+
+    crossfadeAudioProcessor.queueInput(createByteBuffer(new short[] {1, 2, 3, 4, 5, 6}));
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    crossfadeAudioProcessor.setStreamTransitionPending(true);
+    crossfadeAudioProcessor.configure(
+        new AudioFormat(/* sampleRate= */ 2000, /* channelCount= */ 1, C.ENCODING_PCM_16BIT));
+    crossfadeAudioProcessor.queueEndOfStream();
+    resultBuffer.put(crossfadeAudioProcessor.getOutput());
+    resultBuffer.flip();
+
+    assertThat(crossfadeAudioProcessor.isEnded()).isTrue();
+    assertThat(createShortArray(resultBuffer)).isEqualTo(new short[] {1, 2, 3, 4, 5, 6});
+  }
+
+  @Test
+  public void configure_withZeroDuration_isInactive() throws Exception {
+    CrossfadeAudioProcessor crossfadeAudioProcessor =
+        new CrossfadeAudioProcessor(
+            /* crossfadeDurationUs= */ 0, CrossfadeAudioProcessor.FADE_CURVE_LINEAR);
+
+    crossfadeAudioProcessor.configure(MONO_PCM16_FORMAT);
+
+    assertThat(crossfadeAudioProcessor.isActive()).isFalse();
+  }
+
+  @Test
+  public void configure_withUnsupportedEncoding_throws() {
+    CrossfadeAudioProcessor crossfadeAudioProcessor =
+        new CrossfadeAudioProcessor(
+            /* crossfadeDurationUs= */ 4000, CrossfadeAudioProcessor.FADE_CURVE_LINEAR);
+
+    assertThrows(
+        UnhandledAudioFormatException.class,
+        () ->
+            crossfadeAudioProcessor.configure(
+                new AudioFormat(
+                    /* sampleRate= */ 1000, /* channelCount= */ 1, C.ENCODING_PCM_24BIT)));
+  }
+
+  /** Drains the processor and flushes it as the sink does when transitioning to another stream. */
+  private static void drainForStreamTransition(
+      CrossfadeAudioProcessor crossfadeAudioProcessor, AudioFormat nextAudioFormat)
+      throws UnhandledAudioFormatException {
+    crossfadeAudioProcessor.setStreamTransitionPending(true);
+    crossfadeAudioProcessor.configure(nextAudioFormat);
+    crossfadeAudioProcessor.queueEndOfStream();
+    assertThat(crossfadeAudioProcessor.getOutput().hasRemaining()).isFalse();
+    assertThat(crossfadeAudioProcessor.isEnded()).isTrue();
+    crossfadeAudioProcessor.flush();
+  }
+}
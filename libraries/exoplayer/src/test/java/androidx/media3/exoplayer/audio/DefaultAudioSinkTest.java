@@ -47,7 +47,10 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.common.collect.ImmutableList;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.junit.After;
@@ -753,6 +756,61 @@ public final class DefaultAudioSinkTest {
     assertThrows(IllegalStateException.class, defaultAudioSinkBuilder::build);
   }
 
+  @Test
+  public void handleBuffer_withCrossfadeAfterStreamChange_crossfadesStreams() throws Exception {
+    SampleRecordingAudioBufferSink recordingSink = new SampleRecordingAudioBufferSink();
+    defaultAudioSink = createCrossfadingAudioSink(recordingSink);
+    configureDefaultAudioSink(CHANNEL_COUNT_STEREO);
+    retryUntilTrue(
+        () ->
+            defaultAudioSink.handleBuffer(
+                create200Ms44100HzStereoBuffer(/* sampleValue= */ 1000),
+                /* presentationTimeUs= */ 0,
+                /* encodedAccessUnitCount= */ 1));
+
+    defaultAudioSink.setOutputStreamOffsetUs(/* outputStreamOffsetUs= */ 200_000);
+    defaultAudioSink.handleDiscontinuity();
+    retryUntilTrue(
+        () ->
+            defaultAudioSink.handleBuffer(
+                create200Ms44100HzStereoBuffer(/* sampleValue= */ 0),
+                /* presentationTimeUs= */ 200_000,
+                /* encodedAccessUnitCount= */ 1));
+
+    // The end of the first stream is faded into the start of the second one.
+    assertThat(recordingSink.distinctSamples.size()).isGreaterThan(2);
+  }
+
+  @Test
+  public void handleBuffer_withCrossfadeAfterDiscontinuity_doesNotCrossfade() throws Exception {
+    SampleRecordingAudioBufferSink recordingSink = new SampleRecordingAudioBufferSink();
+    defaultAudioSink = createCrossfadingAudioSink(recordingSink);
+    configureDefaultAudioSink(CHANNEL_COUNT_STEREO);
+    retryUntilTrue(
+        () ->
+            defaultAudioSink.handleBuffer(
+                create200Ms44100HzStereoBuffer(/* sampleValue= */ 1000),
+                /* presentationTimeUs= */ 0,
+                /* encodedAccessUnitCount= */ 1));
+
+    defaultAudioSink.handleDiscontinuity();
+    retryUntilTrue(
+        () ->
+            defaultAudioSink.handleBuffer(
+                create200Ms44100HzStereoBuffer(/* sampleValue= */ 0),
+                /* presentationTimeUs= */ 200_000,
+                /* encodedAccessUnitCount= */ 1));
+    // A timestamp jump that causes an unexpected discontinuity.
+    retryUntilTrue(
+        () ->
+            defaultAudioSink.handleBuffer(
+                create200Ms44100HzStereoBuffer(/* sampleValue= */ 1000),
+                /* presentationTimeUs= */ 1_000_000,
+                /* encodedAccessUnitCount= */ 1));
+
+    assertThat(recordingSink.distinctSamples).containsExactly((short) 0, (short) 1000);
+  }
+
   private void configureDefaultAudioSink(int channelCount) throws AudioSink.ConfigurationException {
     configureDefaultAudioSink(channelCount, /* trimStartFrames= */ 0, /* trimEndFrames= */ 0);
   }
@@ -910,6 +968,33 @@ public final class DefaultAudioSinkTest {
         .build();
   }
 
+  /**
+   * Creates a crossfading {@link DefaultAudioSink} whose output is passed to the given {@link
+   * TeeAudioProcessor.AudioBufferSink}.
+   */
+  private static DefaultAudioSink createCrossfadingAudioSink(
+      TeeAudioProcessor.AudioBufferSink audioBufferSink) {
+    return new DefaultAudioSink.Builder()
+        .setAudioProcessorChain(
+            new DefaultAudioProcessorChain(new TeeAudioProcessor(audioBufferSink)))
+        .setCrossfade(
+            /* crossfadeDurationUs= */ 100_000, CrossfadeAudioProcessor.FADE_CURVE_LINEAR)
+        .build();
+  }
+
+  /** Creates a 200 ms buffer of 44.1 kHz stereo 16-bit audio with a constant sample value. */
+  private static ByteBuffer create200Ms44100HzStereoBuffer(int sampleValue) {
+    ByteBuffer buffer =
+        ByteBuffer.allocateDirect(
+                SAMPLE_RATE_44_1 / 5 * CHANNEL_COUNT_STEREO * BYTES_PER_FRAME_16_BIT)
+            .order(ByteOrder.nativeOrder());
+    while (buffer.hasRemaining()) {
+      buffer.putShort((short) sampleValue);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
   /** Creates a one second silence buffer for 44.1 kHz stereo 16-bit audio. */
   private static ByteBuffer create1Sec44100HzSilenceBuffer() {
     return ByteBuffer.allocateDirect(
@@ -952,4 +1037,28 @@ public final class DefaultAudioSinkTest {
       buffer.position(position);
     }
   }
+
+  /** Records the distinct 16-bit sample values output, including those output before flushes. */
+  private static final class SampleRecordingAudioBufferSink
+      implements TeeAudioProcessor.AudioBufferSink {
+
+    public final Set<Short> distinctSamples;
+
+    public SampleRecordingAudioBufferSink() {
+      distinctSamples = new HashSet<>();
+    }
+
+    @Override
+    public void flush(int sampleRateHz, int channelCount, int encoding) {
+      // Do nothing.
+    }
+
+    @Override
+    public void handleBuffer(ByteBuffer buffer) {
+      ShortBuffer samples = buffer.duplicate().order(ByteOrder.nativeOrder()).asShortBuffer();
+      while (samples.hasRemaining()) {
+        distinctSamples.add(samples.get());
+      }
+    }
+  }
 }
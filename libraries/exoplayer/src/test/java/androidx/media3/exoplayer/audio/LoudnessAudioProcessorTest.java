@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.audio;
+
+import static androidx.media3.test.utils.TestUtil.createByteBuffer;
+import static androidx.media3.test.utils.TestUtil.createFloatArray;
+import static androidx.media3.test.utils.TestUtil.createShortArray;
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.media3.common.C;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.audio.AudioProcessor.AudioFormat;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link LoudnessAudioProcessor}. */
+@RunWith(AndroidJUnit4.class)
+public final class LoudnessAudioProcessorTest {
+
+  private static final AudioFormat STEREO_PCM16_FORMAT =
+      new AudioFormat(/* sampleRate= */ 48_000, /* channelCount= */ 2, C.ENCODING_PCM_16BIT);
+  private static final AudioFormat STEREO_PCM_FLOAT_FORMAT =
+      new AudioFormat(/* sampleRate= */ 48_000, /* channelCount= */ 2, C.ENCODING_PCM_FLOAT);
+  private static final MediaItem MEDIA_ITEM_1 = MediaItem.fromUri("https://test.test/1.mp3");
+  private static final MediaItem MEDIA_ITEM_2 = MediaItem.fromUri("https://test.test/2.mp3");
+
+  @Test
+  public void queueInput_withGainAndPcm16Samples_appliesGainAndClips() throws Exception {
+    LoudnessAudioProcessor loudnessAudioProcessor =
+        new LoudnessAudioProcessor(/* listener= */ null);
+    loudnessAudioProcessor.setGain(2f);
+    loudnessAudioProcessor.configure(STEREO_PCM16_FORMAT);
+    loudnessAudioProcessor.flush();
+
+    loudnessAudioProcessor.queueInput(createByteBuffer(new short[] {1000, -1000, 20000, -20000}));
+
+    assertThat(createShortArray(loudnessAudioProcessor.getOutput()))
+        .isEqualTo(new short[] {2000, -2000, Short.MAX_VALUE, Short.MIN_VALUE});
+  }
+
+  @Test
+  public void queueInput_withGainAndPcmFloatSamples_appliesGain() throws Exception {
+    LoudnessAudioProcessor loudnessAudioProcessor =
+        new LoudnessAudioProcessor(/* listener= */ null);
+    loudnessAudioProcessor.setGain(0.5f);
+    loudnessAudioProcessor.configure(STEREO_PCM_FLOAT_FORMAT);
+    loudnessAudioProcessor.flush();
+
+    loudnessAudioProcessor.queueInput(createByteBuffer(new float[] {1f, -1f, 0.5f, -0.5f}));
+
+    assertThat(createFloatArray(loudnessAudioProcessor.getOutput()))
+        .isEqualTo(new float[] {0.5f, -0.5f, 0.25f, -0.25f});
+  }
+
+  @Test
+  public void setGain_appliesGainFromNextFlush() throws Exception {
+    LoudnessAudioProcessor loudnessAudioProcessor =
+        new LoudnessAudioProcessor(/* listener= */ null);
+    loudnessAudioProcessor.setGain(2f);
+    loudnessAudioProcessor.configure(STEREO_PCM16_FORMAT);
+    loudnessAudioProcessor.flush();
+
+    loudnessAudioProcessor.setGain(3f);
+    loudnessAudioProcessor.configure(STEREO_PCM16_FORMAT);
+    loudnessAudioProcessor.queueInput(createByteBuffer(new short[] {100, 100}));
+    short[] outputBeforeFlush = createShortArray(loudnessAudioProcessor.getOutput());
+    loudnessAudioProcessor.flush();
+    loudnessAudioProcessor.queueInput(createByteBuffer(new short[] {100, 100}));
+    short[] outputAfterFlush = createShortArray(loudnessAudioProcessor.getOutput());
+
+    assertThat(outputBeforeFlush).isEqualTo(new short[] {200, 200});
+    assertThat(outputAfterFlush).isEqualTo(new short[] {300, 300});
+  }
+
+  @Test
+  public void queueEndOfStream_atStreamEnd_reportsLoudnessWithoutGain() throws Exception {
+    List<MediaItem> mediaItems = new ArrayList<>();
+    List<Double> loudnesses = new ArrayList<>();
+    List<Long> durationsUs = new ArrayList<>();
+    LoudnessAudioProcessor loudnessAudioProcessor =
+        new LoudnessAudioProcessor(
+            (mediaItem, integratedLoudnessLufs, measuredDurationUs) -> {
+              mediaItems.add(mediaItem);
+              loudnesses.add(integratedLoudnessLufs);
+              durationsUs.add(measuredDurationUs);
+            });
+    loudnessAudioProcessor.setGain(2f);
+    loudnessAudioProcessor.configure(STEREO_PCM_FLOAT_FORMAT);
+    loudnessAudioProcessor.setNextStream(MEDIA_ITEM_1, /* startsAtBeginning= */ true);
+    loudnessAudioProcessor.flush();
+
+    loudnessAudioProcessor.queueInput(createByteBuffer(createOneSecondSineAtMinus23Dbfs()));
+    loudnessAudioProcessor.getOutput();
+    loudnessAudioProcessor.setStreamEndPending(true);
+    loudnessAudioProcessor.queueEndOfStream();
+
+    assertThat(mediaItems).containsExactly(MEDIA_ITEM_1);
+    assertThat(loudnesses.get(0)).isWithin(0.05).of(-23);
+    assertThat(durationsUs).containsExactly(1_000_000L);
+  }
+
+  @Test
+  public void queueEndOfStream_withinStream_doesNotReportLoudness() throws Exception {
+    List<MediaItem> mediaItems = new ArrayList<>();
+    LoudnessAudioProcessor loudnessAudioProcessor =
+        new LoudnessAudioProcessor(
+            (mediaItem, integratedLoudnessLufs, measuredDurationUs) -> mediaItems.add(mediaItem));
+    loudnessAudioProcessor.configure(STEREO_PCM_FLOAT_FORMAT);
+    loudnessAudioProcessor.setNextStream(MEDIA_ITEM_1, /* startsAtBeginning= */ true);
+    loudnessAudioProcessor.flush();
+
+    // Drain and flush within the stream, as for a playback parameters change.
+    loudnessAudioProcessor.queueInput(createByteBuffer(createOneSecondSineAtMinus23Dbfs()));
+    loudnessAudioProcessor.getOutput();
+    loudnessAudioProcessor.queueEndOfStream();
+    loudnessAudioProcessor.flush();
+    boolean reportedBeforeStreamEnd = !mediaItems.isEmpty();
+    loudnessAudioProcessor.queueInput(createByteBuffer(createOneSecondSineAtMinus23Dbfs()));
+    loudnessAudioProcessor.getOutput();
+    loudnessAudioProcessor.setStreamEndPending(true);
+    loudnessAudioProcessor.queueEndOfStream();
+
+    assertThat(reportedBeforeStreamEnd).isFalse();
+    assertThat(mediaItems).containsExactly(MEDIA_ITEM_1);
+  }
+
+  @Test
+  public void queueEndOfStream_afterDiscardedMeasurement_doesNotReportLoudness() throws Exception {
+    List<MediaItem> mediaItems = new ArrayList<>();
+    LoudnessAudioProcessor loudnessAudioProcessor =
+        new LoudnessAudioProcessor(
+            (mediaItem, integratedLoudnessLufs, measuredDurationUs) -> mediaItems.add(mediaItem));
+    loudnessAudioProcessor.configure(STEREO_PCM_FLOAT_FORMAT);
+    loudnessAudioProcessor.setNextStream(MEDIA_ITEM_1, /* startsAtBeginning= */ true);
+    loudnessAudioProcessor.flush();
+
+    loudnessAudioProcessor.queueInput(createByteBuffer(createOneSecondSineAtMinus23Dbfs()));
+    loudnessAudioProcessor.getOutput();
+    // Seek within the stream.
+    loudnessAudioProcessor.discardMeasurement();
+    loudnessAudioProcessor.flush();
+    loudnessAudioProcessor.queueInput(createByteBuffer(createOneSecondSineAtMinus23Dbfs()));
+    loudnessAudioProcessor.getOutput();
+    loudnessAudioProcessor.setStreamEndPending(true);
+    loudnessAudioProcessor.queueEndOfStream();
+
+    assertThat(mediaItems).isEmpty();
+  }
+
+  @Test
+  public void flush_atNextStream_appliesGainFromGainProvider() throws Exception {
+    LoudnessAudioProcessor loudnessAudioProcessor =
+        new LoudnessAudioProcessor(
+            /* listener= */ null, mediaItem -> mediaItem.equals(MEDIA_ITEM_1) ? 2f : 0.5f);
+    loudnessAudioProcessor.configure(STEREO_PCM16_FORMAT);
+    loudnessAudioProcessor.setNextStream(MEDIA_ITEM_1, /* startsAtBeginning= */ true);
+    loudnessAudioProcessor.flush();
+    loudnessAudioProcessor.queueInput(createByteBuffer(new short[] {100, 100}));
+    short[] outputOfFirstStream = createShortArray(loudnessAudioProcessor.getOutput());
+
+    loudnessAudioProcessor.setStreamEndPending(true);
+    loudnessAudioProcessor.queueEndOfStream();
+    loudnessAudioProcessor.getOutput();
+    loudnessAudioProcessor.setNextStream(MEDIA_ITEM_2, /* startsAtBeginning= */ true);
+    loudnessAudioProcessor.flush();
+    loudnessAudioProcessor.queueInput(createByteBuffer(new short[] {100, 100}));
+    short[] outputOfSecondStream = createShortArray(loudnessAudioProcessor.getOutput());
+
+    assertThat(outputOfFirstStream).isEqualTo(new short[] {200, 200});
+    assertThat(outputOfSecondStream).isEqualTo(new short[] {50, 50});
+  }
+
+  @Test
+  public void configure_withoutListenerAndWithUnitGain_isActive() throws Exception {
+    LoudnessAudioProcessor loudnessAudioProcessor =
+        new LoudnessAudioProcessor(/* listener= */ null);
+
+    loudnessAudioProcessor.configure(STEREO_PCM16_FORMAT);
+
+    assertThat(loudnessAudioProcessor.isActive()).isTrue();
+  }
+
+  @Test
+  public void getGainForTargetLoudness_returnsGainForLoudnessDifference() {
+    assertThat(
+            LoudnessAudioProcessor.getGainForTargetLoudness(
+                /* integratedLoudnessLufs= */ -20, /* targetLoudnessLufs= */ -14))
+        .isWithin(1e-6f)
+        .of((float) Math.pow(10, 6 / 20.0));
+    assertThat(
+            LoudnessAudioProcessor.getGainForTargetLoudness(
+                Double.NEGATIVE_INFINITY, /* targetLoudnessLufs= */ -14))
+        .isEqualTo(1f);
+  }
+
+  /**
+   * Returns one second of a 997 Hz sine at -23 dBFS in both channels at 48 kHz, which has a
+   * loudness of -23 LUFS.
+   */
+  private static float[] createOneSecondSineAtMinus23Dbfs() {
+    float[] samples = new float[48_000 * 2];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] =
+          (float) (Math.pow(10, -23 / 20.0) * Math.sin(2 * Math.PI * 997 * (i / 2) / 48_000.0));
+    }
+    return samples;
+  }
+}
@@ -39,9 +39,11 @@ import android.os.SystemClock;
 import androidx.annotation.Nullable;
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.MimeTypes;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.PlaybackParameters;
+import androidx.media3.common.Timeline;
 import androidx.media3.common.util.Clock;
 import androidx.media3.exoplayer.ExoPlaybackException;
 import androidx.media3.exoplayer.RendererCapabilities;
@@ -54,6 +56,7 @@ import androidx.media3.exoplayer.mediacodec.DefaultMediaCodecAdapterFactory;
 import androidx.media3.exoplayer.mediacodec.MediaCodecInfo;
 import androidx.media3.exoplayer.mediacodec.MediaCodecSelector;
 import androidx.media3.exoplayer.source.MediaSource;
+import androidx.media3.exoplayer.source.SinglePeriodTimeline;
 import androidx.media3.exoplayer.upstream.DefaultAllocator;
 import androidx.media3.test.utils.FakeClock;
 import androidx.media3.test.utils.FakeSampleStream;
@@ -453,6 +456,40 @@ public class MediaCodecAudioRendererTest {
     inOrderAudioSink.verify(audioSink).setOutputStreamOffsetUs(1_000_000);
   }
 
+  @Test
+  public void enable_atStartOfClippedItem_setsStreamMediaItemStartingAtBeginning()
+      throws Exception {
+    MediaItem mediaItem = MediaItem.fromUri("https://test.test/audio.mp4");
+    Timeline timeline = createClippedTimeline(mediaItem, /* clipStartUs= */ 10_000_000);
+    mediaCodecAudioRenderer.setTimeline(timeline);
+
+    enableWithEmptyStream(
+        /* startPositionUs= */ 11_000_000,
+        /* offsetUs= */ 1_000_000,
+        new MediaSource.MediaPeriodId(timeline.getUidOfPeriod(/* periodIndex= */ 0)));
+
+    verify(audioSink)
+        .setStreamMediaItem(
+            /* outputStreamOffsetUs= */ 1_000_000, mediaItem, /* startsAtBeginning= */ true);
+  }
+
+  @Test
+  public void enable_afterStartOfClippedItem_setsStreamMediaItemNotStartingAtBeginning()
+      throws Exception {
+    MediaItem mediaItem = MediaItem.fromUri("https://test.test/audio.mp4");
+    Timeline timeline = createClippedTimeline(mediaItem, /* clipStartUs= */ 10_000_000);
+    mediaCodecAudioRenderer.setTimeline(timeline);
+
+    enableWithEmptyStream(
+        /* startPositionUs= */ 16_000_000,
+        /* offsetUs= */ 1_000_000,
+        new MediaSource.MediaPeriodId(timeline.getUidOfPeriod(/* periodIndex= */ 0)));
+
+    verify(audioSink)
+        .setStreamMediaItem(
+            /* outputStreamOffsetUs= */ 1_000_000, mediaItem, /* startsAtBeginning= */ false);
+  }
+
   @Test
   public void supportsFormat_withEac3JocMediaAndEac3Decoder_returnsTrue() throws Exception {
     Format mediaFormat =
@@ -1035,4 +1072,42 @@ public class MediaCodecAudioRendererTest {
         .setEncoderPadding(inputFormat.encoderPadding)
         .build();
   }
+
+  /** Returns a timeline of an item whose window is clipped to start after its period starts. */
+  private static Timeline createClippedTimeline(MediaItem mediaItem, long clipStartUs) {
+    return new SinglePeriodTimeline(
+        /* periodDurationUs= */ 60_000_000,
+        /* windowDurationUs= */ 20_000_000,
+        /* windowPositionInPeriodUs= */ clipStartUs,
+        /* windowDefaultStartPositionUs= */ 0,
+        /* isSeekable= */ true,
+        /* isDynamic= */ false,
+        /* useLiveConfiguration= */ false,
+        /* manifest= */ null,
+        mediaItem);
+  }
+
+  private void enableWithEmptyStream(
+      long startPositionUs, long offsetUs, MediaSource.MediaPeriodId mediaPeriodId)
+      throws ExoPlaybackException {
+    FakeSampleStream fakeSampleStream =
+        new FakeSampleStream(
+            new DefaultAllocator(/* trimOnReset= */ true, /* individualAllocationSize= */ 1024),
+            /* mediaSourceEventDispatcher= */ null,
+            DrmSessionManager.DRM_UNSUPPORTED,
+            new DrmSessionEventListener.EventDispatcher(),
+            AUDIO_AAC,
+            ImmutableList.of(END_OF_STREAM_ITEM));
+    fakeSampleStream.writeData(startPositionUs);
+    mediaCodecAudioRenderer.enable(
+        RendererConfiguration.DEFAULT,
+        new Format[] {AUDIO_AAC},
+        fakeSampleStream,
+        /* positionUs= */ startPositionUs,
+        /* joining= */ false,
+        /* mayRenderStartOfStream= */ true,
+        startPositionUs,
+        offsetUs,
+        mediaPeriodId);
+  }
 }
@@ -473,6 +473,38 @@ public class MediaCodecRendererTest {
         inOrder, renderer, /* presentationTimeUs= */ 500, /* isDecodeOnly= */ false);
   }
 
+  @Test
+  public void render_countsQueuedInputBytes() throws Exception {
+    Format format =
+        new Format.Builder().setSampleMimeType(MimeTypes.AUDIO_AAC).setAverageBitrate(1000).build();
+    FakeSampleStream fakeSampleStream =
+        createFakeSampleStream(format, /* sampleTimesUs...= */ 0, 100, 200, 300, 400, 500);
+    MediaSource.MediaPeriodId mediaPeriodId = new MediaSource.MediaPeriodId(new Object());
+    MediaCodecRenderer renderer = new TestRenderer();
+    renderer.init(/* index= */ 0, PlayerId.UNSET, Clock.DEFAULT);
+    renderer.enable(
+        RendererConfiguration.DEFAULT,
+        new Format[] {format},
+        fakeSampleStream,
+        /* positionUs= */ 0,
+        /* joining= */ false,
+        /* mayRenderStartOfStream= */ true,
+        /* startPositionUs= */ 0,
+        /* offsetUs= */ 0,
+        mediaPeriodId);
+    renderer.start();
+    renderer.setCurrentStreamFinal();
+    long positionUs = 0;
+    while (!renderer.isEnded()) {
+      renderer.render(positionUs, SystemClock.elapsedRealtime());
+      positionUs += 100;
+    }
+
+    // Each sample is one byte long.
+    assertThat(renderer.decoderCounters.queuedInputBufferCount).isEqualTo(6);
+    assertThat(renderer.decoderCounters.queuedInputByteCount).isEqualTo(6);
+  }
+
   @Test
   public void render_wrapsIllegalStateExceptionFromMediaCodecInExoPlaybackException()
       throws Exception {
@@ -37,6 +37,7 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
@@ -100,6 +101,31 @@ public class DownloadManagerTest {
     assertCurrentDownloadCount(0);
   }
 
+  @Test
+  public void downloadRequest_runsTaskOnThreadFromTaskThreadFactory() throws Throwable {
+    AtomicInteger createdThreadCount = new AtomicInteger();
+    setupDownloadManager(
+        /* maxParallelDownloads= */ 100,
+        runnable -> {
+          createdThreadCount.incrementAndGet();
+          return new Thread(runnable);
+        });
+    postDownloadRequest(ID1);
+
+    FakeDownloader downloader = getDownloaderAt(0);
+    downloader.assertDownloadStarted();
+    downloader.finish();
+    assertCompleted(ID1);
+    postRemoveRequest(ID1);
+    downloader = getDownloaderAt(1);
+    downloader.assertRemoveStarted();
+    downloader.finish();
+    assertRemoved(ID1);
+
+    downloadManagerListener.blockUntilIdleAndThrowAnyFailure();
+    assertThat(createdThreadCount.get()).isEqualTo(2);
+  }
+
   @Test
   public void removeRequest_cancelsAndRemovesDownload() throws Throwable {
     postDownloadRequest(ID1);
@@ -745,6 +771,11 @@ public class DownloadManagerTest {
   }
 
   private void setupDownloadManager(int maxParallelDownloads) throws Exception {
+    setupDownloadManager(maxParallelDownloads, /* taskThreadFactory= */ Thread::new);
+  }
+
+  private void setupDownloadManager(int maxParallelDownloads, ThreadFactory taskThreadFactory)
+      throws Exception {
     if (downloadManager != null) {
       releaseDownloadManager();
     }
@@ -755,7 +786,8 @@ public class DownloadManagerTest {
                 new DownloadManager(
                     ApplicationProvider.getApplicationContext(),
                     new DefaultDownloadIndex(TestUtil.getInMemoryDatabaseProvider()),
-                    new FakeDownloaderFactory());
+                    new FakeDownloaderFactory(),
+                    taskThreadFactory);
             downloadManager.setMaxParallelDownloads(maxParallelDownloads);
             downloadManager.setMinRetryCount(MIN_RETRY_COUNT);
             downloadManager.setRequirements(new Requirements(0));
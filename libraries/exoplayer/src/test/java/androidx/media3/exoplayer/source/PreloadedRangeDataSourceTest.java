@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.media3.common.C;
+import androidx.media3.datasource.ByteArrayDataSource;
+import androidx.media3.datasource.DataSourceUtil;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.test.utils.TestUtil;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link PreloadedRangeDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class PreloadedRangeDataSourceTest {
+
+  private static final Uri URI = Uri.parse("https://test.test/stream.mp4");
+  private static final byte[] STREAM = TestUtil.buildTestData(/* length= */ 100);
+
+  @Test
+  public void read_servesLoadedBytesThenReadsUpstream() throws IOException {
+    ByteArrayDataSource upstream = new ByteArrayDataSource(STREAM);
+    PreloadedRangeDataSource dataSource =
+        new PreloadedRangeDataSource(
+            upstream, Arrays.copyOfRange(STREAM, 60, 80), /* streamLength= */ STREAM.length);
+
+    long length = dataSource.open(new DataSpec.Builder().setUri(URI).setPosition(60).build());
+    byte[] data = DataSourceUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(length).isEqualTo(40);
+    assertThat(data).isEqualTo(Arrays.copyOfRange(STREAM, 60, 100));
+  }
+
+  @Test
+  public void read_withLoadedBytesToEndOfStream_doesNotOpenUpstream() throws IOException {
+    ByteArrayDataSource upstream = new ByteArrayDataSource(STREAM);
+    PreloadedRangeDataSource dataSource =
+        new PreloadedRangeDataSource(
+            upstream, Arrays.copyOfRange(STREAM, 60, 100), /* streamLength= */ STREAM.length);
+
+    dataSource.open(new DataSpec.Builder().setUri(URI).setPosition(60).build());
+    byte[] data = DataSourceUtil.readToEnd(dataSource);
+
+    assertThat(data).isEqualTo(Arrays.copyOfRange(STREAM, 60, 100));
+    assertThat(upstream.getUri()).isNull();
+    assertThat(dataSource.getUri()).isEqualTo(URI);
+    dataSource.close();
+  }
+
+  @Test
+  public void open_withUnknownStreamLength_returnsLengthUnset() throws IOException {
+    PreloadedRangeDataSource dataSource =
+        new PreloadedRangeDataSource(
+            new ByteArrayDataSource(STREAM),
+            Arrays.copyOfRange(STREAM, 10, 20),
+            /* streamLength= */ C.LENGTH_UNSET);
+
+    long length = dataSource.open(new DataSpec.Builder().setUri(URI).setPosition(10).build());
+    byte[] data = DataSourceUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(length).isEqualTo(C.LENGTH_UNSET);
+    assertThat(data).isEqualTo(Arrays.copyOfRange(STREAM, 10, 100));
+  }
+}
@@ -17,17 +17,24 @@ package androidx.media3.exoplayer.source;
 
 import static androidx.media3.test.utils.robolectric.RobolectricUtil.runMainLooperUntil;
 import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import android.net.Uri;
 import androidx.annotation.Nullable;
 import androidx.media3.common.C;
+import androidx.media3.common.util.ConditionVariable;
 import androidx.media3.common.util.Consumer;
+import androidx.media3.common.util.NullableType;
 import androidx.media3.datasource.AssetDataSource;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
 import androidx.media3.exoplayer.LoadingInfo;
 import androidx.media3.exoplayer.analytics.PlayerId;
 import androidx.media3.exoplayer.drm.DrmSessionEventListener;
 import androidx.media3.exoplayer.drm.DrmSessionManager;
 import androidx.media3.exoplayer.source.MediaSource.MediaPeriodId;
+import androidx.media3.exoplayer.source.MetadataRangeStore.MetadataRange;
 import androidx.media3.exoplayer.upstream.DefaultAllocator;
 import androidx.media3.exoplayer.upstream.DefaultLoadErrorHandlingPolicy;
 import androidx.media3.exoplayer.util.ReleasableExecutor;
@@ -38,10 +45,19 @@ import androidx.media3.extractor.png.PngExtractor;
 import androidx.media3.extractor.text.SubtitleParser;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -49,6 +65,14 @@ import org.junit.runner.RunWith;
 @RunWith(AndroidJUnit4.class)
 public final class ProgressiveMediaPeriodTest {
 
+  /** An MP4 file whose moov box follows a media data box that the extractor seeks over. */
+  private static final String MOOV_AT_END_URI =
+      "asset://android_asset/media/mp4/bbb_800x640_768kbps_30fps_vp9.mp4";
+
+  /** The range of the moov box of {@link #MOOV_AT_END_URI}. */
+  private static final MetadataRange MOOV_RANGE =
+      new MetadataRange(/* position= */ 305_850, /* length= */ 1277, /* streamLength= */ 307_127);
+
   @Test
   public void prepareUsingBundledExtractors_updatesSourceInfoBeforeOnPreparedCallback()
       throws TimeoutException {
@@ -90,6 +114,102 @@ public final class ProgressiveMediaPeriodTest {
     assertThat(hasReleaseCallbackRun.get()).isTrue();
   }
 
+  @Test
+  public void prepare_withMetadataRangeStore_savesRangeExtractorSeekedTo()
+      throws TimeoutException {
+    FakeMetadataRangeStore metadataRangeStore = new FakeMetadataRangeStore(/* savedRange= */ null);
+    ExecutorService metadataLoadExecutor = Executors.newSingleThreadExecutor();
+    ProgressiveMediaPeriod mediaPeriod =
+        createPeriodWithMetadataRangeStore(
+            new RecordingDataSource(),
+            new RecordingDataSource(),
+            metadataRangeStore,
+            metadataLoadExecutor);
+
+    AtomicBoolean prepared = prepare(mediaPeriod);
+    runMainLooperUntil(() -> prepared.get() && metadataRangeStore.savedRange.get() != null);
+    mediaPeriod.release();
+    metadataLoadExecutor.shutdown();
+
+    assertThat(metadataRangeStore.savedRange.get()).isEqualTo(MOOV_RANGE);
+  }
+
+  @Test
+  public void prepare_withSavedMetadataRange_loadsRangeInParallel() throws TimeoutException {
+    RecordingDataSource dataSource = new RecordingDataSource();
+    RecordingDataSource metadataDataSource = new RecordingDataSource();
+    ExecutorService metadataLoadExecutor = Executors.newSingleThreadExecutor();
+    ProgressiveMediaPeriod mediaPeriod =
+        createPeriodWithMetadataRangeStore(
+            dataSource,
+            metadataDataSource,
+            new FakeMetadataRangeStore(MOOV_RANGE),
+            metadataLoadExecutor);
+
+    AtomicBoolean prepared = prepare(mediaPeriod);
+    runMainLooperUntil(prepared::get);
+    mediaPeriod.release();
+    metadataLoadExecutor.shutdown();
+
+    assertThat(metadataDataSource.getOpenedPositions()).containsExactly(MOOV_RANGE.position);
+    // The range is served from memory, so the stream isn't opened at its position.
+    assertThat(dataSource.getOpenedPositions()).doesNotContain(MOOV_RANGE.position);
+  }
+
+  @Test
+  public void prepare_withSavedMetadataRange_waitsForRangeLoad() throws Exception {
+    RecordingDataSource dataSource = new RecordingDataSource();
+    ConditionVariable metadataDataSourceOpenCondition = new ConditionVariable();
+    RecordingDataSource metadataDataSource =
+        new RecordingDataSource(metadataDataSourceOpenCondition);
+    ExecutorService metadataLoadExecutor = Executors.newSingleThreadExecutor();
+    ProgressiveMediaPeriod mediaPeriod =
+        createPeriodWithMetadataRangeStore(
+            dataSource,
+            metadataDataSource,
+            new FakeMetadataRangeStore(MOOV_RANGE),
+            metadataLoadExecutor);
+
+    AtomicBoolean prepared = prepare(mediaPeriod);
+    // The range load is blocked in open until the condition is opened.
+    runMainLooperUntil(
+        () ->
+            !metadataDataSource.getOpenedPositions().isEmpty()
+                && !dataSource.getOpenedPositions().isEmpty());
+    boolean preparedBeforeRangeLoad = prepared.get();
+    List<Long> openedPositionsBeforeRangeLoad = dataSource.getOpenedPositions();
+    metadataDataSourceOpenCondition.open();
+    runMainLooperUntil(prepared::get);
+    mediaPeriod.release();
+    metadataLoadExecutor.shutdown();
+
+    assertThat(preparedBeforeRangeLoad).isFalse();
+    // The stream isn't read past its start whilst the range load is pending.
+    assertThat(openedPositionsBeforeRangeLoad).containsExactly(0L);
+    assertThat(dataSource.getOpenedPositions()).doesNotContain(MOOV_RANGE.position);
+  }
+
+  @Test
+  public void release_whileWaitingForRangeLoad_finishesLoadOfStream() throws Exception {
+    LinkedBlockingQueue<Runnable> metadataLoadTasks = new LinkedBlockingQueue<>();
+    ExecutorService downloadExecutor = Executors.newSingleThreadExecutor();
+    ProgressiveMediaPeriod mediaPeriod =
+        createPeriodWithMetadataRangeStore(
+            new RecordingDataSource(),
+            new RecordingDataSource(),
+            new FakeMetadataRangeStore(MOOV_RANGE),
+            metadataLoadTasks::add,
+            downloadExecutor);
+    AtomicBoolean prepared = prepare(mediaPeriod);
+    runMainLooperUntil(() -> !metadataLoadTasks.isEmpty());
+
+    mediaPeriod.release();
+
+    // The load of the stream stops waiting, so the executor's tasks finish.
+    assertThat(downloadExecutor.awaitTermination(/* timeout= */ 10, SECONDS)).isTrue();
+    assertThat(prepared.get()).isFalse();
+  }
+
   private static void testExtractorsUpdatesSourceInfoBeforeOnPreparedCallback(
       ProgressiveMediaExtractor extractor, long imageDurationUs) throws TimeoutException {
     testExtractorsUpdatesSourceInfoBeforeOnPreparedCallback(
@@ -124,7 +244,11 @@ public final class ProgressiveMediaPeriodTest {
             /* singleTrackId= */ 0,
             /* singleTrackFormat= */ null,
             imageDurationUs,
-            executor != null ? ReleasableExecutor.from(executor, executorReleased) : null);
+            executor != null ? ReleasableExecutor.from(executor, executorReleased) : null,
+            /* seekIndexStore= */ null,
+            /* metadataRangeStore= */ null,
+            /* metadataDataSource= */ null,
+            /* metadataLoadExecutor= */ null);
 
     AtomicBoolean prepareCallbackCalled = new AtomicBoolean(false);
     AtomicBoolean sourceInfoRefreshCalledBeforeOnPrepared = new AtomicBoolean(false);
@@ -148,6 +272,155 @@ public final class ProgressiveMediaPeriodTest {
     assertThat(sourceInfoRefreshCalledBeforeOnPrepared.get()).isTrue();
   }
 
+  private static ProgressiveMediaPeriod createPeriodWithMetadataRangeStore(
+      DataSource dataSource,
+      DataSource metadataDataSource,
+      MetadataRangeStore metadataRangeStore,
+      Executor metadataLoadExecutor) {
+    return createPeriodWithMetadataRangeStore(
+        dataSource,
+        metadataDataSource,
+        metadataRangeStore,
+        metadataLoadExecutor,
+        /* downloadExecutor= */ null);
+  }
+
+  private static ProgressiveMediaPeriod createPeriodWithMetadataRangeStore(
+      DataSource dataSource,
+      DataSource metadataDataSource,
+      MetadataRangeStore metadataRangeStore,
+      Executor metadataLoadExecutor,
+      @Nullable ExecutorService downloadExecutor) {
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
+    return new ProgressiveMediaPeriod(
+        Uri.parse(MOOV_AT_END_URI),
+        dataSource,
+        new BundledExtractorsAdapter(Mp4Extractor.newFactory(SubtitleParser.Factory.UNSUPPORTED)),
+        DrmSessionManager.DRM_UNSUPPORTED,
+        new DrmSessionEventListener.EventDispatcher()
+            .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+        new DefaultLoadErrorHandlingPolicy(),
+        new MediaSourceEventListener.EventDispatcher()
+            .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+        (durationUs, isSeekable, isLive) -> {},
+        new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+        /* customCacheKey= */ null,
+        ProgressiveMediaSource.DEFAULT_LOADING_CHECK_INTERVAL_BYTES,
+        /* singleTrackId= */ 0,
+        /* singleTrackFormat= */ null,
+        /* singleSampleDurationUs= */ C.TIME_UNSET,
+        downloadExecutor != null
+            ? ReleasableExecutor.from(downloadExecutor, ExecutorService::shutdown)
+            : null,
+        /* seekIndexStore= */ null,
+        metadataRangeStore,
+        metadataDataSource,
+        ReleasableExecutor.from(metadataLoadExecutor, executor -> {}));
+  }
+
+  /** Prepares the period, and returns whether it has been prepared. */
+  private static AtomicBoolean prepare(ProgressiveMediaPeriod mediaPeriod) {
+    AtomicBoolean prepared = new AtomicBoolean();
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepared.set(true);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            source.continueLoading(new LoadingInfo.Builder().setPlaybackPositionUs(0).build());
+          }
+        },
+        /* positionUs= */ 0);
+    return prepared;
+  }
+
+  private static final class FakeMetadataRangeStore implements MetadataRangeStore {
+
+    public final AtomicReference<@NullableType MetadataRange> savedRange;
+
+    public FakeMetadataRangeStore(@Nullable MetadataRange savedRange) {
+      this.savedRange = new AtomicReference<>(savedRange);
+    }
+
+    @Nullable
+    @Override
+    public MetadataRange load(DataSpec dataSpec) {
+      return savedRange.get();
+    }
+
+    @Override
+    public void save(DataSpec dataSpec, MetadataRange metadataRange) {
+      savedRange.set(metadataRange);
+    }
+  }
+
+  /**
+   * Reads test assets, and records the positions at which it's opened. Optionally blocks in {@link
+   * #open} until a condition is opened.
+   */
+  private static final class RecordingDataSource implements DataSource {
+
+    private final DataSource assetDataSource;
+    private final List<Long> openedPositions;
+    @Nullable private final ConditionVariable openCondition;
+
+    public RecordingDataSource() {
+      this(/* openCondition= */ null);
+    }
+
+    public RecordingDataSource(@Nullable ConditionVariable openCondition) {
+      assetDataSource = new AssetDataSource(ApplicationProvider.getApplicationContext());
+      openedPositions = new CopyOnWriteArrayList<>();
+      this.openCondition = openCondition;
+    }
+
+    public List<Long> getOpenedPositions() {
+      return new ArrayList<>(openedPositions);
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      assetDataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      openedPositions.add(dataSpec.position);
+      if (openCondition != null) {
+        try {
+          openCondition.block();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+      return assetDataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      return assetDataSource.read(buffer, offset, length);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return assetDataSource.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return assetDataSource.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+      assetDataSource.close();
+    }
+  }
+
   private static final class ExecutionTrackingThread extends Thread {
     private final AtomicBoolean hasRun;
 
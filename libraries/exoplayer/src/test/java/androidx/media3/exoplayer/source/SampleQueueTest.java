@@ -25,6 +25,7 @@ import static androidx.media3.exoplayer.source.SampleStream.FLAG_PEEK;
 import static com.google.common.truth.Truth.assertThat;
 import static java.lang.Long.MAX_VALUE;
 import static java.lang.Long.MIN_VALUE;
+import static java.lang.Math.min;
 import static java.util.Arrays.copyOfRange;
 import static org.junit.Assert.assertArrayEquals;
 import static org.mockito.Mockito.when;
@@ -32,6 +33,7 @@ import static org.mockito.Mockito.when;
 import android.os.Looper;
 import androidx.annotation.Nullable;
 import androidx.media3.common.C;
+import androidx.media3.common.DataReader;
 import androidx.media3.common.DrmInitData;
 import androidx.media3.common.Format;
 import androidx.media3.common.MimeTypes;
@@ -420,6 +422,49 @@ public final class SampleQueueTest {
     assertAllocationCount(0);
   }
 
+  @Test
+  public void readMultiSamples_withDirectBufferAllocations() {
+    useDirectBufferAllocator();
+    writeTestData();
+    assertAllocationCount(10);
+    assertReadTestData();
+    sampleQueue.discardToRead();
+    assertAllocationCount(0);
+  }
+
+  @Test
+  public void readMultiSamples_withDirectBufferAllocationsAndDirectInputBuffer() {
+    useDirectBufferAllocator();
+    inputBuffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    writeTestData();
+    assertReadTestData();
+    sampleQueue.discardToRead();
+    assertAllocationCount(0);
+  }
+
+  @Test
+  public void readMultiSamples_withDirectBufferAllocationsWrittenFromDataReader()
+      throws IOException {
+    useDirectBufferAllocator();
+    ParsableByteArray source = new ParsableByteArray(DATA);
+    // Read fewer bytes than requested, so that writes start part way through allocations.
+    DataReader dataReader =
+        (buffer, offset, length) -> {
+          int bytesRead = min(length, 5);
+          source.readBytes(buffer, offset, bytesRead);
+          return bytesRead;
+        };
+    int bytesWritten = 0;
+    while (bytesWritten < DATA.length) {
+      bytesWritten +=
+          sampleQueue.sampleData(
+              dataReader, DATA.length - bytesWritten, /* allowEndOfInput= */ false);
+    }
+    writeTestSampleMetadata();
+
+    assertReadTestData();
+  }
+
   @Test
   public void readMultiWithSeek() {
     writeTestData();
@@ -1052,6 +1097,62 @@ public final class SampleQueueTest {
     assertThat(sampleQueue.getFirstIndex()).isEqualTo(6);
   }
 
+  @Test
+  public void seekToAndDiscardTo_manySamplesWrappingAroundQueue_findKeyframeBefore() {
+    writeAndDiscardPlaceholderSamples(CLOSE_TO_CAPACITY_SIZE);
+    int sampleCount = 3 * SampleQueue.SAMPLE_CAPACITY_INCREMENT;
+    writeFormat(FORMAT_1);
+    for (int i = 0; i < sampleCount; i++) {
+      writeSample(
+          new byte[1],
+          /* timestampUs= */ i * 1000L,
+          /* sampleFlags= */ i % 30 == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0);
+    }
+
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 1_000_500, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(CLOSE_TO_CAPACITY_SIZE + 990);
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 1_020_000, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(CLOSE_TO_CAPACITY_SIZE + 1020);
+
+    sampleQueue.discardTo(
+        /* timeUs= */ 2_000_999, /* toKeyframe= */ false, /* stopAtReadPosition= */ false);
+    assertThat(sampleQueue.getFirstIndex()).isEqualTo(CLOSE_TO_CAPACITY_SIZE + 2000);
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 2_500_000, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(CLOSE_TO_CAPACITY_SIZE + 2490);
+  }
+
+  @Test
+  public void seekTo_withOutOfOrderTimestamps_findsKeyframeInQueueOrder() {
+    writeFormat(FORMAT_1);
+    long[] timestamps = new long[] {0, 1000, 2000, 3000, 5000, 4000};
+    for (long timestampUs : timestamps) {
+      writeSample(new byte[1], timestampUs, /* sampleFlags= */ C.BUFFER_FLAG_KEY_FRAME);
+    }
+
+    // The search stops at the first sample after the specified time in queue order.
+    sampleQueue.discardTo(
+        /* timeUs= */ 4500, /* toKeyframe= */ false, /* stopAtReadPosition= */ false);
+    assertThat(sampleQueue.getFirstIndex()).isEqualTo(3);
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 4000, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(3);
+
+    // Discard the out of order sample and queue more samples in order.
+    sampleQueue.discardUpstreamSamples(/* discardFromIndex= */ 5);
+    writeSample(new byte[1], /* timestampUs= */ 6000, /* sampleFlags= */ C.BUFFER_FLAG_KEY_FRAME);
+    writeSample(new byte[1], /* timestampUs= */ 7000, /* sampleFlags= */ C.BUFFER_FLAG_KEY_FRAME);
+
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 4000, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(3);
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 6500, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(5);
+  }
+
   @Test
   public void discardToDontStopAtReadPosition() {
     writeTestData();
@@ -1513,7 +1614,6 @@ public final class SampleQueueTest {
   }
 
   /** Writes the specified test data to {@code sampleQueue}. */
-  @SuppressWarnings("ReferenceEquality")
   private void writeTestData(
       byte[] data,
       int[] sampleSizes,
@@ -1522,6 +1622,24 @@ public final class SampleQueueTest {
       Format[] sampleFormats,
       int[] sampleFlags) {
     sampleQueue.sampleData(new ParsableByteArray(data), data.length);
+    writeTestSampleMetadata(
+        sampleSizes, sampleOffsets, sampleTimestamps, sampleFormats, sampleFlags);
+  }
+
+  /** Writes the metadata of the default test samples to {@code sampleQueue}. */
+  private void writeTestSampleMetadata() {
+    writeTestSampleMetadata(
+        SAMPLE_SIZES, SAMPLE_OFFSETS, SAMPLE_TIMESTAMPS, SAMPLE_FORMATS, SAMPLE_FLAGS);
+  }
+
+  /** Writes the specified sample metadata to {@code sampleQueue}. */
+  @SuppressWarnings("ReferenceEquality")
+  private void writeTestSampleMetadata(
+      int[] sampleSizes,
+      int[] sampleOffsets,
+      long[] sampleTimestamps,
+      Format[] sampleFormats,
+      int[] sampleFlags) {
     Format format = null;
     for (int i = 0; i < sampleTimestamps.length; i++) {
       if (sampleFormats[i] != format) {
@@ -1946,6 +2064,17 @@ public final class SampleQueueTest {
     assertThat(readData).isEqualTo(copyOfRange(sampleData, offset, offset + length));
   }
 
+  /** Replaces {@code sampleQueue} with one whose allocations are backed by direct buffers. */
+  private void useDirectBufferAllocator() {
+    allocator =
+        new DefaultAllocator(
+            /* trimOnReset= */ false,
+            ALLOCATION_SIZE,
+            /* initialAllocationCount= */ 0,
+            DefaultAllocator.FLAG_USE_DIRECT_BUFFERS);
+    sampleQueue = new SampleQueue(allocator, mockDrmSessionManager, eventDispatcher);
+  }
+
   /**
    * Asserts the number of allocations currently in use by {@code sampleQueue}.
    *
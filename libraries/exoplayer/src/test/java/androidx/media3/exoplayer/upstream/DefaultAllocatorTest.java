@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.upstream;
+
+import static androidx.media3.common.util.Assertions.checkNotNull;
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link DefaultAllocator}. */
+@RunWith(AndroidJUnit4.class)
+public final class DefaultAllocatorTest {
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  @Test
+  public void allocateAndRelease_reusesReleasedAllocation() {
+    DefaultAllocator allocator = newAllocator(/* flags= */ 0);
+
+    Allocation allocation = allocator.allocate();
+    allocator.release(allocation);
+
+    assertThat(allocator.allocate()).isSameInstanceAs(allocation);
+  }
+
+  @Test
+  public void allocateAndRelease_withThreadLocalCaching_reusesReleasedAllocation() {
+    DefaultAllocator allocator = newAllocator(DefaultAllocator.FLAG_ENABLE_THREAD_LOCAL_CACHING);
+
+    Allocation allocation = allocator.allocate();
+    allocator.release(allocation);
+
+    assertThat(allocator.allocate()).isSameInstanceAs(allocation);
+  }
+
+  @Test
+  public void getTotalBytesAllocated_withThreadLocalCaching_tracksAllocatedAllocations() {
+    DefaultAllocator allocator = newAllocator(DefaultAllocator.FLAG_ENABLE_THREAD_LOCAL_CACHING);
+
+    List<Allocation> allocations = allocate(allocator, /* count= */ 20);
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(20 * ALLOCATION_SIZE);
+    for (int i = 0; i < 5; i++) {
+      allocator.release(allocations.get(i));
+    }
+
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(15 * ALLOCATION_SIZE);
+  }
+
+  @Test
+  public void release_withThreadLocalCaching_allocationsCanBeReusedByOtherThread()
+      throws Exception {
+    DefaultAllocator allocator = newAllocator(DefaultAllocator.FLAG_ENABLE_THREAD_LOCAL_CACHING);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 64);
+    Set<Allocation> releasedAllocations = Collections.newSetFromMap(new IdentityHashMap<>());
+    releasedAllocations.addAll(allocations);
+    for (Allocation allocation : allocations) {
+      allocator.release(allocation);
+    }
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    List<Allocation> reusedAllocations =
+        executor.submit(() -> allocate(allocator, /* count= */ 32)).get(10, SECONDS);
+    executor.shutdown();
+
+    // Full magazines of released allocations are shared with other threads.
+    assertThat(releasedAllocations).containsAtLeastElementsIn(reusedAllocations);
+  }
+
+  @Test
+  public void setTargetBufferSize_withThreadLocalCaching_discardsAvailableAllocations() {
+    DefaultAllocator allocator = newAllocator(DefaultAllocator.FLAG_ENABLE_THREAD_LOCAL_CACHING);
+    allocator.setTargetBufferSize(64 * ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 64);
+    for (Allocation allocation : allocations) {
+      allocator.release(allocation);
+    }
+
+    allocator.setTargetBufferSize(0);
+
+    Set<Allocation> releasedAllocations = Collections.newSetFromMap(new IdentityHashMap<>());
+    releasedAllocations.addAll(allocations);
+    for (Allocation allocation : allocate(allocator, /* count= */ 64)) {
+      assertThat(releasedAllocations).doesNotContain(allocation);
+    }
+  }
+
+  @Test
+  public void trim_withThreadLocalCaching_reclaimsAllocationsCachedByTerminatedThread()
+      throws Exception {
+    DefaultAllocator allocator = newAllocator(DefaultAllocator.FLAG_ENABLE_THREAD_LOCAL_CACHING);
+    allocator.setTargetBufferSize(64 * ALLOCATION_SIZE);
+    List<Allocation> allocations = new ArrayList<>();
+    // Fewer allocations than fit in a magazine, so they stay cached by the allocating thread.
+    Thread thread =
+        new Thread(
+            () -> {
+              allocations.addAll(allocate(allocator, /* count= */ 4));
+              for (Allocation allocation : allocations) {
+                allocator.release(allocation);
+              }
+            });
+    thread.start();
+    thread.join();
+
+    allocator.trim();
+
+    Set<Allocation> releasedAllocations = Collections.newSetFromMap(new IdentityHashMap<>());
+    releasedAllocations.addAll(allocations);
+    assertThat(releasedAllocations).containsExactlyElementsIn(allocate(allocator, /* count= */ 4));
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(4 * ALLOCATION_SIZE);
+  }
+
+  @Test
+  public void concurrentAllocateAndRelease_withThreadLocalCaching_neverSharesAllocation()
+      throws Exception {
+    assertConcurrentAllocateAndReleaseNeverSharesAllocation(
+        newAllocator(DefaultAllocator.FLAG_ENABLE_THREAD_LOCAL_CACHING));
+  }
+
+  @Test
+  public void concurrentAllocateAndRelease_neverSharesAllocation() throws Exception {
+    assertConcurrentAllocateAndReleaseNeverSharesAllocation(
+        newAllocator(/* flags= */ 0));
+  }
+
+  @Test
+  public void allocate_withDirectBuffers_returnsDisjointDirectBuffers() {
+    DefaultAllocator allocator = newAllocator(DefaultAllocator.FLAG_USE_DIRECT_BUFFERS);
+
+    // Allocate enough to span more than one slab.
+    List<Allocation> allocations = allocate(allocator, /* count= */ 40);
+    for (int i = 0; i < allocations.size(); i++) {
+      ByteBuffer buffer = checkNotNull(allocations.get(i).buffer);
+      assertThat(buffer.isDirect()).isTrue();
+      assertThat(buffer.capacity()).isEqualTo(ALLOCATION_SIZE);
+      assertThat(allocations.get(i).data).isEmpty();
+      for (int j = 0; j < ALLOCATION_SIZE; j++) {
+        buffer.put(j, (byte) i);
+      }
+    }
+
+    for (int i = 0; i < allocations.size(); i++) {
+      ByteBuffer buffer = checkNotNull(allocations.get(i).buffer);
+      for (int j = 0; j < ALLOCATION_SIZE; j++) {
+        assertThat(buffer.get(j)).isEqualTo((byte) i);
+      }
+    }
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(40 * ALLOCATION_SIZE);
+  }
+
+  @Test
+  public void concurrentAllocateAndRelease_withDirectBuffers_neverSharesAllocation()
+      throws Exception {
+    assertConcurrentAllocateAndReleaseNeverSharesAllocation(
+        newAllocator(
+            DefaultAllocator.FLAG_ENABLE_THREAD_LOCAL_CACHING
+                | DefaultAllocator.FLAG_USE_DIRECT_BUFFERS));
+  }
+
+  /**
+   * Allocates and releases from several threads at once, with allocations released on a different
+   * thread to the one that allocated them, as with loading and playback threads.
+   */
+  private static void assertConcurrentAllocateAndReleaseNeverSharesAllocation(
+      DefaultAllocator allocator) throws Exception {
+    int threadCount = 4;
+    int iterationCount = 2_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    Set<Allocation> inUseAllocations =
+        Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    List<Future<Boolean>> results = new ArrayList<>();
+    List<List<Allocation>> handOffLists = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      handOffLists.add(Collections.synchronizedList(new ArrayList<>()));
+    }
+    for (int i = 0; i < threadCount; i++) {
+      List<Allocation> ownHandOffList = handOffLists.get(i);
+      List<Allocation> nextHandOffList = handOffLists.get((i + 1) % threadCount);
+      results.add(
+          executor.submit(
+              () -> {
+                boolean allocationShared = false;
+                for (int j = 0; j < iterationCount; j++) {
+                  Allocation allocation = allocator.allocate();
+                  allocationShared |= !inUseAllocations.add(allocation);
+                  nextHandOffList.add(allocation);
+                  Allocation toRelease = null;
+                  synchronized (ownHandOffList) {
+                    if (!ownHandOffList.isEmpty()) {
+                      toRelease = ownHandOffList.remove(0);
+                    }
+                  }
+                  if (toRelease != null) {
+                    inUseAllocations.remove(toRelease);
+                    allocator.release(toRelease);
+                  }
+                }
+                return allocationShared;
+              }));
+    }
+
+    for (Future<Boolean> result : results) {
+      assertThat(result.get(30, SECONDS)).isFalse();
+    }
+    executor.shutdown();
+    int handedOffCount = 0;
+    for (List<Allocation> handOffList : handOffLists) {
+      handedOffCount += handOffList.size();
+    }
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(handedOffCount * ALLOCATION_SIZE);
+  }
+
+  private static DefaultAllocator newAllocator(@DefaultAllocator.Flags int flags) {
+    return new DefaultAllocator(
+        /* trimOnReset= */ true, ALLOCATION_SIZE, /* initialAllocationCount= */ 0, flags);
+  }
+
+  private static List<Allocation> allocate(Allocator allocator, int count) {
+    List<Allocation> allocations = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      allocations.add(allocator.allocate());
+    }
+    return allocations;
+  }
+}
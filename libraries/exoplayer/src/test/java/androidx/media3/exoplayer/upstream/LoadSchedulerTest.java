@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import androidx.media3.common.C;
+import androidx.media3.common.util.Clock;
+import androidx.media3.common.util.ConditionVariable;
+import androidx.media3.exoplayer.upstream.LoadScheduler.PrioritizedExecutor;
+import androidx.media3.test.utils.FakeClock;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link LoadScheduler}. */
+@RunWith(AndroidJUnit4.class)
+public final class LoadSchedulerTest {
+
+  private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+  private LoadScheduler loadScheduler;
+
+  @After
+  public void tearDown() {
+    if (loadScheduler != null) {
+      loadScheduler.release();
+    }
+  }
+
+  @Test
+  public void execute_tasksOfOneExecutorRunInSubmissionOrder() throws Exception {
+    loadScheduler = new LoadScheduler(/* maxConcurrentLoads= */ 4);
+    PrioritizedExecutor executor = loadScheduler.createExecutor(C.PRIORITY_PLAYBACK);
+    CountDownLatch finished = new CountDownLatch(1);
+    AtomicInteger runningCount = new AtomicInteger();
+
+    for (int i = 0; i < 10; i++) {
+      String event = "task" + i;
+      executor.execute(
+          () -> {
+            if (runningCount.incrementAndGet() > 1) {
+              events.add("concurrent");
+            }
+            events.add(event);
+            runningCount.decrementAndGet();
+          });
+    }
+    executor.execute(finished::countDown);
+
+    assertThat(finished.await(10, SECONDS)).isTrue();
+    assertThat(events)
+        .containsExactly(
+            "task0", "task1", "task2", "task3", "task4", "task5", "task6", "task7", "task8",
+            "task9")
+        .inOrder();
+  }
+
+  @Test
+  public void execute_runsTasksOfHigherPriorityExecutorsFirst() throws Exception {
+    loadScheduler = new LoadScheduler(/* maxConcurrentLoads= */ 1);
+    PrioritizedExecutor downloadExecutor = loadScheduler.createExecutor(C.PRIORITY_DOWNLOAD);
+    PrioritizedExecutor preloadExecutor =
+        loadScheduler.createExecutor(C.PRIORITY_PLAYBACK_PRELOAD);
+    PrioritizedExecutor playbackExecutor = loadScheduler.createExecutor(C.PRIORITY_PLAYBACK);
+    CountDownLatch unblock = blockScheduler();
+    CountDownLatch finished = new CountDownLatch(3);
+
+    downloadExecutor.execute(recordEvent("download", finished));
+    preloadExecutor.execute(recordEvent("preload", finished));
+    playbackExecutor.execute(recordEvent("playback", finished));
+    unblock.countDown();
+
+    assertThat(finished.await(10, SECONDS)).isTrue();
+    assertThat(events).containsExactly("playback", "preload", "download").inOrder();
+  }
+
+  @Test
+  public void execute_executorsWithEqualPriorityTakeTurns() throws Exception {
+    loadScheduler = new LoadScheduler(/* maxConcurrentLoads= */ 1);
+    PrioritizedExecutor executor1 = loadScheduler.createExecutor(C.PRIORITY_PLAYBACK);
+    PrioritizedExecutor executor2 = loadScheduler.createExecutor(C.PRIORITY_PLAYBACK);
+    CountDownLatch unblock = blockScheduler();
+    CountDownLatch finished = new CountDownLatch(5);
+
+    executor1.execute(recordEvent("1a", finished));
+    executor1.execute(recordEvent("1b", finished));
+    executor1.execute(recordEvent("1c", finished));
+    executor2.execute(recordEvent("2a", finished));
+    executor2.execute(recordEvent("2b", finished));
+    unblock.countDown();
+
+    assertThat(finished.await(10, SECONDS)).isTrue();
+    assertThat(events).containsExactly("1a", "2a", "1b", "2b", "1c").inOrder();
+  }
+
+  @Test
+  public void setPriority_reordersQueuedTasks() throws Exception {
+    loadScheduler = new LoadScheduler(/* maxConcurrentLoads= */ 1);
+    PrioritizedExecutor playbackExecutor = loadScheduler.createExecutor(C.PRIORITY_PLAYBACK);
+    PrioritizedExecutor preloadExecutor =
+        loadScheduler.createExecutor(C.PRIORITY_PLAYBACK_PRELOAD);
+    CountDownLatch unblock = blockScheduler();
+    CountDownLatch finished = new CountDownLatch(2);
+    playbackExecutor.execute(recordEvent("playback", finished));
+    preloadExecutor.execute(recordEvent("preload", finished));
+
+    preloadExecutor.setPriority(C.PRIORITY_MAX);
+    unblock.countDown();
+
+    assertThat(finished.await(10, SECONDS)).isTrue();
+    assertThat(events).containsExactly("preload", "playback").inOrder();
+    assertThat(preloadExecutor.getPriority()).isEqualTo(C.PRIORITY_MAX);
+  }
+
+  @Test
+  public void execute_neverRunsMoreThanMaxConcurrentLoads() throws Exception {
+    loadScheduler = new LoadScheduler(/* maxConcurrentLoads= */ 2);
+    AtomicInteger runningCount = new AtomicInteger();
+    AtomicInteger maxRunningCount = new AtomicInteger();
+    CountDownLatch finished = new CountDownLatch(40);
+
+    for (int i = 0; i < 8; i++) {
+      PrioritizedExecutor executor = loadScheduler.createExecutor(C.PRIORITY_PLAYBACK);
+      for (int j = 0; j < 5; j++) {
+        executor.execute(
+            () -> {
+              int count = runningCount.incrementAndGet();
+              maxRunningCount.accumulateAndGet(count, Math::max);
+              try {
+                Thread.sleep(1);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              runningCount.decrementAndGet();
+              finished.countDown();
+            });
+      }
+    }
+
+    assertThat(finished.await(10, SECONDS)).isTrue();
+    assertThat(maxRunningCount.get()).isAtMost(2);
+    assertThat(loadScheduler.getQueuedTaskCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void listener_receivesQueueWaitTime() throws Exception {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    loadScheduler = new LoadScheduler(/* maxConcurrentLoads= */ 1, clock);
+    List<Long> queueWaitTimesMs = Collections.synchronizedList(new ArrayList<>());
+    List<Integer> priorities = Collections.synchronizedList(new ArrayList<>());
+    loadScheduler.addListener(
+        (priority, queueWaitTimeMs) -> {
+          priorities.add(priority);
+          queueWaitTimesMs.add(queueWaitTimeMs);
+        });
+    CountDownLatch unblock = blockScheduler();
+    CountDownLatch finished = new CountDownLatch(1);
+    loadScheduler.createExecutor(C.PRIORITY_DOWNLOAD).execute(finished::countDown);
+
+    clock.advanceTime(250);
+    unblock.countDown();
+
+    assertThat(finished.await(10, SECONDS)).isTrue();
+    assertThat(priorities).containsExactly(C.PRIORITY_MAX, C.PRIORITY_DOWNLOAD).inOrder();
+    assertThat(queueWaitTimesMs).containsExactly(0L, 250L).inOrder();
+  }
+
+  @Test
+  public void execute_afterInterruptedTask_doesNotLeakInterrupt() throws Exception {
+    loadScheduler = new LoadScheduler(/* maxConcurrentLoads= */ 1, Clock.DEFAULT);
+    PrioritizedExecutor executor = loadScheduler.createExecutor(C.PRIORITY_PLAYBACK);
+    CountDownLatch finished = new CountDownLatch(1);
+
+    executor.execute(() -> Thread.currentThread().interrupt());
+    executor.execute(
+        () -> {
+          events.add(Thread.currentThread().isInterrupted() ? "interrupted" : "not interrupted");
+          finished.countDown();
+        });
+
+    assertThat(finished.await(10, SECONDS)).isTrue();
+    assertThat(events).containsExactly("not interrupted");
+  }
+
+  @Test
+  public void blockUntilOpen_withAllSlotsBlocked_startsPlaybackTask() throws Exception {
+    loadScheduler = new LoadScheduler(/* maxConcurrentLoads= */ 4);
+    ConditionVariable loadCondition = new ConditionVariable();
+    CountDownLatch blockedLoadsStarted = new CountDownLatch(4);
+    CountDownLatch blockedLoadsFinished = new CountDownLatch(4);
+    for (int i = 0; i < 4; i++) {
+      // Loads that wait for flow control, like paused or fully buffered progressive loads.
+      loadScheduler
+          .createExecutor(C.PRIORITY_PLAYBACK_PRELOAD)
+          .execute(
+              () -> {
+                blockedLoadsStarted.countDown();
+                try {
+                  LoadScheduler.blockUntilOpen(loadCondition);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                blockedLoadsFinished.countDown();
+              });
+    }
+    assertThat(blockedLoadsStarted.await(10, SECONDS)).isTrue();
+    CountDownLatch playbackLoadFinished = new CountDownLatch(1);
+
+    loadScheduler
+        .createExecutor(C.PRIORITY_PLAYBACK)
+        .execute(recordEvent("playback", playbackLoadFinished));
+
+    assertThat(playbackLoadFinished.await(10, SECONDS)).isTrue();
+    assertThat(events).containsExactly("playback");
+    assertThat(blockedLoadsFinished.getCount()).isEqualTo(4);
+    loadCondition.open();
+    assertThat(blockedLoadsFinished.await(10, SECONDS)).isTrue();
+  }
+
+  /**
+   * Occupies the scheduler's only thread with a task of {@link C#PRIORITY_MAX}, until the returned
+   * latch is counted down.
+   */
+  private CountDownLatch blockScheduler() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch unblock = new CountDownLatch(1);
+    loadScheduler
+        .createExecutor(C.PRIORITY_MAX)
+        .execute(
+            () -> {
+              started.countDown();
+              try {
+                unblock.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    assertThat(started.await(10, SECONDS)).isTrue();
+    return unblock;
+  }
+
+  private Runnable recordEvent(String event, CountDownLatch finished) {
+    return () -> {
+      events.add(event);
+      finished.countDown();
+    };
+  }
+}
@@ -104,6 +104,8 @@ public class DashManifestParser extends DefaultHandler
 
   private final XmlPullParserFactory xmlParserFactory;
 
+  private boolean runLengthSegmentTimelinesEnabled;
+
   public DashManifestParser() {
     try {
       xmlParserFactory = XmlPullParserFactory.newInstance();
@@ -112,6 +114,24 @@ public class DashManifestParser extends DefaultHandler
     }
   }
 
+  /**
+   * Sets whether segment timelines are stored as runs of elements with equal durations, rather
+   * than as one {@link SegmentTimelineElement} per segment. This avoids expanding the long
+   * timelines of live streams each time the manifest is refreshed.
+   *
+   * <p>If enabled, {@link #buildSegmentTimelineElement(long, long)} isn't called.
+   *
+   * <p>This method is experimental and will be renamed or removed in a future release.
+   *
+   * @param runLengthSegmentTimelinesEnabled Whether segment timelines are stored as runs.
+   * @return This parser, for convenience.
+   */
+  public DashManifestParser experimentalSetRunLengthSegmentTimelinesEnabled(
+      boolean runLengthSegmentTimelinesEnabled) {
+    this.runLengthSegmentTimelinesEnabled = runLengthSegmentTimelinesEnabled;
+    return this;
+  }
+
   // MPD parsing.
 
   @Override
@@ -1306,7 +1326,8 @@ public class DashManifestParser extends DefaultHandler
   protected List<SegmentTimelineElement> parseSegmentTimeline(
       XmlPullParser xpp, long timescale, long periodDurationMs)
       throws XmlPullParserException, IOException {
-    List<SegmentTimelineElement> segmentTimeline = new ArrayList<>();
+    List<SegmentTimelineElement> segmentTimeline =
+        runLengthSegmentTimelinesEnabled ? new RunLengthSegmentTimeline() : new ArrayList<>();
     long startTime = 0;
     long elementDuration = C.TIME_UNSET;
     int elementRepeatCount = 0;
@@ -1367,6 +1388,10 @@ public class DashManifestParser extends DefaultHandler
         elementRepeatCount >= 0
             ? 1 + elementRepeatCount
             : (int) Util.ceilDivide(endTime - startTime, elementDuration);
+    if (segmentTimeline instanceof RunLengthSegmentTimeline) {
+      ((RunLengthSegmentTimeline) segmentTimeline).addRun(startTime, elementDuration, count);
+      return count > 0 ? startTime + count * elementDuration : startTime;
+    }
     for (int i = 0; i < count; i++) {
       segmentTimeline.add(buildSegmentTimelineElement(startTime, elementDuration));
       startTime += elementDuration;
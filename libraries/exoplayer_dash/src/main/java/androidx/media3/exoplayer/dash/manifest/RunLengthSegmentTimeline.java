@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.dash.manifest;
+
+import androidx.media3.exoplayer.dash.manifest.SegmentBase.SegmentTimelineElement;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A segment timeline that stores runs of consecutive elements with equal durations, as declared by
+ * the {@code S} elements of a {@code SegmentTimeline} and their repeat counts, rather than one
+ * {@link SegmentTimelineElement} per segment.
+ *
+ * <p>Elements are created when they are accessed through {@link #get(int)}. {@link
+ * #getStartTime(int)} and {@link #getDuration(int)} return their values without creating them.
+ *
+ * <p>Runs can only be added while the timeline is being parsed. The timeline must not be modified
+ * once it's been passed to a {@link SegmentBase}.
+ */
+/* package */ final class RunLengthSegmentTimeline extends AbstractList<SegmentTimelineElement>
+    implements RandomAccess {
+
+  private static final int INITIAL_RUN_CAPACITY = 4;
+
+  private long[] runStartTimes;
+  private long[] runDurations;
+  private int[] runFirstIndices;
+  private int runCount;
+  private int size;
+
+  /** Creates an empty timeline. */
+  public RunLengthSegmentTimeline() {
+    runStartTimes = new long[INITIAL_RUN_CAPACITY];
+    runDurations = new long[INITIAL_RUN_CAPACITY];
+    runFirstIndices = new int[INITIAL_RUN_CAPACITY];
+  }
+
+  /**
+   * Appends a run of consecutive elements with equal durations. The run is merged into the last
+   * one if it continues it.
+   *
+   * @param startTime The start time of the first element of the run.
+   * @param duration The duration of each element of the run.
+   * @param count The number of elements in the run. Nothing is appended if it's not positive.
+   */
+  public void addRun(long startTime, long duration, int count) {
+    if (count <= 0) {
+      return;
+    }
+    int lastRun = runCount - 1;
+    if (lastRun >= 0
+        && runDurations[lastRun] == duration
+        && getRunEndTime(lastRun) == startTime) {
+      size += count;
+      return;
+    }
+    if (runCount == runStartTimes.length) {
+      int newCapacity = runCount * 2;
+      runStartTimes = Arrays.copyOf(runStartTimes, newCapacity);
+      runDurations = Arrays.copyOf(runDurations, newCapacity);
+      runFirstIndices = Arrays.copyOf(runFirstIndices, newCapacity);
+    }
+    runStartTimes[runCount] = startTime;
+    runDurations[runCount] = duration;
+    runFirstIndices[runCount] = size;
+    runCount++;
+    size += count;
+  }
+
+  /** Returns the number of runs in the timeline. */
+  public int getRunCount() {
+    return runCount;
+  }
+
+  /**
+   * Returns the start time of an element, as {@code get(index).startTime} would.
+   *
+   * @throws IndexOutOfBoundsException If {@code index} is out of range.
+   */
+  public long getStartTime(int index) {
+    int run = findRun(index);
+    return runStartTimes[run] + (index - runFirstIndices[run]) * runDurations[run];
+  }
+
+  /**
+   * Returns the duration of an element, as {@code get(index).duration} would.
+   *
+   * @throws IndexOutOfBoundsException If {@code index} is out of range.
+   */
+  public long getDuration(int index) {
+    return runDurations[findRun(index)];
+  }
+
+  @Override
+  public SegmentTimelineElement get(int index) {
+    int run = findRun(index);
+    long duration = runDurations[run];
+    return new SegmentTimelineElement(
+        runStartTimes[run] + (index - runFirstIndices[run]) * duration, duration);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private long getRunEndTime(int run) {
+    int runSize = (run + 1 < runCount ? runFirstIndices[run + 1] : size) - runFirstIndices[run];
+    return runStartTimes[run] + runSize * runDurations[run];
+  }
+
+  /** Returns the index of the run that contains the element at {@code index}. */
+  private int findRun(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    // Find the last run whose first index is less than or equal to index.
+    int low = 0;
+    int high = runCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (runFirstIndices[mid] <= index) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+}
@@ -209,7 +209,8 @@ public abstract class SegmentBase {
     /** See {@link DashSegmentIndex#getDurationUs(long, long)}. */
     public final long getSegmentDurationUs(long sequenceNumber, long periodDurationUs) {
       if (segmentTimeline != null) {
-        long duration = segmentTimeline.get((int) (sequenceNumber - startNumber)).duration;
+        long duration =
+            getTimelineElementDuration(segmentTimeline, (int) (sequenceNumber - startNumber));
         return (duration * C.MICROS_PER_SECOND) / timescale;
       } else {
         long segmentCount = getSegmentCount(periodDurationUs);
@@ -225,7 +226,7 @@ public abstract class SegmentBase {
       long unscaledSegmentTime;
       if (segmentTimeline != null) {
         unscaledSegmentTime =
-            segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime
+            getTimelineElementStartTime(segmentTimeline, (int) (sequenceNumber - startNumber))
                 - presentationTimeOffset;
       } else {
         unscaledSegmentTime = (sequenceNumber - startNumber) * duration;
@@ -297,6 +298,21 @@ public abstract class SegmentBase {
 
     /** See {@link DashSegmentIndex#getSegmentCount(long)}. */
     public abstract long getSegmentCount(long periodDurationUs);
+
+    /* package */ static long getTimelineElementStartTime(
+        List<SegmentTimelineElement> segmentTimeline, int index) {
+      // Avoid creating an element for each lookup in a run-length encoded timeline.
+      return segmentTimeline instanceof RunLengthSegmentTimeline
+          ? ((RunLengthSegmentTimeline) segmentTimeline).getStartTime(index)
+          : segmentTimeline.get(index).startTime;
+    }
+
+    /* package */ static long getTimelineElementDuration(
+        List<SegmentTimelineElement> segmentTimeline, int index) {
+      return segmentTimeline instanceof RunLengthSegmentTimeline
+          ? ((RunLengthSegmentTimeline) segmentTimeline).getDuration(index)
+          : segmentTimeline.get(index).duration;
+    }
   }
 
   /** A {@link MultiSegmentBase} that uses a SegmentList to define its segments. */
@@ -443,7 +459,7 @@ public abstract class SegmentBase {
     public RangedUri getSegmentUrl(Representation representation, long sequenceNumber) {
       long time;
       if (segmentTimeline != null) {
-        time = segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime;
+        time = getTimelineElementStartTime(segmentTimeline, (int) (sequenceNumber - startNumber));
       } else {
         time = (sequenceNumber - startNumber) * duration;
       }
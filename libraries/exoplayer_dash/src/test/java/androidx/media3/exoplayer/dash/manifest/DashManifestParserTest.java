@@ -36,6 +36,7 @@ import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.junit.Test;
@@ -387,6 +388,63 @@ public class DashManifestParserTest {
     assertNextTag(xpp);
   }
 
+  @Test
+  public void parseSegmentTimeline_withRunLengthSegmentTimelinesEnabled_storesRuns()
+      throws Exception {
+    DashManifestParser parser =
+        new DashManifestParser().experimentalSetRunLengthSegmentTimelinesEnabled(true);
+    XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+    // Six hours of 2 second segments, with one shorter segment after the first hour.
+    xpp.setInput(
+        new StringReader(
+            "<SegmentTimeline><S t=\"0\" d=\"2000\" r=\"1799\"/><S d=\"1000\"/>"
+                + "<S d=\"2000\" r=\"8999\"/></SegmentTimeline>"
+                + NEXT_TAG));
+    xpp.next();
+
+    List<SegmentTimelineElement> elements =
+        parser.parseSegmentTimeline(xpp, /* timescale= */ 1000, /* periodDurationMs= */ 0);
+
+    assertThat(elements).hasSize(10_801);
+    assertThat(((RunLengthSegmentTimeline) elements).getRunCount()).isEqualTo(3);
+    assertThat(elements.get(1799))
+        .isEqualTo(new SegmentTimelineElement(/* startTime= */ 3_598_000, /* duration= */ 2000));
+    assertThat(elements.get(1800))
+        .isEqualTo(new SegmentTimelineElement(/* startTime= */ 3_600_000, /* duration= */ 1000));
+    assertThat(elements.get(10_800))
+        .isEqualTo(
+            new SegmentTimelineElement(/* startTime= */ 21_599_000, /* duration= */ 2000));
+    assertNextTag(xpp);
+  }
+
+  @Test
+  public void parseSegmentTimeline_byDefault_buildsElementsWithOverridableMethod()
+      throws Exception {
+    List<Long> builtElementStartTimes = new ArrayList<>();
+    DashManifestParser parser =
+        new DashManifestParser() {
+          @Override
+          protected SegmentTimelineElement buildSegmentTimelineElement(
+              long startTime, long duration) {
+            builtElementStartTimes.add(startTime);
+            return super.buildSegmentTimelineElement(startTime, duration);
+          }
+        };
+    XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+    xpp.setInput(
+        new StringReader(
+            "<SegmentTimeline><S t=\"0\" d=\"2000\" r=\"2\"/></SegmentTimeline>" + NEXT_TAG));
+    xpp.next();
+
+    List<SegmentTimelineElement> elements =
+        parser.parseSegmentTimeline(xpp, /* timescale= */ 1000, /* periodDurationMs= */ 0);
+
+    assertThat(elements).isNotInstanceOf(RunLengthSegmentTimeline.class);
+    assertThat(elements).hasSize(3);
+    assertThat(builtElementStartTimes).containsExactly(0L, 2000L, 4000L).inOrder();
+    assertNextTag(xpp);
+  }
+
   @Test
   public void parseSegmentTimeline_singleUndefinedRepeatCount() throws Exception {
     DashManifestParser parser = new DashManifestParser();
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.dash.manifest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.media3.exoplayer.dash.manifest.SegmentBase.SegmentTimelineElement;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link RunLengthSegmentTimeline}. */
+@RunWith(AndroidJUnit4.class)
+public final class RunLengthSegmentTimelineTest {
+
+  @Test
+  public void addRun_expandsToElements() {
+    RunLengthSegmentTimeline timeline = new RunLengthSegmentTimeline();
+
+    timeline.addRun(/* startTime= */ 100, /* duration= */ 10, /* count= */ 2);
+    timeline.addRun(/* startTime= */ 150, /* duration= */ 5, /* count= */ 1);
+
+    assertThat(timeline)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 100, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 110, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 150, /* duration= */ 5))
+        .inOrder();
+    assertThat(timeline.getStartTime(1)).isEqualTo(110);
+    assertThat(timeline.getDuration(2)).isEqualTo(5);
+  }
+
+  @Test
+  public void addRun_continuingLastRun_mergesRuns() {
+    RunLengthSegmentTimeline timeline = new RunLengthSegmentTimeline();
+
+    for (int i = 0; i < 100; i++) {
+      timeline.addRun(/* startTime= */ i * 10L, /* duration= */ 10, /* count= */ 1);
+    }
+
+    assertThat(timeline).hasSize(100);
+    assertThat(timeline.getRunCount()).isEqualTo(1);
+    assertThat(timeline.getStartTime(99)).isEqualTo(990);
+  }
+
+  @Test
+  public void addRun_manyRuns_findsElementsInEachRun() {
+    RunLengthSegmentTimeline timeline = new RunLengthSegmentTimeline();
+    long startTime = 0;
+    for (int i = 0; i < 20; i++) {
+      // Alternate durations so that runs aren't merged.
+      long duration = i % 2 == 0 ? 10 : 20;
+      timeline.addRun(startTime, duration, /* count= */ 3);
+      startTime += 3 * duration;
+    }
+
+    assertThat(timeline.getRunCount()).isEqualTo(20);
+    assertThat(timeline).hasSize(60);
+    long expectedStartTime = 0;
+    for (int i = 0; i < 60; i++) {
+      assertThat(timeline.getStartTime(i)).isEqualTo(expectedStartTime);
+      expectedStartTime += timeline.getDuration(i);
+    }
+  }
+
+  @Test
+  public void addRun_withNonPositiveCount_addsNothing() {
+    RunLengthSegmentTimeline timeline = new RunLengthSegmentTimeline();
+
+    timeline.addRun(/* startTime= */ 0, /* duration= */ 10, /* count= */ 0);
+    timeline.addRun(/* startTime= */ 0, /* duration= */ 10, /* count= */ -1);
+
+    assertThat(timeline).isEmpty();
+    assertThat(timeline.getRunCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void get_outOfRange_throws() {
+    RunLengthSegmentTimeline timeline = new RunLengthSegmentTimeline();
+    timeline.addRun(/* startTime= */ 0, /* duration= */ 10, /* count= */ 2);
+
+    assertThrows(IndexOutOfBoundsException.class, () -> timeline.get(2));
+    assertThrows(IndexOutOfBoundsException.class, () -> timeline.getStartTime(-1));
+  }
+}
@@ -88,6 +88,35 @@ import java.nio.charset.StandardCharsets;
               + "</MPD>")
           .getBytes(StandardCharsets.UTF_8);
 
+  byte[] TEST_MPD_BYTE_RANGES =
+      ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+              + "<MPD xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" type=\"static\" "
+              + "    mediaPresentationDuration=\"PT15S\">\n"
+              + "    <Period duration=\"PT15S\" >\n"
+              + "        <AdaptationSet>\n"
+              + "            <SegmentList>\n"
+              + "                <SegmentTimeline>\n"
+              + "                    <S d=\"5\" />\n"
+              + "                    <S d=\"5\" />\n"
+              + "                    <S d=\"5\" />\n"
+              + "                </SegmentTimeline>\n"
+              + "            </SegmentList>\n"
+              + "            <Representation>\n"
+              + "                <SegmentList>\n"
+              // A gap of 10 bytes, followed by adjacent ranges.
+              + "                    <SegmentURL media=\"ranged_segments\"\n"
+              + "                        mediaRange=\"0-9\" />\n"
+              + "                    <SegmentURL media=\"ranged_segments\"\n"
+              + "                        mediaRange=\"20-29\" />\n"
+              + "                    <SegmentURL media=\"ranged_segments\"\n"
+              + "                        mediaRange=\"30-39\" />\n"
+              + "                </SegmentList>\n"
+              + "            </Representation>\n"
+              + "        </AdaptationSet>\n"
+              + "    </Period>\n"
+              + "</MPD>")
+          .getBytes(StandardCharsets.UTF_8);
+
   byte[] TEST_MPD_NO_INDEX =
       ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
               + "<MPD xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" type=\"dynamic\">\n"
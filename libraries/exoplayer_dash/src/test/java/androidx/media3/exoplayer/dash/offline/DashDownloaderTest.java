@@ -16,6 +16,7 @@
 package androidx.media3.exoplayer.dash.offline;
 
 import static androidx.media3.exoplayer.dash.offline.DashDownloadTestData.TEST_MPD;
+import static androidx.media3.exoplayer.dash.offline.DashDownloadTestData.TEST_MPD_BYTE_RANGES;
 import static androidx.media3.exoplayer.dash.offline.DashDownloadTestData.TEST_MPD_NO_INDEX;
 import static androidx.media3.exoplayer.dash.offline.DashDownloadTestData.TEST_MPD_URI;
 import static androidx.media3.test.utils.CacheAsserts.assertCacheEmpty;
@@ -51,6 +52,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -239,6 +245,116 @@ public class DashDownloaderTest {
     assertThat(openedDataSpecs[7].uri.getPath()).isEqualTo("period_2_segment_3");
   }
 
+  @Test
+  public void downloadRepresentation_reportsDownloadedSegments() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("audio_segment_2", 5)
+            .setRandomData("audio_segment_3", 6);
+
+    DashDownloader dashDownloader = getDashDownloader(fakeDataSet, new StreamKey(0, 0, 0));
+    dashDownloader.download(progressListener);
+
+    assertThat(progressListener.segmentUriPaths)
+        .containsExactly("audio_init_data", "audio_segment_1", "audio_segment_2", "audio_segment_3")
+        .inOrder();
+    assertThat(progressListener.segmentBytesDownloaded).containsExactly(10L, 4L, 5L, 6L).inOrder();
+  }
+
+  @Test
+  public void downloadByteRanges_mergesAdjacentRanges() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD_BYTE_RANGES)
+            .setRandomData("ranged_segments", 40);
+    FakeDataSource fakeDataSource = new FakeDataSource(fakeDataSet);
+    FakeDataSource.Factory factory = mock(FakeDataSource.Factory.class);
+    when(factory.createDataSource()).thenReturn(fakeDataSource);
+
+    DashDownloader dashDownloader = getDashDownloader(factory, new StreamKey(0, 0, 0));
+    dashDownloader.download(progressListener);
+
+    DataSpec[] openedDataSpecs = fakeDataSource.getAndClearOpenedDataSpecs();
+    assertThat(openedDataSpecs.length).isEqualTo(3);
+    assertThat(openedDataSpecs[1].position).isEqualTo(0);
+    assertThat(openedDataSpecs[1].length).isEqualTo(10);
+    assertThat(openedDataSpecs[2].position).isEqualTo(20);
+    assertThat(openedDataSpecs[2].length).isEqualTo(20);
+    progressListener.assertBytesDownloaded(30);
+  }
+
+  @Test
+  public void downloadByteRanges_withMaxMergedSegmentGapBytes_mergesRangesAcrossGap()
+      throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD_BYTE_RANGES)
+            .setRandomData("ranged_segments", 40);
+    FakeDataSource fakeDataSource = new FakeDataSource(fakeDataSet);
+    FakeDataSource.Factory factory = mock(FakeDataSource.Factory.class);
+    when(factory.createDataSource()).thenReturn(fakeDataSource);
+
+    DashDownloader dashDownloader = getDashDownloader(factory, new StreamKey(0, 0, 0));
+    dashDownloader.setMaxMergedSegmentGapBytes(10);
+    dashDownloader.download(progressListener);
+
+    DataSpec[] openedDataSpecs = fakeDataSource.getAndClearOpenedDataSpecs();
+    assertThat(openedDataSpecs.length).isEqualTo(2);
+    assertThat(openedDataSpecs[1].position).isEqualTo(0);
+    assertThat(openedDataSpecs[1].length).isEqualTo(40);
+    progressListener.assertBytesDownloaded(40);
+  }
+
+  @Test
+  public void download_withMaxParallelSegmentDownloads_limitsSegmentsInFlight() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("audio_segment_2", 5)
+            .setRandomData("audio_segment_3", 6)
+            .setRandomData("text_segment_1", 1)
+            .setRandomData("text_segment_2", 2)
+            .setRandomData("text_segment_3", 3);
+    ExecutorService threadPool = Executors.newFixedThreadPool(4);
+    AtomicInteger runningCount = new AtomicInteger();
+    AtomicInteger maxRunningCount = new AtomicInteger();
+    Executor executor =
+        runnable ->
+            threadPool.execute(
+                () -> {
+                  maxRunningCount.accumulateAndGet(runningCount.incrementAndGet(), Math::max);
+                  try {
+                    runnable.run();
+                  } finally {
+                    runningCount.decrementAndGet();
+                  }
+                });
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(new FakeDataSource.Factory().setFakeDataSet(fakeDataSet));
+    DashDownloader dashDownloader =
+        new DashDownloader(
+            new MediaItem.Builder()
+                .setUri(TEST_MPD_URI)
+                .setStreamKeys(keysList(new StreamKey(0, 0, 0), new StreamKey(0, 1, 0)))
+                .build(),
+            cacheDataSourceFactory,
+            executor);
+
+    dashDownloader.setMaxParallelSegmentDownloads(1);
+    dashDownloader.download(progressListener);
+    threadPool.shutdown();
+
+    assertThat(maxRunningCount.get()).isEqualTo(1);
+    assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
+  }
+
   @Test
   public void downloadRepresentationFailure() throws Exception {
     FakeDataSet fakeDataSet =
@@ -353,6 +469,9 @@ public class DashDownloaderTest {
 
   private static final class ProgressListener implements Downloader.ProgressListener {
 
+    private final List<String> segmentUriPaths = new ArrayList<>();
+    private final List<Long> segmentBytesDownloaded = new ArrayList<>();
+
     private long bytesDownloaded;
 
     @Override
@@ -360,6 +479,13 @@ public class DashDownloaderTest {
       this.bytesDownloaded = bytesDownloaded;
     }
 
+    @Override
+    public void onSegmentDownloaded(
+        DataSpec dataSpec, long bytesDownloaded, long downloadDurationMs) {
+      segmentUriPaths.add(dataSpec.uri.getPath());
+      segmentBytesDownloaded.add(bytesDownloaded);
+    }
+
     public void assertBytesDownloaded(long bytesDownloaded) {
       assertThat(this.bytesDownloaded).isEqualTo(bytesDownloaded);
     }
@@ -514,6 +514,11 @@ public final class DefaultHlsPlaylistTracker
     }
     long startTimeUs = getLoadedPlaylistStartTimeUs(oldPlaylist, loadedPlaylist);
     int discontinuitySequence = getLoadedPlaylistDiscontinuitySequence(oldPlaylist, loadedPlaylist);
+    if (loadedPlaylist.hasDiscontinuitySequence
+        && startTimeUs == loadedPlaylist.startTimeUs
+        && discontinuitySequence == loadedPlaylist.discontinuitySequence) {
+      return loadedPlaylist;
+    }
     return loadedPlaylist.copyWith(startTimeUs, discontinuitySequence);
   }
 
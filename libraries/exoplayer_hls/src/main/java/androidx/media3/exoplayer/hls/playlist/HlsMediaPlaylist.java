@@ -37,7 +37,6 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -186,13 +185,32 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
       this.parts = ImmutableList.copyOf(parts);
     }
 
+    /**
+     * Returns a segment identical to this one except for the relative start time and the relative
+     * discontinuity sequence, which are also applied to its parts. Returns this segment if both
+     * values are unchanged.
+     *
+     * @param relativeStartTimeUs See {@link #relativeStartTimeUs}.
+     * @param relativeDiscontinuitySequence See {@link #relativeDiscontinuitySequence}.
+     */
     public Segment copyWith(long relativeStartTimeUs, int relativeDiscontinuitySequence) {
-      List<Part> updatedParts = new ArrayList<>();
-      long relativePartStartTimeUs = relativeStartTimeUs;
-      for (int i = 0; i < parts.size(); i++) {
-        Part part = parts.get(i);
-        updatedParts.add(part.copyWith(relativePartStartTimeUs, relativeDiscontinuitySequence));
-        relativePartStartTimeUs += part.durationUs;
+      if (relativeStartTimeUs == this.relativeStartTimeUs
+          && relativeDiscontinuitySequence == this.relativeDiscontinuitySequence) {
+        return this;
+      }
+      // Segments further from the live edge have no parts, in which case the list can be shared.
+      List<Part> updatedParts = parts;
+      if (!parts.isEmpty()) {
+        ImmutableList.Builder<Part> updatedPartsBuilder =
+            ImmutableList.builderWithExpectedSize(parts.size());
+        long relativePartStartTimeUs = relativeStartTimeUs;
+        for (int i = 0; i < parts.size(); i++) {
+          Part part = parts.get(i);
+          updatedPartsBuilder.add(
+              part.copyWith(relativePartStartTimeUs, relativeDiscontinuitySequence));
+          relativePartStartTimeUs += part.durationUs;
+        }
+        updatedParts = updatedPartsBuilder.build();
       }
       return new Segment(
           url,
@@ -267,7 +285,18 @@ public final class HlsMediaPlaylist extends HlsPlaylist {
       this.isPreload = isPreload;
     }
 
+    /**
+     * Returns a part identical to this one except for the relative start time and the relative
+     * discontinuity sequence. Returns this part if both values are unchanged.
+     *
+     * @param relativeStartTimeUs See {@link #relativeStartTimeUs}.
+     * @param relativeDiscontinuitySequence See {@link #relativeDiscontinuitySequence}.
+     */
     public Part copyWith(long relativeStartTimeUs, int relativeDiscontinuitySequence) {
+      if (relativeStartTimeUs == this.relativeStartTimeUs
+          && relativeDiscontinuitySequence == this.relativeDiscontinuitySequence) {
+        return this;
+      }
       return new Part(
           url,
           initializationSegment,
@@ -133,8 +133,8 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       "urn:uuid:edef8ba9-79d6-4ace-a3c8-27dcd51d21ed";
   private static final String KEYFORMAT_WIDEVINE_PSSH_JSON = "com.widevine";
 
-  private static final String BOOLEAN_TRUE = "YES";
-  private static final String BOOLEAN_FALSE = "NO";
+  /* package */ static final String BOOLEAN_TRUE = "YES";
+  /* package */ static final String BOOLEAN_FALSE = "NO";
 
   private static final String ATTR_CLOSED_CAPTIONS_NONE = "CLOSED-CAPTIONS=NONE";
 
@@ -177,8 +177,6 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       Pattern.compile(TAG_MEDIA_SEQUENCE + ":(\\d+)\\b");
   private static final Pattern REGEX_MEDIA_DURATION =
       Pattern.compile(TAG_MEDIA_DURATION + ":([\\d\\.]+)\\b");
-  private static final Pattern REGEX_MEDIA_TITLE =
-      Pattern.compile(TAG_MEDIA_DURATION + ":[\\d\\.]+\\b,(.+)");
   private static final Pattern REGEX_LAST_MSN = Pattern.compile("LAST-MSN" + "=(\\d+)\\b");
   private static final Pattern REGEX_LAST_PART = Pattern.compile("LAST-PART" + "=(\\d+)\\b");
   private static final Pattern REGEX_TIME_OFFSET = Pattern.compile("TIME-OFFSET=(-?[\\d\\.]+)\\b");
@@ -230,8 +228,6 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final Pattern REGEX_AUTOSELECT = compileBooleanAttrPattern("AUTOSELECT");
   private static final Pattern REGEX_DEFAULT = compileBooleanAttrPattern("DEFAULT");
   private static final Pattern REGEX_FORCED = compileBooleanAttrPattern("FORCED");
-  private static final Pattern REGEX_INDEPENDENT = compileBooleanAttrPattern("INDEPENDENT");
-  private static final Pattern REGEX_GAP = compileBooleanAttrPattern("GAP");
   private static final Pattern REGEX_PRECISE = compileBooleanAttrPattern("PRECISE");
   private static final Pattern REGEX_VALUE = Pattern.compile("VALUE=\"(.+?)\"");
   private static final Pattern REGEX_IMPORT = Pattern.compile("IMPORT=\"(.+?)\"");
@@ -726,7 +722,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     @Nullable Segment initializationSegment = null;
     HashMap<String, String> variableDefinitions = new HashMap<>();
     HashMap<String, Segment> urlToInferredInitSegment = new HashMap<>();
-    List<Segment> segments = new ArrayList<>();
+    ArrayList<Segment> segments = new ArrayList<>();
     List<Part> trailingParts = new ArrayList<>();
     @Nullable Part preloadPart = null;
     List<RenditionReport> renditionReports = new ArrayList<>();
@@ -844,8 +840,25 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
               parseStringAttr(line, REGEX_VALUE, variableDefinitions));
         }
       } else if (line.startsWith(TAG_MEDIA_DURATION)) {
-        segmentDurationUs = parseTimeSecondsToUs(line, REGEX_MEDIA_DURATION);
-        segmentTitle = parseOptionalStringAttr(line, REGEX_MEDIA_TITLE, "", variableDefinitions);
+        // This tag occurs once per segment, so its attributes are found without regexes.
+        @Nullable
+        String segmentDurationSeconds =
+            HlsTagAttributes.findDecimal(line, /* prefix= */ TAG_MEDIA_DURATION + ":");
+        segmentDurationUs =
+            segmentDurationSeconds != null
+                ? HlsTagAttributes.parseSecondsToUs(segmentDurationSeconds)
+                : parseTimeSecondsToUs(line, REGEX_MEDIA_DURATION);
+        @Nullable
+        String title =
+            HlsTagAttributes.findTextAfterDecimal(line, /* prefix= */ TAG_MEDIA_DURATION + ":");
+        if (title == null) {
+          segmentTitle = "";
+        } else {
+          segmentTitle =
+              variableDefinitions.isEmpty()
+                  ? title
+                  : replaceVariableReferences(title, variableDefinitions);
+        }
       } else if (line.startsWith(TAG_SKIP)) {
         int skippedSegmentCount = parseIntAttr(line, REGEX_SKIPPED_SEGMENTS);
         checkState(previousMediaPlaylist != null && segments.isEmpty());
@@ -855,6 +868,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           // Throw to force a reload if not all segments are available in the previous playlist.
           throw new DeltaUpdateException();
         }
+        segments.ensureCapacity(skippedSegmentCount);
         for (int i = startIndex; i < endIndex; i++) {
           Segment segment = previousMediaPlaylist.segments.get(i);
           if (mediaSequence != previousMediaPlaylist.mediaSequence) {
@@ -990,16 +1004,29 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         String segmentEncryptionIV =
             getSegmentEncryptionIV(
                 segmentMediaSequence, fullSegmentEncryptionKeyUri, fullSegmentEncryptionIV);
-        String url = parseStringAttr(line, REGEX_URI, variableDefinitions);
+        // This tag occurs once per part, so its attributes are found without regexes. The regexes
+        // are only used to throw the same exceptions for missing attributes.
+        @Nullable String url = HlsTagAttributes.findQuotedString(line, /* prefix= */ "URI=\"");
+        url =
+            url == null
+                ? parseStringAttr(line, REGEX_URI, variableDefinitions)
+                : replaceVariableReferences(url, variableDefinitions);
+        @Nullable
+        String partDurationSeconds = HlsTagAttributes.findDecimal(line, /* prefix= */ "DURATION=");
         long partDurationUs =
-            (long) (parseDoubleAttr(line, REGEX_ATTR_DURATION) * C.MICROS_PER_SECOND);
+            (long)
+                ((partDurationSeconds != null
+                        ? Double.parseDouble(partDurationSeconds)
+                        : parseDoubleAttr(line, REGEX_ATTR_DURATION))
+                    * C.MICROS_PER_SECOND);
         boolean isIndependent =
-            parseOptionalBooleanAttribute(line, REGEX_INDEPENDENT, /* defaultValue= */ false);
+            BOOLEAN_TRUE.equals(HlsTagAttributes.findBoolean(line, /* prefix= */ "INDEPENDENT="));
         // The first part of a segment is always independent if the segments are independent.
         isIndependent |= hasIndependentSegmentsTag && trailingParts.isEmpty();
-        boolean isGap = parseOptionalBooleanAttribute(line, REGEX_GAP, /* defaultValue= */ false);
+        boolean isGap =
+            BOOLEAN_TRUE.equals(HlsTagAttributes.findBoolean(line, /* prefix= */ "GAP="));
         @Nullable
-        String byteRange = parseOptionalStringAttr(line, REGEX_ATTR_BYTERANGE, variableDefinitions);
+        String byteRange = HlsTagAttributes.findQuotedByteRange(line, /* prefix= */ "BYTERANGE=\"");
         long partByteRangeLength = C.LENGTH_UNSET;
         if (byteRange != null) {
           String[] splitByteRange = Util.split(byteRange, "@");
@@ -1505,6 +1532,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
 
   private static String replaceVariableReferences(
       String string, Map<String, String> variableDefinitions) {
+    if (!string.contains("{$")) {
+      // Avoid creating a matcher for each segment URI of playlists that don't use variables.
+      return string;
+    }
     Matcher matcher = REGEX_VARIABLE_REFERENCE.matcher(string);
     // TODO: Replace StringBuffer with StringBuilder once Java 9 is available.
     StringBuffer stringWithReplacements = new StringBuffer();
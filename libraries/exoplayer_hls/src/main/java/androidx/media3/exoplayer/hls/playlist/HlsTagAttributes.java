@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.hls.playlist;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import java.math.BigDecimal;
+
+/**
+ * Finds the values of attributes in the lines of HLS playlists without using regular expressions.
+ *
+ * <p>These methods are used for the tags that occur once per segment or part, and return exactly
+ * what the regular expressions noted on each method would match as their first group. Like {@link
+ * java.util.regex.Matcher#find()}, they return the value of the first occurrence of the attribute
+ * that has a valid value.
+ */
+/* package */ final class HlsTagAttributes {
+
+  private HlsTagAttributes() {}
+
+  /**
+   * Returns the value of a quoted string attribute, as matched by {@code NAME="(.+?)"}, or null if
+   * there is none.
+   *
+   * @param line The line to search.
+   * @param prefix The attribute name followed by {@code ="}.
+   */
+  @Nullable
+  public static String findQuotedString(String line, String prefix) {
+    int length = line.length();
+    int prefixIndex = line.indexOf(prefix);
+    while (prefixIndex != -1) {
+      int valueStart = prefixIndex + prefix.length();
+      // The value is at least one character long, so the closing quote can't be the first one.
+      for (int i = valueStart; i < length; i++) {
+        char c = line.charAt(i);
+        if (isLineTerminator(c)) {
+          break;
+        } else if (c == '"' && i > valueStart) {
+          return line.substring(valueStart, i);
+        }
+      }
+      prefixIndex = line.indexOf(prefix, prefixIndex + 1);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of a decimal attribute, as matched by {@code PREFIX([\d\.]+)\b}, or null if
+   * there is none.
+   *
+   * @param line The line to search.
+   * @param prefix The text preceding the value, such as the attribute name followed by {@code =}.
+   */
+  @Nullable
+  public static String findDecimal(String line, String prefix) {
+    int prefixIndex = line.indexOf(prefix);
+    while (prefixIndex != -1) {
+      int valueStart = prefixIndex + prefix.length();
+      int valueEnd = findDecimalEnd(line, valueStart);
+      if (valueEnd > valueStart) {
+        return line.substring(valueStart, valueEnd);
+      }
+      prefixIndex = line.indexOf(prefix, prefixIndex + 1);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the text following a decimal and a comma, as matched by {@code PREFIX[\d\.]+\b,(.+)},
+   * or null if there is none. This is the title of an {@code #EXTINF} tag.
+   *
+   * @param line The line to search.
+   * @param prefix The text preceding the decimal.
+   */
+  @Nullable
+  public static String findTextAfterDecimal(String line, String prefix) {
+    int length = line.length();
+    int prefixIndex = line.indexOf(prefix);
+    while (prefixIndex != -1) {
+      int valueStart = prefixIndex + prefix.length();
+      int valueEnd = valueStart;
+      while (valueEnd < length && isDecimalChar(line.charAt(valueEnd))) {
+        valueEnd++;
+      }
+      // Shorter decimals are followed by a decimal character rather than a comma, so only the
+      // longest one can match.
+      if (valueEnd > valueStart
+          && isWordBoundary(line, valueEnd)
+          && valueEnd + 1 < length
+          && line.charAt(valueEnd) == ','
+          && !isLineTerminator(line.charAt(valueEnd + 1))) {
+        int textEnd = valueEnd + 2;
+        while (textEnd < length && !isLineTerminator(line.charAt(textEnd))) {
+          textEnd++;
+        }
+        return line.substring(valueEnd + 1, textEnd);
+      }
+      prefixIndex = line.indexOf(prefix, prefixIndex + 1);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of an enumerated string attribute whose value is {@code YES} or {@code NO},
+   * as matched by {@code NAME=(NO|YES)}, or null if there is none.
+   *
+   * @param line The line to search.
+   * @param prefix The attribute name followed by {@code =}.
+   */
+  @Nullable
+  public static String findBoolean(String line, String prefix) {
+    int prefixIndex = line.indexOf(prefix);
+    while (prefixIndex != -1) {
+      int valueStart = prefixIndex + prefix.length();
+      if (line.startsWith(HlsPlaylistParser.BOOLEAN_FALSE, valueStart)) {
+        return HlsPlaylistParser.BOOLEAN_FALSE;
+      } else if (line.startsWith(HlsPlaylistParser.BOOLEAN_TRUE, valueStart)) {
+        return HlsPlaylistParser.BOOLEAN_TRUE;
+      }
+      prefixIndex = line.indexOf(prefix, prefixIndex + 1);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of a quoted byte range attribute, as matched by {@code
+   * NAME="(\d+(?:@\d+)?)\b"}, or null if there is none.
+   *
+   * @param line The line to search.
+   * @param prefix The attribute name followed by {@code ="}.
+   */
+  @Nullable
+  public static String findQuotedByteRange(String line, String prefix) {
+    int length = line.length();
+    int prefixIndex = line.indexOf(prefix);
+    while (prefixIndex != -1) {
+      int valueStart = prefixIndex + prefix.length();
+      int valueEnd = findDigitsEnd(line, valueStart);
+      if (valueEnd > valueStart && valueEnd < length && line.charAt(valueEnd) == '@') {
+        int offsetEnd = findDigitsEnd(line, valueEnd + 1);
+        if (offsetEnd > valueEnd + 1) {
+          valueEnd = offsetEnd;
+        }
+      }
+      if (valueEnd > valueStart && valueEnd < length && line.charAt(valueEnd) == '"') {
+        return line.substring(valueStart, valueEnd);
+      }
+      prefixIndex = line.indexOf(prefix, prefixIndex + 1);
+    }
+    return null;
+  }
+
+  /**
+   * Returns a number of seconds in microseconds, as {@code new BigDecimal(seconds).multiply(new
+   * BigDecimal(C.MICROS_PER_SECOND)).longValue()} does.
+   *
+   * @param seconds A decimal, as returned by {@link #findDecimal(String, String)}.
+   * @throws NumberFormatException If {@code seconds} isn't a valid decimal.
+   */
+  public static long parseSecondsToUs(String seconds) {
+    int length = seconds.length();
+    int pointIndex = seconds.indexOf('.');
+    int integerDigitCount = pointIndex == -1 ? length : pointIndex;
+    if ((length == 1 && pointIndex == 0)
+        || integerDigitCount > 12
+        || (pointIndex != -1 && seconds.indexOf('.', pointIndex + 1) != -1)) {
+      // Let BigDecimal throw for malformed values, and handle values that may overflow.
+      return new BigDecimal(seconds).multiply(new BigDecimal(C.MICROS_PER_SECOND)).longValue();
+    }
+    long microseconds = 0;
+    for (int i = 0; i < integerDigitCount; i++) {
+      microseconds = microseconds * 10 + (seconds.charAt(i) - '0');
+    }
+    microseconds *= C.MICROS_PER_SECOND;
+    long digitMultiplier = C.MICROS_PER_SECOND;
+    // Digits beyond microsecond precision are truncated.
+    for (int i = integerDigitCount + 1; i < length && digitMultiplier > 1; i++) {
+      digitMultiplier /= 10;
+      microseconds += (seconds.charAt(i) - '0') * digitMultiplier;
+    }
+    return microseconds;
+  }
+
+  /**
+   * Returns the end of the longest run of decimal characters starting at {@code start} that's
+   * followed by a word boundary, or {@code start} if there is none.
+   */
+  private static int findDecimalEnd(String line, int start) {
+    int length = line.length();
+    int end = start;
+    while (end < length && isDecimalChar(line.charAt(end))) {
+      end++;
+    }
+    while (end > start && !isWordBoundary(line, end)) {
+      end--;
+    }
+    return end;
+  }
+
+  private static int findDigitsEnd(String line, int start) {
+    int length = line.length();
+    int end = start;
+    while (end < length && isDigit(line.charAt(end))) {
+      end++;
+    }
+    return end;
+  }
+
+  /** Returns whether there is a word boundary, as matched by {@code \b}, at {@code index}. */
+  private static boolean isWordBoundary(String line, int index) {
+    boolean previousIsWordChar = index > 0 && isWordChar(line.charAt(index - 1));
+    boolean nextIsWordChar = index < line.length() && isWordChar(line.charAt(index));
+    return previousIsWordChar != nextIsWordChar;
+  }
+
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isDecimalChar(char c) {
+    return isDigit(c) || c == '.';
+  }
+
+  /** Returns whether {@code c} is a line terminator, which isn't matched by {@code .}. */
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+}
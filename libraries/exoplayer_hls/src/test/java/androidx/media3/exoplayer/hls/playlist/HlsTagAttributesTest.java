@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.exoplayer.hls.playlist;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.math.BigDecimal;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit tests for {@link HlsTagAttributes}, which check that it finds the same values as the
+ * regular expressions it replaces.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class HlsTagAttributesTest {
+
+  private static final String[] QUOTED_STRING_LINES = {
+    "#EXT-X-PART:DURATION=2.0,URI=\"part.ts\"",
+    "#EXT-X-PART:URI=\"\",URI=\"part.ts\"",
+    "#EXT-X-PART:URI=\"\"\"",
+    "#EXT-X-PART:URI=\"part.ts",
+    "#EXT-X-PART:URI=\"part\nURI=\"next.ts\"",
+    "#EXT-X-PART:URI=\"a\",URI=\"b\"",
+    "#EXT-X-PART:URI=",
+    "#EXT-X-PART:DURATION=2.0",
+  };
+
+  private static final String[] DECIMAL_LINES = {
+    "#EXT-X-PART:DURATION=2.00008,URI=\"part.ts\"",
+    "#EXT-X-PART:DURATION=2.,URI=\"part.ts\"",
+    "#EXT-X-PART:DURATION=2.0a,DURATION=3",
+    "#EXT-X-PART:DURATION=2.0a",
+    "#EXT-X-PART:DURATION=...",
+    "#EXT-X-PART:DURATION=.5",
+    "#EXT-X-PART:DURATION=2.0_",
+    "#EXT-X-PART:DURATION=",
+    "#EXT-X-PART:URI=\"part.ts\"",
+  };
+
+  private static final String[] TITLE_LINES = {
+    "#EXTINF:4.004,Title",
+    "#EXTINF:4.004,",
+    "#EXTINF:4.004",
+    "#EXTINF:4.,Title, with commas",
+    "#EXTINF:4a,Title",
+    "#EXTINF:4.004,\nTitle",
+    "#EXTINF:4.004,Title\nMore",
+    "#EXTINF:,Title",
+  };
+
+  private static final String[] BOOLEAN_LINES = {
+    "#EXT-X-PART:INDEPENDENT=YES,URI=\"part.ts\"",
+    "#EXT-X-PART:INDEPENDENT=NO",
+    "#EXT-X-PART:INDEPENDENT=MAYBE,INDEPENDENT=YES",
+    "#EXT-X-PART:INDEPENDENT=NOPE",
+    "#EXT-X-PART:INDEPENDENT=",
+    "#EXT-X-PART:URI=\"part.ts\"",
+  };
+
+  private static final String[] BYTE_RANGE_LINES = {
+    "#EXT-X-PART:BYTERANGE=\"1000\"",
+    "#EXT-X-PART:BYTERANGE=\"1000@2000\"",
+    "#EXT-X-PART:BYTERANGE=\"1000@\"",
+    "#EXT-X-PART:BYTERANGE=\"@2000\"",
+    "#EXT-X-PART:BYTERANGE=\"1000@2000a\",BYTERANGE=\"5\"",
+    "#EXT-X-PART:BYTERANGE=\"\"",
+    "#EXT-X-PART:BYTERANGE=\"1000",
+    "#EXT-X-PART:URI=\"part.ts\"",
+  };
+
+  @Test
+  public void findQuotedString_matchesRegex() {
+    Pattern pattern = Pattern.compile("URI=\"(.+?)\"");
+    for (String line : QUOTED_STRING_LINES) {
+      assertWithMessage(line)
+          .that(HlsTagAttributes.findQuotedString(line, /* prefix= */ "URI=\""))
+          .isEqualTo(findFirstGroup(pattern, line));
+    }
+  }
+
+  @Test
+  public void findDecimal_matchesRegex() {
+    Pattern pattern = Pattern.compile("DURATION=([\\d\\.]+)\\b");
+    for (String line : DECIMAL_LINES) {
+      assertWithMessage(line)
+          .that(HlsTagAttributes.findDecimal(line, /* prefix= */ "DURATION="))
+          .isEqualTo(findFirstGroup(pattern, line));
+    }
+  }
+
+  @Test
+  public void findTextAfterDecimal_matchesRegex() {
+    Pattern pattern = Pattern.compile("#EXTINF:[\\d\\.]+\\b,(.+)");
+    for (String line : TITLE_LINES) {
+      assertWithMessage(line)
+          .that(HlsTagAttributes.findTextAfterDecimal(line, /* prefix= */ "#EXTINF:"))
+          .isEqualTo(findFirstGroup(pattern, line));
+    }
+  }
+
+  @Test
+  public void findBoolean_matchesRegex() {
+    Pattern pattern = Pattern.compile("INDEPENDENT=(NO|YES)");
+    for (String line : BOOLEAN_LINES) {
+      assertWithMessage(line)
+          .that(HlsTagAttributes.findBoolean(line, /* prefix= */ "INDEPENDENT="))
+          .isEqualTo(findFirstGroup(pattern, line));
+    }
+  }
+
+  @Test
+  public void findQuotedByteRange_matchesRegex() {
+    Pattern pattern = Pattern.compile("BYTERANGE=\"(\\d+(?:@\\d+)?)\\b\"");
+    for (String line : BYTE_RANGE_LINES) {
+      assertWithMessage(line)
+          .that(HlsTagAttributes.findQuotedByteRange(line, /* prefix= */ "BYTERANGE=\""))
+          .isEqualTo(findFirstGroup(pattern, line));
+    }
+  }
+
+  @Test
+  public void parseSecondsToUs_matchesBigDecimal() {
+    String[] values = {
+      "0", "4", "4.", "4.004", ".5", "10.0000001", "10.9999999", "123456789012.123456",
+      "1234567890123.5", "0000000000000000001.5"
+    };
+    for (String value : values) {
+      long expectedUs =
+          new BigDecimal(value).multiply(new BigDecimal(C.MICROS_PER_SECOND)).longValue();
+      assertWithMessage(value).that(HlsTagAttributes.parseSecondsToUs(value)).isEqualTo(expectedUs);
+    }
+  }
+
+  @Test
+  public void parseSecondsToUs_withMalformedValue_throws() {
+    String[] values = {".", "1.2.3", "..5"};
+    for (String value : values) {
+      NumberFormatException exception = null;
+      try {
+        HlsTagAttributes.parseSecondsToUs(value);
+      } catch (NumberFormatException e) {
+        exception = e;
+      }
+      assertWithMessage(value).that(exception).isNotNull();
+    }
+  }
+
+  @Test
+  public void findDecimal_withValueAtEndOfLine_returnsValue() {
+    assertThat(HlsTagAttributes.findDecimal("#EXTINF:6", /* prefix= */ "#EXTINF:")).isEqualTo("6");
+  }
+
+  @Nullable
+  private static String findFirstGroup(Pattern pattern, String line) {
+    Matcher matcher = pattern.matcher(line);
+    return matcher.find() ? matcher.group(1) : null;
+  }
+}
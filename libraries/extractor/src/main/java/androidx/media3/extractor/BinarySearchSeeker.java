@@ -28,6 +28,7 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Map;
 
 /**
  * A seeker that supports seeking within a stream by searching for the target frame using binary
@@ -38,6 +39,9 @@ import java.lang.annotation.Target;
  * seek time, the seeker will find the corresponding target timestamp, and perform a search
  * operation within the stream to identify the target frame and return the byte position in the
  * stream of the target frame.
+ *
+ * <p>The bounds found while searching are added to the {@link SeekIndex} of the {@linkplain
+ * #getSeekMap() seek map}, and later searches start from the narrowest bounds in the index.
  */
 @UnstableApi
 public abstract class BinarySearchSeeker {
@@ -139,7 +143,8 @@ public abstract class BinarySearchSeeker {
             ceilingTimePosition,
             floorBytePosition,
             ceilingBytePosition,
-            approxBytesPerFrame);
+            approxBytesPerFrame,
+            new SeekIndex(floorBytePosition, ceilingBytePosition));
   }
 
   /** Returns the seek map for the stream. */
@@ -200,10 +205,14 @@ public abstract class BinarySearchSeeker {
         case TimestampSearchResult.TYPE_POSITION_OVERESTIMATED:
           seekOperationParams.updateSeekCeiling(
               timestampSearchResult.timestampToUpdate, timestampSearchResult.bytePositionToUpdate);
+          seekMap.seekIndex.addCeilingPoint(
+              timestampSearchResult.timestampToUpdate, timestampSearchResult.bytePositionToUpdate);
           break;
         case TimestampSearchResult.TYPE_POSITION_UNDERESTIMATED:
           seekOperationParams.updateSeekFloor(
               timestampSearchResult.timestampToUpdate, timestampSearchResult.bytePositionToUpdate);
+          seekMap.seekIndex.addFloorPoint(
+              timestampSearchResult.timestampToUpdate, timestampSearchResult.bytePositionToUpdate);
           break;
         case TimestampSearchResult.TYPE_TARGET_TIMESTAMP_FOUND:
           skipInputUntilPosition(input, timestampSearchResult.bytePositionToUpdate);
@@ -223,14 +232,7 @@ public abstract class BinarySearchSeeker {
   }
 
   protected SeekOperationParams createSeekParamsForTargetTimeUs(long timeUs) {
-    return new SeekOperationParams(
-        timeUs,
-        seekMap.timeUsToTargetTime(timeUs),
-        seekMap.floorTimePosition,
-        seekMap.ceilingTimePosition,
-        seekMap.floorBytePosition,
-        seekMap.ceilingBytePosition,
-        seekMap.approxBytesPerFrame);
+    return seekMap.createSeekOperationParams(timeUs);
   }
 
   protected final void markSeekOperationFinished(boolean foundTargetFrame, long resultPosition) {
@@ -496,6 +498,7 @@ public abstract class BinarySearchSeeker {
     private final long floorBytePosition;
     private final long ceilingBytePosition;
     private final long approxBytesPerFrame;
+    private final SeekIndex seekIndex;
 
     /** Constructs a new instance of this seek map. */
     public BinarySearchSeekMap(
@@ -506,6 +509,27 @@ public abstract class BinarySearchSeeker {
         long floorBytePosition,
         long ceilingBytePosition,
         long approxBytesPerFrame) {
+      this(
+          seekTimestampConverter,
+          durationUs,
+          floorTimePosition,
+          ceilingTimePosition,
+          floorBytePosition,
+          ceilingBytePosition,
+          approxBytesPerFrame,
+          new SeekIndex(floorBytePosition, ceilingBytePosition));
+    }
+
+    /** Constructs a new instance of this seek map, which narrows its estimates using an index. */
+    public BinarySearchSeekMap(
+        SeekTimestampConverter seekTimestampConverter,
+        long durationUs,
+        long floorTimePosition,
+        long ceilingTimePosition,
+        long floorBytePosition,
+        long ceilingBytePosition,
+        long approxBytesPerFrame,
+        SeekIndex seekIndex) {
       this.seekTimestampConverter = seekTimestampConverter;
       this.durationUs = durationUs;
       this.floorTimePosition = floorTimePosition;
@@ -513,6 +537,7 @@ public abstract class BinarySearchSeeker {
       this.floorBytePosition = floorBytePosition;
       this.ceilingBytePosition = ceilingBytePosition;
       this.approxBytesPerFrame = approxBytesPerFrame;
+      this.seekIndex = seekIndex;
     }
 
     @Override
@@ -522,14 +547,7 @@ public abstract class BinarySearchSeeker {
 
     @Override
     public SeekPoints getSeekPoints(long timeUs) {
-      long nextSearchPosition =
-          SeekOperationParams.calculateNextSearchBytePosition(
-              /* targetTimePosition= */ seekTimestampConverter.timeUsToTargetTime(timeUs),
-              /* floorTimePosition= */ floorTimePosition,
-              /* ceilingTimePosition= */ ceilingTimePosition,
-              /* floorBytePosition= */ floorBytePosition,
-              /* ceilingBytePosition= */ ceilingBytePosition,
-              /* approxBytesPerFrame= */ approxBytesPerFrame);
+      long nextSearchPosition = createSeekOperationParams(timeUs).getNextSearchBytePosition();
       return new SeekPoints(new SeekPoint(timeUs, nextSearchPosition));
     }
 
@@ -544,5 +562,50 @@ public abstract class BinarySearchSeeker {
     public long timeUsToTargetTime(long timeUs) {
       return seekTimestampConverter.timeUsToTargetTime(timeUs);
     }
+
+    /**
+     * Returns the {@link SeekIndex} of the stream, which can be {@linkplain SeekIndex#toByteArray()
+     * serialized} after seeking and {@linkplain SeekIndex#restore(byte[]) restored} when the stream
+     * is played again.
+     */
+    public SeekIndex getSeekIndex() {
+      return seekIndex;
+    }
+
+    /**
+     * Returns the parameters for a search for {@code timeUs}, in the narrowest range known from
+     * the seek index.
+     */
+    private SeekOperationParams createSeekOperationParams(long timeUs) {
+      long targetTimePosition = timeUsToTargetTime(timeUs);
+      long floorTimePosition = this.floorTimePosition;
+      long ceilingTimePosition = this.ceilingTimePosition;
+      long floorBytePosition = this.floorBytePosition;
+      long ceilingBytePosition = this.ceilingBytePosition;
+      @Nullable Map.Entry<Long, Long> floorPoint = seekIndex.getFloorPoint(targetTimePosition);
+      if (floorPoint != null
+          && floorPoint.getKey() >= floorTimePosition
+          && floorPoint.getValue() > floorBytePosition) {
+        floorTimePosition = floorPoint.getKey();
+        floorBytePosition = floorPoint.getValue();
+      }
+      @Nullable Map.Entry<Long, Long> ceilingPoint = seekIndex.getCeilingPoint(targetTimePosition);
+      if (ceilingPoint != null
+          && ceilingPoint.getKey() <= ceilingTimePosition
+          && ceilingPoint.getValue() < ceilingBytePosition
+          && ceilingPoint.getKey() > floorTimePosition
+          && ceilingPoint.getValue() > floorBytePosition) {
+        ceilingTimePosition = ceilingPoint.getKey();
+        ceilingBytePosition = ceilingPoint.getValue();
+      }
+      return new SeekOperationParams(
+          timeUs,
+          targetTimePosition,
+          floorTimePosition,
+          ceilingTimePosition,
+          floorBytePosition,
+          ceilingBytePosition,
+          approxBytesPerFrame);
+    }
   }
 }
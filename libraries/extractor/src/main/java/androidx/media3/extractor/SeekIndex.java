@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.extractor;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.media3.common.util.UnstableApi;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An index of the timestamps found at positions in a stream while seeking in it, which can be used
+ * to narrow down the range searched by later seeks.
+ *
+ * <p>A {@link BinarySearchSeeker} adds two kinds of points to its index while seeking. A floor
+ * point is a timestamp and a position before which there are no frames with later timestamps. A
+ * ceiling point is a timestamp and a position after which there are no frames with earlier
+ * timestamps. Timestamps are in the units used by the seeker, as returned by {@link
+ * BinarySearchSeeker.BinarySearchSeekMap#timeUsToTargetTime(long)}.
+ *
+ * <p>The index can be serialized with {@link #toByteArray()} and restored into the index of a
+ * seeker created for the same stream with {@link #restore(byte[])}, so that seeks in content that's
+ * played again don't need to search the stream again.
+ *
+ * <p>This class is thread-safe.
+ */
+@UnstableApi
+public final class SeekIndex {
+
+  /** The maximum number of floor points, and the maximum number of ceiling points, kept. */
+  public static final int MAX_POINT_COUNT = 1024;
+
+  private static final int VERSION = 1;
+
+  private final long floorBytePosition;
+  private final long ceilingBytePosition;
+
+  @GuardedBy("this")
+  private final TreeMap<Long, Long> floorPoints;
+
+  @GuardedBy("this")
+  private final TreeMap<Long, Long> ceilingPoints;
+
+  @GuardedBy("this")
+  private int modificationCount;
+
+  /**
+   * Creates an empty index.
+   *
+   * @param floorBytePosition The position of the first frame in the stream.
+   * @param ceilingBytePosition The position after the last frame in the stream.
+   */
+  public SeekIndex(long floorBytePosition, long ceilingBytePosition) {
+    this.floorBytePosition = floorBytePosition;
+    this.ceilingBytePosition = ceilingBytePosition;
+    floorPoints = new TreeMap<>();
+    ceilingPoints = new TreeMap<>();
+  }
+
+  /** Returns the total number of floor and ceiling points in the index. */
+  public synchronized int getPointCount() {
+    return floorPoints.size() + ceilingPoints.size();
+  }
+
+  /**
+   * Returns the number of times points have been added to or changed in the index. Can be compared
+   * with an earlier value to determine whether the index has changed since then.
+   */
+  public synchronized int getModificationCount() {
+    return modificationCount;
+  }
+
+  /**
+   * Adds a floor point, unless the index already holds {@link #MAX_POINT_COUNT} floor points.
+   *
+   * @param timestamp The timestamp of the last frame before {@code position}.
+   * @param position The position before which there are no frames with later timestamps.
+   */
+  public synchronized void addFloorPoint(long timestamp, long position) {
+    addPoint(floorPoints, timestamp, position);
+  }
+
+  /**
+   * Adds a ceiling point, unless the index already holds {@link #MAX_POINT_COUNT} ceiling points.
+   *
+   * @param timestamp The timestamp of the first frame after {@code position}.
+   * @param position The position after which there are no frames with earlier timestamps.
+   */
+  public synchronized void addCeilingPoint(long timestamp, long position) {
+    addPoint(ceilingPoints, timestamp, position);
+  }
+
+  /**
+   * Returns the floor point with the greatest timestamp less than or equal to {@code timestamp},
+   * or null if there is none. The key of the returned entry is the timestamp of the point, and the
+   * value is its position.
+   */
+  @Nullable
+  public synchronized Map.Entry<Long, Long> getFloorPoint(long timestamp) {
+    return floorPoints.floorEntry(timestamp);
+  }
+
+  /**
+   * Returns the ceiling point with the least timestamp strictly greater than {@code timestamp}, or
+   * null if there is none. The key of the returned entry is the timestamp of the point, and the
+   * value is its position.
+   */
+  @Nullable
+  public synchronized Map.Entry<Long, Long> getCeilingPoint(long timestamp) {
+    return ceilingPoints.higherEntry(timestamp);
+  }
+
+  /** Returns the serialized form of the index, which can be passed to {@link #restore(byte[])}. */
+  public synchronized byte[] toByteArray() {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(byteArrayOutputStream);
+    try {
+      output.writeInt(VERSION);
+      output.writeLong(floorBytePosition);
+      output.writeLong(ceilingBytePosition);
+      writePoints(output, floorPoints);
+      writePoints(output, ceilingPoints);
+      output.flush();
+    } catch (IOException e) {
+      // Never happens when writing to a ByteArrayOutputStream.
+      throw new IllegalStateException(e);
+    }
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  /**
+   * Adds the points of a serialized index to this index.
+   *
+   * <p>Nothing is added if the serialized index is malformed, or was created for a stream whose
+   * first and last frame positions differ from those of this index, which is the case if the
+   * content has changed.
+   *
+   * @param data A serialized index, as returned by {@link #toByteArray()}.
+   * @return Whether the points were added.
+   */
+  public boolean restore(byte[] data) {
+    TreeMap<Long, Long> restoredFloorPoints = new TreeMap<>();
+    TreeMap<Long, Long> restoredCeilingPoints = new TreeMap<>();
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+    try {
+      if (input.readInt() != VERSION
+          || input.readLong() != floorBytePosition
+          || input.readLong() != ceilingBytePosition
+          || !readPoints(input, restoredFloorPoints)
+          || !readPoints(input, restoredCeilingPoints)
+          || input.available() != 0) {
+        return false;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    synchronized (this) {
+      for (Map.Entry<Long, Long> point : restoredFloorPoints.entrySet()) {
+        addPoint(floorPoints, point.getKey(), point.getValue());
+      }
+      for (Map.Entry<Long, Long> point : restoredCeilingPoints.entrySet()) {
+        addPoint(ceilingPoints, point.getKey(), point.getValue());
+      }
+    }
+    return true;
+  }
+
+  private void addPoint(TreeMap<Long, Long> points, long timestamp, long position) {
+    if (position < floorBytePosition || position > ceilingBytePosition) {
+      return;
+    }
+    if (points.size() < MAX_POINT_COUNT || points.containsKey(timestamp)) {
+      @Nullable Long previousPosition = points.put(timestamp, position);
+      if (previousPosition == null || previousPosition != position) {
+        modificationCount++;
+      }
+    }
+  }
+
+  private boolean readPoints(DataInputStream input, TreeMap<Long, Long> points)
+      throws IOException {
+    int pointCount = input.readInt();
+    if (pointCount < 0 || pointCount > MAX_POINT_COUNT) {
+      return false;
+    }
+    for (int i = 0; i < pointCount; i++) {
+      long timestamp = input.readLong();
+      long position = input.readLong();
+      if (position < floorBytePosition || position > ceilingBytePosition) {
+        return false;
+      }
+      points.put(timestamp, position);
+    }
+    return true;
+  }
+
+  private static void writePoints(DataOutputStream output, TreeMap<Long, Long> points)
+      throws IOException {
+    output.writeInt(points.size());
+    for (Map.Entry<Long, Long> point : points.entrySet()) {
+      output.writeLong(point.getKey());
+      output.writeLong(point.getValue());
+    }
+  }
+}
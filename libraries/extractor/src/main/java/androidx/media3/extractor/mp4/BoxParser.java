@@ -143,6 +143,43 @@ public final class BoxParser {
       boolean isQuickTime,
       Function<@NullableType Track, @NullableType Track> modifyTrackFunction)
       throws ParserException {
+    return parseTraks(
+        moov,
+        gaplessInfoHolder,
+        duration,
+        drmInitData,
+        ignoreEditLists,
+        isQuickTime,
+        modifyTrackFunction,
+        /* pagedSampleTables= */ false);
+  }
+
+  /**
+   * Parse the trak boxes in a moov box (defined in ISO/IEC 14496-12).
+   *
+   * @param moov Moov box to decode.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @param duration The duration in units of the timescale declared in the mvhd box, or {@link
+   *     C#TIME_UNSET} if the duration should be parsed from the tkhd box.
+   * @param drmInitData {@link DrmInitData} to be included in the format, or {@code null}.
+   * @param ignoreEditLists Whether to ignore any edit lists in the trak boxes.
+   * @param isQuickTime True for QuickTime media. False otherwise.
+   * @param modifyTrackFunction A function to apply to the {@link Track Tracks} in the result.
+   * @param pagedSampleTables Whether to decode the entries of sample tables on demand, where
+   *     possible. See {@link #parseStbl(Track, Mp4Box.ContainerBox, GaplessInfoHolder, boolean)}.
+   * @return A list of {@link TrackSampleTable} instances.
+   * @throws ParserException Thrown if the trak boxes can't be parsed.
+   */
+  public static List<TrackSampleTable> parseTraks(
+      Mp4Box.ContainerBox moov,
+      GaplessInfoHolder gaplessInfoHolder,
+      long duration,
+      @Nullable DrmInitData drmInitData,
+      boolean ignoreEditLists,
+      boolean isQuickTime,
+      Function<@NullableType Track, @NullableType Track> modifyTrackFunction,
+      boolean pagedSampleTables)
+      throws ParserException {
     List<TrackSampleTable> trackSampleTables = new ArrayList<>();
     for (int i = 0; i < moov.containerChildren.size(); i++) {
       Mp4Box.ContainerBox atom = moov.containerChildren.get(i);
@@ -168,7 +205,8 @@ public final class BoxParser {
                       checkNotNull(atom.getContainerBoxOfType(Mp4Box.TYPE_mdia))
                           .getContainerBoxOfType(Mp4Box.TYPE_minf))
                   .getContainerBoxOfType(Mp4Box.TYPE_stbl));
-      TrackSampleTable trackSampleTable = parseStbl(track, stblAtom, gaplessInfoHolder);
+      TrackSampleTable trackSampleTable =
+          parseStbl(track, stblAtom, gaplessInfoHolder, pagedSampleTables);
       trackSampleTables.add(trackSampleTable);
     }
     return trackSampleTables;
@@ -409,6 +447,31 @@ public final class BoxParser {
   public static TrackSampleTable parseStbl(
       Track track, Mp4Box.ContainerBox stblBox, GaplessInfoHolder gaplessInfoHolder)
       throws ParserException {
+    return parseStbl(track, stblBox, gaplessInfoHolder, /* pagedSampleTable= */ false);
+  }
+
+  /**
+   * Parses an stbl box (defined in ISO/IEC 14496-12).
+   *
+   * <p>If {@code pagedSampleTable} is true, the returned table decodes its entries from the stbl
+   * box on demand, rather than holding arrays with an entry for every sample. This is only
+   * possible for tracks without an edit list whose samples don't need to be rechunked. The sample
+   * tables of other tracks are fully decoded.
+   *
+   * @param track Track to which this sample table corresponds.
+   * @param stblBox stbl (sample table) box to decode.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @param pagedSampleTable Whether to decode the entries of the sample table on demand, where
+   *     possible.
+   * @return Sample table described by the stbl box.
+   * @throws ParserException Thrown if the stbl box can't be parsed.
+   */
+  public static TrackSampleTable parseStbl(
+      Track track,
+      Mp4Box.ContainerBox stblBox,
+      GaplessInfoHolder gaplessInfoHolder,
+      boolean pagedSampleTable)
+      throws ParserException {
     SampleSizeBox sampleSizeBox;
     @Nullable LeafBox stszAtom = stblBox.getLeafBoxOfType(Mp4Box.TYPE_stsz);
     if (stszAtom != null) {
@@ -502,6 +565,20 @@ public final class BoxParser {
             && remainingTimestampOffsetChanges == 0
             && remainingSynchronizationSamples == 0;
 
+    if (pagedSampleTable && !rechunkFixedSizeSamples && track.editListDurations == null) {
+      return new TrackSampleTable(
+          track,
+          PagedSampleTable.create(
+              track.timescale,
+              sampleSizeBox,
+              chunkOffsets,
+              chunkOffsetsAreLongs,
+              stsc,
+              stts,
+              ctts,
+              stss));
+    }
+
     long[] offsets;
     int[] sizes;
     int maximumSize = 0;
@@ -2577,7 +2654,7 @@ public final class BoxParser {
   }
 
   /** A box containing sample sizes (e.g. stsz, stz2). */
-  private interface SampleSizeBox {
+  /* package */ interface SampleSizeBox {
 
     /** Returns the number of samples. */
     int getSampleCount();
@@ -2587,11 +2664,19 @@ public final class BoxParser {
 
     /** Returns the size for the next sample. */
     int readNextSampleSize();
+
+    /**
+     * Returns the size of the sample with the given index. Doesn't affect the position of the next
+     * sample returned by {@link #readNextSampleSize()}.
+     */
+    int getSampleSize(int sampleIndex);
   }
 
   /** An stsz sample size box. */
   /* package */ static final class StszSampleSizeBox implements SampleSizeBox {
 
+    private static final int SAMPLE_SIZES_POSITION = Mp4Box.FULL_HEADER_SIZE + 8;
+
     private final int fixedSampleSize;
     private final int sampleCount;
     private final ParsableByteArray data;
@@ -2633,11 +2718,26 @@ public final class BoxParser {
     public int readNextSampleSize() {
       return fixedSampleSize == C.LENGTH_UNSET ? data.readUnsignedIntToInt() : fixedSampleSize;
     }
+
+    @Override
+    public int getSampleSize(int sampleIndex) {
+      if (fixedSampleSize != C.LENGTH_UNSET) {
+        return fixedSampleSize;
+      }
+      byte[] bytes = data.getData();
+      int position = SAMPLE_SIZES_POSITION + 4 * sampleIndex;
+      return (bytes[position] & 0xFF) << 24
+          | (bytes[position + 1] & 0xFF) << 16
+          | (bytes[position + 2] & 0xFF) << 8
+          | (bytes[position + 3] & 0xFF);
+    }
   }
 
   /** An stz2 sample size box. */
   /* package */ static final class Stz2SampleSizeBox implements SampleSizeBox {
 
+    private static final int SAMPLE_SIZES_POSITION = Mp4Box.FULL_HEADER_SIZE + 8;
+
     private final ParsableByteArray data;
     private final int sampleCount;
     private final int fieldSize; // Can be 4, 8, or 16.
@@ -2682,5 +2782,20 @@ public final class BoxParser {
         }
       }
     }
+
+    @Override
+    public int getSampleSize(int sampleIndex) {
+      byte[] bytes = data.getData();
+      if (fieldSize == 8) {
+        return bytes[SAMPLE_SIZES_POSITION + sampleIndex] & 0xFF;
+      } else if (fieldSize == 16) {
+        int position = SAMPLE_SIZES_POSITION + 2 * sampleIndex;
+        return (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+      } else {
+        // fieldSize == 4.
+        int sampleSizes = bytes[SAMPLE_SIZES_POSITION + sampleIndex / 2] & 0xFF;
+        return sampleIndex % 2 == 0 ? sampleSizes >> 4 : sampleSizes & 0x0F;
+      }
+    }
   }
 }
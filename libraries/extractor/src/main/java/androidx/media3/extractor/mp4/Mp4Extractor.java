@@ -19,6 +19,7 @@ import static androidx.media3.common.C.AUXILIARY_TRACK_TYPE_DEPTH_INVERSE;
 import static androidx.media3.common.C.AUXILIARY_TRACK_TYPE_DEPTH_LINEAR;
 import static androidx.media3.common.C.AUXILIARY_TRACK_TYPE_ORIGINAL;
 import static androidx.media3.common.C.AUXILIARY_TRACK_TYPE_UNDEFINED;
+import static androidx.media3.common.util.Assertions.checkArgument;
 import static androidx.media3.common.util.Assertions.checkNotNull;
 import static androidx.media3.common.util.Assertions.checkState;
 import static androidx.media3.common.util.Assertions.checkStateNotNull;
@@ -43,6 +44,7 @@ import androidx.media3.common.ParserException;
 import androidx.media3.common.util.Assertions;
 import androidx.media3.common.util.ParsableByteArray;
 import androidx.media3.common.util.UnstableApi;
+import androidx.media3.common.util.Util;
 import androidx.media3.container.MdtaMetadataEntry;
 import androidx.media3.container.Mp4Box;
 import androidx.media3.container.Mp4Box.ContainerBox;
@@ -93,7 +95,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
    * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}, {@link #FLAG_READ_MOTION_PHOTO_METADATA}, {@link
    * #FLAG_READ_SEF_DATA}, {@link #FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES}, {@link
-   * #FLAG_READ_AUXILIARY_TRACKS} and {@link #FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES_H265}.
+   * #FLAG_READ_AUXILIARY_TRACKS}, {@link #FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES_H265} and {@link
+   * #FLAG_USE_PAGED_SAMPLE_TABLES}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -108,7 +111,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         FLAG_EMIT_RAW_SUBTITLE_DATA,
         FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES,
         FLAG_READ_AUXILIARY_TRACKS,
-        FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES_H265
+        FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES_H265,
+        FLAG_USE_PAGED_SAMPLE_TABLES
       })
   public @interface Flags {}
 
@@ -174,6 +178,22 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   public static final int FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES_H265 = 1 << 7;
 
+  /**
+   * Flag to decode the entries of each track's sample table on demand, in pages of samples around
+   * the read and seek positions, rather than holding arrays with an entry for every sample.
+   *
+   * <p>This reduces the memory used by long files with many samples, such as multi-hour
+   * recordings. Preparation still scans the entries of every sample once, but doesn't allocate
+   * arrays for them. The sample tables of tracks with edit lists, and of raw audio tracks whose
+   * samples are rechunked, are always fully decoded.
+   *
+   * <p>When this flag is set, {@link TrackSampleTable#offsets}, {@link TrackSampleTable#sizes},
+   * {@link TrackSampleTable#timestampsUs} and {@link TrackSampleTable#flags} are empty for paged
+   * sample tables, although {@link TrackSampleTable#sampleCount} isn't zero. Use the accessor
+   * methods of {@link TrackSampleTable} instead.
+   */
+  public static final int FLAG_USE_PAGED_SAMPLE_TABLES = 1 << 8;
+
   /**
    * @deprecated Use {@link #newFactory(SubtitleParser.Factory)} instead.
    */
@@ -262,6 +282,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private Mp4Track[] tracks;
 
   private long @MonotonicNonNull [][] accumulatedSampleSizes;
+  private int accumulatedSampleSizesInterval;
   private int firstVideoTrackIndex;
   private long durationUs;
   private @FileType int fileType;
@@ -464,14 +485,14 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == C.INDEX_UNSET) {
         return new SeekPoints(SeekPoint.START);
       }
-      long sampleTimeUs = sampleTable.timestampsUs[sampleIndex];
+      long sampleTimeUs = sampleTable.getTimestampUs(sampleIndex);
       firstTimeUs = sampleTimeUs;
-      firstOffset = sampleTable.offsets[sampleIndex];
+      firstOffset = sampleTable.getOffset(sampleIndex);
       if (sampleTimeUs < timeUs && sampleIndex < sampleTable.sampleCount - 1) {
         int secondSampleIndex = sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
         if (secondSampleIndex != C.INDEX_UNSET && secondSampleIndex != sampleIndex) {
-          secondTimeUs = sampleTable.timestampsUs[secondSampleIndex];
-          secondOffset = sampleTable.offsets[secondSampleIndex];
+          secondTimeUs = sampleTable.getTimestampUs(secondSampleIndex);
+          secondOffset = sampleTable.getOffset(secondSampleIndex);
         }
       }
     } else {
@@ -504,6 +525,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   /**
    * Returns the list of sample timestamps of a {@code trackId}, in microseconds.
    *
+   * <p>If the track's sample table {@linkplain TrackSampleTable#isPaged() is paged}, all of its
+   * entries are decoded to create the returned array.
+   *
    * @param trackId The id of the track to get the sample timestamps.
    * @return The corresponding sample timestmaps of the track.
    */
@@ -511,7 +535,15 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     if (tracks.length <= trackId) {
       return new long[0];
     }
-    return tracks[trackId].sampleTable.timestampsUs;
+    TrackSampleTable sampleTable = tracks[trackId].sampleTable;
+    if (!sampleTable.isPaged()) {
+      return sampleTable.timestampsUs;
+    }
+    long[] timestampsUs = new long[sampleTable.sampleCount];
+    for (int i = 0; i < timestampsUs.length; i++) {
+      timestampsUs[i] = sampleTable.getTimestampUs(i);
+    }
+    return timestampsUs;
   }
 
   // Private methods.
@@ -711,7 +743,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
             /* drmInitData= */ null,
             ignoreEditLists,
             isQuickTime,
-            /* modifyTrackFunction= */ track -> track);
+            /* modifyTrackFunction= */ track -> track,
+            /* pagedSampleTables= */ (flags & FLAG_USE_PAGED_SAMPLE_TABLES) != 0);
 
     if (readingAuxiliaryTracks) {
       checkState(
@@ -789,7 +822,12 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     this.firstVideoTrackIndex = firstVideoTrackIndex;
     this.durationUs = durationUs;
     this.tracks = tracks.toArray(new Mp4Track[0]);
-    accumulatedSampleSizes = calculateAccumulatedSampleSizes(this.tracks);
+    // Paged sample tables don't hold an entry for every sample, so neither should the accumulated
+    // sample sizes.
+    accumulatedSampleSizesInterval =
+        (flags & FLAG_USE_PAGED_SAMPLE_TABLES) != 0 ? PagedSampleTable.PAGE_SAMPLE_COUNT : 1;
+    accumulatedSampleSizes =
+        calculateAccumulatedSampleSizes(this.tracks, accumulatedSampleSizesInterval);
 
     extractorOutput.endTracks();
     extractorOutput.seekMap(this);
@@ -886,8 +924,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     Mp4Track track = tracks[sampleTrackIndex];
     TrackOutput trackOutput = track.trackOutput;
     int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex] + sampleOffsetForAuxiliaryTracks;
-    int sampleSize = track.sampleTable.sizes[sampleIndex];
+    long position = track.sampleTable.getOffset(sampleIndex) + sampleOffsetForAuxiliaryTracks;
+    int sampleSize = track.sampleTable.getSize(sampleIndex);
     @Nullable TrueHdSampleRechunker trueHdSampleRechunker = track.trueHdSampleRechunker;
     long skipAmount = position - inputPosition + sampleBytesRead;
     if (skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE) {
@@ -922,7 +960,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
           int numberOfBytesToDetermineSampleDependencies = 0;
           if (!isSampleDependedOn
               && nalUnitPrefixLength + NalUnitUtil.numberOfBytesInNalUnitHeader(track.track.format)
-                  <= track.sampleTable.sizes[sampleIndex] - sampleBytesRead) {
+                  <= track.sampleTable.getSize(sampleIndex) - sampleBytesRead) {
             // Parsing sample dependencies needs the first few NAL unit bytes. Read them in the same
             // readFully call that reads the NAL length. This ensures sampleBytesRead,
             // sampleBytesWritten and isSampleDependedOn remain in a consistent state if we have
@@ -989,8 +1027,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
     }
 
-    long timeUs = track.sampleTable.timestampsUs[sampleIndex];
-    @C.BufferFlags int sampleFlags = track.sampleTable.flags[sampleIndex];
+    long timeUs = track.sampleTable.getTimestampUs(sampleIndex);
+    @C.BufferFlags int sampleFlags = track.sampleTable.getFlags(sampleIndex);
     if (!isSampleDependedOn) {
       sampleFlags |= C.BUFFER_FLAG_NOT_DEPENDED_ON;
     }
@@ -1041,8 +1079,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == track.sampleTable.sampleCount) {
         continue;
       }
-      long sampleOffset = track.sampleTable.offsets[sampleIndex];
-      long sampleAccumulatedBytes = castNonNull(accumulatedSampleSizes)[trackIndex][sampleIndex];
+      long sampleOffset = track.sampleTable.getOffset(sampleIndex);
+      long sampleAccumulatedBytes = getAccumulatedSampleSize(trackIndex, sampleIndex);
       long skipAmount = sampleOffset - inputPosition;
       boolean requiresReload = skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE;
       if ((!requiresReload && preferredRequiresReload)
@@ -1127,17 +1165,49 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   }
 
   /**
-   * For each sample of each track, calculates accumulated size of all samples which need to be read
-   * before this sample can be used.
+   * Returns the accumulated size of all samples which need to be read before the sample with the
+   * given index can be used, which is interpolated between the sizes calculated by {@link
+   * #calculateAccumulatedSampleSizes} if it wasn't calculated for the sample itself.
+   */
+  private long getAccumulatedSampleSize(int trackIndex, int sampleIndex) {
+    long[] trackAccumulatedSampleSizes = castNonNull(accumulatedSampleSizes)[trackIndex];
+    int interval = accumulatedSampleSizesInterval;
+    int index = sampleIndex / interval;
+    int indexOffset = sampleIndex % interval;
+    if (indexOffset == 0) {
+      return trackAccumulatedSampleSizes[index];
+    }
+    int intervalSampleCount =
+        min(interval, tracks[trackIndex].sampleTable.sampleCount - index * interval);
+    long intervalStartSize = trackAccumulatedSampleSizes[index];
+    long intervalEndSize = trackAccumulatedSampleSizes[index + 1];
+    return intervalStartSize
+        + (intervalEndSize - intervalStartSize) * indexOffset / intervalSampleCount;
+  }
+
+  /**
+   * For every {@code interval}-th sample of each track, calculates accumulated size of all samples
+   * which need to be read before this sample can be used. The last element of each track's array
+   * is the accumulated size after the track's last sample has been read.
+   *
+   * <p>If {@code interval} is {@link PagedSampleTable#PAGE_SAMPLE_COUNT}, the samples are
+   * interleaved a page at a time, using the timestamp of the first sample of each page, so that
+   * paged sample tables don't need to be decoded. Otherwise {@code interval} must be 1.
    */
-  private static long[][] calculateAccumulatedSampleSizes(Mp4Track[] tracks) {
+  private static long[][] calculateAccumulatedSampleSizes(Mp4Track[] tracks, int interval) {
+    boolean interleavePages = interval == PagedSampleTable.PAGE_SAMPLE_COUNT;
+    checkArgument(interleavePages || interval == 1);
     long[][] accumulatedSampleSizes = new long[tracks.length][];
     int[] nextSampleIndex = new int[tracks.length];
     long[] nextSampleTimesUs = new long[tracks.length];
     boolean[] tracksFinished = new boolean[tracks.length];
     for (int i = 0; i < tracks.length; i++) {
-      accumulatedSampleSizes[i] = new long[tracks[i].sampleTable.sampleCount];
-      nextSampleTimesUs[i] = tracks[i].sampleTable.timestampsUs[0];
+      accumulatedSampleSizes[i] =
+          new long[Util.ceilDivide(tracks[i].sampleTable.sampleCount, interval) + 1];
+      nextSampleTimesUs[i] =
+          interleavePages
+              ? tracks[i].sampleTable.getPageStartTimestampUs(0)
+              : tracks[i].sampleTable.getTimestampUs(0);
     }
     long accumulatedSampleSize = 0;
     int finishedTracks = 0;
@@ -1150,14 +1220,21 @@ public final class Mp4Extractor implements Extractor, SeekMap {
           minTimeUs = nextSampleTimesUs[i];
         }
       }
-      int trackSampleIndex = nextSampleIndex[minTimeTrackIndex];
-      accumulatedSampleSizes[minTimeTrackIndex][trackSampleIndex] = accumulatedSampleSize;
-      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.sizes[trackSampleIndex];
-      nextSampleIndex[minTimeTrackIndex] = ++trackSampleIndex;
-      if (trackSampleIndex < accumulatedSampleSizes[minTimeTrackIndex].length) {
+      TrackSampleTable sampleTable = tracks[minTimeTrackIndex].sampleTable;
+      // The index of the next sample, or of the next page if interleaving pages.
+      int index = nextSampleIndex[minTimeTrackIndex];
+      accumulatedSampleSizes[minTimeTrackIndex][index] = accumulatedSampleSize;
+      accumulatedSampleSize +=
+          interleavePages ? sampleTable.getPageSize(index) : sampleTable.getSize(index);
+      nextSampleIndex[minTimeTrackIndex] = ++index;
+      if (index < accumulatedSampleSizes[minTimeTrackIndex].length - 1) {
         nextSampleTimesUs[minTimeTrackIndex] =
-            tracks[minTimeTrackIndex].sampleTable.timestampsUs[trackSampleIndex];
+            interleavePages
+                ? sampleTable.getPageStartTimestampUs(index)
+                : sampleTable.getTimestampUs(index);
       } else {
+        long[] trackAccumulatedSampleSizes = accumulatedSampleSizes[minTimeTrackIndex];
+        trackAccumulatedSampleSizes[trackAccumulatedSampleSizes.length - 1] = accumulatedSampleSize;
         tracksFinished[minTimeTrackIndex] = true;
         finishedTracks++;
       }
@@ -1180,7 +1257,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     if (sampleIndex == C.INDEX_UNSET) {
       return offset;
     }
-    long sampleOffset = sampleTable.offsets[sampleIndex];
+    long sampleOffset = sampleTable.getOffset(sampleIndex);
     return min(sampleOffset, offset);
   }
 
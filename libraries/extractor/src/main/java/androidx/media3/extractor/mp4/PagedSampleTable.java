@@ -0,0 +1,466 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.extractor.mp4;
+
+import static androidx.media3.common.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.ParserException;
+import androidx.media3.common.util.Log;
+import androidx.media3.common.util.ParsableByteArray;
+import androidx.media3.common.util.Util;
+import androidx.media3.container.Mp4Box;
+import androidx.media3.extractor.ExtractorUtil;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The samples of a track in an MP4 file, decoded on demand from the track's sample table boxes.
+ *
+ * <p>The sample table boxes are kept in their compact, run-length encoded form, rather than being
+ * expanded into arrays with an entry per sample. The decoder state is recorded at the start of
+ * every page of {@link #PAGE_SAMPLE_COUNT} samples, so that accessing a sample only requires its
+ * page to be decoded. The most recently decoded pages are cached. Sample sizes are read directly
+ * from the sample size box. The timestamp of the first sample and the total size of each page are
+ * also recorded, so that the samples can be interleaved with those of other tracks without
+ * decoding the pages.
+ *
+ * <p>Instances are safe to access from multiple threads.
+ */
+/* package */ final class PagedSampleTable {
+
+  /** The number of samples in each page. */
+  public static final int PAGE_SAMPLE_COUNT = 1024;
+
+  private static final String TAG = "PagedSampleTable";
+
+  private static final int CACHED_PAGE_COUNT = 4;
+
+  /** The number of samples. */
+  public final int sampleCount;
+
+  /** The maximum sample size in bytes. */
+  public final int maximumSize;
+
+  /** The duration of the samples in microseconds. */
+  public final long durationUs;
+
+  private final long timescale;
+  private final BoxParser.SampleSizeBox sampleSizeBox;
+  private final Cursor[] pageStartCursors;
+  private final long[] pageStartTimestampsUs;
+  private final long[] pageSizes;
+  private final AtomicReferenceArray<Page> cachedPages;
+
+  /**
+   * Creates an instance by scanning the sample table boxes once.
+   *
+   * @param timescale The media timescale of the track.
+   * @param sampleSizeBox The stsz or stz2 box.
+   * @param chunkOffsets The stco or co64 box data.
+   * @param chunkOffsetsAreLongs Whether {@code chunkOffsets} is the data of a co64 box.
+   * @param stsc The stsc box data.
+   * @param stts The stts box data.
+   * @param ctts The ctts box data, or null if the track has no ctts box.
+   * @param stss The stss box data, or null if all samples are synchronization samples. Must not
+   *     be empty.
+   * @throws ParserException If the boxes are malformed.
+   */
+  public static PagedSampleTable create(
+      long timescale,
+      BoxParser.SampleSizeBox sampleSizeBox,
+      ParsableByteArray chunkOffsets,
+      boolean chunkOffsetsAreLongs,
+      ParsableByteArray stsc,
+      ParsableByteArray stts,
+      @Nullable ParsableByteArray ctts,
+      @Nullable ParsableByteArray stss)
+      throws ParserException {
+    Cursor cursor =
+        new Cursor(sampleSizeBox, chunkOffsets, chunkOffsetsAreLongs, stsc, stts, ctts, stss);
+    int sampleCount = sampleSizeBox.getSampleCount();
+    int pageCount = Util.ceilDivide(sampleCount, PAGE_SAMPLE_COUNT);
+    Cursor[] pageStartCursors = new Cursor[pageCount];
+    long[] pageStartTimestampsUs = new long[pageCount];
+    long[] pageSizes = new long[pageCount];
+    int maximumSize = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      int pageIndex = i / PAGE_SAMPLE_COUNT;
+      if (i % PAGE_SAMPLE_COUNT == 0) {
+        pageStartCursors[pageIndex] = new Cursor(cursor);
+      }
+      if (!cursor.moveToNextSample()) {
+        Log.w(TAG, "Unexpected end of chunk data");
+        sampleCount = i;
+        pageCount = Util.ceilDivide(sampleCount, PAGE_SAMPLE_COUNT);
+        pageStartCursors = Arrays.copyOf(pageStartCursors, pageCount);
+        pageStartTimestampsUs = Arrays.copyOf(pageStartTimestampsUs, pageCount);
+        pageSizes = Arrays.copyOf(pageSizes, pageCount);
+        break;
+      }
+      if (i % PAGE_SAMPLE_COUNT == 0) {
+        pageStartTimestampsUs[pageIndex] =
+            Util.scaleLargeTimestamp(cursor.sampleTimestamp, C.MICROS_PER_SECOND, timescale);
+      }
+      pageSizes[pageIndex] += cursor.sampleSize;
+      maximumSize = max(maximumSize, cursor.sampleSize);
+    }
+    long duration = cursor.decodingTime + cursor.timestampOffset;
+    return new PagedSampleTable(
+        timescale,
+        sampleSizeBox,
+        pageStartCursors,
+        pageStartTimestampsUs,
+        pageSizes,
+        sampleCount,
+        maximumSize,
+        Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, timescale));
+  }
+
+  private PagedSampleTable(
+      long timescale,
+      BoxParser.SampleSizeBox sampleSizeBox,
+      Cursor[] pageStartCursors,
+      long[] pageStartTimestampsUs,
+      long[] pageSizes,
+      int sampleCount,
+      int maximumSize,
+      long durationUs) {
+    this.timescale = timescale;
+    this.sampleSizeBox = sampleSizeBox;
+    this.pageStartCursors = pageStartCursors;
+    this.pageStartTimestampsUs = pageStartTimestampsUs;
+    this.pageSizes = pageSizes;
+    this.sampleCount = sampleCount;
+    this.maximumSize = maximumSize;
+    this.durationUs = durationUs;
+    cachedPages = new AtomicReferenceArray<>(CACHED_PAGE_COUNT);
+  }
+
+  /**
+   * Returns the timestamp of the first sample of a page in microseconds, without decoding the page.
+   */
+  public long getPageStartTimestampUs(int pageIndex) {
+    return pageStartTimestampsUs[pageIndex];
+  }
+
+  /** Returns the total size of the samples of a page in bytes, without decoding the page. */
+  public long getPageSize(int pageIndex) {
+    return pageSizes[pageIndex];
+  }
+
+  /** Returns the offset of a sample in bytes. */
+  public long getOffset(int sampleIndex) {
+    return getPage(sampleIndex).offsets[sampleIndex % PAGE_SAMPLE_COUNT];
+  }
+
+  /** Returns the size of a sample in bytes. */
+  public int getSize(int sampleIndex) {
+    return sampleSizeBox.getSampleSize(sampleIndex);
+  }
+
+  /** Returns the timestamp of a sample in microseconds. */
+  public long getTimestampUs(int sampleIndex) {
+    return getPage(sampleIndex).timestampsUs[sampleIndex % PAGE_SAMPLE_COUNT];
+  }
+
+  /** Returns the flags of a sample. */
+  public @C.BufferFlags int getFlags(int sampleIndex) {
+    @C.BufferFlags int flags = getPage(sampleIndex).flags[sampleIndex % PAGE_SAMPLE_COUNT];
+    if (sampleIndex == sampleCount - 1) {
+      flags |= C.BUFFER_FLAG_LAST_SAMPLE;
+    }
+    return flags;
+  }
+
+  /**
+   * Returns the same index as {@link Util#binarySearchFloor(long[], long, boolean, boolean)} would
+   * for an array of the sample timestamps, with {@code inclusive} set to true and {@code
+   * stayInBounds} set to false.
+   */
+  public int binarySearchFloor(long timeUs) {
+    int index = binarySearch(timeUs);
+    if (index < 0) {
+      return -(index + 2);
+    }
+    while (--index >= 0 && getTimestampUs(index) == timeUs) {}
+    return index + 1;
+  }
+
+  /**
+   * Returns the same index as {@link Util#binarySearchCeil(long[], long, boolean, boolean)} would
+   * for an array of the sample timestamps, with {@code inclusive} set to true and {@code
+   * stayInBounds} set to false.
+   */
+  public int binarySearchCeil(long timeUs) {
+    int index = binarySearch(timeUs);
+    if (index < 0) {
+      return ~index;
+    }
+    while (++index < sampleCount && getTimestampUs(index) == timeUs) {}
+    return index - 1;
+  }
+
+  /** Equivalent to {@link Arrays#binarySearch(long[], long)} on the sample timestamps. */
+  private int binarySearch(long timeUs) {
+    int lowIndex = 0;
+    int highIndex = sampleCount - 1;
+    while (lowIndex <= highIndex) {
+      int midIndex = (lowIndex + highIndex) >>> 1;
+      long midTimeUs = getTimestampUs(midIndex);
+      if (midTimeUs < timeUs) {
+        lowIndex = midIndex + 1;
+      } else if (midTimeUs > timeUs) {
+        highIndex = midIndex - 1;
+      } else {
+        return midIndex;
+      }
+    }
+    return -(lowIndex + 1);
+  }
+
+  private Page getPage(int sampleIndex) {
+    int pageIndex = sampleIndex / PAGE_SAMPLE_COUNT;
+    int cacheIndex = pageIndex % CACHED_PAGE_COUNT;
+    @Nullable Page page = cachedPages.get(cacheIndex);
+    if (page == null || page.index != pageIndex) {
+      page = decodePage(pageIndex);
+      cachedPages.set(cacheIndex, page);
+    }
+    return page;
+  }
+
+  private Page decodePage(int pageIndex) {
+    Cursor cursor = new Cursor(pageStartCursors[pageIndex]);
+    int pageSampleCount = min(PAGE_SAMPLE_COUNT, sampleCount - pageIndex * PAGE_SAMPLE_COUNT);
+    Page page = new Page(pageIndex, pageSampleCount);
+    for (int i = 0; i < pageSampleCount; i++) {
+      // The samples were decoded successfully when the table was created.
+      cursor.moveToNextSample();
+      page.offsets[i] = cursor.sampleOffset;
+      page.timestampsUs[i] =
+          Util.scaleLargeTimestamp(cursor.sampleTimestamp, C.MICROS_PER_SECOND, timescale);
+      page.flags[i] = cursor.isSyncSample ? C.BUFFER_FLAG_KEY_FRAME : 0;
+    }
+    return page;
+  }
+
+  /** The decoded entries of a page of samples. */
+  private static final class Page {
+
+    public final int index;
+    public final long[] offsets;
+    public final long[] timestampsUs;
+    public final int[] flags;
+
+    public Page(int index, int sampleCount) {
+      this.index = index;
+      offsets = new long[sampleCount];
+      timestampsUs = new long[sampleCount];
+      flags = new int[sampleCount];
+    }
+  }
+
+  /**
+   * Decodes the sample table boxes one sample at a time, in the same way as {@link
+   * BoxParser#parseStbl}. Each cursor reads the boxes through its own {@link ParsableByteArray}
+   * instances, so copies can be used independently.
+   */
+  private static final class Cursor {
+
+    private final BoxParser.SampleSizeBox sampleSizeBox;
+    private final boolean chunkOffsetsAreLongs;
+    private final ParsableByteArray chunkOffsets;
+    private final ParsableByteArray stsc;
+    private final ParsableByteArray stts;
+    @Nullable private final ParsableByteArray ctts;
+    @Nullable private final ParsableByteArray stss;
+
+    private int sampleIndex;
+
+    // Chunk state.
+    private int chunkCount;
+    private int chunkIndex;
+    private int samplesPerChunk;
+    private int nextSamplesPerChunkChangeIndex;
+    private int remainingSamplesPerChunkChanges;
+    private int remainingSamplesInChunk;
+    private long nextSampleOffset;
+
+    // Timestamp state.
+    private int remainingTimestampDeltaChanges;
+    private int remainingSamplesAtTimestampDelta;
+    private int timestampDelta;
+    private long decodingTime;
+    private int remainingTimestampOffsetChanges;
+    private int remainingSamplesAtTimestampOffset;
+    private int timestampOffset;
+
+    // Synchronization sample state.
+    private int remainingSynchronizationSamples;
+    private int nextSynchronizationSampleIndex;
+
+    // The sample that the cursor has most recently moved to.
+    public long sampleOffset;
+    public int sampleSize;
+    public long sampleTimestamp;
+    public boolean isSyncSample;
+
+    public Cursor(
+        BoxParser.SampleSizeBox sampleSizeBox,
+        ParsableByteArray chunkOffsets,
+        boolean chunkOffsetsAreLongs,
+        ParsableByteArray stsc,
+        ParsableByteArray stts,
+        @Nullable ParsableByteArray ctts,
+        @Nullable ParsableByteArray stss)
+        throws ParserException {
+      this.sampleSizeBox = sampleSizeBox;
+      this.chunkOffsetsAreLongs = chunkOffsetsAreLongs;
+      this.chunkOffsets = copyOf(chunkOffsets);
+      this.stsc = copyOf(stsc);
+      this.stts = copyOf(stts);
+      this.ctts = ctts != null ? copyOf(ctts) : null;
+      this.stss = stss != null ? copyOf(stss) : null;
+
+      this.chunkOffsets.setPosition(Mp4Box.FULL_HEADER_SIZE);
+      chunkCount = this.chunkOffsets.readUnsignedIntToInt();
+      chunkIndex = -1;
+      this.stsc.setPosition(Mp4Box.FULL_HEADER_SIZE);
+      remainingSamplesPerChunkChanges = this.stsc.readUnsignedIntToInt();
+      ExtractorUtil.checkContainerInput(this.stsc.readInt() == 1, "first_chunk must be 1");
+
+      this.stts.setPosition(Mp4Box.FULL_HEADER_SIZE);
+      remainingTimestampDeltaChanges = this.stts.readUnsignedIntToInt() - 1;
+      remainingSamplesAtTimestampDelta = this.stts.readUnsignedIntToInt();
+      timestampDelta = this.stts.readUnsignedIntToInt();
+
+      if (this.ctts != null) {
+        this.ctts.setPosition(Mp4Box.FULL_HEADER_SIZE);
+        remainingTimestampOffsetChanges = this.ctts.readUnsignedIntToInt();
+      }
+
+      nextSynchronizationSampleIndex = C.INDEX_UNSET;
+      if (this.stss != null) {
+        this.stss.setPosition(Mp4Box.FULL_HEADER_SIZE);
+        remainingSynchronizationSamples = this.stss.readUnsignedIntToInt();
+        nextSynchronizationSampleIndex = this.stss.readUnsignedIntToInt() - 1;
+      }
+    }
+
+    /** Creates a copy of {@code other}, which decodes the same samples as it. */
+    public Cursor(Cursor other) {
+      sampleSizeBox = other.sampleSizeBox;
+      chunkOffsetsAreLongs = other.chunkOffsetsAreLongs;
+      chunkOffsets = copyOf(other.chunkOffsets);
+      stsc = copyOf(other.stsc);
+      stts = copyOf(other.stts);
+      ctts = other.ctts != null ? copyOf(other.ctts) : null;
+      stss = other.stss != null ? copyOf(other.stss) : null;
+      sampleIndex = other.sampleIndex;
+      chunkCount = other.chunkCount;
+      chunkIndex = other.chunkIndex;
+      samplesPerChunk = other.samplesPerChunk;
+      nextSamplesPerChunkChangeIndex = other.nextSamplesPerChunkChangeIndex;
+      remainingSamplesPerChunkChanges = other.remainingSamplesPerChunkChanges;
+      remainingSamplesInChunk = other.remainingSamplesInChunk;
+      nextSampleOffset = other.nextSampleOffset;
+      remainingTimestampDeltaChanges = other.remainingTimestampDeltaChanges;
+      remainingSamplesAtTimestampDelta = other.remainingSamplesAtTimestampDelta;
+      timestampDelta = other.timestampDelta;
+      decodingTime = other.decodingTime;
+      remainingTimestampOffsetChanges = other.remainingTimestampOffsetChanges;
+      remainingSamplesAtTimestampOffset = other.remainingSamplesAtTimestampOffset;
+      timestampOffset = other.timestampOffset;
+      remainingSynchronizationSamples = other.remainingSynchronizationSamples;
+      nextSynchronizationSampleIndex = other.nextSynchronizationSampleIndex;
+    }
+
+    /**
+     * Moves to the next sample, returning whether successful. Fails if the chunk offset box has no
+     * more chunks.
+     */
+    public boolean moveToNextSample() {
+      // Advance to the next chunk if necessary.
+      while (remainingSamplesInChunk == 0) {
+        if (++chunkIndex >= chunkCount) {
+          return false;
+        }
+        nextSampleOffset =
+            chunkOffsetsAreLongs
+                ? chunkOffsets.readUnsignedLongToLong()
+                : chunkOffsets.readUnsignedInt();
+        if (chunkIndex == nextSamplesPerChunkChangeIndex) {
+          samplesPerChunk = stsc.readUnsignedIntToInt();
+          stsc.skipBytes(4); // Skip sample_description_index
+          nextSamplesPerChunkChangeIndex =
+              --remainingSamplesPerChunkChanges > 0
+                  ? (stsc.readUnsignedIntToInt() - 1)
+                  : C.INDEX_UNSET;
+        }
+        remainingSamplesInChunk = samplesPerChunk;
+      }
+
+      // Add on the timestamp offset if ctts is present.
+      if (ctts != null) {
+        while (remainingSamplesAtTimestampOffset == 0 && remainingTimestampOffsetChanges > 0) {
+          remainingSamplesAtTimestampOffset = ctts.readUnsignedIntToInt();
+          timestampOffset = ctts.readInt();
+          remainingTimestampOffsetChanges--;
+        }
+        remainingSamplesAtTimestampOffset--;
+      }
+
+      sampleOffset = nextSampleOffset;
+      sampleSize = sampleSizeBox.getSampleSize(sampleIndex);
+      sampleTimestamp = decodingTime + timestampOffset;
+
+      // All samples are synchronization samples if the stss is not present.
+      isSyncSample = stss == null;
+      if (sampleIndex == nextSynchronizationSampleIndex) {
+        isSyncSample = true;
+        remainingSynchronizationSamples--;
+        if (remainingSynchronizationSamples > 0) {
+          nextSynchronizationSampleIndex = checkNotNull(stss).readUnsignedIntToInt() - 1;
+        }
+      }
+
+      // Add on the duration of this sample.
+      decodingTime += timestampDelta;
+      remainingSamplesAtTimestampDelta--;
+      if (remainingSamplesAtTimestampDelta == 0 && remainingTimestampDeltaChanges > 0) {
+        remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
+        timestampDelta = stts.readInt();
+        remainingTimestampDeltaChanges--;
+      }
+
+      nextSampleOffset += sampleSize;
+      remainingSamplesInChunk--;
+      sampleIndex++;
+      return true;
+    }
+
+    /** Returns a {@link ParsableByteArray} with the same data and position as {@code array}. */
+    private static ParsableByteArray copyOf(ParsableByteArray array) {
+      ParsableByteArray copy = new ParsableByteArray(array.getData(), array.limit());
+      copy.setPosition(array.getPosition());
+      return copy;
+    }
+  }
+}
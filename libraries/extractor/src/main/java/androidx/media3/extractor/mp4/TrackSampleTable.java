@@ -15,6 +15,9 @@
  */
 package androidx.media3.extractor.mp4;
 
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
 import androidx.media3.common.C;
 import androidx.media3.common.util.Assertions;
 import androidx.media3.common.util.UnstableApi;
@@ -27,27 +30,53 @@ public final class TrackSampleTable {
   /** The track corresponding to this sample table. */
   public final Track track;
 
-  /** Number of samples. */
+  /**
+   * Number of samples. If the sample table {@linkplain #isPaged() is paged}, this is the number of
+   * samples even though {@link #offsets}, {@link #sizes}, {@link #timestampsUs} and {@link #flags}
+   * are empty.
+   */
   public final int sampleCount;
 
-  /** Sample offsets in bytes. */
+  /**
+   * Sample offsets in bytes.
+   *
+   * <p>Empty, although {@link #sampleCount} isn't zero, if the sample table {@linkplain #isPaged()
+   * is paged}. Callers that may receive paged sample tables must use {@link #getOffset(int)}.
+   */
   public final long[] offsets;
 
-  /** Sample sizes in bytes. */
+  /**
+   * Sample sizes in bytes.
+   *
+   * <p>Empty, although {@link #sampleCount} isn't zero, if the sample table {@linkplain #isPaged()
+   * is paged}. Callers that may receive paged sample tables must use {@link #getSize(int)}.
+   */
   public final int[] sizes;
 
-  /** Maximum sample size in {@link #sizes}. */
+  /** Maximum sample size in bytes. */
   public final int maximumSize;
 
-  /** Sample timestamps in microseconds. */
+  /**
+   * Sample timestamps in microseconds.
+   *
+   * <p>Empty, although {@link #sampleCount} isn't zero, if the sample table {@linkplain #isPaged()
+   * is paged}. Callers that may receive paged sample tables must use {@link #getTimestampUs(int)}.
+   */
   public final long[] timestampsUs;
 
-  /** Sample flags. */
+  /**
+   * Sample flags.
+   *
+   * <p>Empty, although {@link #sampleCount} isn't zero, if the sample table {@linkplain #isPaged()
+   * is paged}. Callers that may receive paged sample tables must use {@link #getFlags(int)}.
+   */
   public final int[] flags;
 
   /** The duration of the track sample table in microseconds. */
   public final long durationUs;
 
+  @Nullable private final PagedSampleTable pagedSampleTable;
+
   public TrackSampleTable(
       Track track,
       long[] offsets,
@@ -71,6 +100,77 @@ public final class TrackSampleTable {
     if (flags.length > 0) {
       flags[flags.length - 1] |= C.BUFFER_FLAG_LAST_SAMPLE;
     }
+    pagedSampleTable = null;
+  }
+
+  /** Creates a paged sample table, whose entries are decoded on demand by {@code pagedTable}. */
+  /* package */ TrackSampleTable(Track track, PagedSampleTable pagedTable) {
+    this.track = track;
+    offsets = new long[0];
+    sizes = new int[0];
+    maximumSize = pagedTable.maximumSize;
+    timestampsUs = new long[0];
+    flags = new int[0];
+    durationUs = pagedTable.durationUs;
+    sampleCount = pagedTable.sampleCount;
+    pagedSampleTable = pagedTable;
+  }
+
+  /** Returns whether the entries of the sample table are decoded on demand. */
+  public boolean isPaged() {
+    return pagedSampleTable != null;
+  }
+
+  /** Returns the offset of the sample with the given index, in bytes. */
+  public long getOffset(int sampleIndex) {
+    return pagedSampleTable != null
+        ? pagedSampleTable.getOffset(sampleIndex)
+        : offsets[sampleIndex];
+  }
+
+  /** Returns the size of the sample with the given index, in bytes. */
+  public int getSize(int sampleIndex) {
+    return pagedSampleTable != null ? pagedSampleTable.getSize(sampleIndex) : sizes[sampleIndex];
+  }
+
+  /** Returns the timestamp of the sample with the given index, in microseconds. */
+  public long getTimestampUs(int sampleIndex) {
+    return pagedSampleTable != null
+        ? pagedSampleTable.getTimestampUs(sampleIndex)
+        : timestampsUs[sampleIndex];
+  }
+
+  /** Returns the flags of the sample with the given index. */
+  public @C.BufferFlags int getFlags(int sampleIndex) {
+    return pagedSampleTable != null ? pagedSampleTable.getFlags(sampleIndex) : flags[sampleIndex];
+  }
+
+  /**
+   * Returns the timestamp of the first sample of a page of {@link
+   * PagedSampleTable#PAGE_SAMPLE_COUNT} samples, in microseconds. Paged sample tables don't decode
+   * the page to do so.
+   */
+  /* package */ long getPageStartTimestampUs(int pageIndex) {
+    return pagedSampleTable != null
+        ? pagedSampleTable.getPageStartTimestampUs(pageIndex)
+        : timestampsUs[pageIndex * PagedSampleTable.PAGE_SAMPLE_COUNT];
+  }
+
+  /**
+   * Returns the total size of the samples of a page of {@link PagedSampleTable#PAGE_SAMPLE_COUNT}
+   * samples, in bytes. Paged sample tables don't decode the page to do so.
+   */
+  /* package */ long getPageSize(int pageIndex) {
+    if (pagedSampleTable != null) {
+      return pagedSampleTable.getPageSize(pageIndex);
+    }
+    int pageStartIndex = pageIndex * PagedSampleTable.PAGE_SAMPLE_COUNT;
+    int pageEndIndex = min(pageStartIndex + PagedSampleTable.PAGE_SAMPLE_COUNT, sampleCount);
+    long pageSize = 0;
+    for (int i = pageStartIndex; i < pageEndIndex; i++) {
+      pageSize += sizes[i];
+    }
+    return pageSize;
   }
 
   /**
@@ -83,9 +183,12 @@ public final class TrackSampleTable {
   public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
     // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
     // Frames are not reordered past synchronization samples so this works in practice.
-    int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
+    int startIndex =
+        pagedSampleTable != null
+            ? pagedSampleTable.binarySearchFloor(timeUs)
+            : Util.binarySearchFloor(timestampsUs, timeUs, true, false);
     for (int i = startIndex; i >= 0; i--) {
-      if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+      if ((getFlags(i) & C.BUFFER_FLAG_KEY_FRAME) != 0) {
         return i;
       }
     }
@@ -100,9 +203,12 @@ public final class TrackSampleTable {
    * @return index Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
   public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
-    int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
-    for (int i = startIndex; i < timestampsUs.length; i++) {
-      if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+    int startIndex =
+        pagedSampleTable != null
+            ? pagedSampleTable.binarySearchCeil(timeUs)
+            : Util.binarySearchCeil(timestampsUs, timeUs, true, false);
+    for (int i = startIndex; i < sampleCount; i++) {
+      if ((getFlags(i) & C.BUFFER_FLAG_KEY_FRAME) != 0) {
         return i;
       }
     }
@@ -17,9 +17,11 @@ package androidx.media3.extractor.text.webvtt;
 
 import android.text.TextUtils;
 import androidx.annotation.Nullable;
+import androidx.media3.common.C;
 import androidx.media3.common.Format;
 import androidx.media3.common.Format.CueReplacementBehavior;
 import androidx.media3.common.ParserException;
+import androidx.media3.common.text.Cue;
 import androidx.media3.common.util.Consumer;
 import androidx.media3.common.util.ParsableByteArray;
 import androidx.media3.common.util.UnstableApi;
@@ -27,6 +29,7 @@ import androidx.media3.extractor.text.CuesWithTiming;
 import androidx.media3.extractor.text.LegacySubtitleUtil;
 import androidx.media3.extractor.text.SubtitleParser;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -104,8 +107,90 @@ public final class WebvttParser implements SubtitleParser {
         }
       }
     }
-    WebvttSubtitle subtitle = new WebvttSubtitle(cueInfos);
-    LegacySubtitleUtil.toCuesWithTiming(subtitle, outputOptions, output);
+    if (outputOptions.startTimeUs == C.TIME_UNSET && isSortedByStartTime(cueInfos)) {
+      outputSortedCues(cueInfos, output);
+    } else {
+      WebvttSubtitle subtitle = new WebvttSubtitle(cueInfos);
+      LegacySubtitleUtil.toCuesWithTiming(subtitle, outputOptions, output);
+    }
+  }
+
+  private static boolean isSortedByStartTime(List<WebvttCueInfo> cueInfos) {
+    for (int i = 1; i < cueInfos.size(); i++) {
+      if (cueInfos.get(i).startTimeUs < cueInfos.get(i - 1).startTimeUs) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Outputs the same {@link CuesWithTiming} as {@link LegacySubtitleUtil#toCuesWithTiming} does
+   * for a {@link WebvttSubtitle} when all cues are output, for cues sorted by start time.
+   *
+   * <p>{@link WebvttSubtitle#getCues(long)} checks every cue, so the cues of a document are checked
+   * once per event when converting it through the {@link WebvttSubtitle}. This method instead
+   * keeps track of the active cues as it moves through the events.
+   */
+  private static void outputSortedCues(
+      List<WebvttCueInfo> cueInfos, Consumer<CuesWithTiming> output) {
+    long[] eventTimesUs = new long[2 * cueInfos.size()];
+    for (int i = 0; i < cueInfos.size(); i++) {
+      WebvttCueInfo cueInfo = cueInfos.get(i);
+      eventTimesUs[i * 2] = cueInfo.startTimeUs;
+      eventTimesUs[i * 2 + 1] = cueInfo.endTimeUs;
+    }
+    Arrays.sort(eventTimesUs);
+    // The cues that are active at the current event, in start time order.
+    List<WebvttCueInfo> activeCueInfos = new ArrayList<>();
+    int nextCueIndex = 0;
+    for (int i = 0; i < eventTimesUs.length - 1; i++) {
+      long timeUs = eventTimesUs[i];
+      long durationUs = eventTimesUs[i + 1] - timeUs;
+      if (durationUs == 0) {
+        continue;
+      }
+      while (nextCueIndex < cueInfos.size()
+          && cueInfos.get(nextCueIndex).startTimeUs <= timeUs) {
+        activeCueInfos.add(cueInfos.get(nextCueIndex++));
+      }
+      for (int j = activeCueInfos.size() - 1; j >= 0; j--) {
+        if (activeCueInfos.get(j).endTimeUs <= timeUs) {
+          activeCueInfos.remove(j);
+        }
+      }
+      if (!activeCueInfos.isEmpty()) {
+        output.accept(new CuesWithTiming(getCues(activeCueInfos), timeUs, durationUs));
+      }
+    }
+  }
+
+  /**
+   * Returns the cues of the active cues, with lines assigned to those whose line is unset as in
+   * {@link WebvttSubtitle#getCues(long)}.
+   */
+  private static List<Cue> getCues(List<WebvttCueInfo> activeCueInfos) {
+    List<Cue> cues = new ArrayList<>(activeCueInfos.size());
+    int unsetLineCount = 0;
+    for (int i = 0; i < activeCueInfos.size(); i++) {
+      Cue cue = activeCueInfos.get(i).cue;
+      if (cue.line != Cue.DIMEN_UNSET) {
+        cues.add(cue);
+      } else {
+        unsetLineCount++;
+      }
+    }
+    // Steps 4 - 10 of https://www.w3.org/TR/webvtt1/#cue-computed-line
+    int unsetLineIndex = 0;
+    for (int i = 0; unsetLineIndex < unsetLineCount; i++) {
+      Cue cue = activeCueInfos.get(i).cue;
+      if (cue.line == Cue.DIMEN_UNSET) {
+        cues.add(
+            cue.buildUpon().setLine((float) (-1 - unsetLineIndex), Cue.LINE_TYPE_NUMBER).build());
+        unsetLineIndex++;
+      }
+    }
+    return cues;
   }
 
   /**
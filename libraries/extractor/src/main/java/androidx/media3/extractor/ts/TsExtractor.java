@@ -158,16 +158,18 @@ public final class TsExtractor implements Extractor {
 
   private static final int BUFFER_SIZE = TS_PACKET_SIZE * 50;
   private static final int SNIFF_TS_PACKET_COUNT = 5;
+  private static final byte CONTINUITY_COUNTER_UNSET = -1;
 
   private final @Mode int mode;
   private final @Flags int extractorFlags;
   private final int timestampSearchBytes;
   private final List<TimestampAdjuster> timestampAdjusters;
   private final ParsableByteArray tsPacketBuffer;
-  private final SparseIntArray continuityCounters;
+  private final byte[] continuityCounters; // Indexed by pid
   private final TsPayloadReader.Factory payloadReaderFactory;
   private final SubtitleParser.Factory subtitleParserFactory;
   private final SparseArray<TsPayloadReader> tsPayloadReaders; // Indexed by pid
+  private final @NullableType TsPayloadReader[] tsPayloadReadersByPid;
   private final SparseBooleanArray trackIds;
   private final SparseBooleanArray trackPids;
   private final TsDurationReader durationReader;
@@ -341,7 +343,9 @@ public final class TsExtractor implements Extractor {
     trackIds = new SparseBooleanArray();
     trackPids = new SparseBooleanArray();
     tsPayloadReaders = new SparseArray<>();
-    continuityCounters = new SparseIntArray();
+    tsPayloadReadersByPid = new TsPayloadReader[MAX_PID_PLUS_ONE];
+    continuityCounters = new byte[MAX_PID_PLUS_ONE];
+    Arrays.fill(continuityCounters, CONTINUITY_COUNTER_UNSET);
     durationReader = new TsDurationReader(timestampSearchBytes);
     output = ExtractorOutput.PLACEHOLDER;
     pcrPid = -1;
@@ -409,7 +413,7 @@ public final class TsExtractor implements Extractor {
       tsBinarySearchSeeker.setSeekTargetUs(timeUs);
     }
     tsPacketBuffer.reset(/* limit= */ 0);
-    continuityCounters.clear();
+    Arrays.fill(continuityCounters, CONTINUITY_COUNTER_UNSET);
     for (int i = 0; i < tsPayloadReaders.size(); i++) {
       tsPayloadReaders.valueAt(i).seek();
     }
@@ -461,12 +465,36 @@ public final class TsExtractor implements Extractor {
       return RESULT_END_OF_INPUT;
     }
 
-    int endOfPacket = findEndOfFirstTsPacketInBuffer();
-    int limit = tsPacketBuffer.limit();
-    if (endOfPacket > limit) {
-      return RESULT_CONTINUE;
+    // Consume all of the complete packets in the buffer, rather than returning after each one.
+    boolean wereTracksEnded = tracksEnded;
+    while (tsPacketBuffer.bytesLeft() >= TS_PACKET_SIZE) {
+      int endOfPacket = findEndOfFirstTsPacketInBuffer();
+      if (endOfPacket > tsPacketBuffer.limit()) {
+        break;
+      }
+      consumePacket(endOfPacket);
+      if (tracksEnded != wereTracksEnded) {
+        if (mode != MODE_HLS && inputLength != C.LENGTH_UNSET) {
+          // We have read all tracks from all PMTs in this non-live stream. Now seek to the
+          // beginning and read again to make sure we output all media, including any contained in
+          // packets prior to those containing the track information.
+          pendingSeekToStart = true;
+        }
+        // Return so that the ended tracks are handled before any further packets are consumed.
+        break;
+      }
     }
+    return RESULT_CONTINUE;
+  }
+
+  // Internals.
 
+  /**
+   * Consumes the TS packet at the current position of the packet buffer, and sets the position to
+   * the end of the packet.
+   */
+  private void consumePacket(int endOfPacket) throws ParserException {
+    int limit = tsPacketBuffer.limit();
     @TsPayloadReader.Flags int packetHeaderFlags = 0;
 
     // Note: See ISO/IEC 13818-1, section 2.4.3.2 for details of the header format.
@@ -474,7 +502,7 @@ public final class TsExtractor implements Extractor {
     if ((tsPacketHeader & 0x800000) != 0) { // transport_error_indicator
       // There are uncorrectable errors in this packet.
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
     packetHeaderFlags |= (tsPacketHeader & 0x400000) != 0 ? FLAG_PAYLOAD_UNIT_START_INDICATOR : 0;
     // Ignoring transport_priority (tsPacketHeader & 0x200000)
@@ -483,21 +511,24 @@ public final class TsExtractor implements Extractor {
     boolean adaptationFieldExists = (tsPacketHeader & 0x20) != 0;
     boolean payloadExists = (tsPacketHeader & 0x10) != 0;
 
-    TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders.get(pid) : null;
+    @Nullable TsPayloadReader payloadReader = payloadExists ? tsPayloadReadersByPid[pid] : null;
     if (payloadReader == null) {
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
 
     // Discontinuity check.
     if (mode != MODE_HLS) {
       int continuityCounter = tsPacketHeader & 0xF;
-      int previousCounter = continuityCounters.get(pid, continuityCounter - 1);
-      continuityCounters.put(pid, continuityCounter);
+      int previousCounter = continuityCounters[pid];
+      if (previousCounter == CONTINUITY_COUNTER_UNSET) {
+        previousCounter = continuityCounter - 1;
+      }
+      continuityCounters[pid] = (byte) continuityCounter;
       if (previousCounter == continuityCounter) {
         // Duplicate packet found.
         tsPacketBuffer.setPosition(endOfPacket);
-        return RESULT_CONTINUE;
+        return;
       } else if (continuityCounter != ((previousCounter + 1) & 0xF)) {
         // Discontinuity found.
         payloadReader.seek();
@@ -517,25 +548,14 @@ public final class TsExtractor implements Extractor {
     }
 
     // Read the payload.
-    boolean wereTracksEnded = tracksEnded;
     if (shouldConsumePacketPayload(pid)) {
       tsPacketBuffer.setLimit(endOfPacket);
       payloadReader.consume(tsPacketBuffer, packetHeaderFlags);
       tsPacketBuffer.setLimit(limit);
     }
-    if (mode != MODE_HLS && !wereTracksEnded && tracksEnded && inputLength != C.LENGTH_UNSET) {
-      // We have read all tracks from all PMTs in this non-live stream. Now seek to the beginning
-      // and read again to make sure we output all media, including any contained in packets prior
-      // to those containing the track information.
-      pendingSeekToStart = true;
-    }
-
     tsPacketBuffer.setPosition(endOfPacket);
-    return RESULT_CONTINUE;
   }
 
-  // Internals.
-
   private void maybeOutputSeekMap(long inputLength) {
     if (!hasOutputSeekMap) {
       hasOutputSeekMap = true;
@@ -613,16 +633,27 @@ public final class TsExtractor implements Extractor {
   private void resetPayloadReaders() {
     trackIds.clear();
     tsPayloadReaders.clear();
+    Arrays.fill(tsPayloadReadersByPid, null);
     SparseArray<TsPayloadReader> initialPayloadReaders =
         payloadReaderFactory.createInitialPayloadReaders();
     int initialPayloadReadersSize = initialPayloadReaders.size();
     for (int i = 0; i < initialPayloadReadersSize; i++) {
-      tsPayloadReaders.put(initialPayloadReaders.keyAt(i), initialPayloadReaders.valueAt(i));
+      putPayloadReader(initialPayloadReaders.keyAt(i), initialPayloadReaders.valueAt(i));
     }
-    tsPayloadReaders.put(TS_PAT_PID, new SectionReader(new PatReader()));
+    putPayloadReader(TS_PAT_PID, new SectionReader(new PatReader()));
     id3Reader = null;
   }
 
+  private void putPayloadReader(int pid, TsPayloadReader payloadReader) {
+    tsPayloadReaders.put(pid, payloadReader);
+    tsPayloadReadersByPid[pid] = payloadReader;
+  }
+
+  private void removePayloadReader(int pid) {
+    tsPayloadReaders.remove(pid);
+    tsPayloadReadersByPid[pid] = null;
+  }
+
   /** Parses Program Association Table data. */
   private class PatReader implements SectionPayloadReader {
 
@@ -666,14 +697,14 @@ public final class TsExtractor implements Extractor {
           patScratch.skipBits(13); // network_PID (13)
         } else {
           int pid = patScratch.readBits(13);
-          if (tsPayloadReaders.get(pid) == null) {
-            tsPayloadReaders.put(pid, new SectionReader(new PmtReader(pid)));
+          if (tsPayloadReadersByPid[pid] == null) {
+            putPayloadReader(pid, new SectionReader(new PmtReader(pid)));
             remainingPmts++;
           }
         }
       }
       if (mode != MODE_HLS) {
-        tsPayloadReaders.remove(TS_PAT_PID);
+        removePayloadReader(TS_PAT_PID);
       }
     }
   }
@@ -820,7 +851,7 @@ public final class TsExtractor implements Extractor {
                 output,
                 new TrackIdGenerator(programNumber, trackId, MAX_PID_PLUS_ONE));
           }
-          tsPayloadReaders.put(trackPid, reader);
+          putPayloadReader(trackPid, reader);
         }
       }
 
@@ -831,7 +862,7 @@ public final class TsExtractor implements Extractor {
           tracksEnded = true;
         }
       } else {
-        tsPayloadReaders.remove(pid);
+        removePayloadReader(pid);
         remainingPmts = mode == MODE_SINGLE_PMT ? 0 : remainingPmts - 1;
         if (remainingPmts == 0) {
           output.endTracks();
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.media3.extractor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.media3.extractor.BinarySearchSeeker.BinarySearchSeekMap;
+import androidx.media3.extractor.BinarySearchSeeker.DefaultSeekTimestampConverter;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SeekIndex}. */
+@RunWith(AndroidJUnit4.class)
+public final class SeekIndexTest {
+
+  @Test
+  public void getFloorPointAndGetCeilingPoint_returnNearestPointsAroundTimestamp() {
+    SeekIndex seekIndex =
+        new SeekIndex(/* floorBytePosition= */ 0, /* ceilingBytePosition= */ 10_000);
+    seekIndex.addFloorPoint(/* timestamp= */ 100, /* position= */ 1_000);
+    seekIndex.addFloorPoint(/* timestamp= */ 300, /* position= */ 3_000);
+    seekIndex.addCeilingPoint(/* timestamp= */ 200, /* position= */ 2_000);
+    seekIndex.addCeilingPoint(/* timestamp= */ 400, /* position= */ 4_000);
+
+    assertThat(seekIndex.getFloorPoint(/* timestamp= */ 50)).isNull();
+    assertThat(seekIndex.getFloorPoint(/* timestamp= */ 300).getValue()).isEqualTo(3_000);
+    assertThat(seekIndex.getFloorPoint(/* timestamp= */ 299).getValue()).isEqualTo(1_000);
+    assertThat(seekIndex.getCeilingPoint(/* timestamp= */ 200).getValue()).isEqualTo(4_000);
+    assertThat(seekIndex.getCeilingPoint(/* timestamp= */ 199).getValue()).isEqualTo(2_000);
+    assertThat(seekIndex.getCeilingPoint(/* timestamp= */ 400)).isNull();
+    assertThat(seekIndex.getPointCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void addFloorPoint_outsideStreamOrWhenFull_isIgnored() {
+    SeekIndex seekIndex =
+        new SeekIndex(/* floorBytePosition= */ 100, /* ceilingBytePosition= */ 100_000);
+
+    seekIndex.addFloorPoint(/* timestamp= */ 0, /* position= */ 99);
+    seekIndex.addFloorPoint(/* timestamp= */ 0, /* position= */ 100_001);
+    for (int i = 0; i <= SeekIndex.MAX_POINT_COUNT; i++) {
+      seekIndex.addFloorPoint(/* timestamp= */ i, /* position= */ 100 + i);
+    }
+
+    assertThat(seekIndex.getPointCount()).isEqualTo(SeekIndex.MAX_POINT_COUNT);
+    assertThat(seekIndex.getFloorPoint(/* timestamp= */ 0).getValue()).isEqualTo(100);
+    assertThat(seekIndex.getFloorPoint(/* timestamp= */ SeekIndex.MAX_POINT_COUNT).getKey())
+        .isEqualTo(SeekIndex.MAX_POINT_COUNT - 1);
+  }
+
+  @Test
+  public void getModificationCount_changesWhenPointIsReplacedWithoutChangingPointCount() {
+    SeekIndex seekIndex =
+        new SeekIndex(/* floorBytePosition= */ 100, /* ceilingBytePosition= */ 100_000);
+    seekIndex.addFloorPoint(/* timestamp= */ 1000, /* position= */ 1000);
+    int modificationCount = seekIndex.getModificationCount();
+
+    seekIndex.addFloorPoint(/* timestamp= */ 1000, /* position= */ 1000);
+    assertThat(seekIndex.getModificationCount()).isEqualTo(modificationCount);
+
+    seekIndex.addFloorPoint(/* timestamp= */ 1000, /* position= */ 2000);
+    assertThat(seekIndex.getPointCount()).isEqualTo(1);
+    assertThat(seekIndex.getModificationCount()).isGreaterThan(modificationCount);
+  }
+
+  @Test
+  public void restore_fromSerializedIndex_restoresPoints() {
+    SeekIndex seekIndex =
+        new SeekIndex(/* floorBytePosition= */ 0, /* ceilingBytePosition= */ 10_000);
+    seekIndex.addFloorPoint(/* timestamp= */ 100, /* position= */ 1_000);
+    seekIndex.addCeilingPoint(/* timestamp= */ 200, /* position= */ 2_000);
+    SeekIndex restoredSeekIndex =
+        new SeekIndex(/* floorBytePosition= */ 0, /* ceilingBytePosition= */ 10_000);
+
+    assertThat(restoredSeekIndex.restore(seekIndex.toByteArray())).isTrue();
+
+    assertThat(restoredSeekIndex.getPointCount()).isEqualTo(2);
+    assertThat(restoredSeekIndex.getFloorPoint(/* timestamp= */ 150).getKey()).isEqualTo(100);
+    assertThat(restoredSeekIndex.getFloorPoint(/* timestamp= */ 150).getValue()).isEqualTo(1_000);
+    assertThat(restoredSeekIndex.getCeilingPoint(/* timestamp= */ 150).getKey()).isEqualTo(200);
+    assertThat(restoredSeekIndex.getCeilingPoint(/* timestamp= */ 150).getValue())
+        .isEqualTo(2_000);
+    assertThat(restoredSeekIndex.toByteArray()).isEqualTo(seekIndex.toByteArray());
+  }
+
+  @Test
+  public void restore_fromIndexOfDifferentStream_returnsFalse() {
+    SeekIndex seekIndex =
+        new SeekIndex(/* floorBytePosition= */ 0, /* ceilingBytePosition= */ 10_000);
+    seekIndex.addFloorPoint(/* timestamp= */ 100, /* position= */ 1_000);
+    SeekIndex otherSeekIndex =
+        new SeekIndex(/* floorBytePosition= */ 0, /* ceilingBytePosition= */ 20_000);
+
+    assertThat(otherSeekIndex.restore(seekIndex.toByteArray())).isFalse();
+    assertThat(otherSeekIndex.getPointCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void restore_fromMalformedData_returnsFalse() {
+    SeekIndex seekIndex =
+        new SeekIndex(/* floorBytePosition= */ 0, /* ceilingBytePosition= */ 10_000);
+    seekIndex.addFloorPoint(/* timestamp= */ 100, /* position= */ 1_000);
+    byte[] data = seekIndex.toByteArray();
+    SeekIndex restoredSeekIndex =
+        new SeekIndex(/* floorBytePosition= */ 0, /* ceilingBytePosition= */ 10_000);
+
+    assertThat(restoredSeekIndex.restore(Arrays.copyOf(data, data.length - 1))).isFalse();
+    assertThat(restoredSeekIndex.restore(new byte[0])).isFalse();
+    assertThat(restoredSeekIndex.getPointCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void binarySearchSeekMap_getSeekPoints_searchesNarrowestIndexedRange() {
+    SeekIndex seekIndex =
+        new SeekIndex(/* floorBytePosition= */ 0, /* ceilingBytePosition= */ 1_000_000);
+    BinarySearchSeekMap seekMap =
+        new BinarySearchSeekMap(
+            new DefaultSeekTimestampConverter(),
+            /* durationUs= */ 1_000_000,
+            /* floorTimePosition= */ 0,
+            /* ceilingTimePosition= */ 1_000_000,
+            /* floorBytePosition= */ 0,
+            /* ceilingBytePosition= */ 1_000_000,
+            /* approxBytesPerFrame= */ 0,
+            seekIndex);
+    long positionWithoutIndex = seekMap.getSeekPoints(/* timeUs= */ 500_000).first.position;
+
+    seekIndex.addFloorPoint(/* timestamp= */ 400_000, /* position= */ 400_000);
+    seekIndex.addFloorPoint(/* timestamp= */ 700_000, /* position= */ 600_000);
+    seekIndex.addCeilingPoint(/* timestamp= */ 600_000, /* position= */ 500_000);
+    long positionWithIndex = seekMap.getSeekPoints(/* timeUs= */ 500_000).first.position;
+
+    assertThat(positionWithoutIndex).isEqualTo(475_000);
+    // 500 bytes per ms between the floor and ceiling points, less a 5% confidence interval.
+    assertThat(positionWithIndex).isEqualTo(447_500);
+  }
+}
@@ -18,11 +18,15 @@ package androidx.media3.extractor.mp4;
 import static com.google.common.truth.Truth.assertThat;
 
 import androidx.media3.common.C;
+import androidx.media3.common.Format;
+import androidx.media3.common.MimeTypes;
 import androidx.media3.common.ParserException;
 import androidx.media3.common.util.ParsableByteArray;
 import androidx.media3.common.util.Util;
 import androidx.media3.container.Mp4Box;
+import androidx.media3.extractor.GaplessInfoHolder;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.nio.ByteBuffer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -269,6 +273,63 @@ public final class BoxParserTest {
         new Mp4Box.LeafBox(Mp4Box.TYPE_stsz, new ParsableByteArray(SIXTEEN_BIT_STZ2)));
   }
 
+  @Test
+  public void parseStbl_withPagedSampleTable_returnsSameEntriesAsFullyDecodedTable()
+      throws ParserException {
+    Track track =
+        new Track(
+            /* id= */ 1,
+            C.TRACK_TYPE_VIDEO,
+            /* timescale= */ 30_000,
+            /* movieTimescale= */ 1_000,
+            /* durationUs= */ C.TIME_UNSET,
+            /* mediaDurationUs= */ C.TIME_UNSET,
+            new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).build(),
+            Track.TRANSFORMATION_NONE,
+            /* sampleDescriptionEncryptionBoxes= */ null,
+            /* nalUnitLengthFieldLength= */ 4,
+            /* editListDurations= */ null,
+            /* editListMediaTimes= */ null);
+
+    TrackSampleTable fullTable =
+        BoxParser.parseStbl(
+            track,
+            createStblWithManyPagesOfSamples(),
+            new GaplessInfoHolder(),
+            /* pagedSampleTable= */ false);
+    TrackSampleTable pagedTable =
+        BoxParser.parseStbl(
+            track,
+            createStblWithManyPagesOfSamples(),
+            new GaplessInfoHolder(),
+            /* pagedSampleTable= */ true);
+
+    assertThat(fullTable.isPaged()).isFalse();
+    assertThat(pagedTable.isPaged()).isTrue();
+    assertThat(pagedTable.sampleCount).isEqualTo(fullTable.sampleCount);
+    assertThat(pagedTable.maximumSize).isEqualTo(fullTable.maximumSize);
+    assertThat(pagedTable.durationUs).isEqualTo(fullTable.durationUs);
+    int pageCount = Util.ceilDivide(fullTable.sampleCount, PagedSampleTable.PAGE_SAMPLE_COUNT);
+    for (int i = 0; i < pageCount; i++) {
+      assertThat(pagedTable.getPageStartTimestampUs(i))
+          .isEqualTo(fullTable.getPageStartTimestampUs(i));
+      assertThat(pagedTable.getPageSize(i)).isEqualTo(fullTable.getPageSize(i));
+    }
+    // Access the samples out of order, so that pages are evicted and decoded again.
+    for (int i = fullTable.sampleCount - 1; i >= 0; i -= 7) {
+      assertSampleEntriesEqual(pagedTable, fullTable, i);
+    }
+    for (int i = 0; i < fullTable.sampleCount; i++) {
+      assertSampleEntriesEqual(pagedTable, fullTable, i);
+    }
+    for (long timeUs = -100_000; timeUs < fullTable.durationUs + 100_000; timeUs += 33_367) {
+      assertThat(pagedTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(fullTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+      assertThat(pagedTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(fullTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs));
+    }
+  }
+
   @Test
   public void vexuParsings() throws ParserException {
     BoxParser.VexuData vexuData = null;
@@ -295,5 +356,67 @@ public final class BoxParserTest {
     for (int i = 0; i < box.getSampleCount(); i++) {
       assertThat(box.readNextSampleSize()).isEqualTo(i + 1);
     }
+    for (int i = box.getSampleCount() - 1; i >= 0; i--) {
+      assertThat(box.getSampleSize(i)).isEqualTo(i + 1);
+    }
+  }
+
+  private static void assertSampleEntriesEqual(
+      TrackSampleTable actual, TrackSampleTable expected, int sampleIndex) {
+    assertThat(actual.getOffset(sampleIndex)).isEqualTo(expected.offsets[sampleIndex]);
+    assertThat(actual.getSize(sampleIndex)).isEqualTo(expected.sizes[sampleIndex]);
+    assertThat(actual.getTimestampUs(sampleIndex)).isEqualTo(expected.timestampsUs[sampleIndex]);
+    assertThat(actual.getFlags(sampleIndex)).isEqualTo(expected.flags[sampleIndex]);
+  }
+
+  /**
+   * Returns an stbl box with 2500 samples, whose chunks, timestamp deltas and timestamp offsets
+   * vary, and with a synchronization sample every 30 samples.
+   */
+  private static Mp4Box.ContainerBox createStblWithManyPagesOfSamples() {
+    int sampleCount = 2500;
+    int[] stsz = new int[2 + sampleCount];
+    stsz[1] = sampleCount;
+    for (int i = 0; i < sampleCount; i++) {
+      stsz[2 + i] = 100 + (i * 7) % 50;
+    }
+    // 100 chunks of 3 samples, followed by 440 chunks of 5 samples.
+    int chunkCount = 540;
+    int[] stco = new int[1 + chunkCount];
+    stco[0] = chunkCount;
+    for (int i = 0; i < chunkCount; i++) {
+      stco[1 + i] = 1_000 + i * 10_000;
+    }
+    int[] stsc = new int[] {2, 1, 3, 1, 101, 5, 1};
+    int[] stts = new int[] {2, 1_000, 1_001, 1_500, 1_000};
+    int[] ctts = new int[1 + 2 * sampleCount];
+    ctts[0] = sampleCount;
+    for (int i = 0; i < sampleCount; i++) {
+      ctts[1 + 2 * i] = 1;
+      ctts[2 + 2 * i] = (i % 3) * 1_001;
+    }
+    int syncSampleCount = Util.ceilDivide(sampleCount, 30);
+    int[] stss = new int[1 + syncSampleCount];
+    stss[0] = syncSampleCount;
+    for (int i = 0; i < syncSampleCount; i++) {
+      stss[1 + i] = 1 + i * 30;
+    }
+    Mp4Box.ContainerBox stbl = new Mp4Box.ContainerBox(Mp4Box.TYPE_stbl, /* endPosition= */ 0);
+    stbl.add(createFullBox(Mp4Box.TYPE_stsz, stsz));
+    stbl.add(createFullBox(Mp4Box.TYPE_stco, stco));
+    stbl.add(createFullBox(Mp4Box.TYPE_stsc, stsc));
+    stbl.add(createFullBox(Mp4Box.TYPE_stts, stts));
+    stbl.add(createFullBox(Mp4Box.TYPE_ctts, ctts));
+    stbl.add(createFullBox(Mp4Box.TYPE_stss, stss));
+    return stbl;
+  }
+
+  private static Mp4Box.LeafBox createFullBox(int type, int[] fields) {
+    ByteBuffer data = ByteBuffer.allocate(Mp4Box.FULL_HEADER_SIZE + 4 * fields.length);
+    data.position(Mp4Box.FULL_HEADER_SIZE);
+    for (int field : fields) {
+      data.putInt(field);
+    }
+    return new Mp4Box.LeafBox(type, new ParsableByteArray(data.array()));
   }
 }
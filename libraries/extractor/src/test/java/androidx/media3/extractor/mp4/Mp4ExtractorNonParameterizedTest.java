@@ -24,6 +24,7 @@ import androidx.media3.extractor.SniffFailure;
 import androidx.media3.extractor.text.DefaultSubtitleParserFactory;
 import androidx.media3.extractor.text.SubtitleParser;
 import androidx.media3.test.utils.DumpFileAsserts;
+import androidx.media3.test.utils.Dumper;
 import androidx.media3.test.utils.FakeExtractorInput;
 import androidx.media3.test.utils.FakeExtractorOutput;
 import androidx.media3.test.utils.FakeTrackOutput;
@@ -156,6 +157,43 @@ public final class Mp4ExtractorNonParameterizedTest {
     DumpFileAsserts.assertOutput(context, auxiliaryTracksOutput, dumpFilePath);
   }
 
+  @Test
+  public void extract_withPagedSampleTables_outputsSameSamplesAndSeekPoints() throws Exception {
+    Context context = ApplicationProvider.getApplicationContext();
+    String inputFilePath = "media/mp4/sample.mp4";
+    // Edit lists are ignored, as tracks with edit lists don't use paged sample tables.
+    Mp4Extractor mp4Extractor =
+        new Mp4Extractor(
+            SubtitleParser.Factory.UNSUPPORTED, Mp4Extractor.FLAG_WORKAROUND_IGNORE_EDIT_LISTS);
+    Mp4Extractor pagedMp4Extractor =
+        new Mp4Extractor(
+            SubtitleParser.Factory.UNSUPPORTED,
+            Mp4Extractor.FLAG_WORKAROUND_IGNORE_EDIT_LISTS
+                | Mp4Extractor.FLAG_USE_PAGED_SAMPLE_TABLES);
+
+    FakeExtractorOutput output =
+        TestUtil.extractAllSamplesFromFile(mp4Extractor, context, inputFilePath);
+    FakeExtractorOutput pagedOutput =
+        TestUtil.extractAllSamplesFromFile(pagedMp4Extractor, context, inputFilePath);
+
+    assertThat(dump(pagedOutput)).isEqualTo(dump(output));
+    long durationUs = output.seekMap.getDurationUs();
+    for (long timeUs = 0; timeUs <= durationUs; timeUs += durationUs / 10) {
+      assertThat(pagedMp4Extractor.getSeekPoints(timeUs))
+          .isEqualTo(mp4Extractor.getSeekPoints(timeUs));
+    }
+    for (int i = 0; i < output.numberOfTracks; i++) {
+      assertThat(pagedMp4Extractor.getSampleTimestampsUs(i))
+          .isEqualTo(mp4Extractor.getSampleTimestampsUs(i));
+    }
+  }
+
+  private static String dump(Dumper.Dumpable dumpable) {
+    Dumper dumper = new Dumper();
+    dumpable.dump(dumper);
+    return dumper.toString();
+  }
+
   private static String getDumpFilePath(String inputFilePath, String suffix) {
     return inputFilePath.replaceFirst("media", "extractordumps") + suffix;
   }
@@ -26,6 +26,7 @@ import androidx.media3.common.text.Cue;
 import androidx.media3.common.text.TextAnnotation;
 import androidx.media3.common.util.Assertions;
 import androidx.media3.common.util.ColorParser;
+import androidx.media3.common.util.Util;
 import androidx.media3.extractor.text.CuesWithTiming;
 import androidx.media3.extractor.text.SubtitleParser;
 import androidx.media3.test.utils.TestUtil;
@@ -33,6 +34,7 @@ import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.truth.Expect;
 import java.io.IOException;
 import java.util.List;
@@ -672,6 +674,75 @@ public class WebvttParserTest {
             "Combine ".length(), "Combine 0004".length());
   }
 
+  @Test
+  public void parseAllCues_withOverlappingCues_assignsLinesPerEvent() {
+    byte[] bytes =
+        Util.getUtf8Bytes(
+            "WEBVTT\n\n"
+                + "00:00:00.000 --> 00:00:04.000\nFirst\n\n"
+                + "00:00:01.000 --> 00:00:02.000\nSecond\n\n"
+                + "00:00:01.000 --> 00:00:03.000 line:0\nThird\n\n"
+                + "00:00:02.000 --> 00:00:02.000\nEmpty\n\n"
+                + "00:00:02.500 --> 00:00:06.000\nFourth\n");
+    WebvttParser parser = new WebvttParser();
+    ImmutableList.Builder<CuesWithTiming> allCues = ImmutableList.builder();
+    parser.parse(bytes, SubtitleParser.OutputOptions.allCues(), allCues::add);
+    ImmutableList<CuesWithTiming> cues = allCues.build();
+
+    assertThat(cues).hasSize(6);
+    assertThat(cues.get(1).startTimeUs).isEqualTo(1_000_000);
+    assertThat(cues.get(1).durationUs).isEqualTo(1_000_000);
+    assertThat(Lists.transform(cues.get(1).cues, cue -> cue.text.toString()))
+        .containsExactly("Third", "First", "Second")
+        .inOrder();
+    assertThat(cues.get(1).cues.get(0).line).isEqualTo(0);
+    assertThat(cues.get(1).cues.get(1).line).isEqualTo(-1);
+    assertThat(cues.get(1).cues.get(2).line).isEqualTo(-2);
+    assertThat(cues.get(3).startTimeUs).isEqualTo(2_500_000);
+    assertThat(Lists.transform(cues.get(3).cues, cue -> cue.text.toString()))
+        .containsExactly("Third", "First", "Fourth")
+        .inOrder();
+    assertThat(cues.get(5).startTimeUs).isEqualTo(4_000_000);
+    assertThat(cues.get(5).durationUs).isEqualTo(2_000_000);
+    assertThat(cues.get(5).cues.get(0).line).isEqualTo(-1);
+    assertSameCuesAsFromStartOfDocument(bytes, cues);
+  }
+
+  @Test
+  public void parseAllCues_outputsSameCuesAsWhenOutputFromStartOfDocument() throws IOException {
+    String[] assets = {
+      TYPICAL_FILE,
+      TYPICAL_WITH_IDS_FILE,
+      WITH_POSITIONING_FILE,
+      WITH_CONSECUTIVE_TIMESTAMPS_FILE,
+      WITH_OVERLAPPING_TIMESTAMPS_FILE
+    };
+    for (String asset : assets) {
+      byte[] bytes = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), asset);
+      assertSameCuesAsFromStartOfDocument(bytes, getCuesForTestAsset(asset));
+    }
+  }
+
+  /**
+   * Asserts that {@code cues} are the cues output when starting at the start of the document, which
+   * are converted through a {@link WebvttSubtitle}.
+   */
+  private static void assertSameCuesAsFromStartOfDocument(byte[] bytes, List<CuesWithTiming> cues) {
+    ImmutableList.Builder<CuesWithTiming> cuesFromStart = ImmutableList.builder();
+    new WebvttParser()
+        .parse(
+            bytes,
+            SubtitleParser.OutputOptions.cuesAfterThenRemainingCuesBefore(/* startTimeUs= */ 0),
+            cuesFromStart::add);
+    ImmutableList<CuesWithTiming> expectedCues = cuesFromStart.build();
+    assertThat(cues).hasSize(expectedCues.size());
+    for (int i = 0; i < cues.size(); i++) {
+      assertThat(cues.get(i).startTimeUs).isEqualTo(expectedCues.get(i).startTimeUs);
+      assertThat(cues.get(i).durationUs).isEqualTo(expectedCues.get(i).durationUs);
+      assertThat(cues.get(i).cues).isEqualTo(expectedCues.get(i).cues);
+    }
+  }
+
   private ImmutableList<CuesWithTiming> getCuesForTestAsset(String asset) throws IOException {
     return getCuesForTestAsset(asset, SubtitleParser.OutputOptions.allCues());
   }
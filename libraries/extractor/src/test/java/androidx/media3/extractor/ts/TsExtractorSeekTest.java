@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 import android.net.Uri;
 import androidx.media3.datasource.DataSourceUtil;
 import androidx.media3.datasource.DefaultDataSource;
+import androidx.media3.extractor.BinarySearchSeeker.BinarySearchSeekMap;
 import androidx.media3.extractor.Extractor;
 import androidx.media3.extractor.ExtractorInput;
 import androidx.media3.extractor.PositionHolder;
@@ -165,6 +166,34 @@ public final class TsExtractorSeekTest {
         trackOutput, targetSeekTimeUs, extractedFrameIndex);
   }
 
+  @Test
+  public void handlePendingSeek_withRestoredSeekIndex_extractsCorrectFrame() throws IOException {
+    Uri fileUri = TestUtil.buildAssetUri(TEST_FILE);
+    TsExtractor extractor = new TsExtractor(new DefaultSubtitleParserFactory());
+    FakeExtractorOutput extractorOutput = new FakeExtractorOutput();
+    SeekMap seekMap = TestUtil.extractSeekMap(extractor, extractorOutput, dataSource, fileUri);
+    FakeTrackOutput trackOutput = extractorOutput.trackOutputs.get(AUDIO_TRACK_ID);
+    for (long seekTimeUs : new long[] {987_000, 1_234_000, 2_000_000}) {
+      TestUtil.seekToTimeUs(extractor, seekMap, seekTimeUs, dataSource, trackOutput, fileUri);
+    }
+    byte[] seekIndex = ((BinarySearchSeekMap) seekMap).getSeekIndex().toByteArray();
+    TsExtractor newExtractor = new TsExtractor(new DefaultSubtitleParserFactory());
+    FakeExtractorOutput newExtractorOutput = new FakeExtractorOutput();
+    SeekMap newSeekMap =
+        TestUtil.extractSeekMap(newExtractor, newExtractorOutput, dataSource, fileUri);
+    FakeTrackOutput newTrackOutput = newExtractorOutput.trackOutputs.get(AUDIO_TRACK_ID);
+
+    assertThat(((BinarySearchSeekMap) newSeekMap).getSeekIndex().restore(seekIndex)).isTrue();
+    long targetSeekTimeUs = 1_234_000;
+    int extractedFrameIndex =
+        TestUtil.seekToTimeUs(
+            newExtractor, newSeekMap, targetSeekTimeUs, dataSource, newTrackOutput, fileUri);
+
+    assertThat(extractedFrameIndex).isNotEqualTo(-1);
+    assertFirstFrameAfterSeekContainTargetSeekTime(
+        newTrackOutput, targetSeekTimeUs, extractedFrameIndex);
+  }
+
   @Test
   public void handlePendingSeek_handlesRandomSeeks_extractsCorrectFrame() throws IOException {
     TsExtractor extractor = new TsExtractor(new DefaultSubtitleParserFactory());
@@ -409,6 +409,35 @@ public final class TsExtractorTest {
                 .build());
   }
 
+  @Test
+  public void read_consumesAllBufferedPacketsInEachCall() throws Exception {
+    byte[] data =
+        TestUtil.getByteArray(
+            ApplicationProvider.getApplicationContext(), "media/ts/sample_h262_mpeg_audio.ts");
+    TsExtractor tsExtractor =
+        (TsExtractor) getExtractorFactory(subtitlesParsedDuringExtraction).create();
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(data)
+            .setSimulateIOErrors(false)
+            .setSimulateUnknownLength(false)
+            .setSimulatePartialReads(false)
+            .build();
+    tsExtractor.init(new FakeExtractorOutput());
+    PositionHolder seekPositionHolder = new PositionHolder();
+    int readCount = 0;
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = tsExtractor.read(input, seekPositionHolder);
+      readCount++;
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) seekPositionHolder.position);
+      }
+    }
+
+    assertThat(readCount).isLessThan(data.length / TsExtractor.TS_PACKET_SIZE / 5);
+  }
+
   @Test
   public void customInitialSectionReader() throws Exception {
     CustomTsPayloadReaderFactory factory = new CustomTsPayloadReaderFactory(false, true);
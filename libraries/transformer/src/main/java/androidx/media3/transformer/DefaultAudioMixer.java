@@ -88,6 +88,7 @@ public final class DefaultAudioMixer implements AudioMixer {
   private final boolean outputSilenceWithNoSources;
   private final boolean clipFloatOutput;
   private final SparseArray<SourceInfo> sources;
+  private final AudioMixingUtil.SampleArrays sampleArrays;
   private int nextSourceId;
   private AudioFormat outputAudioFormat;
   private int bufferSizeFrames;
@@ -113,6 +114,7 @@ public final class DefaultAudioMixer implements AudioMixer {
     this.outputSilenceWithNoSources = outputSilenceWithNoSources;
     this.clipFloatOutput = clipFloatOutput;
     sources = new SparseArray<>();
+    sampleArrays = new AudioMixingUtil.SampleArrays();
     outputAudioFormat = AudioFormat.NOT_SET;
     bufferSizeFrames = C.LENGTH_UNSET;
     mixingBuffers = new MixingBuffer[0];
@@ -443,7 +445,8 @@ public final class DefaultAudioMixer implements AudioMixer {
           channelMixingMatrix,
           framesToMix,
           /* accumulate= */ true,
-          clipFloatOutput);
+          clipFloatOutput,
+          sampleArrays);
       position = newPosition;
     }
   }